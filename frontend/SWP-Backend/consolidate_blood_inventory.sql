@@ -0,0 +1,39 @@
+-- One-time migration for SQL Server: merge duplicate blood_inventory rows and
+-- add the unique constraint on blood_type.
+-- Safe to run more than once. The application performs the same merge at
+-- startup, this script is for applying it manually before deployment.
+
+BEGIN TRANSACTION;
+
+-- Keep the row with the lowest id for each blood type and give it the total quantity
+WITH ranked AS (
+    SELECT id,
+           blood_type,
+           ROW_NUMBER() OVER (PARTITION BY blood_type ORDER BY id) AS rn,
+           SUM(ISNULL(quantity, 0)) OVER (PARTITION BY blood_type) AS total_quantity
+    FROM blood_inventory
+)
+UPDATE b
+SET b.quantity = r.total_quantity
+FROM blood_inventory b
+JOIN ranked r ON r.id = b.id
+WHERE r.rn = 1;
+
+-- Delete the other rows
+WITH ranked AS (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY blood_type ORDER BY id) AS rn
+    FROM blood_inventory
+)
+DELETE FROM ranked WHERE rn > 1;
+
+-- Prevent new duplicates (also used as the index for lookups by blood type)
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'uk_blood_inventory_blood_type')
+    ALTER TABLE blood_inventory ADD CONSTRAINT uk_blood_inventory_blood_type UNIQUE (blood_type);
+
+COMMIT TRANSACTION;
+
+-- Verify: should return no rows
+SELECT blood_type, COUNT(*) AS count
+FROM blood_inventory
+GROUP BY blood_type
+HAVING COUNT(*) > 1;
@@ -0,0 +1,30 @@
+package com.example.demo1.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimum stock levels, e.g. {@code inventory.low-stock.minimums[O-]=20}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "inventory.low-stock")
+public class LowStockProperties {
+    // Mức tối thiểu cho nhóm máu không được cấu hình riêng (0 = không cảnh báo)
+    private int defaultMinimum = 0;
+
+    private Map<String, Integer> minimums = new HashMap<>();
+
+    // Không gửi lại cảnh báo cho cùng nhóm máu trong khoảng thời gian này
+    private Duration minInterval = Duration.ofMinutes(30);
+
+    // Email nhận cảnh báo; để trống thì gửi cho tất cả nhân viên và admin
+    private List<String> recipients = new ArrayList<>();
+}
@@ -0,0 +1,41 @@
+package com.example.demo1.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Outbox delivery settings, e.g. {@code notification.transport=smtp}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "notification")
+public class NotificationProperties {
+    // "log" chỉ in ra console, "smtp" gửi qua máy chủ SMTP bên dưới
+    private String transport = "log";
+
+    // Số tin tối đa gửi trong một lô (một phiên SMTP)
+    private int batchSize = 100;
+
+    // Thử lại sau base, 2*base, 4*base... nhưng không quá maxBackoff
+    private int maxAttempts = 6;
+    private Duration baseBackoff = Duration.ofSeconds(30);
+    private Duration maxBackoff = Duration.ofHours(1);
+
+    // Tin ở trạng thái SENDING lâu hơn thế này được coi là bị kẹt
+    private Duration stuckAfter = Duration.ofMinutes(5);
+
+    private Smtp smtp = new Smtp();
+
+    @Data
+    public static class Smtp {
+        // Mặc định trỏ tới máy chủ giả lập cục bộ (MailHog, smtp4dev...)
+        private String host = "localhost";
+        private int port = 1025;
+        private String from = "no-reply@blooddonation.local";
+        private String heloName = "blooddonation.local";
+        private Duration timeout = Duration.ofSeconds(10);
+    }
+}
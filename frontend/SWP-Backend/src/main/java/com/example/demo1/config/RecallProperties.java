@@ -0,0 +1,34 @@
+package com.example.demo1.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Donor recall settings, e.g. {@code donor.recall.batch-size=100}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "donor.recall")
+public class RecallProperties {
+    // Số người được mời mặc định và tối đa cho một lần
+    private int defaultSize = 200;
+    private int maxSize = 5000;
+
+    // Không mời lại cùng một người trong khoảng thời gian này
+    private Duration cooldown = Duration.ofDays(7);
+
+    // Gửi theo từng đợt để không làm nghẽn kênh thông báo
+    private int batchSize = 100;
+    private Duration batchInterval = Duration.ofSeconds(2);
+
+    // Trọng số xếp hạng: hiến gần đây, ít hủy đơn, từng hiến ở địa điểm đang cần
+    private double recencyWeight = 1.0;
+    private double reliabilityWeight = 1.0;
+    private double proximityWeight = 0.5;
+
+    // Tự động mời người hiến khi một nhóm máu xuống dưới mức tối thiểu
+    private boolean autoOnLowStock = false;
+}
@@ -2,13 +2,33 @@ package com.example.demo1.controller.admin;
 
 import com.example.demo1.entity.*;
 import com.example.demo1.entity.enums.BloodRequestStatus;
+import com.example.demo1.entity.enums.NotificationStatus;
 import com.example.demo1.entity.enums.RegistrationStatus;
 import com.example.demo1.entity.enums.Role;
 import com.example.demo1.repo.*;
+import com.example.demo1.service.BloodAllocationService;
 import com.example.demo1.service.BloodInventoryService;
+import com.example.demo1.service.BloodRequestService;
+import com.example.demo1.service.BloodUnitService;
+import com.example.demo1.service.ConsumptionForecaster;
+import com.example.demo1.service.DonationEligibilityService;
+import com.example.demo1.service.DonationRegistrationService;
+import com.example.demo1.service.DonationScheduleService;
+import com.example.demo1.service.DeferralTermScreener;
+import com.example.demo1.service.DonorEligibilityIndex;
+import com.example.demo1.service.DonorRecallService;
+import com.example.demo1.service.EligibilityRescreenJob;
+import com.example.demo1.service.ProhibitedDiseaseCatalogue;
+import com.example.demo1.service.InventoryEventLog;
 import com.example.demo1.service.NotificationService;
 import com.example.demo1.dto.BloodCompatibilityResponse;
+import com.example.demo1.dto.RegistrationFilter;
+import com.example.demo1.dto.RegistrationPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +39,7 @@ import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 
 @RestController
@@ -31,6 +52,15 @@ public class AdminController {
     @Autowired
     private DonationScheduleRepository scheduleRepo;
 
+    @Autowired
+    private DonationScheduleService donationScheduleService;
+
+    @Autowired
+    private DonationRegistrationService registrationService;
+
+    @Autowired
+    private EligibilityRescreenJob eligibilityRescreenJob;
+
     // ==== QUẢN LÝ NGƯỜI DÙNG ====
 
     // Lấy danh sách tài khoản ADMIN
@@ -53,11 +83,8 @@ public class AdminController {
             return ResponseEntity.badRequest().body("Donor not found");
         }
         
-        List<DonationRegistration> history = registrationRepo.findByUserId(id);
-        // Sort by registeredAt descending (most recent first)
-        history.sort((a, b) -> b.getRegisteredAt().compareTo(a.getRegisteredAt()));
-        
-        return ResponseEntity.ok(history);
+        // Mới nhất trước, sắp xếp trong DB theo index (user_id, registered_at)
+        return ResponseEntity.ok(registrationRepo.findByUserIdOrderByRegisteredAtDescIdDesc(id));
     }
 
     // Lấy danh sách tài khoản STAFF
@@ -83,7 +110,9 @@ public class AdminController {
     // Tạo người dùng mới
     @PostMapping("/users")
     public ResponseEntity<?> createUser(@RequestBody User user) {
-        return ResponseEntity.ok(userRepository.save(user));
+        User saved = userRepository.save(user);
+        donorEligibilityIndex.refresh(saved.getId());
+        return ResponseEntity.ok(saved);
     }
 
     // Cập nhật người dùng
@@ -102,7 +131,9 @@ public class AdminController {
         if (updatedUser.getGender() != null) user.setGender(updatedUser.getGender());
         if (updatedUser.getRole() != null) user.setRole(updatedUser.getRole());
 
-        return ResponseEntity.ok(userRepository.save(user));
+        User saved = userRepository.save(user);
+        donorEligibilityIndex.refresh(id); // giới tính hoặc vai trò có thể đã đổi
+        return ResponseEntity.ok(saved);
     }
 
     // Xóa người dùng
@@ -112,6 +143,7 @@ public class AdminController {
             return ResponseEntity.badRequest().body("User not found");
         }
         userRepository.deleteById(id);
+        donorEligibilityIndex.refresh(id);
         return ResponseEntity.ok("User deleted successfully");
     }
 
@@ -209,45 +241,21 @@ public class AdminController {
             schedule.setLocation(update.getLocation());
         }
 
-        return ResponseEntity.ok(scheduleRepo.save(schedule));
+        if (update.getCapacity() != null) {
+            schedule.setCapacity(update.getCapacity());
+        }
+
+        DonationSchedule saved = scheduleRepo.save(schedule);
+        // Tăng sức chứa thì đưa người trong danh sách chờ lên
+        registrationService.promoteWaitlist(id);
+        return ResponseEntity.ok(saved);
     }
 
     // Lấy danh sách tất cả các lịch hiến máu
     @GetMapping("/schedules")
     public ResponseEntity<?> getAllSchedules() {
         try {
-            List<DonationSchedule> schedules = scheduleRepo.findAll();
-            System.out.println("Admin: Found " + schedules.size() + " schedules");
-            
-            if (schedules.isEmpty()) {
-                System.out.println("Admin: No schedules found in database");
-                return ResponseEntity.ok(new ArrayList<>());
-            }
-            
-            // Add registration count for each schedule
-            List<Map<String, Object>> result = schedules.stream()
-                    .map(schedule -> {
-                        Map<String, Object> scheduleInfo = new HashMap<>();
-                        scheduleInfo.put("id", schedule.getId());
-                        scheduleInfo.put("date", schedule.getDate());
-                        scheduleInfo.put("time", schedule.getTime());
-                        scheduleInfo.put("location", schedule.getLocation());
-                        
-                        // Count registrations for this schedule's location
-                        if (schedule.getLocation() != null) {
-                            Long locationId = schedule.getLocation().getId();
-                            List<DonationRegistration> registrations = registrationRepo.findByLocationId(locationId);
-                            scheduleInfo.put("registrationCount", registrations.size());
-                        } else {
-                            scheduleInfo.put("registrationCount", 0);
-                        }
-                        
-                        return scheduleInfo;
-                    })
-                    .toList();
-            
-            System.out.println("Admin: Returning " + result.size() + " schedules with registration counts");
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(donationScheduleService.findAllWithRegistrationCounts());
         } catch (Exception e) {
             System.err.println("Admin: Error in getAllSchedules: " + e.getMessage());
             e.printStackTrace();
@@ -255,13 +263,38 @@ public class AdminController {
         }
     }
 
+    // Lịch theo khoảng ngày, vd: /schedules/calendar?from=2025-07-01&to=2025-07-31&locationId=1&limit=50
+    @GetMapping("/schedules/calendar")
+    public ResponseEntity<?> getScheduleCalendar(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                 @RequestParam(required = false) Long locationId,
+                                                 @RequestParam(required = false) String after,
+                                                 @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(donationScheduleService.findCalendar(from, to, locationId, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Số chỗ, đã đặt và còn trống theo từng ngày trong khoảng
+    @GetMapping("/schedules/occupancy")
+    public ResponseEntity<?> getScheduleOccupancy(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                  @RequestParam(required = false) Long locationId) {
+        try {
+            return ResponseEntity.ok(donationScheduleService.getOccupancy(from, to, locationId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     // Xóa lịch hiến máu theo ID
     @DeleteMapping("/schedules/{id}")
     public ResponseEntity<?> deleteSchedule(@PathVariable Long id) {
-        if (!scheduleRepo.existsById(id)) {
+        if (!donationScheduleService.deleteById(id)) {
             return ResponseEntity.badRequest().body("Schedule not found");
         }
-        scheduleRepo.deleteById(id);
         return ResponseEntity.ok("Schedule deleted successfully");
     }
 
@@ -363,6 +396,9 @@ public class AdminController {
     @Autowired
     private BloodInventoryService bloodInventoryService;
 
+    @Autowired
+    private BloodUnitService bloodUnitService;
+
     @GetMapping("/inventory")
     public ResponseEntity<?> getAllBloodInventory() {
         try {
@@ -384,22 +420,82 @@ public class AdminController {
 
         BloodInventory inv = optional.get();
         if (updated.getQuantity() != null) {
-            inv.setQuantity(updated.getQuantity());
+            return ResponseEntity.ok(bloodInventoryService.updateQuantity(id, updated.getQuantity(), null).orElse(inv));
         }
-        return ResponseEntity.ok(bloodInventoryRepo.save(inv));
+        return ResponseEntity.ok(inv);
     }
 
     @DeleteMapping("/inventory/{id}")
     public ResponseEntity<?> deleteBloodInventory(@PathVariable Long id) {
-        if (!bloodInventoryRepo.existsById(id)) {
+        if (!bloodInventoryService.deleteById(id)) {
             return ResponseEntity.badRequest().body("Blood inventory not found");
         }
-        bloodInventoryRepo.deleteById(id);
         return ResponseEntity.ok("Blood inventory deleted successfully");
     }
+
+    // Túi máu còn dùng được, hết hạn sớm nhất trước
+    @GetMapping("/inventory/units")
+    public ResponseEntity<?> getAvailableUnits(@RequestParam String bloodType) {
+        return ResponseEntity.ok(bloodUnitService.getAvailableUnits(bloodType));
+    }
+
+    // Các túi máu (hoặc phần túi) đã xuất cho một yêu cầu
+    @GetMapping("/blood-requests/{id}/units")
+    public ResponseEntity<?> getIssuedUnits(@PathVariable Long id) {
+        return ResponseEntity.ok(bloodUnitService.getIssues(id));
+    }
+
+    // Lượng máu sẽ hết hạn trong số ngày tới (mặc định: đến hết ngày mai)
+    @GetMapping("/inventory/expiring")
+    public ResponseEntity<?> getExpiringInventory(@RequestParam(defaultValue = "1") int days) {
+        if (days < 0) return ResponseEntity.badRequest().body("Days must not be negative");
+        return ResponseEntity.ok(bloodUnitService.getExpiring(days));
+    }
+
+    @Autowired
+    private InventoryEventRepository inventoryEventRepo;
+
+    @Autowired
+    private InventoryEventLog inventoryEventLog;
+
+    // Nhật ký thay đổi kho (mới nhất trước)
+    @GetMapping("/inventory/events")
+    public ResponseEntity<?> getInventoryEvents(@RequestParam(required = false) String bloodType,
+                                                @RequestParam(defaultValue = "100") int limit) {
+        if (limit <= 0 || limit > 1000) return ResponseEntity.badRequest().body("Limit must be between 1 and 1000");
+        PageRequest page = PageRequest.of(0, limit);
+        return ResponseEntity.ok(bloodType != null
+                ? inventoryEventRepo.findByBloodTypeOrderByIdDesc(bloodType, page)
+                : inventoryEventRepo.findByOrderByIdDesc(page));
+    }
+
+    // Tồn kho dựng lại từ snapshot gần nhất + các sự kiện sau đó, để đối chiếu với bảng kho
+    @GetMapping("/inventory/rebuilt")
+    public ResponseEntity<?> getRebuiltInventory() {
+        return ResponseEntity.ok(inventoryEventLog.rebuild());
+    }
+
+    @Autowired
+    private ConsumptionForecaster consumptionForecaster;
+
+    // Dự báo số ngày đủ dùng của từng nhóm máu theo mức xuất/nhập trung bình
+    @GetMapping("/inventory/forecast")
+    public ResponseEntity<?> getSupplyForecast() {
+        return ResponseEntity.ok(consumptionForecaster.forecast());
+    }
+
+    // Tồn kho tại một thời điểm trong quá khứ, vd: /inventory/as-of?at=2025-06-01T08:00:00
+    @GetMapping("/inventory/as-of")
+    public ResponseEntity<?> getInventoryAsOf(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        if (at.isAfter(LocalDateTime.now())) return ResponseEntity.badRequest().body("Time must not be in the future");
+        return ResponseEntity.ok(inventoryEventLog.asOf(at));
+    }
     @Autowired
     private BloodRequestRepository bloodRequestRepo;
 
+    @Autowired
+    private BloodRequestService bloodRequestService;
+
     @GetMapping("/blood-requests")
     public ResponseEntity<?> getAllBloodRequests() {
         try {
@@ -420,8 +516,11 @@ public class AdminController {
         }
 
         BloodRequest req = optional.get();
+        if (req.getStatus() == BloodRequestStatus.CONFIRM) {
+            return ResponseEntity.badRequest().body("Request is already confirmed");
+        }
         req.setStatus(BloodRequestStatus.WAITING);
-        return ResponseEntity.ok(bloodRequestRepo.save(req));
+        return ResponseEntity.ok(bloodRequestService.save(req));
     }
 
     @PutMapping("/blood-requests/{id}/mark-out-of-stock")
@@ -432,16 +531,18 @@ public class AdminController {
         }
 
         BloodRequest req = optional.get();
+        if (req.getStatus() == BloodRequestStatus.CONFIRM) {
+            return ResponseEntity.badRequest().body("Request is already confirmed");
+        }
         req.setStatus(BloodRequestStatus.OUT_OF_STOCK);
-        return ResponseEntity.ok(bloodRequestRepo.save(req));
+        return ResponseEntity.ok(bloodRequestService.save(req));
     }
 
     @DeleteMapping("/blood-requests/{id}")
     public ResponseEntity<?> deleteBloodRequest(@PathVariable Long id) {
-        if (!bloodRequestRepo.existsById(id)) {
+        if (!bloodRequestService.deleteById(id)) {
             return ResponseEntity.badRequest().body("Blood request not found");
         }
-        bloodRequestRepo.deleteById(id);
         return ResponseEntity.ok("Blood request deleted successfully");
     }
 
@@ -459,7 +560,7 @@ public class AdminController {
         if (updated.getRequestedAmount() > 0) req.setRequestedAmount(updated.getRequestedAmount());
         if (updated.getRequestDate() != null) req.setRequestDate(updated.getRequestDate());
 
-        return ResponseEntity.ok(bloodRequestRepo.save(req));
+        return ResponseEntity.ok(bloodRequestService.save(req));
     }
 
 
@@ -505,83 +606,129 @@ public class AdminController {
         locationRepo.deleteById(id);
         return ResponseEntity.ok("Location deleted successfully");
     }
+    // Danh sách đơn đăng ký có lọc và phân trang theo con trỏ,
+    // vd: /registrations?status=PENDING&locationId=1&order=asc&limit=50&after=<nextCursor>
+    @GetMapping("/registrations")
+    public ResponseEntity<?> searchRegistrations(@RequestParam(required = false) RegistrationStatus status,
+                                                 @RequestParam(required = false) Long locationId,
+                                                 @RequestParam(required = false) Long scheduleId,
+                                                 @RequestParam(required = false) Long userId,
+                                                 @RequestParam(required = false) String bloodType,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                 @RequestParam(defaultValue = "desc") String order,
+                                                 @RequestParam(required = false) String after,
+                                                 @RequestParam(defaultValue = "50") int limit) {
+        RegistrationFilter filter = new RegistrationFilter();
+        filter.setStatus(status);
+        filter.setLocationId(locationId);
+        filter.setScheduleId(scheduleId);
+        filter.setUserId(userId);
+        filter.setBloodType(bloodType);
+        filter.setFrom(from);
+        filter.setTo(to);
+        filter.setAscending("asc".equalsIgnoreCase(order));
+        try {
+            return ResponseEntity.ok(registrationService.search(filter, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Sàng lọc lại toàn bộ đơn đang chờ theo quy tắc hiện tại, chạy nền
+    @PostMapping("/registrations/rescreen")
+    public ResponseEntity<?> startRescreen() {
+        if (!eligibilityRescreenJob.start()) {
+            return ResponseEntity.badRequest().body("A re-screening run is already in progress");
+        }
+        return ResponseEntity.ok(eligibilityRescreenJob.getProgress());
+    }
+
+    @GetMapping("/registrations/rescreen")
+    public ResponseEntity<?> getRescreenProgress() {
+        return ResponseEntity.ok(eligibilityRescreenJob.getProgress());
+    }
+
+    // Đơn chờ duyệt, cũ nhất trước, theo trang; con trỏ trang sau nằm ở header X-Next-Cursor
     @GetMapping("/registrations/pending")
-    public ResponseEntity<?> getPendingRegistrations() {
-        return ResponseEntity.ok(registrationRepo.findByStatus(RegistrationStatus.PENDING));
+    public ResponseEntity<?> getPendingRegistrations(@RequestParam(required = false) String after,
+                                                     @RequestParam(defaultValue = "200") int limit) {
+        RegistrationFilter filter = new RegistrationFilter();
+        filter.setStatus(RegistrationStatus.PENDING);
+        filter.setAscending(true);
+        try {
+            RegistrationPage page = registrationService.search(filter, after, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header("X-Next-Cursor", page.getNextCursor());
+            }
+            return response.body(page.getRegistrations());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @PostMapping("/registrations/{id}/confirm")
     public ResponseEntity<?> confirmRegistration(@PathVariable Long id, @RequestParam Long adminId) {
-        Optional<DonationRegistration> opt = registrationRepo.findById(id);
         Optional<User> adminOpt = userRepository.findById(adminId);
-
-        if (opt.isEmpty()) return ResponseEntity.badRequest().body("Registration not found");
         if (adminOpt.isEmpty()) return ResponseEntity.badRequest().body("Admin not found");
 
-        DonationRegistration reg = opt.get();
-        User admin = adminOpt.get();
-
-        reg.setStatus(RegistrationStatus.CONFIRMED);
-        registrationRepo.save(reg);
-
-        bloodInventoryService.findByBloodType(reg.getBloodType()).ifPresentOrElse(
-                inv -> {
-                    inv.setQuantity(inv.getQuantity() + reg.getAmount());
-                    inv.setUpdatedBy(admin);
-                    bloodInventoryService.save(inv);
-                },
-                () -> {
-                    BloodInventory newInv = new BloodInventory();
-                    newInv.setBloodType(reg.getBloodType());
-                    newInv.setQuantity(reg.getAmount());
-                    newInv.setUpdatedBy(admin);
-                    bloodInventoryService.save(newInv);
-                }
-        );
-
-        notificationService.sendNotification(reg.getUser().getEmail(), "Đơn đăng ký hiến máu đã được xác nhận.");
-        return ResponseEntity.ok("Confirmed and inventory updated");
+        try {
+            // Thông báo được ghi vào outbox cùng giao dịch, không chờ gửi mail
+            return registrationService.confirm(id, adminOpt.get())
+                    .<ResponseEntity<?>>map(reg -> ResponseEntity.ok("Confirmed and inventory updated"))
+                    .orElse(ResponseEntity.badRequest().body("Registration not found"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @PostMapping("/registrations/{id}/cancel")
     public ResponseEntity<?> cancelRegistration(@PathVariable Long id) {
-        return registrationRepo.findById(id).map(reg -> {
-            reg.setStatus(RegistrationStatus.CANCELLED);
-            registrationRepo.save(reg);
-            notificationService.sendNotification(reg.getUser().getEmail(), "Đơn đăng ký hiến máu đã bị hủy.");
-            return ResponseEntity.ok("Registration cancelled");
-        }).orElse(ResponseEntity.badRequest().body("Registration not found"));
+        try {
+            // Trả lại chỗ của lịch và đưa người chờ lâu nhất lên
+            return registrationService.cancel(id)
+                    .<ResponseEntity<?>>map(reg -> ResponseEntity.ok("Registration cancelled"))
+                    .orElse(ResponseEntity.badRequest().body("Registration not found"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
     @PostMapping("/blood-requests/{id}/confirm")
     public ResponseEntity<?> confirmBloodRequestWithInventory(@PathVariable Long id) {
-        Optional<BloodRequest> opt = bloodRequestRepo.findById(id);
-        if (opt.isEmpty()) return ResponseEntity.badRequest().body("Request not found");
-
-        BloodRequest req = opt.get();
-        Optional<BloodInventory> inventoryOpt = bloodInventoryService.findByBloodType(req.getRecipientBloodType());
+        // Chuyển trạng thái và trừ kho trong cùng một giao dịch, yêu cầu đã xác nhận bị từ chối
+        BloodRequest req;
+        try {
+            Optional<BloodRequest> opt = bloodRequestService.confirm(id, null, null);
+            if (opt.isEmpty()) return ResponseEntity.badRequest().body("Request not found");
+            req = opt.get();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
 
-        if (inventoryOpt.isEmpty()) return ResponseEntity.badRequest().body("Không tìm thấy kho máu phù hợp");
-        BloodInventory inventory = inventoryOpt.get();
+        notificationService.sendNotification(req.getMedicalCenter().getEmail(), "Yêu cầu nhận máu đã được xác nhận.");
+        return ResponseEntity.ok("Request confirmed and blood updated");
+    }
 
-        if (inventory.getQuantity() < req.getRequestedAmount())
-            return ResponseEntity.badRequest().body("Không đủ lượng máu trong kho");
+    @Autowired
+    private BloodAllocationService bloodAllocationService;
 
-        inventory.setQuantity(inventory.getQuantity() - req.getRequestedAmount());
-        bloodInventoryService.save(inventory);
+    // Xem trước phân bổ kho cho tất cả yêu cầu đang mở
+    @GetMapping("/blood-requests/allocation/preview")
+    public ResponseEntity<?> previewAllocation() {
+        return ResponseEntity.ok(bloodAllocationService.preview());
+    }
 
-        // Logic cập nhật trạng thái dựa trên trạng thái hiện tại
-        BloodRequestStatus newStatus;
-        if (req.getStatus() == BloodRequestStatus.PENDING || req.getStatus() == BloodRequestStatus.WAITING) {
-            newStatus = BloodRequestStatus.CONFIRM; // Chuyển thành đã xác nhận
-        } else {
-            newStatus = BloodRequestStatus.WAITING; // Giữ logic cũ cho các trạng thái khác
+    // Áp dụng phân bổ: trừ kho và xác nhận các yêu cầu được cấp
+    @PostMapping("/blood-requests/allocation/commit")
+    public ResponseEntity<?> commitAllocation(@RequestParam(required = false) Long adminId) {
+        User admin = null;
+        if (adminId != null) {
+            Optional<User> adminOpt = userRepository.findById(adminId);
+            if (adminOpt.isEmpty()) return ResponseEntity.badRequest().body("Admin not found");
+            admin = adminOpt.get();
         }
-        
-        req.setStatus(newStatus);
-        bloodRequestRepo.save(req);
-
-        notificationService.sendNotification(req.getMedicalCenter().getEmail(), "Yêu cầu nhận máu đã được xác nhận.");
-        return ResponseEntity.ok("Request confirmed and blood updated");
+        return ResponseEntity.ok(bloodAllocationService.commit(admin));
     }
 
     @PostMapping("/blood-requests/{id}/mark-priority")
@@ -595,45 +742,46 @@ public class AdminController {
     }
 
     private ResponseEntity<?> updateRequestStatus(Long id, BloodRequestStatus status, String message) {
-        return bloodRequestRepo.findById(id).map(req -> {
+        return bloodRequestRepo.findById(id).<ResponseEntity<?>>map(req -> {
+            // Yêu cầu đã xác nhận đã trừ kho, mở lại sẽ bị trừ kho lần nữa
+            if (req.getStatus() == BloodRequestStatus.CONFIRM) {
+                return ResponseEntity.badRequest().body("Request is already confirmed");
+            }
             req.setStatus(status);
-            bloodRequestRepo.save(req);
+            bloodRequestService.save(req);
             notificationService.sendNotification(req.getMedicalCenter().getEmail(), message);
             return ResponseEntity.ok("Status updated");
         }).orElse(ResponseEntity.badRequest().body("Request not found"));
     }
     @Autowired
-    private ProhibitedDiseaseRepository diseaseRepo;
+    private ProhibitedDiseaseCatalogue diseaseCatalogue;
 
+    // Danh mục lấy từ bộ nhớ, trả 304 nếu client đã có đúng phiên bản (If-None-Match)
     @GetMapping("/diseases")
-    public ResponseEntity<?> getAllDiseases() {
-        return ResponseEntity.ok(diseaseRepo.findAll());
+    public ResponseEntity<?> getAllDiseases(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        ProhibitedDiseaseCatalogue.Snapshot catalogue = diseaseCatalogue.snapshot();
+        if (catalogue.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(catalogue.getEtag()).build();
+        }
+        return ResponseEntity.ok().eTag(catalogue.getEtag()).cacheControl(CacheControl.noCache()).body(catalogue.getDiseases());
     }
 
     @PostMapping("/diseases")
     public ResponseEntity<?> createDisease(@RequestBody ProhibitedDisease disease) {
-        return ResponseEntity.ok(diseaseRepo.save(disease));
+        return ResponseEntity.ok(diseaseCatalogue.create(disease));
     }
 
     @PutMapping("/diseases/{id}")
     public ResponseEntity<?> updateDisease(@PathVariable Long id, @RequestBody ProhibitedDisease update) {
-        Optional<ProhibitedDisease> optional = diseaseRepo.findById(id);
-        if (optional.isEmpty()) {
-            return ResponseEntity.badRequest().body("Disease not found");
-        }
-
-        ProhibitedDisease disease = optional.get();
-        if (update.getName() != null) disease.setName(update.getName());
-        if (update.getDescription() != null) disease.setDescription(update.getDescription());
-
-        return ResponseEntity.ok(diseaseRepo.save(disease));
+        return diseaseCatalogue.update(id, update)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.badRequest().body("Disease not found"));
     }
 
 
     @DeleteMapping("/diseases/{id}")
     public ResponseEntity<?> deleteDisease(@PathVariable Long id) {
-        if (!diseaseRepo.existsById(id)) return ResponseEntity.badRequest().body("Disease not found");
-        diseaseRepo.deleteById(id);
+        if (!diseaseCatalogue.delete(id)) return ResponseEntity.badRequest().body("Disease not found");
         return ResponseEntity.ok("Deleted successfully");
     }
 
@@ -667,28 +815,14 @@ public class AdminController {
             }
         }
 
-        Optional<BloodInventory> inventoryOpt = bloodInventoryService.findByBloodType(bloodTypeToUse);
-        if (inventoryOpt.isEmpty()) return ResponseEntity.badRequest().body("Không tìm thấy kho máu phù hợp");
-        
-        BloodInventory inventory = inventoryOpt.get();
-        if (inventory.getQuantity() < req.getRequestedAmount()) {
-            return ResponseEntity.badRequest().body("Không đủ lượng máu trong kho");
-        }
-
-        // Deduct from inventory
-        inventory.setQuantity(inventory.getQuantity() - req.getRequestedAmount());
-        bloodInventoryService.save(inventory);
-
-        // Update request status
-        BloodRequestStatus newStatus;
-        if (req.getStatus() == BloodRequestStatus.PENDING || req.getStatus() == BloodRequestStatus.WAITING) {
-            newStatus = BloodRequestStatus.CONFIRM;
-        } else {
-            newStatus = BloodRequestStatus.WAITING;
+        // Status change and stock debit in one transaction, only open requests can be confirmed
+        try {
+            if (bloodRequestService.confirm(id, bloodTypeToUse, null).isEmpty()) {
+                return ResponseEntity.badRequest().body("Request not found");
+            }
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
-        
-        req.setStatus(newStatus);
-        bloodRequestRepo.save(req);
 
         String message = alternativeBloodType != null ? 
             "Yêu cầu nhận máu đã được xác nhận với nhóm máu thay thế: " + alternativeBloodType :
@@ -704,8 +838,8 @@ public class AdminController {
             return ResponseEntity.badRequest().body("Schedule not found");
         }
 
-        Long locationId = scheduleOpt.get().getLocation().getId();
-        List<DonationRegistration> registrations = registrationRepo.findByLocationId(locationId);
+        // Chỉ những người đã đăng ký vào lịch này (kể cả danh sách chờ)
+        List<DonationRegistration> registrations = registrationService.getRegistrationsBySchedule(scheduleId);
 
         // Tạo danh sách kết quả với thông tin đầy đủ
         List<Map<String, Object>> result = registrations.stream()
@@ -729,4 +863,167 @@ public class AdminController {
         return ResponseEntity.ok(result);
     }
 
+    // === Quy tắc sàng lọc người hiến máu ===
+
+    @Autowired
+    private DonationEligibilityService eligibilityService;
+
+    @GetMapping("/eligibility-rules")
+    public ResponseEntity<?> getEligibilityRules() {
+        return ResponseEntity.ok(eligibilityService.getRules());
+    }
+
+    @PostMapping("/eligibility-rules")
+    public ResponseEntity<?> createEligibilityRule(@RequestBody EligibilityRule rule) {
+        rule.setId(null);
+        try {
+            EligibilityRule saved = eligibilityService.saveRule(rule);
+            eligibilityRescreenJob.requestRun(); // áp dụng quy tắc mới cho các đơn đang chờ
+            donorEligibilityIndex.rebuild(); // khoảng cách giữa hai lần hiến có thể đã đổi
+            return ResponseEntity.ok(saved);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Thay đổi ngưỡng có hiệu lực ngay, không cần triển khai lại
+    @PutMapping("/eligibility-rules/{id}")
+    public ResponseEntity<?> updateEligibilityRule(@PathVariable Long id, @RequestBody EligibilityRule update) {
+        if (!eligibilityRuleRepo.existsById(id)) {
+            return ResponseEntity.badRequest().body("Rule not found");
+        }
+        update.setId(id);
+        try {
+            EligibilityRule saved = eligibilityService.saveRule(update);
+            eligibilityRescreenJob.requestRun();
+            donorEligibilityIndex.rebuild();
+            return ResponseEntity.ok(saved);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Nạp lại quy tắc sau khi sửa trực tiếp trong DB
+    @PostMapping("/eligibility-rules/reload")
+    public ResponseEntity<?> reloadEligibilityRules() {
+        int enabled = eligibilityService.reload();
+        int terms = deferralTermScreener.reload();
+        eligibilityRescreenJob.requestRun();
+        donorEligibilityIndex.rebuild();
+        return ResponseEntity.ok(Map.of("enabledRules", enabled, "enabledTerms", terms));
+    }
+
+    @Autowired
+    private EligibilityRuleRepository eligibilityRuleRepo;
+
+    @Autowired
+    private DonorEligibilityIndex donorEligibilityIndex;
+
+    // Người hiến có thể hiến vào một ngày (mặc định hôm nay), đọc từ bảng donor_eligibility
+    @GetMapping("/donors/eligible")
+    public ResponseEntity<?> getEligibleDonors(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                               @RequestParam(required = false) List<String> bloodType,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(donorEligibilityIndex.findEligible(date != null ? date : LocalDate.now(), bloodType, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Autowired
+    private DonorRecallService donorRecallService;
+
+    // Mời những người hiến phù hợp nhất khi một nhóm máu thiếu, vd: /recalls?bloodType=O-&size=200
+    @PostMapping("/recalls")
+    public ResponseEntity<?> recallDonors(@RequestParam String bloodType,
+                                          @RequestParam(required = false) Integer size,
+                                          @RequestParam(required = false) Long locationId) {
+        try {
+            return ResponseEntity.ok(donorRecallService.recall(bloodType, size, locationId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Autowired
+    private DeferralTermScreener deferralTermScreener;
+
+    @Autowired
+    private DeferralTermRepository deferralTermRepo;
+
+    // Danh sách thuốc, vùng dịch, vắc xin dùng để sàng lọc phần khai báo tự do
+    @GetMapping("/deferral-terms")
+    public ResponseEntity<?> getDeferralTerms() {
+        return ResponseEntity.ok(deferralTermScreener.getTerms());
+    }
+
+    @PostMapping("/deferral-terms")
+    public ResponseEntity<?> createDeferralTerm(@RequestBody DeferralTerm term) {
+        term.setId(null);
+        try {
+            DeferralTerm saved = deferralTermScreener.saveTerm(term);
+            eligibilityRescreenJob.requestRun();
+            return ResponseEntity.ok(saved);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/deferral-terms/{id}")
+    public ResponseEntity<?> updateDeferralTerm(@PathVariable Long id, @RequestBody DeferralTerm update) {
+        if (!deferralTermRepo.existsById(id)) {
+            return ResponseEntity.badRequest().body("Term not found");
+        }
+        update.setId(id);
+        try {
+            DeferralTerm saved = deferralTermScreener.saveTerm(update);
+            eligibilityRescreenJob.requestRun();
+            return ResponseEntity.ok(saved);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/deferral-terms/{id}")
+    public ResponseEntity<?> deleteDeferralTerm(@PathVariable Long id) {
+        if (!deferralTermScreener.deleteTerm(id)) {
+            return ResponseEntity.badRequest().body("Term not found");
+        }
+        eligibilityRescreenJob.requestRun();
+        return ResponseEntity.ok("Deleted successfully");
+    }
+
+    // === Outbox thông báo ===
+    private static final int NOTIFICATION_MAX_LIMIT = 500;
+
+    // Tin gần nhất, lọc theo trạng thái hoặc người nhận, vd: /notifications?status=FAILED
+    @GetMapping("/notifications")
+    public ResponseEntity<?> getNotifications(@RequestParam(required = false) NotificationStatus status,
+                                              @RequestParam(required = false) String recipient,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        if (limit <= 0 || limit > NOTIFICATION_MAX_LIMIT) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + NOTIFICATION_MAX_LIMIT);
+        }
+        return ResponseEntity.ok(notificationService.getRecent(status, recipient, limit));
+    }
+
+    @GetMapping("/notifications/stats")
+    public ResponseEntity<?> getNotificationStats() {
+        return ResponseEntity.ok(notificationService.countByStatus());
+    }
+
+    // Gửi lại tin đã thất bại sau khi sửa cấu hình SMTP hoặc địa chỉ người nhận
+    @PostMapping("/notifications/{id}/retry")
+    public ResponseEntity<?> retryNotification(@PathVariable Long id) {
+        try {
+            return notificationService.retry(id)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.badRequest().body("Notification not found"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
 }
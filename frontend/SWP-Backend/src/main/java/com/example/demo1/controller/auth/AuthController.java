@@ -3,6 +3,7 @@ package com.example.demo1.controller.auth;
 import com.example.demo1.entity.User;
 import com.example.demo1.entity.enums.Role;
 import com.example.demo1.repo.UserRepository;
+import com.example.demo1.service.DonorEligibilityIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -19,10 +20,15 @@ public class AuthController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private DonorEligibilityIndex donorEligibilityIndex;
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody User user) {
         user.setRole(Role.DONOR);
-        return ResponseEntity.ok(userRepository.save(user));
+        User saved = userRepository.save(user);
+        donorEligibilityIndex.refresh(saved.getId());
+        return ResponseEntity.ok(saved);
     }
 
     @PostMapping("/login")
@@ -1,16 +1,21 @@
 package com.example.demo1.controller.donor;
 
-import com.example.demo1.entity.DonationLocation;
+import com.example.demo1.dto.RegistrationFilter;
+import com.example.demo1.dto.RegistrationRequest;
 import com.example.demo1.entity.DonationRegistration;
-import com.example.demo1.entity.ProhibitedDisease;
 import com.example.demo1.entity.User;
 import com.example.demo1.entity.enums.RegistrationStatus;
 import com.example.demo1.repo.DonationLocationRepository;
 import com.example.demo1.repo.DonationRegistrationRepository;
-import com.example.demo1.repo.ProhibitedDiseaseRepository;
 import com.example.demo1.repo.UserRepository;
 import com.example.demo1.service.DonationRegistrationService;
+import com.example.demo1.service.DonorEligibilityIndex;
+import com.example.demo1.service.ProhibitedDiseaseCatalogue;
+import com.example.demo1.service.RegistrationMapper;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -18,7 +23,6 @@ import org.springframework.web.bind.annotation.*;
 import java.security.Principal;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/donor")
@@ -34,94 +38,53 @@ public class DonorController {
     private DonationLocationRepository locationRepo;
 
     @Autowired
-    private ProhibitedDiseaseRepository diseaseRepo;
+    private ProhibitedDiseaseCatalogue diseaseCatalogue;
+
+    @Autowired
+    private DonorEligibilityIndex donorEligibilityIndex;
 
     @Autowired
     private DonationRegistrationRepository registrationRepo;
 
+    @Autowired
+    private RegistrationMapper registrationMapper;
+
     /**
      * Donor đăng ký hiến máu
      */
     @PostMapping("/register")
     public ResponseEntity<?> registerDonation(@RequestParam Long userId,
-                                              @RequestBody Map<String, Object> body) {
+                                              @Valid @RequestBody RegistrationRequest body) {
         Optional<User> userOpt = userRepository.findById(userId);
         if (userOpt.isEmpty()) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
-        // Check for prohibited diseases first
-        if (body.containsKey("diseaseIds")) {
-            List<Long> diseaseIds = ((List<?>) body.get("diseaseIds")).stream()
-                    .map(id -> Long.parseLong(id.toString()))
-                    .collect(Collectors.toList());
-            
-            if (!diseaseIds.isEmpty()) {
-                List<ProhibitedDisease> selectedDiseases = diseaseRepo.findAllById(diseaseIds);
-                if (!selectedDiseases.isEmpty()) {
-                    String diseaseNames = selectedDiseases.stream()
-                            .map(ProhibitedDisease::getName)
-                            .collect(Collectors.joining(", "));
-                    return ResponseEntity.badRequest().body(
-                        "You cannot donate blood if you have the following conditions: " + diseaseNames + 
-                        ". Please consult with a healthcare provider."
-                    );
-                }
-            }
-        }
-
-        DonationRegistration reg = new DonationRegistration();
-        reg.setBloodType((String) body.get("bloodType"));
-        reg.setLastDonationDate(LocalDate.parse((String) body.get("lastDonationDate")));
-        reg.setWeight(Double.parseDouble(body.get("weight").toString()));
-        reg.setHeight(Double.parseDouble(body.get("height").toString()));
-        reg.setAmount(Integer.parseInt(body.get("amount").toString()));
-
-        if (body.containsKey("locationId")) {
-            Long locationId = Long.parseLong(body.get("locationId").toString());
-            Optional<DonationLocation> locOpt = locationRepo.findById(locationId);
-            if (locOpt.isEmpty()) {
-                return ResponseEntity.badRequest().body("Location not found");
-            }
-            reg.setLocation(locOpt.get());
-        } else {
-            return ResponseEntity.badRequest().body("Location is required");
+        try {
+            // Cùng một cách chuyển đổi với đăng ký qua staff
+            DonationRegistration reg = registrationMapper.toRegistration(body);
+            return ResponseEntity.ok(registrationService.register(reg, userOpt.get()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
-
-        // Set empty diseases set since validation passed
-        reg.setDiseases(new HashSet<>());
-
-        return ResponseEntity.ok(registrationService.register(reg, userOpt.get()));
     }
 
 
-    @Autowired
-    private DonationRegistrationRepository registrationRepository;
-
     @PostMapping("/registrations")
-    public ResponseEntity<?> createRegistration(@RequestBody DonationRegistration registration, Principal principal) {
+    public ResponseEntity<?> createRegistration(@Valid @RequestBody RegistrationRequest body, Principal principal) {
         String email = principal.getName(); // Lấy email từ người đăng nhập
         Optional<User> userOpt = userRepository.findByEmail(email);
         if (userOpt.isEmpty()) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
-        // Check for prohibited diseases
-        if (registration.getDiseases() != null && !registration.getDiseases().isEmpty()) {
-            String diseaseNames = registration.getDiseases().stream()
-                    .map(ProhibitedDisease::getName)
-                    .collect(Collectors.joining(", "));
-            return ResponseEntity.badRequest().body(
-                "You cannot donate blood if you have the following conditions: " + diseaseNames + 
-                ". Please consult with a healthcare provider."
-            );
+        try {
+            // Giữ chỗ nếu đơn có lịch, lịch đầy thì vào danh sách chờ
+            DonationRegistration reg = registrationMapper.toRegistration(body);
+            return ResponseEntity.ok(registrationService.register(reg, userOpt.get()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
-
-        registration.setUser(userOpt.get());
-        registration.setStatus(RegistrationStatus.PENDING);
-        registration.setDiseases(new HashSet<>()); // Ensure empty set
-
-        return ResponseEntity.ok(registrationRepository.save(registration));
     }
 
     /**
@@ -135,19 +98,42 @@ public class DonorController {
             return ResponseEntity.badRequest().body("User not found");
         }
 
+        // Mới nhất trước, sắp xếp trong DB theo index (user_id, registered_at)
         List<DonationRegistration> registrations;
         if (status != null) {
-            registrations = registrationRepo.findByUserIdAndStatus(userId, status);
+            registrations = registrationRepo.findByUserIdAndStatusOrderByRegisteredAtDescIdDesc(userId, status);
         } else {
-            registrations = registrationRepo.findByUserId(userId);
+            registrations = registrationRepo.findByUserIdOrderByRegisteredAtDescIdDesc(userId);
         }
 
-        // Sort by registeredAt descending (most recent first)
-        registrations.sort((a, b) -> b.getRegisteredAt().compareTo(a.getRegisteredAt()));
-
         return ResponseEntity.ok(registrations);
     }
 
+    /**
+     * Donor xem lịch sử hiến máu theo trang, truyền lại nextCursor vào "after" để lấy trang tiếp theo
+     */
+    @GetMapping("/registrations")
+    public ResponseEntity<?> getDonationHistoryPage(@RequestParam Long userId,
+                                                    @RequestParam(required = false) RegistrationStatus status,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestParam(defaultValue = "20") int limit) {
+        if (!userRepository.existsById(userId)) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+        RegistrationFilter filter = new RegistrationFilter();
+        filter.setUserId(userId);
+        filter.setStatus(status);
+        filter.setFrom(from);
+        filter.setTo(to);
+        try {
+            return ResponseEntity.ok(registrationService.search(filter, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
 
     /**
      * Donor xem thông tin cá nhân
@@ -211,6 +197,7 @@ public class DonorController {
             }
 
             User savedUser = userRepository.save(user);
+            donorEligibilityIndex.refresh(savedUser.getId());
             return ResponseEntity.ok(savedUser);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error updating profile: " + e.getMessage());
@@ -273,6 +260,7 @@ public class DonorController {
 
         // Save updated user
         User savedUser = userRepository.save(existingUser);
+        donorEligibilityIndex.refresh(savedUser.getId());
         return ResponseEntity.ok(savedUser);
     }
 
@@ -332,8 +320,13 @@ public class DonorController {
     /**
      * Get all prohibited diseases for registration
      */
+    // Danh mục lấy từ bộ nhớ, trả 304 nếu client đã có đúng phiên bản (If-None-Match)
     @GetMapping("/diseases")
-    public ResponseEntity<?> getAllDiseases() {
-        return ResponseEntity.ok(diseaseRepo.findAll());
+    public ResponseEntity<?> getAllDiseases(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        ProhibitedDiseaseCatalogue.Snapshot catalogue = diseaseCatalogue.snapshot();
+        if (catalogue.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(catalogue.getEtag()).build();
+        }
+        return ResponseEntity.ok().eTag(catalogue.getEtag()).cacheControl(CacheControl.noCache()).body(catalogue.getDiseases());
     }
 }
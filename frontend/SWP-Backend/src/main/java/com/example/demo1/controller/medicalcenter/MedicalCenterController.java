@@ -8,6 +8,9 @@ import com.example.demo1.entity.enums.Role;
 import com.example.demo1.repo.BloodRecipientRepository;
 import com.example.demo1.repo.BloodRequestRepository;
 import com.example.demo1.repo.UserRepository;
+import com.example.demo1.entity.enums.BloodUrgencyLevel;
+import com.example.demo1.service.BloodRequestService;
+import com.example.demo1.service.EmergencyBroadcaster;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -25,9 +28,15 @@ public class MedicalCenterController {
     @Autowired
     private BloodRequestRepository bloodRequestRepo;
 
+    @Autowired
+    private BloodRequestService bloodRequestService;
+
     @Autowired
     private UserRepository userRepo;
 
+    @Autowired
+    private EmergencyBroadcaster emergencyBroadcaster;
+
     // === 1. Nhập thông tin người nhận máu ===
     @PostMapping("/recipients")
     public ResponseEntity<?> createRecipient(@RequestBody BloodRecipient recipient,
@@ -115,7 +124,10 @@ public class MedicalCenterController {
         request.setRequestDate(LocalDate.now());
         request.setStatus(BloodRequestStatus.PENDING); // mặc định khi tạo
 
-        return ResponseEntity.ok(bloodRequestRepo.save(request));
+        BloodRequest saved = bloodRequestService.save(request);
+        // Yêu cầu CRITICAL được báo ngay cho nhân viên (và người hiến nếu kho thiếu), không chờ gửi xong
+        emergencyBroadcaster.onUrgency(saved, null);
+        return ResponseEntity.ok(saved);
     }
 
     // === 4. Xem các request đã gửi của medicalcenter ===
@@ -143,6 +155,7 @@ public class MedicalCenterController {
         }
 
         BloodRequest request = optionalRequest.get();
+        BloodUrgencyLevel previousUrgency = request.getUrgencyLevel();
         
         // Cập nhật các trường nếu không null
         if (updatedRequest.getRecipientName() != null) {
@@ -158,16 +171,25 @@ public class MedicalCenterController {
             request.setUrgencyLevel(updatedRequest.getUrgencyLevel());
         }
 
-        return ResponseEntity.ok(bloodRequestRepo.save(request));
+        BloodRequest saved = bloodRequestService.save(request);
+        emergencyBroadcaster.onUrgency(saved, previousUrgency); // chỉ khi vừa được nâng lên CRITICAL
+        return ResponseEntity.ok(saved);
+    }
+
+    // === 5.1. Tiến độ thông báo khẩn cấp của một yêu cầu CRITICAL ===
+    @GetMapping("/blood-requests/{id}/broadcast")
+    public ResponseEntity<?> getBroadcastStatus(@PathVariable Long id) {
+        return emergencyBroadcaster.getStatus(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.badRequest().body("No emergency broadcast for this request"));
     }
 
     // === 6. Xóa blood request ===
     @DeleteMapping("/blood-requests/{id}")
     public ResponseEntity<?> deleteBloodRequest(@PathVariable Long id) {
-        if (!bloodRequestRepo.existsById(id)) {
+        if (!bloodRequestService.deleteById(id)) {
             return ResponseEntity.badRequest().body("Blood request not found");
         }
-        bloodRequestRepo.deleteById(id);
         return ResponseEntity.ok("Blood request deleted successfully");
     }
 }
@@ -6,13 +6,30 @@ import com.example.demo1.entity.enums.BloodRequestStatus;
 import com.example.demo1.entity.enums.RegistrationStatus;
 import com.example.demo1.entity.enums.Role;
 import com.example.demo1.repo.*;
+import com.example.demo1.service.BloodAllocationService;
 import com.example.demo1.service.BloodInventoryService;
+import com.example.demo1.service.BloodRequestService;
+import com.example.demo1.service.BloodUnitService;
 import com.example.demo1.service.NotificationService;
 import com.example.demo1.service.DonationEligibilityService;
 import com.example.demo1.service.DonationNotificationService;
+import com.example.demo1.service.DonationRegistrationService;
+import com.example.demo1.service.DonationScheduleService;
+import com.example.demo1.service.DonorEligibilityIndex;
+import com.example.demo1.service.DonorRecallService;
+import com.example.demo1.service.EligibilityRescreenJob;
+import com.example.demo1.service.ProhibitedDiseaseCatalogue;
+import com.example.demo1.service.RegistrationMapper;
 import com.example.demo1.dto.BloodCompatibilityResponse;
+import com.example.demo1.dto.RegistrationFilter;
+import com.example.demo1.dto.RegistrationPage;
+import com.example.demo1.dto.RegistrationRequest;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -20,9 +37,7 @@ import java.util.Optional;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
 import java.time.LocalDate;
-import java.util.HashSet;
 
 @RestController
 @RequestMapping("/api/staff")
@@ -34,6 +49,18 @@ public class StaffController {
     @Autowired
     private DonationScheduleRepository scheduleRepo;
 
+    @Autowired
+    private DonationScheduleService donationScheduleService;
+
+    @Autowired
+    private DonationRegistrationService registrationService;
+
+    @Autowired
+    private EligibilityRescreenJob eligibilityRescreenJob;
+
+    @Autowired
+    private RegistrationMapper registrationMapper;
+
     @Autowired
     private DonationRegistrationRepository registrationRepo;
 
@@ -43,6 +70,9 @@ public class StaffController {
     @Autowired
     private BloodInventoryService bloodInventoryService;
 
+    @Autowired
+    private BloodUnitService bloodUnitService;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -58,6 +88,12 @@ public class StaffController {
     @Autowired
     private BloodRequestRepository bloodRequestRepo;
 
+    @Autowired
+    private BloodRequestService bloodRequestService;
+
+    @Autowired
+    private BloodAllocationService bloodAllocationService;
+
     // === Địa điểm hiến máu ===
 
     @PostMapping("/locations")
@@ -104,53 +140,27 @@ public class StaffController {
         DonationSchedule schedule = optional.get();
         schedule.setDate(update.getDate());
         schedule.setTime(update.getTime());
-        return ResponseEntity.ok(scheduleRepo.save(schedule));
+        if (update.getCapacity() != null) {
+            schedule.setCapacity(update.getCapacity());
+        }
+        DonationSchedule saved = scheduleRepo.save(schedule);
+        // Tăng sức chứa thì đưa người trong danh sách chờ lên
+        registrationService.promoteWaitlist(id);
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/schedules/{id}")
     public ResponseEntity<?> deleteSchedule(@PathVariable Long id) {
-        if (!scheduleRepo.existsById(id)) {
+        if (!donationScheduleService.deleteById(id)) {
             return ResponseEntity.badRequest().body("Schedule not found");
         }
-        scheduleRepo.deleteById(id);
         return ResponseEntity.ok("Schedule deleted successfully");
     }
 
     @GetMapping("/schedules")
     public ResponseEntity<?> getAllSchedules() {
         try {
-            List<DonationSchedule> schedules = scheduleRepo.findAll();
-            System.out.println("Found " + schedules.size() + " schedules");
-            
-            if (schedules.isEmpty()) {
-                System.out.println("No schedules found in database");
-                return ResponseEntity.ok(new ArrayList<>());
-            }
-            
-            // Add registration count for each schedule
-            List<Map<String, Object>> result = schedules.stream()
-                    .map(schedule -> {
-                        Map<String, Object> scheduleInfo = new HashMap<>();
-                        scheduleInfo.put("id", schedule.getId());
-                        scheduleInfo.put("date", schedule.getDate());
-                        scheduleInfo.put("time", schedule.getTime());
-                        scheduleInfo.put("location", schedule.getLocation());
-                        
-                        // Count registrations for this schedule's location
-                        if (schedule.getLocation() != null) {
-                            Long locationId = schedule.getLocation().getId();
-                            List<DonationRegistration> registrations = registrationRepo.findByLocationId(locationId);
-                            scheduleInfo.put("registrationCount", registrations.size());
-                        } else {
-                            scheduleInfo.put("registrationCount", 0);
-                        }
-                        
-                        return scheduleInfo;
-                    })
-                    .toList();
-            
-            System.out.println("Returning " + result.size() + " schedules with registration counts");
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(donationScheduleService.findAllWithRegistrationCounts());
         } catch (Exception e) {
             System.err.println("Error in getAllSchedules: " + e.getMessage());
             e.printStackTrace();
@@ -158,165 +168,118 @@ public class StaffController {
         }
     }
 
+    // Lịch theo khoảng ngày, vd: /schedules/calendar?from=2025-07-01&to=2025-07-31&locationId=1&limit=50
+    @GetMapping("/schedules/calendar")
+    public ResponseEntity<?> getScheduleCalendar(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                 @RequestParam(required = false) Long locationId,
+                                                 @RequestParam(required = false) String after,
+                                                 @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(donationScheduleService.findCalendar(from, to, locationId, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Số chỗ, đã đặt và còn trống theo từng ngày trong khoảng
+    @GetMapping("/schedules/occupancy")
+    public ResponseEntity<?> getScheduleOccupancy(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                  @RequestParam(required = false) Long locationId) {
+        try {
+            return ResponseEntity.ok(donationScheduleService.getOccupancy(from, to, locationId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     // === Đăng ký hiến máu ===
 
+    // Danh sách đơn đăng ký có lọc và phân trang theo con trỏ,
+    // vd: /registrations?status=PENDING&locationId=1&order=asc&limit=50&after=<nextCursor>
+    @GetMapping("/registrations")
+    public ResponseEntity<?> searchRegistrations(@RequestParam(required = false) RegistrationStatus status,
+                                                 @RequestParam(required = false) Long locationId,
+                                                 @RequestParam(required = false) Long scheduleId,
+                                                 @RequestParam(required = false) Long userId,
+                                                 @RequestParam(required = false) String bloodType,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                 @RequestParam(defaultValue = "desc") String order,
+                                                 @RequestParam(required = false) String after,
+                                                 @RequestParam(defaultValue = "50") int limit) {
+        RegistrationFilter filter = new RegistrationFilter();
+        filter.setStatus(status);
+        filter.setLocationId(locationId);
+        filter.setScheduleId(scheduleId);
+        filter.setUserId(userId);
+        filter.setBloodType(bloodType);
+        filter.setFrom(from);
+        filter.setTo(to);
+        filter.setAscending("asc".equalsIgnoreCase(order));
+        try {
+            return ResponseEntity.ok(registrationService.search(filter, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Sàng lọc lại toàn bộ đơn đang chờ theo quy tắc hiện tại, chạy nền
+    @PostMapping("/registrations/rescreen")
+    public ResponseEntity<?> startRescreen() {
+        if (!eligibilityRescreenJob.start()) {
+            return ResponseEntity.badRequest().body("A re-screening run is already in progress");
+        }
+        return ResponseEntity.ok(eligibilityRescreenJob.getProgress());
+    }
+
+    @GetMapping("/registrations/rescreen")
+    public ResponseEntity<?> getRescreenProgress() {
+        return ResponseEntity.ok(eligibilityRescreenJob.getProgress());
+    }
+
+    // Đơn chờ duyệt, cũ nhất trước, theo trang; con trỏ trang sau nằm ở header X-Next-Cursor
     @GetMapping("/registrations/pending")
-    public ResponseEntity<?> getPendingRegistrations() {
-        return ResponseEntity.ok(registrationRepo.findByStatus(RegistrationStatus.PENDING));
+    public ResponseEntity<?> getPendingRegistrations(@RequestParam(required = false) String after,
+                                                     @RequestParam(defaultValue = "200") int limit) {
+        RegistrationFilter filter = new RegistrationFilter();
+        filter.setStatus(RegistrationStatus.PENDING);
+        filter.setAscending(true);
+        try {
+            RegistrationPage page = registrationService.search(filter, after, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header("X-Next-Cursor", page.getNextCursor());
+            }
+            return response.body(page.getRegistrations());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @PostMapping("/registrations")
-    public ResponseEntity<?> createRegistration(@RequestBody Map<String, Object> body) {
+    public ResponseEntity<?> createRegistration(@Valid @RequestBody RegistrationRequest body) {
         try {
-            // Check for prohibited diseases first
-            if (body.containsKey("diseaseIds")) {
-                List<Long> diseaseIds = ((List<?>) body.get("diseaseIds")).stream()
-                        .map(id -> Long.parseLong(id.toString()))
-                        .collect(Collectors.toList());
-                
-                if (!diseaseIds.isEmpty()) {
-                    List<ProhibitedDisease> selectedDiseases = diseaseRepo.findAllById(diseaseIds);
-                    if (!selectedDiseases.isEmpty()) {
-                        String diseaseNames = selectedDiseases.stream()
-                                .map(ProhibitedDisease::getName)
-                                .collect(Collectors.joining(", "));
-                        return ResponseEntity.badRequest().body(
-                            "You cannot donate blood if you have the following conditions: " + diseaseNames + 
-                            ". Please consult with a healthcare provider."
-                        );
-                    }
-                }
-            }
-
-            // Create registration
-            DonationRegistration reg = new DonationRegistration();
-            
-            // Basic information
-            reg.setBloodType((String) body.get("bloodType"));
-            if (body.get("lastDonationDate") != null && !body.get("lastDonationDate").toString().isEmpty()) {
-                reg.setLastDonationDate(LocalDate.parse((String) body.get("lastDonationDate")));
-            }
-            double weight = Double.parseDouble(body.get("weight").toString());
-            double height = Double.parseDouble(body.get("height").toString());
-            reg.setWeight(weight);
-            reg.setHeight(height);
-            
-            // Calculate and store BMI
-            double heightInMeters = height / 100.0;
-            double bmi = weight / (heightInMeters * heightInMeters);
-            reg.setBmi(Math.round(bmi * 10.0) / 10.0); // Round to 1 decimal place
-            reg.setAmount(Integer.parseInt(body.get("amount").toString()));
-            
-            // Health screening data
-            if (body.containsKey("bloodPressure")) {
-                Map<String, Object> bp = (Map<String, Object>) body.get("bloodPressure");
-                if (bp.get("systolic") != null && !bp.get("systolic").toString().isEmpty()) {
-                    reg.setSystolicBP(Integer.parseInt(bp.get("systolic").toString()));
-                }
-                if (bp.get("diastolic") != null && !bp.get("diastolic").toString().isEmpty()) {
-                    reg.setDiastolicBP(Integer.parseInt(bp.get("diastolic").toString()));
-                }
-            }
-            
-            if (body.containsKey("heartRate") && body.get("heartRate") != null && !body.get("heartRate").toString().isEmpty()) {
-                reg.setHeartRate(Integer.parseInt(body.get("heartRate").toString()));
-            }
-            
-            if (body.containsKey("temperature") && body.get("temperature") != null && !body.get("temperature").toString().isEmpty()) {
-                reg.setTemperature(Double.parseDouble(body.get("temperature").toString()));
-            }
-            
-            if (body.containsKey("hemoglobin") && body.get("hemoglobin") != null && !body.get("hemoglobin").toString().isEmpty()) {
-                reg.setHemoglobin(Double.parseDouble(body.get("hemoglobin").toString()));
-            }
-            
-            // Medication and surgery history
-            if (body.containsKey("currentMedications")) {
-                reg.setCurrentMedications((String) body.get("currentMedications"));
-            }
-            
-            if (body.containsKey("recentSurgery")) {
-                reg.setRecentSurgery((Boolean) body.get("recentSurgery"));
-                if (Boolean.TRUE.equals(reg.getRecentSurgery())) {
-                    if (body.containsKey("surgeryDetails")) {
-                        reg.setSurgeryDetails((String) body.get("surgeryDetails"));
-                    }
-                    if (body.containsKey("surgeryDate") && body.get("surgeryDate") != null && !body.get("surgeryDate").toString().isEmpty()) {
-                        reg.setSurgeryDate(LocalDate.parse((String) body.get("surgeryDate")));
-                    }
-                }
-            }
-            
-            // Risk factors
-            if (body.containsKey("recentTravel")) {
-                reg.setRecentTravel((Boolean) body.get("recentTravel"));
-                if (Boolean.TRUE.equals(reg.getRecentTravel()) && body.containsKey("travelDetails")) {
-                    reg.setTravelDetails((String) body.get("travelDetails"));
-                }
-            }
-            
-            if (body.containsKey("recentTattoo")) {
-                reg.setRecentTattoo((Boolean) body.get("recentTattoo"));
-                if (Boolean.TRUE.equals(reg.getRecentTattoo()) && body.containsKey("tattooDate") && body.get("tattooDate") != null && !body.get("tattooDate").toString().isEmpty()) {
-                    reg.setTattooDate(LocalDate.parse((String) body.get("tattooDate")));
-                }
-            }
-            
-            if (body.containsKey("recentPiercing")) {
-                reg.setRecentPiercing((Boolean) body.get("recentPiercing"));
-                if (Boolean.TRUE.equals(reg.getRecentPiercing()) && body.containsKey("piercingDate") && body.get("piercingDate") != null && !body.get("piercingDate").toString().isEmpty()) {
-                    reg.setPiercingDate(LocalDate.parse((String) body.get("piercingDate")));
-                }
-            }
-            
-            // Women's health
-            if (body.containsKey("isPregnant")) {
-                reg.setIsPregnant((Boolean) body.get("isPregnant"));
-            }
-            if (body.containsKey("isBreastfeeding")) {
-                reg.setIsBreastfeeding((Boolean) body.get("isBreastfeeding"));
-            }
-            
-            // Consent forms
-            if (body.containsKey("healthDeclaration")) {
-                reg.setHealthDeclaration((Boolean) body.get("healthDeclaration"));
-            }
-            if (body.containsKey("consentForm")) {
-                reg.setConsentForm((Boolean) body.get("consentForm"));
-            }
-            if (body.containsKey("dataProcessing")) {
-                reg.setDataProcessingConsent((Boolean) body.get("dataProcessing"));
+            if (body.getUserId() == null) {
+                return ResponseEntity.badRequest().body("User ID is required");
             }
-
-            // Set location
-            if (body.containsKey("locationId")) {
-                Long locationId = Long.parseLong(body.get("locationId").toString());
-                Optional<DonationLocation> locOpt = locationRepo.findById(locationId);
-                if (locOpt.isEmpty()) {
-                    return ResponseEntity.badRequest().body("Location not found");
-                }
-                reg.setLocation(locOpt.get());
-            } else {
-                return ResponseEntity.badRequest().body("Location is required");
+            Optional<User> userOpt = userRepository.findById(body.getUserId());
+            if (userOpt.isEmpty()) {
+                return ResponseEntity.badRequest().body("User not found");
             }
+            User user = userOpt.get();
 
-            // Set user
-            if (body.containsKey("userId")) {
-                Long userId = Long.parseLong(body.get("userId").toString());
-                Optional<User> userOpt = userRepository.findById(userId);
-                if (userOpt.isEmpty()) {
-                    return ResponseEntity.badRequest().body("User not found");
-                }
-                reg.setUser(userOpt.get());
-            } else {
-                return ResponseEntity.badRequest().body("User ID is required");
+            // Bệnh cấm hiến, địa điểm/lịch được kiểm tra khi chuyển đổi
+            DonationRegistration reg;
+            try {
+                reg = registrationMapper.toRegistration(body);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
             }
-
-            // Set empty diseases set since validation passed
-            reg.setDiseases(new HashSet<>());
-            
-            // Get user for eligibility check
-            User user = reg.getUser();
+            reg.setUser(user);
+            // Ngày hiến gần nhất đã ghi nhận được ưu tiên hơn ngày người hiến tự khai
+            donorEligibilityIndex.applyRecordedDonation(reg);
             
             // Perform comprehensive eligibility check
             DonationEligibilityService.EligibilityResult eligibilityResult = eligibilityService.checkEligibility(reg, user);
@@ -324,6 +287,7 @@ public class StaffController {
             if (!eligibilityResult.isEligible()) {
                 return ResponseEntity.badRequest().body(Map.of(
                     "eligible", false,
+                    "errorCodes", eligibilityResult.getErrorCodes(),
                     "errors", eligibilityResult.getErrors(),
                     "warnings", eligibilityResult.getWarnings()
                 ));
@@ -335,9 +299,9 @@ public class StaffController {
                 reg.setEligibilityNotes(String.join("; ", eligibilityResult.getWarnings()));
             }
             
-            reg.setStatus(RegistrationStatus.PENDING);
-
-            DonationRegistration savedReg = registrationRepo.save(reg);
+            // Giữ chỗ trong lịch, nếu lịch đã đầy thì đơn vào danh sách chờ
+            DonationRegistration savedReg = registrationService.register(reg, user);
+            boolean waitlisted = savedReg.getStatus() == RegistrationStatus.WAITLISTED;
             
             // Send confirmation notification
             try {
@@ -358,7 +322,9 @@ public class StaffController {
                 "registration", savedReg,
                 "eligible", true,
                 "warnings", eligibilityResult.getWarnings(),
+                "waitlisted", waitlisted,
                 "message", "Registration submitted successfully! " + 
+                          (waitlisted ? "The schedule is full, you have been added to the waitlist. " : "") +
                           (eligibilityResult.getWarnings().isEmpty() ? 
                            "You will receive a confirmation email shortly." :
                            "Please note the warnings and consult with medical staff.")
@@ -370,45 +336,29 @@ public class StaffController {
 
     @PostMapping("/registrations/{id}/confirm")
     public ResponseEntity<?> confirmRegistration(@PathVariable Long id, @RequestParam Long staffId) {
-        Optional<DonationRegistration> opt = registrationRepo.findById(id);
         Optional<User> staffOpt = userRepository.findById(staffId);
-
-        if (opt.isEmpty()) return ResponseEntity.badRequest().body("Registration not found");
         if (staffOpt.isEmpty()) return ResponseEntity.badRequest().body("Staff not found");
 
-        DonationRegistration reg = opt.get();
-        User staff = staffOpt.get();
-
-        reg.setStatus(RegistrationStatus.CONFIRMED);
-        registrationRepo.save(reg);
-
-        bloodInventoryService.findByBloodType(reg.getBloodType()).ifPresentOrElse(
-                inv -> {
-                    inv.setQuantity(inv.getQuantity() + reg.getAmount());
-                    inv.setUpdatedBy(staff);
-                    bloodInventoryService.save(inv);
-                },
-                () -> {
-                    BloodInventory newInv = new BloodInventory();
-                    newInv.setBloodType(reg.getBloodType());
-                    newInv.setQuantity(reg.getAmount());
-                    newInv.setUpdatedBy(staff);
-                    bloodInventoryService.save(newInv);
-                }
-        );
-
-        notificationService.sendNotification(reg.getUser().getEmail(), "Đơn đăng ký hiến máu đã được xác nhận.");
-        return ResponseEntity.ok("Confirmed and inventory updated");
+        try {
+            // Thông báo được ghi vào outbox cùng giao dịch, không chờ gửi mail
+            return registrationService.confirm(id, staffOpt.get())
+                    .<ResponseEntity<?>>map(reg -> ResponseEntity.ok("Confirmed and inventory updated"))
+                    .orElse(ResponseEntity.badRequest().body("Registration not found"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @PostMapping("/registrations/{id}/cancel")
     public ResponseEntity<?> cancelRegistration(@PathVariable Long id) {
-        return registrationRepo.findById(id).map(reg -> {
-            reg.setStatus(RegistrationStatus.CANCELLED);
-            registrationRepo.save(reg);
-            notificationService.sendNotification(reg.getUser().getEmail(), "Đơn đăng ký hiến máu đã bị hủy.");
-            return ResponseEntity.ok("Registration cancelled");
-        }).orElse(ResponseEntity.badRequest().body("Registration not found"));
+        try {
+            // Trả lại chỗ của lịch và đưa người chờ lâu nhất lên
+            return registrationService.cancel(id)
+                    .<ResponseEntity<?>>map(reg -> ResponseEntity.ok("Registration cancelled"))
+                    .orElse(ResponseEntity.badRequest().body("Registration not found"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     // === Kho máu ===
@@ -427,25 +377,43 @@ public class StaffController {
 
         BloodInventory inv = optional.get();
         if (updated.getQuantity() != null) {
-            inv.setQuantity(updated.getQuantity());
+            return ResponseEntity.ok(bloodInventoryService.updateQuantity(id, updated.getQuantity(), null).orElse(inv));
         }
-        return ResponseEntity.ok(bloodInventoryRepo.save(inv));
+        return ResponseEntity.ok(inv);
     }
 
     @PostMapping("/inventory")
     public ResponseEntity<?> addBloodInventory(@RequestBody BloodInventory inventory) {
-        return ResponseEntity.ok(bloodInventoryRepo.save(inventory));
+        return ResponseEntity.ok(bloodInventoryService.save(inventory));
     }
 
     @DeleteMapping("/inventory/{id}")
     public ResponseEntity<?> deleteBloodInventory(@PathVariable Long id) {
-        if (!bloodInventoryRepo.existsById(id)) {
+        if (!bloodInventoryService.deleteById(id)) {
             return ResponseEntity.badRequest().body("Blood inventory not found");
         }
-        bloodInventoryRepo.deleteById(id);
         return ResponseEntity.ok("Blood inventory deleted successfully");
     }
 
+    // Túi máu còn dùng được, hết hạn sớm nhất trước
+    @GetMapping("/inventory/units")
+    public ResponseEntity<?> getAvailableUnits(@RequestParam String bloodType) {
+        return ResponseEntity.ok(bloodUnitService.getAvailableUnits(bloodType));
+    }
+
+    // Các túi máu (hoặc phần túi) đã xuất cho một yêu cầu
+    @GetMapping("/blood-requests/{id}/units")
+    public ResponseEntity<?> getIssuedUnits(@PathVariable Long id) {
+        return ResponseEntity.ok(bloodUnitService.getIssues(id));
+    }
+
+    // Lượng máu sẽ hết hạn trong số ngày tới (mặc định: đến hết ngày mai)
+    @GetMapping("/inventory/expiring")
+    public ResponseEntity<?> getExpiringInventory(@RequestParam(defaultValue = "1") int days) {
+        if (days < 0) return ResponseEntity.badRequest().body("Days must not be negative");
+        return ResponseEntity.ok(bloodUnitService.getExpiring(days));
+    }
+
     // === Người dùng ===
 
     @GetMapping("/users/donors")
@@ -465,6 +433,7 @@ public class StaffController {
             }
             
             User savedDonor = userRepository.save(donor);
+            donorEligibilityIndex.refresh(savedDonor.getId());
             return ResponseEntity.ok(savedDonor);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error creating donor: " + e.getMessage());
@@ -505,6 +474,7 @@ public class StaffController {
             }
 
             User savedDonor = userRepository.save(existingDonor);
+            donorEligibilityIndex.refresh(id); // nhóm máu hoặc giới tính có thể đã đổi
             return ResponseEntity.ok(savedDonor);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error updating donor: " + e.getMessage());
@@ -525,6 +495,7 @@ public class StaffController {
             }
 
             userRepository.deleteById(id);
+            donorEligibilityIndex.refresh(id);
             return ResponseEntity.ok("Donor deleted successfully");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error deleting donor: " + e.getMessage());
@@ -551,11 +522,8 @@ public class StaffController {
             return ResponseEntity.badRequest().body("Donor not found");
         }
         
-        List<DonationRegistration> history = registrationRepo.findByUserId(id);
-        // Sort by registeredAt descending (most recent first)
-        history.sort((a, b) -> b.getRegisteredAt().compareTo(a.getRegisteredAt()));
-        
-        return ResponseEntity.ok(history);
+        // Mới nhất trước, sắp xếp trong DB theo index (user_id, registered_at)
+        return ResponseEntity.ok(registrationRepo.findByUserIdOrderByRegisteredAtDescIdDesc(id));
     }
 
     @GetMapping("/users/medicalcenters/{id}")
@@ -575,33 +543,43 @@ public class StaffController {
 
     @PostMapping("/blood-requests/{id}/confirm")
     public ResponseEntity<?> confirmBloodRequest(@PathVariable Long id) {
-        Optional<BloodRequest> opt = bloodRequestRepo.findById(id);
-        if (opt.isEmpty()) return ResponseEntity.badRequest().body("Request not found");
-
-        BloodRequest req = opt.get();
-        Optional<BloodInventory> inventoryOpt = bloodInventoryService.findByBloodType(req.getRecipientBloodType());
+        // Chuyển trạng thái và trừ kho trong cùng một giao dịch, yêu cầu đã xác nhận bị từ chối
+        BloodRequest req;
+        try {
+            Optional<BloodRequest> opt = bloodRequestService.confirm(id, null, null);
+            if (opt.isEmpty()) return ResponseEntity.badRequest().body("Request not found");
+            req = opt.get();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
 
-        if (inventoryOpt.isEmpty()) return ResponseEntity.badRequest().body("Không tìm thấy kho máu phù hợp");
-        BloodInventory inventory = inventoryOpt.get();
+        notificationService.sendNotification(req.getMedicalCenter().getEmail(), "Yêu cầu nhận máu đã được xác nhận.");
+        return ResponseEntity.ok("Request confirmed and blood updated");
+    }
 
-        if (inventory.getQuantity() < req.getRequestedAmount()) return ResponseEntity.badRequest().body("Không đủ lượng máu trong kho");
+    // N yêu cầu đang mở cần xử lý tiếp theo (khẩn cấp nhất trước)
+    @GetMapping("/blood-requests/next")
+    public ResponseEntity<?> getNextBloodRequests(@RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0) return ResponseEntity.badRequest().body("Limit must be positive");
+        return ResponseEntity.ok(bloodRequestService.next(limit));
+    }
 
-        inventory.setQuantity(inventory.getQuantity() - req.getRequestedAmount());
-        bloodInventoryService.save(inventory);
+    // Phân bổ kho cho tất cả yêu cầu đang mở (chỉ xem trước, không thay đổi dữ liệu)
+    @GetMapping("/blood-requests/allocation/preview")
+    public ResponseEntity<?> previewAllocation() {
+        return ResponseEntity.ok(bloodAllocationService.preview());
+    }
 
-        // Logic cập nhật trạng thái dựa trên trạng thái hiện tại
-        BloodRequestStatus newStatus;
-        if (req.getStatus() == BloodRequestStatus.PENDING || req.getStatus() == BloodRequestStatus.WAITING) {
-            newStatus = BloodRequestStatus.CONFIRM; // Chuyển thành đã xác nhận
-        } else {
-            newStatus = BloodRequestStatus.WAITING; // Giữ logic cũ cho các trạng thái khác
+    // Áp dụng phân bổ: trừ kho và xác nhận các yêu cầu được cấp
+    @PostMapping("/blood-requests/allocation/commit")
+    public ResponseEntity<?> commitAllocation(@RequestParam(required = false) Long staffId) {
+        User staff = null;
+        if (staffId != null) {
+            Optional<User> staffOpt = userRepository.findById(staffId);
+            if (staffOpt.isEmpty()) return ResponseEntity.badRequest().body("Staff not found");
+            staff = staffOpt.get();
         }
-        
-        req.setStatus(newStatus);
-        bloodRequestRepo.save(req);
-
-        notificationService.sendNotification(req.getMedicalCenter().getEmail(), "Yêu cầu nhận máu đã được xác nhận.");
-        return ResponseEntity.ok("Request confirmed and blood updated");
+        return ResponseEntity.ok(bloodAllocationService.commit(staff));
     }
 
     @PostMapping("/blood-requests/{id}/mark-priority")
@@ -615,56 +593,83 @@ public class StaffController {
     }
 
     private ResponseEntity<?> updateRequestStatus(Long id, BloodRequestStatus status, String message) {
-        return bloodRequestRepo.findById(id).map(req -> {
+        return bloodRequestRepo.findById(id).<ResponseEntity<?>>map(req -> {
+            // Yêu cầu đã xác nhận đã trừ kho, mở lại sẽ bị trừ kho lần nữa
+            if (req.getStatus() == BloodRequestStatus.CONFIRM) {
+                return ResponseEntity.badRequest().body("Request is already confirmed");
+            }
             req.setStatus(status);
-            bloodRequestRepo.save(req);
+            bloodRequestService.save(req);
             notificationService.sendNotification(req.getMedicalCenter().getEmail(), message);
             return ResponseEntity.ok("Status updated");
         }).orElse(ResponseEntity.badRequest().body("Request not found"));
     }
 
 
-    // Thêm ở đầu class StaffController
     @Autowired
-    private ProhibitedDiseaseRepository diseaseRepo;
+    private ProhibitedDiseaseCatalogue diseaseCatalogue;
+
+    @Autowired
+    private DonorEligibilityIndex donorEligibilityIndex;
+
+    // Người hiến có thể hiến vào một ngày (mặc định hôm nay), đọc từ bảng donor_eligibility
+    @GetMapping("/donors/eligible")
+    public ResponseEntity<?> getEligibleDonors(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                               @RequestParam(required = false) List<String> bloodType,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(donorEligibilityIndex.findEligible(date != null ? date : LocalDate.now(), bloodType, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Autowired
+    private DonorRecallService donorRecallService;
+
+    // Mời những người hiến phù hợp nhất khi một nhóm máu thiếu, vd: /recalls?bloodType=O-&size=200
+    @PostMapping("/recalls")
+    public ResponseEntity<?> recallDonors(@RequestParam String bloodType,
+                                          @RequestParam(required = false) Integer size,
+                                          @RequestParam(required = false) Long locationId) {
+        try {
+            return ResponseEntity.ok(donorRecallService.recall(bloodType, size, locationId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 
 // === Quản lý bệnh bị cấm hiến máu ===
 
     @PostMapping("/diseases")
     public ResponseEntity<?> createDisease(@RequestBody ProhibitedDisease disease) {
-        return ResponseEntity.ok(diseaseRepo.save(disease));
+        return ResponseEntity.ok(diseaseCatalogue.create(disease));
     }
 
     @PutMapping("/diseases/{id}")
     public ResponseEntity<?> updateDisease(@PathVariable Long id, @RequestBody ProhibitedDisease updated) {
-        Optional<ProhibitedDisease> optional = diseaseRepo.findById(id);
-        if (optional.isEmpty()) {
-            return ResponseEntity.badRequest().body("Disease not found");
-        }
-
-        ProhibitedDisease disease = optional.get();
-        if (updated.getName() != null) {
-            disease.setName(updated.getName());
-        }
-        if (updated.getDescription() != null) {
-            disease.setDescription(updated.getDescription());
-        }
-
-        return ResponseEntity.ok(diseaseRepo.save(disease));
+        return diseaseCatalogue.update(id, updated)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.badRequest().body("Disease not found"));
     }
 
     @DeleteMapping("/diseases/{id}")
     public ResponseEntity<?> deleteDisease(@PathVariable Long id) {
-        if (!diseaseRepo.existsById(id)) {
+        if (!diseaseCatalogue.delete(id)) {
             return ResponseEntity.badRequest().body("Disease not found");
         }
-        diseaseRepo.deleteById(id);
         return ResponseEntity.ok("Disease deleted successfully");
     }
 
+    // Danh mục lấy từ bộ nhớ, trả 304 nếu client đã có đúng phiên bản (If-None-Match)
     @GetMapping("/diseases")
-    public ResponseEntity<?> getAllDiseases() {
-        return ResponseEntity.ok(diseaseRepo.findAll());
+    public ResponseEntity<?> getAllDiseases(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        ProhibitedDiseaseCatalogue.Snapshot catalogue = diseaseCatalogue.snapshot();
+        if (catalogue.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(catalogue.getEtag()).build();
+        }
+        return ResponseEntity.ok().eTag(catalogue.getEtag()).cacheControl(CacheControl.noCache()).body(catalogue.getDiseases());
     }
 
     // === Blood Compatibility Check ===
@@ -687,8 +692,8 @@ public class StaffController {
             return ResponseEntity.badRequest().body("Schedule not found");
         }
 
-        Long locationId = scheduleOpt.get().getLocation().getId();
-        List<DonationRegistration> registrations = registrationRepo.findByLocationId(locationId);
+        // Chỉ những người đã đăng ký vào lịch này (kể cả danh sách chờ)
+        List<DonationRegistration> registrations = registrationService.getRegistrationsBySchedule(scheduleId);
 
         // Tạo danh sách kết quả với thông tin đầy đủ
         List<Map<String, Object>> result = registrations.stream()
@@ -0,0 +1,38 @@
+package com.example.demo1.dto;
+
+import com.example.demo1.entity.enums.BloodUrgencyLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the batch allocation of open blood requests against the current inventory.
+ */
+@Data
+@NoArgsConstructor
+public class AllocationPlan {
+    private List<Allocation> allocations = new ArrayList<>();
+    private List<Long> unfulfilledRequestIds = new ArrayList<>();
+    // Đã có trong kế hoạch nhưng bị xóa hoặc xác nhận nơi khác trước khi áp dụng
+    private List<Long> skippedRequestIds = new ArrayList<>();
+    private Map<String, Integer> remainingInventory = new LinkedHashMap<>();
+    private boolean committed;
+    private long computeTimeMs;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Allocation {
+        private Long requestId;
+        private String recipientBloodType;
+        private BloodUrgencyLevel urgencyLevel;
+        private int requestedAmount;
+        // Nhóm máu dùng để cấp -> số lượng
+        private Map<String, Integer> bloodTypes;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo1.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the emergency broadcast of one CRITICAL blood request.
+ */
+@Data
+@NoArgsConstructor
+public class BroadcastStatus {
+    private Long requestId;
+    private boolean running;
+    private boolean stockShort;     // có gửi cho người hiến hay không
+    // Số tin đã đưa vào outbox (NotificationDispatcher gửi sau), không phải số tin đã gửi
+    private long staffQueued;
+    private long donorsQueued;
+    private long duplicatesSkipped; // người đã nhận thông báo của yêu cầu này
+    private long failed;            // số người không đưa được tin vào outbox
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
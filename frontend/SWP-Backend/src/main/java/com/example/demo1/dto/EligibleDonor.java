@@ -0,0 +1,21 @@
+package com.example.demo1.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EligibleDonor {
+    private Long userId;
+    private String fullName;
+    private String email;
+    private String phone;
+    private String bloodType;
+    private LocalDate lastDonationDate;
+    private LocalDate nextEligibleDate;
+    private Integer donationCount;
+}
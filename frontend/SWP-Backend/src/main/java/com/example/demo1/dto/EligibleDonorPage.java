@@ -0,0 +1,21 @@
+package com.example.demo1.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of donors who can donate on a date, ordered by the date they
+ * became eligible then user id.
+ */
+@Data
+@NoArgsConstructor
+public class EligibleDonorPage {
+    private LocalDate date;
+    private List<EligibleDonor> donors = new ArrayList<>();
+    // Truyền lại vào tham số "after" để lấy trang tiếp theo, null nếu đã hết
+    private String nextCursor;
+}
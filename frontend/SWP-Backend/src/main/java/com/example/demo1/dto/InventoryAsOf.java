@@ -0,0 +1,23 @@
+package com.example.demo1.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stock per blood type at a past point in time.
+ */
+@Data
+@NoArgsConstructor
+public class InventoryAsOf {
+    private LocalDateTime at;
+    private Map<String, Integer> quantities = new LinkedHashMap<>();
+    // Nhóm máu chưa có lịch sử tại thời điểm này (trước khi bắt đầu ghi nhật ký)
+    private List<String> unknownBloodTypes = new ArrayList<>();
+    private long computeTimeMs;
+}
@@ -0,0 +1,21 @@
+package com.example.demo1.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Donors selected by a recall, best first. Messages are still being sent in
+ * the background when this is returned.
+ */
+@Data
+@NoArgsConstructor
+public class RecallResult {
+    private String bloodType;
+    private List<String> donorBloodTypes = new ArrayList<>();
+    private long scanned;      // số người hiến đủ điều kiện đã xét
+    private long elapsedMs;    // thời gian chọn, không tính thời gian gửi
+    private List<RecalledDonor> donors = new ArrayList<>();
+}
@@ -0,0 +1,19 @@
+package com.example.demo1.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecalledDonor {
+    private Long userId;
+    private String fullName;
+    private String email;
+    private String bloodType;
+    private LocalDate lastDonationDate;
+    private double score;
+}
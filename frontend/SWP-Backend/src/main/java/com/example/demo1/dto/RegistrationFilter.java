@@ -0,0 +1,23 @@
+package com.example.demo1.dto;
+
+import com.example.demo1.entity.enums.RegistrationStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Filters for registration listings, null fields are not applied.
+ */
+@Data
+@NoArgsConstructor
+public class RegistrationFilter {
+    private RegistrationStatus status;
+    private Long locationId;
+    private Long scheduleId;
+    private Long userId;
+    private String bloodType;
+    private LocalDate from; // registeredAt từ ngày này (bao gồm)
+    private LocalDate to;   // đến hết ngày này
+    private boolean ascending; // mặc định mới nhất trước
+}
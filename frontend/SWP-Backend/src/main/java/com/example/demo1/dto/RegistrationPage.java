@@ -0,0 +1,19 @@
+package com.example.demo1.dto;
+
+import com.example.demo1.entity.DonationRegistration;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of registrations ordered by registeredAt then id.
+ */
+@Data
+@NoArgsConstructor
+public class RegistrationPage {
+    private List<DonationRegistration> registrations = new ArrayList<>();
+    // Truyền lại vào tham số "after" để lấy trang tiếp theo, null nếu đã hết
+    private String nextCursor;
+}
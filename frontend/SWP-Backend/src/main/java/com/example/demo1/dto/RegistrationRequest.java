@@ -0,0 +1,77 @@
+package com.example.demo1.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Donation registration form, bound directly from the request body.
+ * Shared by the staff and donor registration endpoints, see
+ * {@link com.example.demo1.service.RegistrationMapper}.
+ */
+@Data
+@NoArgsConstructor
+public class RegistrationRequest {
+    private Long userId; // bắt buộc với staff, donor truyền qua tham số
+    private Long locationId;
+    private Long scheduleId; // nếu có, địa điểm lấy theo lịch
+
+    // Basic information
+    private String bloodType;
+    private LocalDate lastDonationDate;
+    @NotNull(message = "Weight is required")
+    @Positive(message = "Weight must be positive")
+    private Double weight;
+    @NotNull(message = "Height is required")
+    @Positive(message = "Height must be positive")
+    private Double height;
+    @NotNull(message = "Amount is required")
+    @Positive(message = "Amount must be positive")
+    private Integer amount;
+
+    // Health screening data
+    private BloodPressure bloodPressure;
+    private Integer heartRate;
+    private Double temperature;
+    private Double hemoglobin;
+
+    // Medication and surgery history
+    private String currentMedications;
+    private Boolean recentSurgery;
+    private String surgeryDetails;
+    private LocalDate surgeryDate;
+
+    // Risk factors
+    private Boolean recentTravel;
+    private String travelDetails;
+    private Boolean recentTattoo;
+    private LocalDate tattooDate;
+    private Boolean recentPiercing;
+    private LocalDate piercingDate;
+    private Boolean recentVaccination;
+    private String vaccinationDetails;
+
+    // Women's health
+    private Boolean isPregnant;
+    private Boolean isBreastfeeding;
+    private String menstrualCycle;
+
+    // Consent forms
+    private Boolean healthDeclaration;
+    private Boolean consentForm;
+    private Boolean dataProcessing;
+
+    private Boolean hasProhibitedDiseases;
+    private List<Long> diseaseIds;
+
+    @Data
+    @NoArgsConstructor
+    public static class BloodPressure {
+        private Integer systolic;
+        private Integer diastolic;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.demo1.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of an eligibility re-screening run.
+ */
+@Data
+@NoArgsConstructor
+public class RescreenProgress {
+    private boolean running;
+    private boolean rerunRequested; // sẽ chạy lại khi lần hiện tại xong
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long total;      // số đơn cần sàng lọc lúc bắt đầu
+    private long processed;
+    private long changed;    // số đơn có kết quả khác trước
+    private long ineligible;
+    private String error;
+}
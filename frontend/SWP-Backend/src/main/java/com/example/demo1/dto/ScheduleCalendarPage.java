@@ -0,0 +1,21 @@
+package com.example.demo1.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of schedules in a date window, ordered by date then id.
+ */
+@Data
+@NoArgsConstructor
+public class ScheduleCalendarPage {
+    private LocalDate from;
+    private LocalDate to;
+    private List<ScheduleSummary> schedules = new ArrayList<>();
+    // Truyền lại vào tham số "after" để lấy trang tiếp theo, null nếu đã hết
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.example.demo1.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Slot usage of all schedules on one day.
+ * slots and free are null when at least one schedule that day has no capacity limit.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleDaySummary {
+    private LocalDate date;
+    private long scheduleCount;
+    private Long slots;
+    private long booked;
+    private Long free;
+}
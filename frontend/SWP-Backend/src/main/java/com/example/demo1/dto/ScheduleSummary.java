@@ -0,0 +1,30 @@
+package com.example.demo1.dto;
+
+import com.example.demo1.entity.DonationLocation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * A donation schedule with the number of registrations for it and its slot usage.
+ * Older registrations that were never linked to a schedule are not counted in
+ * {@code registrationCount}; the full schedule list reports them in
+ * {@code unscheduledCount} for the schedule's location, so the same rows appear
+ * on every schedule there (the calendar leaves it at 0).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleSummary {
+    private Long id;
+    private LocalDate date;
+    private LocalTime time;
+    private DonationLocation location;
+    private long registrationCount;
+    private long unscheduledCount; // đơn cũ chưa gắn lịch tại cùng địa điểm
+    private Integer capacity; // null = không giới hạn
+    private int bookedCount;
+}
@@ -0,0 +1,23 @@
+package com.example.demo1.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projected supply of one blood type from smoothed daily consumption and donations.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SupplyForecast {
+    private String bloodType;
+    private int onHand;
+    // Trung bình trượt (EWMA) lượng máu xuất / nhập mỗi ngày
+    private double dailyConsumption;
+    private double dailyDonation;
+    // Số ngày đủ dùng nếu không có thêm máu hiến; null nếu chưa có dữ liệu xuất
+    private Double daysOfSupply;
+    // Số ngày đủ dùng tính cả lượng máu hiến dự kiến; null nếu lượng nhập bù đủ lượng xuất
+    private Double netDaysOfSupply;
+}
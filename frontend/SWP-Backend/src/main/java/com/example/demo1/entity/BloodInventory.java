@@ -8,7 +8,8 @@ import lombok.NoArgsConstructor;
 @Entity
 @NoArgsConstructor
 @Data
-@Table(name = "blood_inventory")
+@Table(name = "blood_inventory",
+        uniqueConstraints = @UniqueConstraint(name = "uk_blood_inventory_blood_type", columnNames = "blood_type"))
 public class BloodInventory {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
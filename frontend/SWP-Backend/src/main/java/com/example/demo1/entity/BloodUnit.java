@@ -0,0 +1,46 @@
+package com.example.demo1.entity;
+
+import com.example.demo1.entity.enums.BloodUnitStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One blood bag collected from a confirmed donation registration.
+ * {@code remaining} is the part of {@code amount} not issued yet; what was
+ * issued to which request is recorded in {@link BloodUnitIssue}.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "blood_units",
+        uniqueConstraints = @UniqueConstraint(name = "uk_blood_units_bag_code", columnNames = "bag_code"),
+        indexes = @Index(name = "ix_blood_units_status_expiry", columnList = "status, expiry_date"))
+public class BloodUnit {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String bagCode;
+    private String bloodType;
+    private Integer amount;
+    private Integer remaining;
+    private LocalDate collectedDate;
+    private LocalDate expiryDate;
+
+    @Enumerated(EnumType.STRING)
+    private BloodUnitStatus status = BloodUnitStatus.AVAILABLE;
+
+    private LocalDateTime issuedAt;
+
+    @ManyToOne
+    @JoinColumn(name = "registration_id")
+    private DonationRegistration registration;
+
+    @ManyToOne
+    @JoinColumn(name = "location_id")
+    private DonationLocation location;
+}
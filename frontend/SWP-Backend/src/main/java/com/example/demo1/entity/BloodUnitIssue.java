@@ -0,0 +1,37 @@
+package com.example.demo1.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Part of a blood bag issued to a blood request. A bag that is split over
+ * several requests has one row per request. Rows are only ever inserted.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "blood_unit_issues",
+        indexes = {
+                @Index(name = "ix_blood_unit_issues_request", columnList = "blood_request_id"),
+                @Index(name = "ix_blood_unit_issues_unit", columnList = "unit_id")
+        })
+public class BloodUnitIssue {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "unit_id")
+    private BloodUnit unit;
+
+    // Null khi xuất máu không gắn với yêu cầu nào
+    @ManyToOne
+    @JoinColumn(name = "blood_request_id")
+    private BloodRequest bloodRequest;
+
+    private Integer amount;
+    private LocalDateTime issuedAt;
+}
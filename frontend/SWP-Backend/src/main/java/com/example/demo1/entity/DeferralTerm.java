@@ -0,0 +1,48 @@
+package com.example.demo1.entity;
+
+import com.example.demo1.entity.enums.DeferralCategory;
+import com.example.demo1.entity.enums.RuleSeverity;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A drug, procedure, region or vaccine that defers a donor when it appears in
+ * the matching free-text field of a registration. Matching ignores case,
+ * Vietnamese accents and punctuation, and only whole words match. A single
+ * accented word (e.g. "dại") keeps its accents when matching.
+ *
+ * The message may use {term}.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "deferral_terms",
+        uniqueConstraints = @UniqueConstraint(name = "uk_deferral_terms_category_term", columnNames = {"category", "term"}))
+public class DeferralTerm {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DeferralCategory category;
+
+    @Column(nullable = false, columnDefinition = "NVARCHAR(200)")
+    private String term;
+
+    @Enumerated(EnumType.STRING)
+    private RuleSeverity severity = RuleSeverity.ERROR;
+
+    @Column(columnDefinition = "NVARCHAR(500)")
+    private String message;
+
+    private Boolean enabled = true;
+
+    public DeferralTerm(DeferralCategory category, String term, RuleSeverity severity, String message) {
+        this.category = category;
+        this.term = term;
+        this.severity = severity;
+        this.message = message;
+    }
+}
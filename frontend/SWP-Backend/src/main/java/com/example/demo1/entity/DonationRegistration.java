@@ -13,7 +13,12 @@ import java.util.Set;
 @Entity
 @NoArgsConstructor
 @Data
-@Table(name = "donation_registrations")
+@Table(name = "donation_registrations", indexes = {
+        @Index(name = "ix_donation_registrations_schedule", columnList = "schedule_id, status"),
+        @Index(name = "ix_donation_registrations_status_registered", columnList = "status, registered_at"),
+        @Index(name = "ix_donation_registrations_user_registered", columnList = "user_id, registered_at"),
+        @Index(name = "ix_donation_registrations_location_registered", columnList = "location_id, registered_at")
+})
 public class DonationRegistration {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,5 +1,6 @@
 package com.example.demo1.entity;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,7 +11,9 @@ import java.time.LocalTime;
 @Entity
 @NoArgsConstructor
 @Data
-@Table(name = "donation_schedules")
+@Table(name = "donation_schedules", indexes = {
+        @Index(name = "ix_donation_schedules_date_location", columnList = "date, location_id")
+})
 public class DonationSchedule {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,5 +26,13 @@ public class DonationSchedule {
     @JoinColumn(name = "location_id")
     private DonationLocation location;
 
+    // Số chỗ tối đa, null = không giới hạn
+    private Integer capacity;
+
+    // Chỉ thay đổi qua câu UPDATE có điều kiện trong DonationScheduleRepository
+    @Column(name = "booked_count", updatable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer bookedCount = 0;
+
 }
 
@@ -0,0 +1,54 @@
+package com.example.demo1.entity;
+
+import com.example.demo1.entity.enums.Gender;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One row per donor, derived from their CONFIRMED registrations and kept up to
+ * date on confirm/cancel and profile changes. Answers "who can donate on a
+ * date" without reading donation_registrations.
+ *
+ * nextEligibleDate is never null: donors who never donated and have no active
+ * deferral get {@link #ALWAYS}.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "donor_eligibility", indexes = {
+        @Index(name = "ix_donor_eligibility_blood_next", columnList = "blood_type, next_eligible_date, user_id"),
+        @Index(name = "ix_donor_eligibility_next", columnList = "next_eligible_date, user_id")
+})
+public class DonorEligibility {
+    public static final LocalDate ALWAYS = LocalDate.of(1900, 1, 1);
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "blood_type")
+    private String bloodType;
+
+    @Enumerated(EnumType.STRING)
+    private Gender gender;
+
+    private LocalDate lastDonationDate;
+    private LocalDate deferredUntil; // hoãn do phẫu thuật/xăm/xỏ khuyên, null nếu không có
+
+    @Column(name = "next_eligible_date", nullable = false)
+    private LocalDate nextEligibleDate = ALWAYS;
+
+    private Long lastLocationId; // địa điểm của lần hiến gần nhất
+
+    private Integer donationCount = 0;
+    private Integer cancelledCount = 0;
+    // Lần cuối được mời hiến máu khi thiếu máu; chỉ DonorRecallService ghi cột này (bằng JDBC),
+    // để việc tính lại dòng không ghi đè giá trị do đợt mời vừa ghi
+    @Column(name = "last_recalled_at", insertable = false, updatable = false)
+    private LocalDateTime lastRecalledAt;
+    private LocalDateTime updatedAt;
+}
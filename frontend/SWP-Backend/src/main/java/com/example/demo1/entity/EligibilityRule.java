@@ -0,0 +1,52 @@
+package com.example.demo1.entity;
+
+import com.example.demo1.entity.enums.Gender;
+import com.example.demo1.entity.enums.RuleSeverity;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One screening threshold. {@code code} names the measured value (see
+ * {@link com.example.demo1.service.EligibilityCheck}); the value must lie in
+ * [minValue, maxValue], a null bound is not checked.
+ *
+ * A rule with a gender overrides the rule with the same code and no gender.
+ * The message may use {value}, {min}, {max} and {remaining}.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "eligibility_rules",
+        uniqueConstraints = @UniqueConstraint(name = "uk_eligibility_rules_code_gender", columnNames = {"code", "gender"}))
+public class EligibilityRule {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String code;
+
+    @Enumerated(EnumType.STRING)
+    private Gender gender; // null = áp dụng cho mọi giới tính
+
+    private Double minValue;
+    private Double maxValue;
+
+    @Enumerated(EnumType.STRING)
+    private RuleSeverity severity = RuleSeverity.ERROR;
+
+    @Column(columnDefinition = "NVARCHAR(500)")
+    private String message;
+
+    private Boolean enabled = true;
+
+    public EligibilityRule(String code, Gender gender, Double minValue, Double maxValue, RuleSeverity severity, String message) {
+        this.code = code;
+        this.gender = gender;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.severity = severity;
+        this.message = message;
+    }
+}
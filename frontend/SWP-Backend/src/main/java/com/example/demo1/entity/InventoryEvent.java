@@ -0,0 +1,35 @@
+package com.example.demo1.entity;
+
+import com.example.demo1.entity.enums.InventoryEventType;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One change of the stock of a blood type. Rows are only ever inserted.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "inventory_events",
+        indexes = @Index(name = "ix_inventory_events_type_time", columnList = "blood_type, occurred_at"))
+public class InventoryEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String bloodType;
+
+    @Enumerated(EnumType.STRING)
+    private InventoryEventType eventType;
+
+    private Integer delta;
+    private Integer quantityAfter;
+    private LocalDateTime occurredAt;
+
+    @ManyToOne
+    @JoinColumn(name = "actor_id")
+    private User actor;
+}
@@ -0,0 +1,27 @@
+package com.example.demo1.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock of a blood type after all events up to {@code lastEventId}.
+ * Every event after {@code lastEventId} happened at or after {@code takenAt}.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "inventory_snapshots",
+        indexes = @Index(name = "ix_inventory_snapshots_type_time", columnList = "blood_type, taken_at"))
+public class InventorySnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String bloodType;
+    private Integer quantity;
+    private Long lastEventId;
+    private LocalDateTime takenAt;
+}
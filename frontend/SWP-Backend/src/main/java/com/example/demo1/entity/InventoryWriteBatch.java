@@ -0,0 +1,23 @@
+package com.example.demo1.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A journal batch of write-behind credits that has been applied to blood_inventory.
+ * Recording it in the same transaction makes replaying a journal file idempotent.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "inventory_write_batches")
+public class InventoryWriteBatch {
+    @Id
+    private String batchId;
+
+    private Integer totalUnits;
+    private LocalDateTime flushedAt;
+}
@@ -0,0 +1,26 @@
+package com.example.demo1.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Alert state of one blood type, kept across restarts so that a shortage
+ * already reported is not reported again when the ledger reloads.
+ */
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "low_stock_alerts")
+public class LowStockAlert {
+    @Id
+    @Column(name = "blood_type", length = 5)
+    private String bloodType;
+
+    // Đang dưới mức tối thiểu và đã được xử lý (cảnh báo hoặc bỏ qua do min-interval)
+    private boolean low;
+
+    private LocalDateTime lastAlertAt;
+}
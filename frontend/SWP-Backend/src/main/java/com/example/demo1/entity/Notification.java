@@ -1,19 +1,32 @@
 package com.example.demo1.entity;
 
+import com.example.demo1.entity.enums.NotificationChannel;
+import com.example.demo1.entity.enums.NotificationStatus;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
+/**
+ * Outbox row: a message waiting to be delivered, written in the same
+ * transaction as the change that caused it and sent later by
+ * {@link com.example.demo1.service.NotificationDispatcher}.
+ */
 @Entity
 @Data
 @NoArgsConstructor
+@Table(indexes = {
+        @Index(name = "ix_notification_status_next_attempt", columnList = "status, next_attempt_at"),
+        @Index(name = "ix_notification_claim_token", columnList = "claim_token")
+})
 public class Notification {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Cột "message" cũ chỉ có 255 ký tự, nội dung được lưu ở cột "body"
+    @Column(name = "body", columnDefinition = "NVARCHAR(MAX)")
     private String message;
 
     private LocalDateTime sentAt;
@@ -21,5 +34,25 @@ public class Notification {
     @ManyToOne
     private User user;
 
-    // getter, setter
+    private String recipient;
+
+    @Enumerated(EnumType.STRING)
+    private NotificationChannel channel = NotificationChannel.EMAIL;
+
+    @Enumerated(EnumType.STRING)
+    private NotificationStatus status = NotificationStatus.PENDING;
+
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+    private LocalDateTime claimedAt;
+
+    @Column(columnDefinition = "NVARCHAR(1000)")
+    private String lastError;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
 }
@@ -0,0 +1,104 @@
+package com.example.demo1.entity.enums;
+
+/**
+ * ABO/Rh blood types, declared in issuing priority order (O- first, AB+ last).
+ *
+ * Each type owns one bit ({@link #bit()}), so a set of blood types is an 8-bit int.
+ * Compatibility is precomputed once: {@link #getDonorMask()} is the set of types this
+ * type can receive from, {@link #getRecipientMask()} the set of types it can give to.
+ * Checking compatibility is then a single AND.
+ */
+public enum BloodType {
+    O_NEGATIVE("O-", 0),
+    O_POSITIVE("O+", Antigen.RH),
+    A_NEGATIVE("A-", Antigen.A),
+    B_NEGATIVE("B-", Antigen.B),
+    A_POSITIVE("A+", Antigen.A | Antigen.RH),
+    B_POSITIVE("B+", Antigen.B | Antigen.RH),
+    AB_NEGATIVE("AB-", Antigen.A | Antigen.B),
+    AB_POSITIVE("AB+", Antigen.A | Antigen.B | Antigen.RH);
+
+    public static final int COUNT = 8;
+    public static final int ALL_MASK = (1 << COUNT) - 1;
+
+    private static final BloodType[] VALUES = values();
+
+    private final String label;
+    private final int antigens;
+    private int donorMask;
+    private int recipientMask;
+
+    static {
+        // Donor is compatible when it carries no antigen the recipient lacks
+        for (BloodType recipient : VALUES) {
+            for (BloodType donor : VALUES) {
+                if ((donor.antigens & ~recipient.antigens) == 0) {
+                    recipient.donorMask |= donor.bit();
+                    donor.recipientMask |= recipient.bit();
+                }
+            }
+        }
+    }
+
+    BloodType(String label, int antigens) {
+        this.label = label;
+        this.antigens = antigens;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Types this recipient can receive blood from
+     */
+    public int getDonorMask() {
+        return donorMask;
+    }
+
+    /**
+     * Types this donor can give blood to
+     */
+    public int getRecipientMask() {
+        return recipientMask;
+    }
+
+    public boolean canReceiveFrom(BloodType donor) {
+        return (donorMask & donor.bit()) != 0;
+    }
+
+    public static BloodType byOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Parse a label such as "AB+" as stored in the database.
+     * @return the blood type, or null if the label is unknown
+     */
+    public static BloodType fromLabel(String label) {
+        if (label == null) {
+            return null;
+        }
+        switch (label) {
+            case "O-": return O_NEGATIVE;
+            case "O+": return O_POSITIVE;
+            case "A-": return A_NEGATIVE;
+            case "B-": return B_NEGATIVE;
+            case "A+": return A_POSITIVE;
+            case "B+": return B_POSITIVE;
+            case "AB-": return AB_NEGATIVE;
+            case "AB+": return AB_POSITIVE;
+            default: return null;
+        }
+    }
+
+    private static final class Antigen {
+        private static final int A = 1;
+        private static final int B = 2;
+        private static final int RH = 4;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo1.entity.enums;
+
+public enum BloodUnitStatus {
+    AVAILABLE,
+    ISSUED,
+    EXPIRED
+}
@@ -0,0 +1,9 @@
+package com.example.demo1.entity.enums;
+
+// entity.enums.DeferralCategory
+public enum DeferralCategory {
+    MEDICATION,    // tìm trong currentMedications
+    SURGERY,       // tìm trong surgeryDetails
+    TRAVEL_REGION, // tìm trong travelDetails
+    VACCINE        // tìm trong vaccinationDetails
+}
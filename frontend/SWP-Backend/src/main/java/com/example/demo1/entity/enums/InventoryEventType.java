@@ -0,0 +1,8 @@
+package com.example.demo1.entity.enums;
+
+public enum InventoryEventType {
+    CREDIT,     // hiến máu được xác nhận
+    DEBIT,      // yêu cầu nhận máu được xác nhận
+    ADJUSTMENT, // sửa số lượng bằng tay
+    WRITE_OFF   // túi máu hết hạn
+}
@@ -0,0 +1,6 @@
+package com.example.demo1.entity.enums;
+
+// entity.enums.NotificationChannel
+public enum NotificationChannel {
+    EMAIL
+}
@@ -0,0 +1,9 @@
+package com.example.demo1.entity.enums;
+
+// entity.enums.NotificationStatus
+public enum NotificationStatus {
+    PENDING, // chờ gửi (lần đầu hoặc chờ thử lại)
+    SENDING, // đang được một dispatcher gửi
+    SENT,
+    FAILED   // đã hết số lần thử
+}
@@ -4,5 +4,6 @@ package com.example.demo1.entity.enums;
 public enum RegistrationStatus {
     PENDING,
     CONFIRMED,
-    CANCELLED
+    CANCELLED,
+    WAITLISTED // Lịch đã đủ chỗ, tự động chuyển sang PENDING khi có người hủy
 }
@@ -0,0 +1,7 @@
+package com.example.demo1.entity.enums;
+
+// entity.enums.RuleSeverity
+public enum RuleSeverity {
+    ERROR,   // không đủ điều kiện hiến máu
+    WARNING  // vẫn được hiến nhưng cần lưu ý
+}
@@ -3,6 +3,9 @@ package com.example.demo1.repo;
 import com.example.demo1.entity.BloodInventory;
 import com.example.demo1.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -10,5 +13,17 @@ import java.util.Optional;
 public interface BloodInventoryRepository extends JpaRepository<BloodInventory, Long> {
     Optional<BloodInventory> findByBloodType(String bloodType);
     List<BloodInventory> findByUpdatedBy(User user);
-    List<BloodInventory> findAllByBloodType(String bloodType);
+    List<BloodInventory> findAllByBloodTypeOrderByIdAsc(String bloodType);
+
+    @Query("select b.bloodType from BloodInventory b group by b.bloodType having count(b) > 1")
+    List<String> findDuplicatedBloodTypes();
+
+    // Cộng/trừ trực tiếp trên DB để không bị mất cập nhật khi nhiều người xác nhận cùng lúc
+    @Modifying
+    @Query("update BloodInventory b set b.quantity = coalesce(b.quantity, 0) + :delta where b.bloodType = :bloodType")
+    int addQuantity(@Param("bloodType") String bloodType, @Param("delta") int delta);
+
+    @Modifying
+    @Query("update BloodInventory b set b.quantity = coalesce(b.quantity, 0) + :delta, b.updatedBy = :actor where b.bloodType = :bloodType")
+    int addQuantity(@Param("bloodType") String bloodType, @Param("delta") int delta, @Param("actor") User actor);
 }
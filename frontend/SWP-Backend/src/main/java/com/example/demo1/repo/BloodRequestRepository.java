@@ -1,10 +1,25 @@
 package com.example.demo1.repo;
 
 import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.enums.BloodRequestStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface BloodRequestRepository extends JpaRepository<BloodRequest, Long> {
     List<BloodRequest> findByMedicalCenterId(Long medicalCenterId);
+    List<BloodRequest> findByStatusIn(Collection<BloodRequestStatus> statuses);
+
+    /**
+     * Change the status only if it still is one of {@code from}, so a request
+     * cannot be confirmed (and debited) twice by concurrent callers.
+     * @return 1 if the status was changed
+     */
+    @Modifying
+    @Query("update BloodRequest r set r.status = :to where r.id = :id and r.status in :from")
+    int transition(@Param("id") Long id, @Param("from") Collection<BloodRequestStatus> from, @Param("to") BloodRequestStatus to);
 }
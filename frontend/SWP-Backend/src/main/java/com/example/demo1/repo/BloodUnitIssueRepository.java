@@ -0,0 +1,11 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.BloodUnitIssue;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface BloodUnitIssueRepository extends JpaRepository<BloodUnitIssue, Long> {
+    List<BloodUnitIssue> findByBloodRequestIdOrderByIdAsc(Long bloodRequestId);
+    List<BloodUnitIssue> findByUnitIdOrderByIdAsc(Long unitId);
+}
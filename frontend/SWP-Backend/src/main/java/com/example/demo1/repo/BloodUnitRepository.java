@@ -0,0 +1,12 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.BloodUnit;
+import com.example.demo1.entity.enums.BloodUnitStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface BloodUnitRepository extends JpaRepository<BloodUnit, Long> {
+    List<BloodUnit> findByStatus(BloodUnitStatus status);
+    List<BloodUnit> findByBloodTypeAndStatusOrderByExpiryDateAscIdAsc(String bloodType, BloodUnitStatus status);
+}
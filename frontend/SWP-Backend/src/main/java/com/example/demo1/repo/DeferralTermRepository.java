@@ -0,0 +1,7 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.DeferralTerm;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface DeferralTermRepository extends JpaRepository<DeferralTerm, Long> {
+}
@@ -4,18 +4,90 @@ package com.example.demo1.repo;
 import com.example.demo1.entity.DonationRegistration;
 import com.example.demo1.entity.User;
 import com.example.demo1.entity.enums.RegistrationStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
-public interface DonationRegistrationRepository extends JpaRepository<DonationRegistration, Long> {
+// Danh sách lọc/phân trang dùng Specification để chỉ sinh điều kiện của bộ lọc được truyền
+public interface DonationRegistrationRepository extends JpaRepository<DonationRegistration, Long>,
+        JpaSpecificationExecutor<DonationRegistration> {
     List<DonationRegistration> findByUser(User user);
     List<DonationRegistration> findByStatus(RegistrationStatus status);
 
     List<DonationRegistration> findByUserId(Long userId);
 
     List<DonationRegistration> findByUserIdAndStatus(Long userId, RegistrationStatus status);
+
+    // Lịch sử của một người, mới nhất trước (index user_id, registered_at)
+    List<DonationRegistration> findByUserIdOrderByRegisteredAtDescIdDesc(Long userId);
+    List<DonationRegistration> findByUserIdAndStatusOrderByRegisteredAtDescIdDesc(Long userId, RegistrationStatus status);
+    long countByUserIdAndStatus(Long userId, RegistrationStatus status);
     List<DonationRegistration> findByLocationId(Long locationId);
     List<DonationRegistration> findByLocation_Id(Long locationId);
 
+    // Số đơn đăng ký theo từng địa điểm: [locationId, count]
+    @Query("select r.location.id, count(r) from DonationRegistration r where r.location is not null group by r.location.id")
+    List<Object[]> countByLocation();
+
+    // Đơn cũ chưa gắn lịch, đếm theo địa điểm: [locationId, count]
+    @Query("select r.location.id, count(r) from DonationRegistration r " +
+            "where r.location is not null and r.schedule is null group by r.location.id")
+    List<Object[]> countUnscheduledByLocation();
+
+    // Số đơn đăng ký theo từng lịch: [scheduleId, count]
+    @Query("select r.schedule.id, count(r) from DonationRegistration r where r.schedule is not null group by r.schedule.id")
+    List<Object[]> countBySchedule();
+
+    @Query("select r.schedule.id, count(r) from DonationRegistration r where r.schedule.id in :scheduleIds group by r.schedule.id")
+    List<Object[]> countByScheduleIds(@Param("scheduleIds") Collection<Long> scheduleIds);
+
+    // Người đăng ký của một lịch, dùng index (schedule_id, status)
+    @Query("select r from DonationRegistration r join fetch r.user where r.schedule.id = :scheduleId order by r.registeredAt, r.id")
+    List<DonationRegistration> findByScheduleIdWithUser(@Param("scheduleId") Long scheduleId);
+
+    // Người chờ lâu nhất của một lịch
+    @Query("select r from DonationRegistration r where r.schedule.id = :scheduleId and r.status = :status " +
+            "order by r.registeredAt, r.id")
+    List<DonationRegistration> findByScheduleIdAndStatus(@Param("scheduleId") Long scheduleId,
+                                                         @Param("status") RegistrationStatus status,
+                                                         Pageable pageable);
+
+    /**
+     * Registrations in the given statuses with id above {@code afterId}, with everything screening reads.
+     */
+    @Query("select r from DonationRegistration r join fetch r.user left join fetch r.location " +
+            "left join fetch r.schedule s left join fetch s.location " +
+            "where r.status in :statuses and r.id > :afterId order by r.id")
+    List<DonationRegistration> findScreeningPage(@Param("statuses") Collection<RegistrationStatus> statuses,
+                                                 @Param("afterId") Long afterId,
+                                                 Pageable pageable);
+
+    long countByStatusIn(Collection<RegistrationStatus> statuses);
+
+    /**
+     * Change the status only if it still is {@code from}, so two concurrent
+     * cancellations (or promotions) of the same registration cannot both win.
+     * @return 1 if the status was changed
+     */
+    @Modifying
+    @Query("update DonationRegistration r set r.status = :to where r.id = :id and r.status = :from")
+    int transition(@Param("id") Long id, @Param("from") RegistrationStatus from, @Param("to") RegistrationStatus to);
+
+    @Modifying
+    @Query("update DonationRegistration r set r.status = com.example.demo1.entity.enums.RegistrationStatus.CANCELLED " +
+            "where r.schedule.id = :scheduleId and r.status = com.example.demo1.entity.enums.RegistrationStatus.WAITLISTED")
+    int cancelWaitlisted(@Param("scheduleId") Long scheduleId);
+
+    // Gỡ các đơn khỏi lịch trước khi xóa lịch
+    @Modifying
+    @Query("update DonationRegistration r set r.schedule = null where r.schedule.id = :scheduleId")
+    int detachSchedule(@Param("scheduleId") Long scheduleId);
+
 }
\ No newline at end of file
@@ -1,8 +1,81 @@
 package com.example.demo1.repo;
 
 import com.example.demo1.entity.DonationSchedule;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.List;
 
 public interface DonationScheduleRepository extends JpaRepository<DonationSchedule, Long> {
+
+    // Lấy lịch kèm địa điểm trong một truy vấn
+    @Query("select s from DonationSchedule s left join fetch s.location")
+    List<DonationSchedule> findAllWithLocation();
+
+    /**
+     * Schedules in [from, to] after the keyset cursor (afterDate, afterId), ordered by date then id.
+     * Uses the (date, location_id) index and only reads the requested page.
+     */
+    @Query("select s from DonationSchedule s left join fetch s.location " +
+            "where s.date between :from and :to " +
+            "and (s.date > :afterDate or (s.date = :afterDate and s.id > :afterId)) " +
+            "order by s.date, s.id")
+    List<DonationSchedule> findCalendarPage(@Param("from") LocalDate from,
+                                            @Param("to") LocalDate to,
+                                            @Param("afterDate") LocalDate afterDate,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+
+    // Như findCalendarPage nhưng chỉ một địa điểm; truy vấn riêng để mỗi dạng lọc có kế hoạch thực thi riêng
+    @Query("select s from DonationSchedule s left join fetch s.location " +
+            "where s.date between :from and :to and s.location.id = :locationId " +
+            "and (s.date > :afterDate or (s.date = :afterDate and s.id > :afterId)) " +
+            "order by s.date, s.id")
+    List<DonationSchedule> findCalendarPageAtLocation(@Param("from") LocalDate from,
+                                                      @Param("to") LocalDate to,
+                                                      @Param("locationId") Long locationId,
+                                                      @Param("afterDate") LocalDate afterDate,
+                                                      @Param("afterId") Long afterId,
+                                                      Pageable pageable);
+
+    // Mỗi ngày: [date, số lịch, tổng sức chứa, số lịch không giới hạn, tổng đã đặt]
+    @Query("select s.date, count(s), sum(coalesce(s.capacity, 0)), " +
+            "sum(case when s.capacity is null then 1 else 0 end), sum(coalesce(s.bookedCount, 0)) " +
+            "from DonationSchedule s " +
+            "where s.date between :from and :to " +
+            "group by s.date order by s.date")
+    List<Object[]> summarizeByDay(@Param("from") LocalDate from,
+                                  @Param("to") LocalDate to);
+
+    // Như summarizeByDay nhưng chỉ một địa điểm
+    @Query("select s.date, count(s), sum(coalesce(s.capacity, 0)), " +
+            "sum(case when s.capacity is null then 1 else 0 end), sum(coalesce(s.bookedCount, 0)) " +
+            "from DonationSchedule s " +
+            "where s.date between :from and :to and s.location.id = :locationId " +
+            "group by s.date order by s.date")
+    List<Object[]> summarizeByDayAtLocation(@Param("from") LocalDate from,
+                                            @Param("to") LocalDate to,
+                                            @Param("locationId") Long locationId);
+
+    /**
+     * Take one slot of a schedule. The capacity check and the increment are a
+     * single UPDATE, so concurrent registrations can never overbook.
+     * @return 1 if a slot was taken, 0 if the schedule is full (or does not exist)
+     */
+    @Modifying
+    @Query("update DonationSchedule s set s.bookedCount = coalesce(s.bookedCount, 0) + 1 " +
+            "where s.id = :id and (s.capacity is null or coalesce(s.bookedCount, 0) < s.capacity)")
+    int tryBook(@Param("id") Long id);
+
+    /**
+     * Give one slot back.
+     * @return 1 if a slot was released
+     */
+    @Modifying
+    @Query("update DonationSchedule s set s.bookedCount = s.bookedCount - 1 where s.id = :id and s.bookedCount > 0")
+    int release(@Param("id") Long id);
 }
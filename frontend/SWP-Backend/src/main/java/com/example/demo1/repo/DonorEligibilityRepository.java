@@ -0,0 +1,43 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.DonorEligibility;
+import com.example.demo1.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface DonorEligibilityRepository extends JpaRepository<DonorEligibility, Long> {
+
+    // Người hiến đủ điều kiện vào ngày :date, theo (nextEligibleDate, userId) để phân trang bằng con trỏ
+    @Query("select e from DonorEligibility e " +
+            "where e.nextEligibleDate <= :date and e.bloodType in :bloodTypes " +
+            "and (e.nextEligibleDate > :afterDate or (e.nextEligibleDate = :afterDate and e.userId > :afterId)) " +
+            "order by e.nextEligibleDate, e.userId")
+    List<DonorEligibility> findEligiblePage(@Param("date") LocalDate date,
+                                            @Param("bloodTypes") Collection<String> bloodTypes,
+                                            @Param("afterDate") LocalDate afterDate,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+
+    @Query("select e from DonorEligibility e " +
+            "where e.nextEligibleDate <= :date " +
+            "and (e.nextEligibleDate > :afterDate or (e.nextEligibleDate = :afterDate and e.userId > :afterId)) " +
+            "order by e.nextEligibleDate, e.userId")
+    List<DonorEligibility> findEligiblePageAnyType(@Param("date") LocalDate date,
+                                                   @Param("afterDate") LocalDate afterDate,
+                                                   @Param("afterId") Long afterId,
+                                                   Pageable pageable);
+
+    // Người hiến chưa có dòng chỉ mục (lần đầu chạy hoặc tài khoản tạo ngoài các API)
+    @Query("select u from User u where u.role = com.example.demo1.entity.enums.Role.DONOR and u.id > :afterId " +
+            "and not exists (select 1 from DonorEligibility e where e.userId = u.id) order by u.id")
+    List<User> findDonorsWithoutEntry(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select u from User u where u.role = com.example.demo1.entity.enums.Role.DONOR and u.id > :afterId order by u.id")
+    List<User> findDonorsAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
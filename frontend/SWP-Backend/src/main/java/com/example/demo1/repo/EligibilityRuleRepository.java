@@ -0,0 +1,7 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.EligibilityRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EligibilityRuleRepository extends JpaRepository<EligibilityRule, Long> {
+}
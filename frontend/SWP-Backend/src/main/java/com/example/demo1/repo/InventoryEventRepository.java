@@ -0,0 +1,45 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.InventoryEvent;
+import com.example.demo1.entity.enums.InventoryEventType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface InventoryEventRepository extends JpaRepository<InventoryEvent, Long> {
+    List<InventoryEvent> findByOrderByIdDesc(Pageable pageable);
+    List<InventoryEvent> findByBloodTypeOrderByIdDesc(String bloodType, Pageable pageable);
+
+    @Query("select coalesce(max(e.id), 0) from InventoryEvent e")
+    long findMaxId();
+
+    // Tổng thay đổi của một nhóm máu trong khoảng (afterId, upToId]
+    @Query("select coalesce(sum(e.delta), 0) from InventoryEvent e " +
+            "where e.bloodType = :bloodType and e.id > :afterId and e.id <= :upToId")
+    long sumDelta(@Param("bloodType") String bloodType, @Param("afterId") long afterId, @Param("upToId") long upToId);
+
+    // Tổng thay đổi sau một snapshot, tính đến thời điểm :until.
+    // Khoảng [from, until] giới hạn số dòng đọc qua index (blood_type, occurred_at)
+    @Query("select coalesce(sum(e.delta), 0) from InventoryEvent e " +
+            "where e.bloodType = :bloodType and e.occurredAt >= :from and e.occurredAt <= :until and e.id > :afterId")
+    long sumDeltaBetween(@Param("bloodType") String bloodType, @Param("afterId") long afterId,
+                         @Param("from") LocalDateTime from, @Param("until") LocalDateTime until);
+
+    @Query("select coalesce(max(e.id), 0) from InventoryEvent e where e.bloodType = :bloodType")
+    long findMaxIdByBloodType(@Param("bloodType") String bloodType);
+
+    // Tổng nhập/xuất theo ngày của mỗi nhóm máu từ thời điểm :from, theo thứ tự ngày
+    @Query("select e.bloodType, e.eventType, cast(e.occurredAt as LocalDate), sum(e.delta) from InventoryEvent e " +
+            "where e.occurredAt >= :from and e.eventType in :types " +
+            "group by e.bloodType, e.eventType, cast(e.occurredAt as LocalDate) " +
+            "order by cast(e.occurredAt as LocalDate)")
+    List<Object[]> sumDailyDeltas(@Param("from") LocalDateTime from, @Param("types") Collection<InventoryEventType> types);
+
+    @Query("select distinct e.bloodType from InventoryEvent e")
+    List<String> findBloodTypes();
+}
@@ -0,0 +1,22 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.InventorySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface InventorySnapshotRepository extends JpaRepository<InventorySnapshot, Long> {
+    Optional<InventorySnapshot> findTopByBloodTypeOrderByLastEventIdDesc(String bloodType);
+
+    // Snapshot gần nhất của mỗi nhóm máu tính đến thời điểm :at
+    @Query("select s from InventorySnapshot s where s.id = (select max(s2.id) from InventorySnapshot s2 " +
+            "where s2.bloodType = s.bloodType and s2.takenAt <= :at)")
+    List<InventorySnapshot> findLatestPerBloodTypeAt(@Param("at") LocalDateTime at);
+
+    @Query("select distinct s.bloodType from InventorySnapshot s")
+    List<String> findBloodTypes();
+}
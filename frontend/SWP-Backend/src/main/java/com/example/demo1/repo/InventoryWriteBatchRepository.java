@@ -0,0 +1,7 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.InventoryWriteBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface InventoryWriteBatchRepository extends JpaRepository<InventoryWriteBatch, String> {
+}
@@ -0,0 +1,58 @@
+package com.example.demo1.repo;
+
+import com.example.demo1.entity.Notification;
+import com.example.demo1.entity.enums.NotificationStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    // Tin đến hạn gửi, cũ nhất trước; dùng index (status, next_attempt_at)
+    @Query("select n.id from Notification n where n.status = com.example.demo1.entity.enums.NotificationStatus.PENDING " +
+            "and n.nextAttemptAt <= :now order by n.nextAttemptAt, n.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Nhận tin để gửi; dòng đã bị dispatcher khác nhận sẽ không đổi
+    @Modifying
+    @Transactional
+    @Query("update Notification n set n.status = com.example.demo1.entity.enums.NotificationStatus.SENDING, " +
+            "n.claimToken = :token, n.claimedAt = :now " +
+            "where n.id in :ids and n.status = com.example.demo1.entity.enums.NotificationStatus.PENDING")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("now") LocalDateTime now);
+
+    List<Notification> findByClaimToken(String claimToken);
+
+    // Ghi kết quả gửi; chỉ đổi dòng còn giữ token của lần nhận này (dòng đã bị trả lại và nhận lại thì giữ nguyên)
+    @Modifying
+    @Transactional
+    @Query("update Notification n set n.status = :status, n.attempts = :attempts, n.nextAttemptAt = :nextAttemptAt, " +
+            "n.sentAt = :sentAt, n.lastError = :lastError, n.claimToken = null " +
+            "where n.id = :id and n.claimToken = :token")
+    int complete(@Param("id") Long id, @Param("token") String token, @Param("status") NotificationStatus status,
+                 @Param("attempts") int attempts, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                 @Param("sentAt") LocalDateTime sentAt, @Param("lastError") String lastError);
+
+    // Tin bị kẹt ở SENDING (dispatcher dừng giữa chừng) được trả về hàng đợi
+    @Modifying
+    @Transactional
+    @Query("update Notification n set n.status = com.example.demo1.entity.enums.NotificationStatus.PENDING, n.claimToken = null " +
+            "where n.status = com.example.demo1.entity.enums.NotificationStatus.SENDING and n.claimedAt < :before")
+    int releaseStale(@Param("before") LocalDateTime before);
+
+    @Query("select n.status, count(n) from Notification n group by n.status")
+    List<Object[]> countByStatus();
+
+    List<Notification> findByStatusOrderByIdDesc(NotificationStatus status, Pageable pageable);
+
+    List<Notification> findAllByOrderByIdDesc(Pageable pageable);
+
+    List<Notification> findByRecipientOrderByIdDesc(String recipient, Pageable pageable);
+}
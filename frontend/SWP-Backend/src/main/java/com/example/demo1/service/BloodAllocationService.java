@@ -0,0 +1,20 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.AllocationPlan;
+import com.example.demo1.entity.User;
+
+public interface BloodAllocationService {
+
+    /**
+     * Compute a global assignment of the current inventory to all open blood requests
+     * (PENDING, WAITING, PRIORITY) without changing anything
+     */
+    AllocationPlan preview();
+
+    /**
+     * Compute the assignment and apply it: debit the inventory and confirm the allocated requests.
+     * Commits run one at a time; planned requests closed elsewhere meanwhile are listed as skipped
+     * @param actor user recorded as last inventory updater, may be null
+     */
+    AllocationPlan commit(User actor);
+}
@@ -1,6 +1,7 @@
 package com.example.demo1.service;
 
 import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.entity.enums.BloodType;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +21,14 @@ public interface BloodCompatibilityService {
      * @return Map of compatible blood types with their available quantities
      */
     Map<String, Integer> findAvailableCompatibleBlood(String requestedBloodType, List<BloodInventory> inventory);
+
+    /**
+     * Find available compatible blood types from a quantity vector
+     * @param requestedBloodType The blood type requested
+     * @param quantities Available quantity per blood type, indexed by {@link BloodType#ordinal()}
+     * @return Map of compatible blood types with their available quantities, in priority order
+     */
+    Map<String, Integer> findAvailableCompatibleBlood(String requestedBloodType, int[] quantities);
     
     /**
      * Check if a blood type is compatible with another
@@ -28,4 +37,20 @@ public interface BloodCompatibilityService {
      * @return true if compatible, false otherwise
      */
     boolean isCompatible(String recipientBloodType, String donorBloodType);
-} 
\ No newline at end of file
+
+    /**
+     * Check if a blood type is compatible with another (one bitwise AND)
+     * @param recipient The recipient's blood type
+     * @param donor The donor's blood type
+     * @return true if compatible, false otherwise
+     */
+    boolean isCompatible(BloodType recipient, BloodType donor);
+
+    /**
+     * Find compatible blood types that are in stock, without allocating
+     * @param recipient The blood type requested
+     * @param quantities Available quantity per blood type, indexed by {@link BloodType#ordinal()}
+     * @return Bitmask of compatible blood types with a positive quantity
+     */
+    int findAvailableCompatibleMask(BloodType recipient, int[] quantities);
+}
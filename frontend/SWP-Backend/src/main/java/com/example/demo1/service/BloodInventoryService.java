@@ -1,6 +1,7 @@
 package com.example.demo1.service;
 
 import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.entity.User;
 import com.example.demo1.dto.BloodCompatibilityResponse;
 
 import java.util.List;
@@ -11,4 +12,40 @@ public interface BloodInventoryService {
     Optional<BloodInventory> findByBloodType(String bloodType);
     BloodInventory save(BloodInventory inventory);
     BloodCompatibilityResponse checkBloodAvailabilityWithCompatibility(String bloodType, int requestedAmount);
+
+    /**
+     * Atomically add units to the stock of a blood type (e.g. confirmed donation)
+     * @param actor user recorded as last updater, may be null
+     */
+    void credit(String bloodType, int amount, User actor);
+
+    /**
+     * Atomically remove units from the stock of a blood type (e.g. confirmed blood request)
+     * @param actor user recorded as last updater, may be null
+     * @return false if the stock is not sufficient, nothing is changed in that case
+     */
+    boolean debit(String bloodType, int amount, User actor);
+
+    /**
+     * Remove units for a blood request, consuming the request's reservation if it has one
+     * @return false if the stock is not sufficient, nothing is changed in that case
+     */
+    boolean debitForRequest(Long requestId, String bloodType, int amount, User actor);
+
+    /**
+     * Check whether an inventory entry exists for a blood type
+     */
+    boolean hasBloodType(String bloodType);
+
+    /**
+     * Units of a blood type that can still be issued
+     */
+    int getAvailableQuantity(String bloodType);
+
+    /**
+     * Overwrite the quantity of an inventory entry (manual correction)
+     */
+    Optional<BloodInventory> updateQuantity(Long id, int quantity, User actor);
+
+    boolean deleteById(Long id);
 }
@@ -0,0 +1,127 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.enums.BloodRequestStatus;
+import com.example.demo1.entity.enums.BloodUrgencyLevel;
+import com.example.demo1.repo.BloodRequestRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory priority queue of open blood requests (PENDING, WAITING, PRIORITY).
+ *
+ * Order: urgency level (CRITICAL first), then requests marked PRIORITY, then the
+ * oldest request first. Reading the head of the queue does not touch the
+ * database; the queue is updated by {@link BloodRequestService} whenever a
+ * request is saved or deleted.
+ */
+@Component
+public class BloodRequestQueue {
+
+    public static final List<BloodRequestStatus> OPEN_STATUSES =
+            List.of(BloodRequestStatus.PENDING, BloodRequestStatus.WAITING, BloodRequestStatus.PRIORITY);
+
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator
+            .comparingInt((Entry e) -> -e.urgencyRank)
+            .thenComparingInt(e -> e.priority ? 0 : 1)
+            .thenComparing(e -> e.requestDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(e -> e.id);
+
+    @Autowired
+    private BloodRequestRepository bloodRequestRepository;
+
+    private final NavigableSet<Entry> queue = new ConcurrentSkipListSet<>(ENTRY_ORDER);
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void reload() {
+        queue.clear();
+        entries.clear();
+        bloodRequestRepository.findByStatusIn(OPEN_STATUSES).forEach(this::sync);
+    }
+
+    /**
+     * Put the request in the queue if it is open, remove it otherwise.
+     */
+    public synchronized void sync(BloodRequest request) {
+        if (request.getId() == null) {
+            return;
+        }
+        Entry previous = entries.remove(request.getId());
+        if (previous != null) {
+            queue.remove(previous);
+        }
+        if (request.getStatus() != null && OPEN_STATUSES.contains(request.getStatus())) {
+            Entry entry = new Entry(request);
+            entries.put(entry.id, entry);
+            queue.add(entry);
+        }
+    }
+
+    public synchronized void remove(Long requestId) {
+        Entry previous = entries.remove(requestId);
+        if (previous != null) {
+            queue.remove(previous);
+        }
+    }
+
+    /**
+     * The {@code limit} open requests to handle first.
+     */
+    public List<BloodRequest> next(int limit) {
+        List<BloodRequest> result = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Entry entry : queue) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(entry.request);
+        }
+        return result;
+    }
+
+    /**
+     * All open requests, in handling order.
+     */
+    public List<BloodRequest> snapshot() {
+        List<BloodRequest> result = new ArrayList<>(entries.size());
+        for (Entry entry : queue) {
+            result.add(entry.request);
+        }
+        return result;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    static int urgencyRank(BloodUrgencyLevel level) {
+        return level != null ? level.ordinal() : BloodUrgencyLevel.LOW.ordinal();
+    }
+
+    // Sort keys are copied so later changes to the entity cannot break the ordering
+    private static final class Entry {
+        private final long id;
+        private final int urgencyRank;
+        private final boolean priority;
+        private final LocalDate requestDate;
+        private final BloodRequest request;
+
+        private Entry(BloodRequest request) {
+            this.id = request.getId();
+            this.urgencyRank = urgencyRank(request.getUrgencyLevel());
+            this.priority = request.getStatus() == BloodRequestStatus.PRIORITY;
+            this.requestDate = request.getRequestDate();
+            this.request = request;
+        }
+    }
+}
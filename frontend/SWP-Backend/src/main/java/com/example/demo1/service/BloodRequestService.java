@@ -0,0 +1,47 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.User;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BloodRequestService {
+
+    /**
+     * Save a blood request and keep the open request queue in sync
+     */
+    BloodRequest save(BloodRequest request);
+
+    /**
+     * Confirm an open request and debit its units (using its hold if it has one)
+     * in one transaction.
+     * @param bloodType blood type to issue, the recipient's type if null
+     * @return empty if the request does not exist
+     * @throws IllegalStateException if the request is not open, was confirmed
+     *         concurrently, or there is not enough stock
+     */
+    Optional<BloodRequest> confirm(Long id, String bloodType, User actor);
+
+    /**
+     * Move a loaded request from an open status to CONFIRM with a conditional
+     * update. Must run inside the transaction that debits its units.
+     * @return false if the request is no longer open, nothing is changed in that case
+     */
+    boolean markConfirmed(BloodRequest request);
+
+    /**
+     * @return false if the request does not exist
+     */
+    boolean deleteById(Long id);
+
+    /**
+     * The next open requests to handle, most urgent first
+     */
+    List<BloodRequest> next(int limit);
+
+    /**
+     * All open requests (PENDING, WAITING, PRIORITY), most urgent first
+     */
+    List<BloodRequest> getOpenRequests();
+}
@@ -0,0 +1,176 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodUnit;
+import com.example.demo1.entity.enums.BloodType;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * In-memory first-expired-first-out index of available blood bags, one sorted
+ * set per blood type ordered by expiry date (then id).
+ *
+ * Adding a bag is O(log n). Issuing takes bags from the head of the set, so it
+ * costs O(log n) per bag used; an expiry sweep only removes the expired head of
+ * each set. Each blood type has its own lock, like the cells of {@link InventoryLedger}.
+ */
+@Component
+public class BloodUnitIndex {
+
+    private static final Comparator<Entry> FEFO = Comparator
+            .comparing((Entry e) -> e.expiryDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(e -> e.unitId);
+
+    @SuppressWarnings("unchecked")
+    private final TreeSet<Entry>[] units = new TreeSet[BloodType.COUNT];
+
+    public BloodUnitIndex() {
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            units[i] = new TreeSet<>(FEFO);
+        }
+    }
+
+    public void clear() {
+        for (TreeSet<Entry> set : units) {
+            synchronized (set) {
+                set.clear();
+            }
+        }
+    }
+
+    public void add(BloodUnit unit) {
+        TreeSet<Entry> set = setFor(unit.getBloodType());
+        if (set == null || unit.getId() == null || unit.getRemaining() == null || unit.getRemaining() <= 0) {
+            return;
+        }
+        synchronized (set) {
+            set.add(new Entry(unit.getId(), unit.getBloodType(), unit.getExpiryDate(), unit.getRemaining()));
+        }
+    }
+
+    /**
+     * Take up to {@code amount} from the bags expiring first. Bags that expired
+     * before {@code today} are never issued.
+     * @return what was taken from each bag, in FEFO order
+     */
+    public List<Take> take(String bloodType, int amount, LocalDate today) {
+        List<Take> taken = new ArrayList<>();
+        TreeSet<Entry> set = setFor(bloodType);
+        if (set == null || amount <= 0) {
+            return taken;
+        }
+        synchronized (set) {
+            Iterator<Entry> it = set.iterator();
+            while (amount > 0 && it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.expiryDate != null && entry.expiryDate.isBefore(today)) {
+                    continue; // left for the expiry sweep
+                }
+                int used = Math.min(amount, entry.remaining);
+                entry.remaining -= used;
+                amount -= used;
+                taken.add(new Take(entry.unitId, bloodType, entry.expiryDate, used, entry.remaining));
+                if (entry.remaining == 0) {
+                    it.remove();
+                }
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Put back what {@link #take} removed (the surrounding transaction rolled back).
+     */
+    public void restore(List<Take> taken) {
+        for (Take take : taken) {
+            TreeSet<Entry> set = setFor(take.bloodType);
+            if (set == null) {
+                continue;
+            }
+            synchronized (set) {
+                Entry probe = new Entry(take.unitId, take.bloodType, take.expiryDate, 0);
+                Entry existing = set.ceiling(probe);
+                if (existing != null && existing.unitId == take.unitId) {
+                    existing.remaining += take.amount;
+                } else {
+                    set.add(new Entry(take.unitId, take.bloodType, take.expiryDate, take.amount));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove every bag whose expiry date is before {@code today}.
+     * @return the removed bags with their remaining amount
+     */
+    public List<Take> pollExpired(LocalDate today) {
+        List<Take> expired = new ArrayList<>();
+        for (TreeSet<Entry> set : units) {
+            synchronized (set) {
+                while (!set.isEmpty()) {
+                    Entry head = set.first();
+                    if (head.expiryDate == null || !head.expiryDate.isBefore(today)) {
+                        break;
+                    }
+                    set.pollFirst();
+                    expired.add(new Take(head.unitId, head.bloodType, head.expiryDate, head.remaining, 0));
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Amount per blood type in bags that expire on or before {@code date}.
+     * Only the head of each set up to {@code date} is visited.
+     */
+    public Map<String, Integer> expiringBy(LocalDate date) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            int total = 0;
+            TreeSet<Entry> set = units[i];
+            synchronized (set) {
+                for (Entry entry : set) {
+                    if (entry.expiryDate == null || entry.expiryDate.isAfter(date)) {
+                        break;
+                    }
+                    total += entry.remaining;
+                }
+            }
+            result.put(BloodType.byOrdinal(i).getLabel(), total);
+        }
+        return result;
+    }
+
+    private TreeSet<Entry> setFor(String bloodType) {
+        BloodType type = BloodType.fromLabel(bloodType);
+        return type != null ? units[type.ordinal()] : null;
+    }
+
+    /**
+     * Amount taken from (or expired in) one bag.
+     */
+    public record Take(long unitId, String bloodType, LocalDate expiryDate, int amount, int remainingAfter) {
+    }
+
+    private static final class Entry {
+        private final long unitId;
+        private final String bloodType;
+        private final LocalDate expiryDate;
+        private int remaining;
+
+        private Entry(long unitId, String bloodType, LocalDate expiryDate, int remaining) {
+            this.unitId = unitId;
+            this.bloodType = bloodType;
+            this.expiryDate = expiryDate;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodUnit;
+import com.example.demo1.entity.BloodUnitIssue;
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.User;
+
+import java.util.List;
+import java.util.Map;
+
+public interface BloodUnitService {
+
+    /**
+     * Register the bag collected from a confirmed donation and add it to the stock
+     * @param actor user recorded as last updater of the inventory, may be null
+     */
+    BloodUnit receive(DonationRegistration registration, User actor);
+
+    /**
+     * Mark bags as issued for a blood request, nearest expiry first.
+     * The aggregate quantity must already have been debited.
+     */
+    void issue(Long requestId, String bloodType, int amount);
+
+    /**
+     * Bags (or parts of bags) issued to a blood request, in issue order
+     */
+    List<BloodUnitIssue> getIssues(Long requestId);
+
+    /**
+     * Mark expired bags and remove them from the stock
+     * @return number of bags expired
+     */
+    int sweepExpired();
+
+    /**
+     * Available bags of a blood type, nearest expiry first
+     */
+    List<BloodUnit> getAvailableUnits(String bloodType);
+
+    /**
+     * Amount per blood type that expires within the given number of days
+     */
+    Map<String, Integer> getExpiring(int days);
+}
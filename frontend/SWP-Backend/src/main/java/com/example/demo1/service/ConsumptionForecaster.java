@@ -0,0 +1,167 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.SupplyForecast;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
+import com.example.demo1.entity.enums.InventoryEventType;
+import com.example.demo1.repo.InventoryEventRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Daily consumption (confirmed blood requests) and donation inflow (confirmed
+ * registrations) per blood type, smoothed with an exponentially weighted moving
+ * average.
+ *
+ * Each inventory change only adds to today's totals; when the day changes, the
+ * finished day is folded into the averages and the days without any change are
+ * applied at once as (1 - alpha)^gap. Both are O(1), the history is never
+ * re-read. The series are seeded once at startup from the last
+ * {@code seed-days} days of the inventory event log.
+ */
+@Component
+public class ConsumptionForecaster implements InventoryChangeListener {
+
+    private static final List<InventoryEventType> TRACKED = List.of(InventoryEventType.CREDIT, InventoryEventType.DEBIT);
+
+    @Autowired
+    private InventoryEventRepository inventoryEventRepository;
+
+    @Value("${inventory.forecast.alpha:0.3}")
+    private double alpha;
+
+    @Value("${inventory.forecast.seed-days:90}")
+    private int seedDays;
+
+    private final Series[] series = new Series[BloodType.COUNT];
+
+    public ConsumptionForecaster() {
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            series[i] = new Series();
+        }
+    }
+
+    @PostConstruct
+    public void seed() {
+        LocalDateTime from = LocalDate.now().minusDays(seedDays).atStartOfDay();
+        for (Object[] row : inventoryEventRepository.sumDailyDeltas(from, TRACKED)) {
+            add((String) row[0], (InventoryEventType) row[1], ((Number) row[3]).intValue(), (LocalDate) row[2]);
+        }
+    }
+
+    @Override
+    public void onLoaded(String bloodType, int level) {
+        Series s = seriesFor(bloodType);
+        if (s != null) {
+            synchronized (s) {
+                s.level = level;
+            }
+        }
+    }
+
+    @Override
+    public void onCommitted(InventoryEventType type, String bloodType, int delta, int level, User actor) {
+        Series s = seriesFor(bloodType);
+        if (s != null) {
+            synchronized (s) {
+                s.level = level;
+            }
+        }
+        if (TRACKED.contains(type)) {
+            add(bloodType, type, delta, LocalDate.now());
+        }
+    }
+
+    /**
+     * Projected days of supply for every blood type, as of today.
+     */
+    public List<SupplyForecast> forecast() {
+        LocalDate today = LocalDate.now();
+        List<SupplyForecast> result = new ArrayList<>();
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            Series s = series[i];
+            double consumption;
+            double donation;
+            int level;
+            synchronized (s) {
+                // Các ngày đã qua nhưng chưa được gộp (không có thay đổi nào) tính là 0
+                double decay = s.day != null && today.isAfter(s.day)
+                        ? Math.pow(1 - alpha, ChronoUnit.DAYS.between(s.day, today) - 1)
+                        : 1;
+                boolean finished = s.day != null && today.isAfter(s.day);
+                consumption = (finished ? smooth(s.consumptionRate, s.consumed, s.started) : s.consumptionRate) * decay;
+                donation = (finished ? smooth(s.donationRate, s.donated, s.started) : s.donationRate) * decay;
+                level = s.level;
+            }
+            Double days = consumption > 0 ? level / consumption : null;
+            Double netDays = consumption > donation ? level / (consumption - donation) : null;
+            result.add(new SupplyForecast(BloodType.byOrdinal(i).getLabel(), level, consumption, donation, days, netDays));
+        }
+        return result;
+    }
+
+    private void add(String bloodType, InventoryEventType type, int delta, LocalDate day) {
+        Series s = seriesFor(bloodType);
+        if (s == null) {
+            return;
+        }
+        synchronized (s) {
+            roll(s, day);
+            if (type == InventoryEventType.DEBIT) {
+                s.consumed += -delta;
+            } else {
+                s.donated += delta;
+            }
+        }
+    }
+
+    // Gộp ngày đang mở vào trung bình khi sang ngày mới
+    private void roll(Series s, LocalDate day) {
+        if (s.day == null) {
+            s.day = day;
+            return;
+        }
+        if (!day.isAfter(s.day)) {
+            return;
+        }
+        s.consumptionRate = smooth(s.consumptionRate, s.consumed, s.started);
+        s.donationRate = smooth(s.donationRate, s.donated, s.started);
+        s.started = true;
+        long gap = ChronoUnit.DAYS.between(s.day, day) - 1;
+        if (gap > 0) {
+            double decay = Math.pow(1 - alpha, gap);
+            s.consumptionRate *= decay;
+            s.donationRate *= decay;
+        }
+        s.day = day;
+        s.consumed = 0;
+        s.donated = 0;
+    }
+
+    private double smooth(double rate, int value, boolean started) {
+        return started ? alpha * value + (1 - alpha) * rate : value;
+    }
+
+    private Series seriesFor(String bloodType) {
+        BloodType type = BloodType.fromLabel(bloodType);
+        return type != null ? series[type.ordinal()] : null;
+    }
+
+    private static final class Series {
+        private LocalDate day;      // ngày đang cộng dồn
+        private int consumed;
+        private int donated;
+        private boolean started;    // đã có ít nhất một ngày được gộp
+        private double consumptionRate;
+        private double donationRate;
+        private int level;
+    }
+}
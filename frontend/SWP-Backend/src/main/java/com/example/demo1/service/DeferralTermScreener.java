@@ -0,0 +1,230 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.DeferralTerm;
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.enums.DeferralCategory;
+import com.example.demo1.entity.enums.RuleSeverity;
+import com.example.demo1.repo.DeferralTermRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Screens the free-text fields of a registration (medications, surgery,
+ * travel, vaccination) against the deferral_terms table.
+ *
+ * Enabled terms are compiled into {@link TermAutomaton}s per category and
+ * swapped in a single volatile write on reload, so a scan of a whole
+ * registration is a few passes over short strings with no database access.
+ *
+ * Terms are matched without accents ("sot ret" finds "sốt rét"), except a
+ * single accented word: "dại" or "sởi" without accents would also find "dài",
+ * "Đại học" or "nội soi", so those only match the text as written.
+ */
+@Component
+public class DeferralTermScreener {
+
+    @Autowired
+    private DeferralTermRepository termRepository;
+
+    // Bắt đầu với danh sách mặc định cho tới khi đọc được từ DB
+    private volatile Compiled compiled = Compiled.of(defaultTerms());
+
+    /**
+     * Add one violation per distinct term found to the result.
+     */
+    void screen(DonationRegistration registration, DonationEligibilityService.EligibilityResult result) {
+        Compiled current = compiled;
+        for (Map.Entry<DeferralCategory, Matcher> entry : current.byCategory.entrySet()) {
+            String text = textOf(registration, entry.getKey());
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            Matcher matcher = entry.getValue();
+            TermAutomaton.MatchSink sink = index -> {
+                DeferralTerm term = matcher.terms[index];
+                result.add(term.getSeverity(), DonationEligibilityService.Violation.forTerm(
+                        entry.getKey().name(), term.getMessage(), term.getTerm()));
+            };
+            matcher.folded.scan(text, sink);
+            if (matcher.accented != null) {
+                matcher.accented.scan(text, sink);
+            }
+        }
+    }
+
+    private static String textOf(DonationRegistration registration, DeferralCategory category) {
+        return switch (category) {
+            case MEDICATION -> registration.getCurrentMedications();
+            case SURGERY -> registration.getSurgeryDetails();
+            case TRAVEL_REGION -> registration.getTravelDetails();
+            case VACCINE -> registration.getVaccinationDetails();
+        };
+    }
+
+    /**
+     * Seed the table with the default terms on first start, then load it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (termRepository.count() == 0) {
+            termRepository.saveAll(defaultTerms());
+            System.out.println("Seeded default deferral terms");
+        }
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${eligibility.rules.refresh-ms:300000}",
+            initialDelayString = "${eligibility.rules.refresh-ms:300000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to reload deferral terms, keeping the current ones: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recompile the terms from the database.
+     * @return number of enabled terms
+     */
+    public synchronized int reload() {
+        Compiled next = Compiled.of(termRepository.findAll());
+        compiled = next;
+        return next.size;
+    }
+
+    public List<DeferralTerm> getTerms() {
+        return termRepository.findAll();
+    }
+
+    /**
+     * Save a term and apply it immediately.
+     * @throws IllegalArgumentException if the category or term is missing
+     */
+    public DeferralTerm saveTerm(DeferralTerm term) {
+        if (term.getCategory() == null) {
+            throw new IllegalArgumentException("category is required");
+        }
+        if (TermAutomaton.fold(term.getTerm()).isEmpty()) {
+            throw new IllegalArgumentException("term must contain letters or digits");
+        }
+        term.setTerm(term.getTerm().trim());
+        DeferralTerm saved = termRepository.save(term);
+        reload();
+        return saved;
+    }
+
+    /**
+     * @return false if the term does not exist
+     */
+    public boolean deleteTerm(Long id) {
+        if (!termRepository.existsById(id)) {
+            return false;
+        }
+        termRepository.deleteById(id);
+        reload();
+        return true;
+    }
+
+    /**
+     * A starting list; the blood bank is expected to maintain it.
+     */
+    public static List<DeferralTerm> defaultTerms() {
+        List<DeferralTerm> defaults = new ArrayList<>();
+        String drug = "Medication '{term}' requires deferral";
+        for (String name : List.of("isotretinoin", "accutane", "roaccutane", "acitretin", "finasteride", "dutasteride",
+                "warfarin", "heparin", "clopidogrel", "methotrexate", "insulin")) {
+            defaults.add(new DeferralTerm(DeferralCategory.MEDICATION, name, RuleSeverity.ERROR, drug));
+        }
+        for (String name : List.of("aspirin", "kháng sinh", "antibiotic", "corticoid", "prednisolone")) {
+            defaults.add(new DeferralTerm(DeferralCategory.MEDICATION, name, RuleSeverity.WARNING,
+                    "Medication '{term}' must be reviewed by a doctor before donation"));
+        }
+        for (String name : List.of("ghép tạng", "organ transplant", "ghép giác mạc", "cornea transplant", "truyền máu", "transfusion")) {
+            defaults.add(new DeferralTerm(DeferralCategory.SURGERY, name, RuleSeverity.ERROR,
+                    "Donors with a history of {term} cannot donate"));
+        }
+        for (String name : List.of("sốt rét", "malaria", "châu phi", "africa", "nam mỹ", "south america", "gia lai",
+                "đắk lắk", "đắk nông", "kon tum", "bình phước", "khánh hòa", "quảng trị")) {
+            defaults.add(new DeferralTerm(DeferralCategory.TRAVEL_REGION, name, RuleSeverity.WARNING,
+                    "Travel to {term} (malaria risk area) requires additional screening"));
+        }
+        for (String name : List.of("sởi", "measles", "quai bị", "mumps", "rubella", "mmr", "thủy đậu", "varicella",
+                "sốt vàng", "yellow fever", "bcg", "bại liệt uống", "oral polio")) {
+            defaults.add(new DeferralTerm(DeferralCategory.VACCINE, name, RuleSeverity.ERROR,
+                    "Must wait 4 weeks after a live vaccine ({term})"));
+        }
+        defaults.add(new DeferralTerm(DeferralCategory.VACCINE, "dại", RuleSeverity.ERROR,
+                "Must wait 12 months after rabies vaccination following an animal bite"));
+        defaults.add(new DeferralTerm(DeferralCategory.VACCINE, "rabies", RuleSeverity.ERROR,
+                "Must wait 12 months after rabies vaccination following an animal bite"));
+        return defaults;
+    }
+
+    /**
+     * Every term is in both automatons at the same index; a term is left out of
+     * one of them by compiling an empty string in its place, so the index still
+     * points into {@code terms}.
+     */
+    private static final class Matcher {
+        private final TermAutomaton folded;
+        private final TermAutomaton accented; // null nếu không có từ nào cần giữ dấu
+        private final DeferralTerm[] terms;
+
+        private Matcher(List<DeferralTerm> terms) {
+            this.terms = terms.toArray(new DeferralTerm[0]);
+            List<String> folded = new ArrayList<>();
+            List<String> accented = new ArrayList<>();
+            for (DeferralTerm term : terms) {
+                boolean keepAccents = keepsAccents(term.getTerm());
+                folded.add(keepAccents ? "" : term.getTerm());
+                accented.add(keepAccents ? term.getTerm() : "");
+            }
+            this.folded = TermAutomaton.compile(folded);
+            this.accented = accented.stream().allMatch(String::isEmpty) ? null : TermAutomaton.compileAccented(accented);
+        }
+    }
+
+    // Một từ đơn có dấu: bỏ dấu đi thì dễ trùng với từ khác
+    static boolean keepsAccents(String term) {
+        String folded = TermAutomaton.fold(term);
+        return folded.indexOf(' ') < 0 && !folded.equals(TermAutomaton.foldAccented(term));
+    }
+
+    private static final class Compiled {
+        private final Map<DeferralCategory, Matcher> byCategory;
+        private final int size;
+
+        private Compiled(Map<DeferralCategory, Matcher> byCategory, int size) {
+            this.byCategory = byCategory;
+            this.size = size;
+        }
+
+        static Compiled of(List<DeferralTerm> source) {
+            Map<DeferralCategory, List<DeferralTerm>> grouped = new EnumMap<>(DeferralCategory.class);
+            int size = 0;
+            for (DeferralTerm term : source) {
+                if (!Boolean.TRUE.equals(term.getEnabled()) || term.getCategory() == null || term.getTerm() == null) {
+                    continue;
+                }
+                // Bản sao riêng để sửa entity sau này không ảnh hưởng bản đã biên dịch
+                DeferralTerm copy = new DeferralTerm(term.getCategory(), term.getTerm(),
+                        term.getSeverity() != null ? term.getSeverity() : RuleSeverity.ERROR,
+                        term.getMessage() != null ? term.getMessage() : term.getTerm());
+                grouped.computeIfAbsent(term.getCategory(), c -> new ArrayList<>()).add(copy);
+                size++;
+            }
+            Map<DeferralCategory, Matcher> byCategory = new EnumMap<>(DeferralCategory.class);
+            grouped.forEach((category, terms) -> byCategory.put(category, new Matcher(terms)));
+            return new Compiled(byCategory, size);
+        }
+    }
+}
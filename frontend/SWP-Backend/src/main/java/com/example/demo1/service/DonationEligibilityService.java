@@ -1,211 +1,343 @@
 package com.example.demo1.service;
 
 import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.EligibilityRule;
 import com.example.demo1.entity.User;
 import com.example.demo1.entity.enums.Gender;
+import com.example.demo1.entity.enums.RuleSeverity;
+import com.example.demo1.repo.EligibilityRuleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Donor screening against the rules in the eligibility_rules table.
+ *
+ * Rules are compiled into one immutable array per gender, ordered like
+ * {@link EligibilityCheck}, and swapped in a single volatile write on reload.
+ * A check only measures a value and compares it to two doubles; messages are
+ * built from the rule's template when the result is read, so an eligible donor
+ * costs no string formatting at all.
+ *
+ * The free-text fields are then matched against the deferral terms by
+ * {@link DeferralTermScreener}.
+ */
 @Service
 public class DonationEligibilityService {
-    
+
+    @Autowired
+    private EligibilityRuleRepository ruleRepository;
+
+    @Autowired
+    private DeferralTermScreener deferralTermScreener;
+
+    // Bắt đầu với bộ quy tắc mặc định cho tới khi đọc được từ DB
+    private volatile RuleSet rules = RuleSet.compile(defaultRules());
+
     public EligibilityResult checkEligibility(DonationRegistration registration, User user) {
-        List<String> errors = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
-        
-        // Basic physical requirements
-        checkBasicRequirements(registration, errors);
-        
-        // Vital signs validation
-        checkVitalSigns(registration, user, errors);
-        
-        // Donation interval validation
-        checkDonationInterval(registration, user, errors);
-        
-        // Risk factors assessment
-        checkRiskFactors(registration, errors, warnings);
-        
-        // Women's health specific checks
-        if (user.getGender() == Gender.FEMALE) {
-            checkWomensHealth(registration, errors);
-        }
-        
-        // Consent validation
-        checkConsent(registration, errors);
-        
-        boolean isEligible = errors.isEmpty();
-        
-        return new EligibilityResult(isEligible, errors, warnings);
+        EligibilityResult result = rules.evaluate(registration, user.getGender(), LocalDate.now());
+        deferralTermScreener.screen(registration, result);
+        return result;
     }
-    
-    private void checkBasicRequirements(DonationRegistration registration, List<String> errors) {
-        // Weight requirement
-        if (registration.getWeight() == null || registration.getWeight() < 45) {
-            errors.add("Weight must be at least 45kg");
-        }
-        
-        // Height requirement
-        if (registration.getHeight() == null || registration.getHeight() < 140) {
-            errors.add("Height must be at least 140cm");
-        }
-        
-        // BMI validation
-        if (registration.getWeight() != null && registration.getHeight() != null) {
-            double bmi = calculateBMI(registration.getWeight(), registration.getHeight());
-            
-            if (bmi < 17.0) {
-                errors.add("BMI too low (" + String.format("%.1f", bmi) + ") - may increase risk of adverse reactions. Please consult with a healthcare provider.");
-            } else if (bmi > 40.0) {
-                errors.add("BMI too high (" + String.format("%.1f", bmi) + ") - may increase procedural risks. Special medical evaluation required.");
-            }
+
+    /**
+     * Seed the table with the default rules on first start, then load it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (ruleRepository.count() == 0) {
+            ruleRepository.saveAll(defaultRules());
+            System.out.println("Seeded default eligibility rules");
         }
-        
-        // Blood type requirement
-        if (registration.getBloodType() == null || registration.getBloodType().trim().isEmpty()) {
-            errors.add("Blood type is required");
+        reload();
+    }
+
+    // Các instance khác cũng nhận được thay đổi quy tắc mà không cần khởi động lại
+    @Scheduled(fixedDelayString = "${eligibility.rules.refresh-ms:300000}",
+            initialDelayString = "${eligibility.rules.refresh-ms:300000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to reload eligibility rules, keeping the current ones: " + e.getMessage());
         }
     }
-    
-    private double calculateBMI(double weight, double height) {
-        double heightInMeters = height / 100.0;
-        return weight / (heightInMeters * heightInMeters);
+
+    /**
+     * Recompile the rules from the database.
+     * @return number of enabled rules
+     */
+    public synchronized int reload() {
+        RuleSet compiled = RuleSet.compile(ruleRepository.findAll());
+        rules = compiled;
+        return compiled.size;
     }
-    
-    private String getBMICategory(double bmi) {
-        if (bmi < 18.5) return "Underweight";
-        if (bmi < 25) return "Normal";
-        if (bmi < 30) return "Overweight";
-        if (bmi < 35) return "Obesity Class I";
-        if (bmi < 40) return "Obesity Class II";
-        return "Obesity Class III";
+
+    /**
+     * Lower bound in days of an interval rule (e.g. DONATION_INTERVAL) for a
+     * gender, 0 if the rule is disabled or has no lower bound.
+     */
+    public int minimumDays(EligibilityCheck check, Gender gender) {
+        return rules.minimumDays(check, gender);
     }
-    
-    private void checkVitalSigns(DonationRegistration registration, User user, List<String> errors) {
-        // Blood pressure validation
-        if (registration.getSystolicBP() != null && registration.getDiastolicBP() != null) {
-            if (registration.getSystolicBP() < 90 || registration.getSystolicBP() > 180) {
-                errors.add("Systolic blood pressure must be between 90-180 mmHg");
-            }
-            if (registration.getDiastolicBP() < 50 || registration.getDiastolicBP() > 100) {
-                errors.add("Diastolic blood pressure must be between 50-100 mmHg");
-            }
-        }
-        
-        // Heart rate validation
-        if (registration.getHeartRate() != null) {
-            if (registration.getHeartRate() < 50 || registration.getHeartRate() > 100) {
-                errors.add("Heart rate must be between 50-100 bpm");
-            }
+
+    public List<EligibilityRule> getRules() {
+        return ruleRepository.findAll();
+    }
+
+    /**
+     * Save a rule and apply it immediately.
+     * @throws IllegalArgumentException if the code is unknown or the bounds are inconsistent
+     */
+    public EligibilityRule saveRule(EligibilityRule rule) {
+        if (rule.getCode() == null || lookup(rule.getCode()) == null) {
+            throw new IllegalArgumentException("Unknown rule code: " + rule.getCode());
         }
-        
-        // Temperature validation
-        if (registration.getTemperature() != null) {
-            if (registration.getTemperature() < 36.0 || registration.getTemperature() > 37.5) {
-                errors.add("Body temperature must be between 36-37.5°C");
-            }
+        if (rule.getMinValue() == null && rule.getMaxValue() == null) {
+            throw new IllegalArgumentException("minValue or maxValue is required");
         }
-        
-        // Hemoglobin validation
-        if (registration.getHemoglobin() != null) {
-            double minHemoglobin = (user.getGender() == Gender.FEMALE) ? 12.5 : 13.5;
-            if (registration.getHemoglobin() < minHemoglobin) {
-                errors.add(String.format("Hemoglobin must be at least %.1f g/dL", minHemoglobin));
-            }
+        if (rule.getMinValue() != null && rule.getMaxValue() != null && rule.getMinValue() > rule.getMaxValue()) {
+            throw new IllegalArgumentException("minValue must not be greater than maxValue");
         }
+        EligibilityRule saved = ruleRepository.save(rule);
+        reload();
+        return saved;
     }
-    
-    private void checkDonationInterval(DonationRegistration registration, User user, List<String> errors) {
-        if (registration.getLastDonationDate() != null) {
-            LocalDate lastDonation = registration.getLastDonationDate();
-            LocalDate today = LocalDate.now();
-            long daysSinceLastDonation = ChronoUnit.DAYS.between(lastDonation, today);
-            
-            // Minimum interval: 90 days for males, 120 days for females
-            long minInterval = (user.getGender() == Gender.FEMALE) ? 120 : 90;
-            
-            if (daysSinceLastDonation < minInterval) {
-                long daysRemaining = minInterval - daysSinceLastDonation;
-                errors.add(String.format("Must wait %d more days since last donation", daysRemaining));
-            }
+
+    /**
+     * The thresholds used before rules were stored in the database.
+     */
+    public static List<EligibilityRule> defaultRules() {
+        List<EligibilityRule> defaults = new ArrayList<>();
+        defaults.add(new EligibilityRule("WEIGHT", null, 45.0, null, RuleSeverity.ERROR, "Weight must be at least {min}kg"));
+        defaults.add(new EligibilityRule("HEIGHT", null, 140.0, null, RuleSeverity.ERROR, "Height must be at least {min}cm"));
+        defaults.add(new EligibilityRule("BMI_MIN", null, 17.0, null, RuleSeverity.ERROR,
+                "BMI too low ({value}) - may increase risk of adverse reactions. Please consult with a healthcare provider."));
+        defaults.add(new EligibilityRule("BMI_MAX", null, null, 40.0, RuleSeverity.ERROR,
+                "BMI too high ({value}) - may increase procedural risks. Special medical evaluation required."));
+        defaults.add(new EligibilityRule("BLOOD_TYPE", null, 1.0, null, RuleSeverity.ERROR, "Blood type is required"));
+        defaults.add(new EligibilityRule("SYSTOLIC_BP", null, 90.0, 180.0, RuleSeverity.ERROR,
+                "Systolic blood pressure must be between {min}-{max} mmHg"));
+        defaults.add(new EligibilityRule("DIASTOLIC_BP", null, 50.0, 100.0, RuleSeverity.ERROR,
+                "Diastolic blood pressure must be between {min}-{max} mmHg"));
+        defaults.add(new EligibilityRule("HEART_RATE", null, 50.0, 100.0, RuleSeverity.ERROR, "Heart rate must be between {min}-{max} bpm"));
+        defaults.add(new EligibilityRule("TEMPERATURE", null, 36.0, 37.5, RuleSeverity.ERROR, "Body temperature must be between {min}-{max}°C"));
+        defaults.add(new EligibilityRule("HEMOGLOBIN", null, 13.5, null, RuleSeverity.ERROR, "Hemoglobin must be at least {min} g/dL"));
+        defaults.add(new EligibilityRule("HEMOGLOBIN", Gender.FEMALE, 12.5, null, RuleSeverity.ERROR, "Hemoglobin must be at least {min} g/dL"));
+        defaults.add(new EligibilityRule("DONATION_INTERVAL", null, 90.0, null, RuleSeverity.ERROR, "Must wait {remaining} more days since last donation"));
+        defaults.add(new EligibilityRule("DONATION_INTERVAL", Gender.FEMALE, 120.0, null, RuleSeverity.ERROR, "Must wait {remaining} more days since last donation"));
+        defaults.add(new EligibilityRule("SURGERY_INTERVAL", null, 180.0, null, RuleSeverity.ERROR, "Must wait 6 months after major surgery"));
+        defaults.add(new EligibilityRule("TATTOO_INTERVAL", null, 180.0, null, RuleSeverity.ERROR, "Must wait 6 months after getting a tattoo"));
+        defaults.add(new EligibilityRule("PIERCING_INTERVAL", null, 180.0, null, RuleSeverity.ERROR, "Must wait 6 months after getting a piercing"));
+        defaults.add(new EligibilityRule("RECENT_TRAVEL", null, null, 0.0, RuleSeverity.WARNING, "Recent travel to endemic areas requires additional screening"));
+        defaults.add(new EligibilityRule("PREGNANT", Gender.FEMALE, null, 0.0, RuleSeverity.ERROR, "Pregnant women cannot donate blood"));
+        defaults.add(new EligibilityRule("BREASTFEEDING", Gender.FEMALE, null, 0.0, RuleSeverity.ERROR, "Breastfeeding mothers must wait 6 months after delivery"));
+        defaults.add(new EligibilityRule("HEALTH_DECLARATION", null, 1.0, null, RuleSeverity.ERROR, "Health declaration consent is required"));
+        defaults.add(new EligibilityRule("CONSENT_FORM", null, 1.0, null, RuleSeverity.ERROR, "Blood donation consent is required"));
+        defaults.add(new EligibilityRule("DATA_PROCESSING_CONSENT", null, 1.0, null, RuleSeverity.ERROR, "Data processing consent is required"));
+        return defaults;
+    }
+
+    private static EligibilityCheck lookup(String code) {
+        try {
+            return EligibilityCheck.valueOf(code.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
         }
     }
-    
-    private void checkRiskFactors(DonationRegistration registration, List<String> errors, List<String> warnings) {
-        LocalDate today = LocalDate.now();
-        
-        // Recent surgery check
-        if (Boolean.TRUE.equals(registration.getRecentSurgery()) && registration.getSurgeryDate() != null) {
-            long daysSinceSurgery = ChronoUnit.DAYS.between(registration.getSurgeryDate(), today);
-            if (daysSinceSurgery < 180) { // 6 months
-                errors.add("Must wait 6 months after major surgery");
+
+    /**
+     * Immutable compiled rules: slot 0 for donors without a known gender,
+     * slot {@code gender.ordinal() + 1} otherwise.
+     */
+    private static final class RuleSet {
+        private final CompiledRule[][] bySlot;
+        private final int size;
+
+        private RuleSet(CompiledRule[][] bySlot, int size) {
+            this.bySlot = bySlot;
+            this.size = size;
+        }
+
+        static RuleSet compile(List<EligibilityRule> source) {
+            // Quy tắc chung và quy tắc riêng theo giới tính của từng loại kiểm tra
+            Map<EligibilityCheck, CompiledRule> generic = new EnumMap<>(EligibilityCheck.class);
+            Map<Gender, Map<EligibilityCheck, CompiledRule>> specific = new EnumMap<>(Gender.class);
+            int size = 0;
+            for (EligibilityRule rule : source) {
+                if (!Boolean.TRUE.equals(rule.getEnabled()) || rule.getCode() == null) {
+                    continue;
+                }
+                EligibilityCheck check = lookup(rule.getCode());
+                if (check == null) {
+                    System.err.println("Ignoring eligibility rule with unknown code: " + rule.getCode());
+                    continue;
+                }
+                CompiledRule compiled = new CompiledRule(check, rule);
+                if (rule.getGender() == null) {
+                    generic.put(check, compiled);
+                } else {
+                    specific.computeIfAbsent(rule.getGender(), g -> new EnumMap<>(EligibilityCheck.class)).put(check, compiled);
+                }
+                size++;
+            }
+
+            Gender[] genders = Gender.values();
+            CompiledRule[][] bySlot = new CompiledRule[genders.length + 1][];
+            for (int slot = 0; slot < bySlot.length; slot++) {
+                Map<EligibilityCheck, CompiledRule> own = slot == 0 ? null : specific.get(genders[slot - 1]);
+                List<CompiledRule> list = new ArrayList<>();
+                for (EligibilityCheck check : EligibilityCheck.values()) {
+                    CompiledRule rule = own != null && own.containsKey(check) ? own.get(check) : generic.get(check);
+                    if (rule != null) {
+                        list.add(rule);
+                    }
+                }
+                bySlot[slot] = list.toArray(new CompiledRule[0]);
             }
+            return new RuleSet(bySlot, size);
         }
-        
-        // Recent tattoo check
-        if (Boolean.TRUE.equals(registration.getRecentTattoo()) && registration.getTattooDate() != null) {
-            long daysSinceTattoo = ChronoUnit.DAYS.between(registration.getTattooDate(), today);
-            if (daysSinceTattoo < 180) { // 6 months
-                errors.add("Must wait 6 months after getting a tattoo");
+
+        int minimumDays(EligibilityCheck check, Gender gender) {
+            for (CompiledRule rule : bySlot[gender == null ? 0 : gender.ordinal() + 1]) {
+                if (rule.check == check) {
+                    return Double.isInfinite(rule.min) ? 0 : (int) Math.ceil(rule.min);
+                }
             }
+            return 0;
         }
-        
-        // Recent piercing check
-        if (Boolean.TRUE.equals(registration.getRecentPiercing()) && registration.getPiercingDate() != null) {
-            long daysSincePiercing = ChronoUnit.DAYS.between(registration.getPiercingDate(), today);
-            if (daysSincePiercing < 180) { // 6 months
-                errors.add("Must wait 6 months after getting a piercing");
+
+        EligibilityResult evaluate(DonationRegistration registration, Gender gender, LocalDate today) {
+            List<Violation> errors = null;
+            List<Violation> warnings = null;
+            for (CompiledRule rule : bySlot[gender == null ? 0 : gender.ordinal() + 1]) {
+                double value = rule.check.measure(registration, today);
+                if (Double.isNaN(value) || (value >= rule.min && value <= rule.max)) {
+                    continue;
+                }
+                Violation violation = new Violation(rule, value);
+                if (rule.severity == RuleSeverity.WARNING) {
+                    (warnings == null ? warnings = new ArrayList<>(2) : warnings).add(violation);
+                } else {
+                    (errors == null ? errors = new ArrayList<>(4) : errors).add(violation);
+                }
             }
+            return new EligibilityResult(errors, warnings);
         }
-        
-        // Travel to high-risk areas
-        if (Boolean.TRUE.equals(registration.getRecentTravel())) {
-            warnings.add("Recent travel to endemic areas requires additional screening");
+    }
+
+    private static final class CompiledRule {
+        private final EligibilityCheck check;
+        private final String code;
+        private final double min;
+        private final double max;
+        private final RuleSeverity severity;
+        private final String message;
+
+        private CompiledRule(EligibilityCheck check, EligibilityRule rule) {
+            this.check = check;
+            this.code = check.name();
+            this.min = rule.getMinValue() != null ? rule.getMinValue() : Double.NEGATIVE_INFINITY;
+            this.max = rule.getMaxValue() != null ? rule.getMaxValue() : Double.POSITIVE_INFINITY;
+            this.severity = rule.getSeverity() != null ? rule.getSeverity() : RuleSeverity.ERROR;
+            this.message = rule.getMessage() != null ? rule.getMessage() : code;
         }
     }
-    
-    private void checkWomensHealth(DonationRegistration registration, List<String> errors) {
-        // Pregnancy check
-        if (Boolean.TRUE.equals(registration.getIsPregnant())) {
-            errors.add("Pregnant women cannot donate blood");
+
+    /**
+     * A failed rule and the measured value, or a deferral term found in the
+     * free text; the message is only built on request.
+     */
+    public static final class Violation {
+        private final CompiledRule rule;
+        private final double value;
+        private final String code;
+        private final String message;
+        private final String term;
+
+        private Violation(CompiledRule rule, double value) {
+            this.rule = rule;
+            this.value = value;
+            this.code = rule.code;
+            this.message = rule.message;
+            this.term = null;
         }
-        
-        // Breastfeeding check
-        if (Boolean.TRUE.equals(registration.getIsBreastfeeding())) {
-            errors.add("Breastfeeding mothers must wait 6 months after delivery");
+
+        private Violation(String code, String message, String term) {
+            this.rule = null;
+            this.value = Double.NaN;
+            this.code = code;
+            this.message = message;
+            this.term = term;
         }
-    }
-    
-    private void checkConsent(DonationRegistration registration, List<String> errors) {
-        if (!Boolean.TRUE.equals(registration.getHealthDeclaration())) {
-            errors.add("Health declaration consent is required");
+
+        static Violation forTerm(String code, String message, String term) {
+            return new Violation(code, message, term);
         }
-        
-        if (!Boolean.TRUE.equals(registration.getConsentForm())) {
-            errors.add("Blood donation consent is required");
+
+        public String getCode() { return code; }
+
+        public String getMessage() {
+            String text = message;
+            if (text.indexOf('{') < 0) {
+                return text;
+            }
+            if (rule == null) {
+                return text.replace("{term}", term);
+            }
+            double remaining = value < rule.min ? rule.min - value : value - rule.max;
+            // {value} luôn có một chữ số thập phân như thông báo BMI trước đây ("BMI too low (16.0)")
+            return text.replace("{value}", String.format("%.1f", value))
+                    .replace("{min}", format(rule.min))
+                    .replace("{max}", format(rule.max))
+                    .replace("{remaining}", format(Math.ceil(remaining)));
         }
-        
-        if (!Boolean.TRUE.equals(registration.getDataProcessingConsent())) {
-            errors.add("Data processing consent is required");
+
+        private static String format(double number) {
+            if (Double.isInfinite(number)) {
+                return "-";
+            }
+            return number == Math.rint(number) ? Long.toString((long) number) : String.format(Locale.ROOT, "%.1f", number);
         }
     }
-    
+
     public static class EligibilityResult {
-        private final boolean eligible;
-        private final List<String> errors;
-        private final List<String> warnings;
-        
-        public EligibilityResult(boolean eligible, List<String> errors, List<String> warnings) {
-            this.eligible = eligible;
-            this.errors = errors;
-            this.warnings = warnings;
-        }
-        
-        public boolean isEligible() { return eligible; }
-        public List<String> getErrors() { return errors; }
-        public List<String> getWarnings() { return warnings; }
+        private List<Violation> errors;
+        private List<Violation> warnings;
+
+        private EligibilityResult(List<Violation> errors, List<Violation> warnings) {
+            this.errors = errors != null ? errors : Collections.emptyList();
+            this.warnings = warnings != null ? warnings : Collections.emptyList();
+        }
+
+        void add(RuleSeverity severity, Violation violation) {
+            if (severity == RuleSeverity.WARNING) {
+                if (warnings.isEmpty()) {
+                    warnings = new ArrayList<>(2);
+                }
+                warnings.add(violation);
+            } else {
+                if (errors.isEmpty()) {
+                    errors = new ArrayList<>(2);
+                }
+                errors.add(violation);
+            }
+        }
+
+        public boolean isEligible() { return errors.isEmpty(); }
+        public List<String> getErrors() { return errors.stream().map(Violation::getMessage).toList(); }
+        public List<String> getWarnings() { return warnings.stream().map(Violation::getMessage).toList(); }
+        public List<String> getErrorCodes() { return errors.stream().map(Violation::getCode).toList(); }
+        public List<String> getWarningCodes() { return warnings.stream().map(Violation::getCode).toList(); }
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,51 @@
 package com.example.demo1.service;
 
+import com.example.demo1.dto.RegistrationFilter;
+import com.example.demo1.dto.RegistrationPage;
 import com.example.demo1.entity.DonationRegistration;
 import com.example.demo1.entity.User;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface DonationRegistrationService {
+    /**
+     * Save a new registration. If it names a schedule, a slot is booked
+     * atomically; when the schedule is full the registration is WAITLISTED.
+     * @throws IllegalArgumentException if the schedule does not exist
+     */
     DonationRegistration register(DonationRegistration registration, User user);
     List<DonationRegistration> getRegistrationsByUser(User user);
+
+    /**
+     * Confirm a registration, add its blood unit to stock and notify the donor.
+     * @return empty if the registration does not exist
+     * @throws IllegalStateException if the registration is not PENDING, or was
+     *         cancelled or confirmed concurrently
+     */
+    Optional<DonationRegistration> confirm(Long id, User actor);
+
+    /**
+     * Cancel a registration, give its slot back and promote the oldest waitlisted donor.
+     * @return empty if the registration does not exist
+     */
+    Optional<DonationRegistration> cancel(Long id);
+
+    /**
+     * Move waitlisted registrations of a schedule to PENDING while it has free slots.
+     * @return number of promoted registrations
+     */
+    int promoteWaitlist(Long scheduleId);
+
+    /**
+     * Registrations booked on (or waiting for) a schedule, with their donor
+     */
+    List<DonationRegistration> getRegistrationsBySchedule(Long scheduleId);
+
+    /**
+     * Filtered registrations ordered by registeredAt then id, one keyset page at a time.
+     * @param after cursor returned by the previous page, null for the first page
+     * @throws IllegalArgumentException if the limit, date range or cursor is invalid
+     */
+    RegistrationPage search(RegistrationFilter filter, String after, int limit);
 }
@@ -1,11 +1,40 @@
 package com.example.demo1.service;
 
+import com.example.demo1.dto.ScheduleCalendarPage;
+import com.example.demo1.dto.ScheduleDaySummary;
+import com.example.demo1.dto.ScheduleSummary;
 import com.example.demo1.entity.DonationSchedule;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public interface DonationScheduleService {
     DonationSchedule saveOrUpdate(DonationSchedule schedule);
     List<DonationSchedule> findAll();
 
+    /**
+     * All schedules with their registration count, using one aggregate query
+     */
+    List<ScheduleSummary> findAllWithRegistrationCounts();
+
+    /**
+     * Schedules between two dates (inclusive), one keyset page at a time.
+     * @param locationId optional location filter
+     * @param after cursor returned by the previous page, null for the first page
+     * @throws IllegalArgumentException if the window is invalid or too long, or the cursor is malformed
+     */
+    ScheduleCalendarPage findCalendar(LocalDate from, LocalDate to, Long locationId, String after, int limit);
+
+    /**
+     * Slots, booked and free slots per day between two dates (inclusive), days without schedules are omitted
+     * @throws IllegalArgumentException if the window is invalid or too long
+     */
+    List<ScheduleDaySummary> getOccupancy(LocalDate from, LocalDate to, Long locationId);
+
+    /**
+     * Delete a schedule; its registrations are kept but detached, waitlisted ones are cancelled
+     * @return false if the schedule does not exist
+     */
+    boolean deleteById(Long id);
+
 }
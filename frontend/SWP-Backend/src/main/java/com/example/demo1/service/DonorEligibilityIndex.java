@@ -0,0 +1,367 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.EligibleDonor;
+import com.example.demo1.dto.EligibleDonorPage;
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.DonorEligibility;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.RegistrationStatus;
+import com.example.demo1.entity.enums.Role;
+import com.example.demo1.repo.DonationRegistrationRepository;
+import com.example.demo1.repo.DonorEligibilityRepository;
+import com.example.demo1.repo.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Maintains {@link DonorEligibility}: last confirmed donation, active deferral
+ * and the resulting next eligible date of every donor.
+ *
+ * A donor's row is recomputed from their own registrations (indexed by user)
+ * whenever one of them is confirmed or cancelled or their profile changes, so
+ * eligibility queries only read the donor_eligibility table. Inside a
+ * transaction the row is recomputed after commit, in its own transaction, so
+ * a failure here never rolls back the caller's change.
+ */
+@Component
+public class DonorEligibilityIndex {
+
+    private static final int BUILD_PAGE = 500;
+    private static final int STREAM_FETCH_SIZE = 5000;
+
+    @Autowired
+    private DonorEligibilityRepository eligibilityRepository;
+
+    @Autowired
+    private DonationRegistrationRepository registrationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DonationEligibilityService eligibilityService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${donor.eligible.max-page-size:500}")
+    private int maxPageSize;
+
+    private final AtomicBoolean building = new AtomicBoolean();
+    // Quy tắc đổi trong lúc đang dựng: dựng lại toàn bộ khi lần hiện tại xong
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    /**
+     * Recompute the row of a donor; removes it if the user is gone or is not a donor.
+     * Inside a transaction this runs once it has committed (and not at all if it
+     * rolls back). Errors are logged, the caller's change is already saved.
+     */
+    public void refresh(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshNow(userId);
+                }
+            });
+            return;
+        }
+        refreshNow(userId);
+    }
+
+    private void refreshNow(Long userId) {
+        // Giao dịch riêng: lỗi ở đây không đánh dấu rollback giao dịch của người gọi
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status -> {
+                Optional<User> user = userRepository.findById(userId);
+                if (user.isEmpty() || user.get().getRole() != Role.DONOR) {
+                    if (eligibilityRepository.existsById(userId)) {
+                        eligibilityRepository.deleteById(userId);
+                    }
+                    return;
+                }
+                eligibilityRepository.save(compute(user.get()));
+            });
+        } catch (RuntimeException e) {
+            System.err.println("Failed to refresh donor eligibility of user " + userId + ": " + e.getMessage());
+        }
+    }
+
+    private DonorEligibility compute(User user) {
+        List<DonationRegistration> confirmed = registrationRepository.findByUserIdAndStatus(user.getId(), RegistrationStatus.CONFIRMED);
+
+        LocalDate lastDonation = null;
+        LocalDate deferredUntil = null;
+        String bloodType = user.getBloodType();
+        String lastBloodType = null;
+        Long lastLocationId = null;
+        for (DonationRegistration reg : confirmed) {
+            LocalDate donated = donationDate(reg);
+            if (lastDonation == null || donated.isAfter(lastDonation)) {
+                lastDonation = donated;
+                lastBloodType = reg.getBloodType();
+                lastLocationId = reg.getLocation() != null ? reg.getLocation().getId() : null;
+            }
+            deferredUntil = later(deferredUntil, deferral(reg.getRecentSurgery(), reg.getSurgeryDate(), EligibilityCheck.SURGERY_INTERVAL, user));
+            deferredUntil = later(deferredUntil, deferral(reg.getRecentTattoo(), reg.getTattooDate(), EligibilityCheck.TATTOO_INTERVAL, user));
+            deferredUntil = later(deferredUntil, deferral(reg.getRecentPiercing(), reg.getPiercingDate(), EligibilityCheck.PIERCING_INTERVAL, user));
+        }
+
+        // 90 ngày (nam) / 120 ngày (nữ) theo quy tắc DONATION_INTERVAL hiện hành
+        LocalDate next = DonorEligibility.ALWAYS;
+        if (lastDonation != null) {
+            next = lastDonation.plusDays(eligibilityService.minimumDays(EligibilityCheck.DONATION_INTERVAL, user.getGender()));
+        }
+        next = later(next, deferredUntil);
+
+        // last_recalled_at không được JPA ghi (chỉ DonorRecallService cập nhật), nên lưu lại không ghi đè nó
+        DonorEligibility entry = eligibilityRepository.findById(user.getId()).orElseGet(DonorEligibility::new);
+        entry.setUserId(user.getId());
+        entry.setBloodType(bloodType != null && !bloodType.isBlank() ? bloodType : lastBloodType);
+        entry.setGender(user.getGender());
+        entry.setLastDonationDate(lastDonation);
+        entry.setLastLocationId(lastLocationId);
+        entry.setDeferredUntil(deferredUntil);
+        entry.setNextEligibleDate(next);
+        entry.setDonationCount(confirmed.size());
+        entry.setCancelledCount((int) registrationRepository.countByUserIdAndStatus(user.getId(), RegistrationStatus.CANCELLED));
+        entry.setUpdatedAt(LocalDateTime.now());
+        return entry;
+    }
+
+    // Ngày hiến là ngày của lịch, nếu không chọn lịch thì lấy ngày đăng ký
+    private static LocalDate donationDate(DonationRegistration reg) {
+        if (reg.getSchedule() != null && reg.getSchedule().getDate() != null) {
+            return reg.getSchedule().getDate();
+        }
+        return reg.getRegisteredAt() != null ? reg.getRegisteredAt().toLocalDate() : LocalDate.now();
+    }
+
+    private LocalDate deferral(Boolean declared, LocalDate date, EligibilityCheck check, User user) {
+        if (!Boolean.TRUE.equals(declared) || date == null) {
+            return null;
+        }
+        return date.plusDays(eligibilityService.minimumDays(check, user.getGender()));
+    }
+
+    private static LocalDate later(LocalDate a, LocalDate b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return b.isAfter(a) ? b : a;
+    }
+
+    /**
+     * Use the recorded last donation when it is later than the one the donor declared.
+     */
+    public void applyRecordedDonation(DonationRegistration registration) {
+        if (registration.getUser() == null || registration.getUser().getId() == null) {
+            return;
+        }
+        eligibilityRepository.findById(registration.getUser().getId()).ifPresent(entry ->
+                registration.setLastDonationDate(effectiveLastDonation(registration.getLastDonationDate(), entry.getLastDonationDate())));
+    }
+
+    /**
+     * Recorded last donation of each of these donors that has one, in one query.
+     */
+    public Map<Long, LocalDate> recordedDonations(Collection<Long> userIds) {
+        Map<Long, LocalDate> recorded = new HashMap<>();
+        for (DonorEligibility entry : eligibilityRepository.findAllById(userIds)) {
+            if (entry.getLastDonationDate() != null) {
+                recorded.put(entry.getUserId(), entry.getLastDonationDate());
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * The last donation date screening uses: the recorded one when it is later than the declared one.
+     */
+    public static LocalDate effectiveLastDonation(LocalDate declared, LocalDate recorded) {
+        return recorded != null && (declared == null || recorded.isAfter(declared)) ? recorded : declared;
+    }
+
+    /**
+     * Donors who can donate on {@code date}, one keyset page at a time.
+     * @param bloodTypes null or empty for every blood type
+     * @param after cursor returned by the previous page, null for the first page
+     * @throws IllegalArgumentException if the limit or cursor is invalid
+     */
+    public EligibleDonorPage findEligible(LocalDate date, Collection<String> bloodTypes, String after, int limit) {
+        if (limit <= 0 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        // Con trỏ dạng "yyyy-MM-dd:userId" của người cuối cùng ở trang trước
+        LocalDate afterDate = DonorEligibility.ALWAYS.minusDays(1);
+        long afterId = 0;
+        if (after != null && !after.isBlank()) {
+            int sep = after.indexOf(':');
+            try {
+                afterDate = LocalDate.parse(after.substring(0, Math.max(sep, 0)));
+                afterId = Long.parseLong(after.substring(sep + 1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+        }
+
+        List<DonorEligibility> rows = findEligiblePage(date, bloodTypes, afterDate, afterId, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+
+        // Chỉ đọc thông tin liên lạc của người trong trang này
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(rows.stream().map(DonorEligibility::getUserId).toList())) {
+            users.put(user.getId(), user);
+        }
+
+        EligibleDonorPage page = new EligibleDonorPage();
+        page.setDate(date);
+        for (DonorEligibility entry : rows) {
+            User user = users.get(entry.getUserId());
+            if (user == null) {
+                continue;
+            }
+            page.getDonors().add(new EligibleDonor(entry.getUserId(), user.getFullName(), user.getEmail(), user.getPhone(),
+                    entry.getBloodType(), entry.getLastDonationDate(), entry.getNextEligibleDate(), entry.getDonationCount()));
+        }
+        if (hasMore) {
+            DonorEligibility last = rows.get(rows.size() - 1);
+            page.setNextCursor(last.getNextEligibleDate() + ":" + last.getUserId());
+        }
+        return page;
+    }
+
+    /**
+     * Stream the email of every donor of the given blood types who can donate
+     * on {@code date}, in one query without loading entities.
+     * @return number of donors visited
+     */
+    public long forEachEligibleEmail(LocalDate date, Collection<String> bloodTypes, Consumer<String> action) {
+        if (bloodTypes.isEmpty()) {
+            return 0;
+        }
+        String sql = "SELECT u.email FROM donor_eligibility e JOIN users u ON u.id = e.user_id " +
+                "WHERE e.next_eligible_date <= ? AND e.blood_type IN (" +
+                String.join(",", Collections.nCopies(bloodTypes.size(), "?")) + ") AND u.email IS NOT NULL";
+        List<Object> args = new ArrayList<>();
+        args.add(Date.valueOf(date));
+        args.addAll(bloodTypes);
+        long[] count = {0};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, rs -> {
+            count[0]++;
+            action.accept(rs.getString(1));
+        });
+        return count[0];
+    }
+
+    List<DonorEligibility> findEligiblePage(LocalDate date, Collection<String> bloodTypes,
+                                            LocalDate afterDate, long afterId, int size) {
+        PageRequest page = PageRequest.of(0, size);
+        return bloodTypes == null || bloodTypes.isEmpty()
+                ? eligibilityRepository.findEligiblePageAnyType(date, afterDate, afterId, page)
+                : eligibilityRepository.findEligiblePage(date, bloodTypes, afterDate, afterId, page);
+    }
+
+    /**
+     * Build the rows of donors that have none yet (first start, or accounts
+     * created outside the API), in the background.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        startBuild(false);
+    }
+
+    /**
+     * Recompute every donor in the background, e.g. after the interval rules
+     * changed. If a build is running (it may have used the old rules), a full
+     * rebuild starts as soon as it finishes.
+     */
+    public void rebuild() {
+        rebuildRequested.set(true);
+        startBuild(true);
+    }
+
+    private boolean startBuild(boolean all) {
+        if (!building.compareAndSet(false, true)) {
+            return false;
+        }
+        if (all) {
+            rebuildRequested.set(false);
+        }
+        Thread thread = new Thread(() -> {
+            long afterId = 0;
+            int built = 0;
+            try {
+                while (true) {
+                    PageRequest page = PageRequest.of(0, BUILD_PAGE);
+                    List<User> donors = all
+                            ? eligibilityRepository.findDonorsAfter(afterId, page)
+                            : eligibilityRepository.findDonorsWithoutEntry(afterId, page);
+                    if (donors.isEmpty()) {
+                        break;
+                    }
+                    for (User donor : donors) {
+                        eligibilityRepository.save(compute(donor));
+                        built++;
+                    }
+                    afterId = donors.get(donors.size() - 1).getId();
+                }
+                if (built > 0) {
+                    System.out.println("Built donor eligibility for " + built + " donors");
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Donor eligibility build stopped after " + built + " donors: " + e.getMessage());
+            } finally {
+                building.set(false);
+            }
+            if (rebuildRequested.get()) {
+                startBuild(true);
+            }
+        }, "donor-eligibility-build");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.demo1.service;
+
+import com.example.demo1.config.RecallProperties;
+import com.example.demo1.dto.RecallResult;
+import com.example.demo1.dto.RecalledDonor;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
+import com.example.demo1.repo.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Invites the best eligible donors to donate when a blood type runs short.
+ *
+ * Candidates are the donors in donor_eligibility who can donate today, have a
+ * blood type that the short type can receive, and were not recalled within
+ * the cooldown. They are streamed in one query and ranked with a min-heap of
+ * the requested size, so memory stays O(size) however many donors qualify.
+ * Score = recency of the last donation + share of registrations not cancelled
+ * + whether the last donation was at the requested location. Messages go out
+ * on a background thread in throttled batches.
+ */
+@Component
+public class DonorRecallService {
+
+    private static final int FETCH_SIZE = 5000;
+    private static final int USER_CHUNK = 1000; // giới hạn tham số của SQL Server
+
+    private static final String MARK_RECALLED =
+            "UPDATE donor_eligibility SET last_recalled_at = ? WHERE user_id = ?";
+
+    @Autowired
+    private RecallProperties recallProperties;
+
+    @Autowired
+    private BloodCompatibilityService compatibilityService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "donor-recall");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Select and notify donors for a short blood type.
+     * @param size number of donors to invite, null for the configured default
+     * @param locationId location that needs the blood, null if any
+     * @throws IllegalArgumentException if the blood type or size is invalid
+     */
+    public synchronized RecallResult recall(String bloodType, Integer size, Long locationId) {
+        BloodType type = BloodType.fromLabel(bloodType);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown blood type: " + bloodType);
+        }
+        int limit = size != null ? size : recallProperties.getDefaultSize();
+        if (limit <= 0 || limit > recallProperties.getMaxSize()) {
+            throw new IllegalArgumentException("size must be between 1 and " + recallProperties.getMaxSize());
+        }
+        long started = System.nanoTime();
+        List<String> donorTypes = compatibilityService.getCompatibleBloodTypes(type.getLabel());
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+
+        // Heap nhỏ nhất: phần tử đầu là người có điểm thấp nhất trong top hiện tại
+        PriorityQueue<Candidate> top = new PriorityQueue<>(limit + 1, Candidate.ORDER);
+        long[] scanned = {0};
+        String sql = "SELECT user_id, blood_type, last_donation_date, donation_count, cancelled_count, last_location_id " +
+                "FROM donor_eligibility WHERE next_eligible_date <= ? " +
+                "AND blood_type IN (" + String.join(",", Collections.nCopies(donorTypes.size(), "?")) + ") " +
+                "AND (last_recalled_at IS NULL OR last_recalled_at < ?)";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setFetchSize(FETCH_SIZE);
+            int i = 1;
+            ps.setDate(i++, Date.valueOf(today));
+            for (String donorType : donorTypes) {
+                ps.setString(i++, donorType);
+            }
+            ps.setTimestamp(i, Timestamp.valueOf(now.minus(recallProperties.getCooldown())));
+            return ps;
+        }, rs -> {
+            scanned[0]++;
+            Date last = rs.getDate(3);
+            long lastLocation = rs.getLong(6);
+            boolean sameLocation = locationId != null && !rs.wasNull() && lastLocation == locationId;
+            double score = score(last != null ? last.toLocalDate() : null, rs.getInt(4), rs.getInt(5), sameLocation, today);
+            long userId = rs.getLong(1);
+            if (top.size() < limit) {
+                top.add(new Candidate(userId, rs.getString(2), last != null ? last.toLocalDate() : null, score));
+            } else if (Candidate.better(score, userId, top.peek())) {
+                top.poll();
+                top.add(new Candidate(userId, rs.getString(2), last != null ? last.toLocalDate() : null, score));
+            }
+        });
+
+        List<Candidate> selected = new ArrayList<>(top);
+        selected.sort(Candidate.ORDER.reversed());
+
+        RecallResult result = new RecallResult();
+        result.setBloodType(type.getLabel());
+        result.setDonorBloodTypes(donorTypes);
+        result.setScanned(scanned[0]);
+        if (selected.isEmpty()) {
+            result.setElapsedMs(elapsedMs(started));
+            return result;
+        }
+
+        // Đánh dấu trước khi gửi để lần mời sau không chọn lại những người này
+        Timestamp recalledAt = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(MARK_RECALLED, selected.stream()
+                .map(c -> new Object[]{recalledAt, c.userId})
+                .toList());
+
+        Map<Long, User> users = new HashMap<>();
+        for (int from = 0; from < selected.size(); from += USER_CHUNK) {
+            List<Long> ids = selected.subList(from, Math.min(from + USER_CHUNK, selected.size())).stream()
+                    .map(c -> c.userId).toList();
+            userRepository.findAllById(ids).forEach(user -> users.put(user.getId(), user));
+        }
+        List<String> emails = new ArrayList<>();
+        for (Candidate candidate : selected) {
+            User user = users.get(candidate.userId);
+            if (user == null) {
+                continue;
+            }
+            result.getDonors().add(new RecalledDonor(candidate.userId, user.getFullName(), user.getEmail(),
+                    candidate.bloodType, candidate.lastDonation, candidate.score));
+            if (user.getEmail() != null) {
+                emails.add(user.getEmail());
+            }
+        }
+        result.setElapsedMs(elapsedMs(started));
+
+        String message = "Kho máu đang thiếu nhóm máu " + type.getLabel()
+                + ". Bạn đã đủ điều kiện hiến máu, mong bạn sớm đăng ký một lịch hiến máu gần nhất.";
+        sender.execute(() -> send(emails, message));
+        System.out.println("Recall for " + type.getLabel() + ": " + emails.size() + " donors selected from " + scanned[0]);
+        return result;
+    }
+
+    private double score(LocalDate lastDonation, int donations, int cancelled, boolean sameLocation, LocalDate today) {
+        // Hiến gần đây: 1 nếu vừa hiến, giảm dần theo năm; chưa từng hiến thì 0
+        double recency = lastDonation != null
+                ? Math.exp(-ChronoUnit.DAYS.between(lastDonation, today) / 365.0)
+                : 0;
+        // Tỷ lệ đơn không bị hủy, làm trơn để người mới không bị 0 hoặc 1
+        double reliability = (donations + 1.0) / (donations + cancelled + 2.0);
+        return recallProperties.getRecencyWeight() * recency
+                + recallProperties.getReliabilityWeight() * reliability
+                + (sameLocation ? recallProperties.getProximityWeight() : 0);
+    }
+
+    private void send(List<String> emails, String message) {
+        int batchSize = Math.max(1, recallProperties.getBatchSize());
+        long pauseMs = recallProperties.getBatchInterval().toMillis();
+        try {
+            for (int from = 0; from < emails.size(); from += batchSize) {
+                if (from > 0 && pauseMs > 0) {
+                    Thread.sleep(pauseMs);
+                }
+                for (String email : emails.subList(from, Math.min(from + batchSize, emails.size()))) {
+                    try {
+                        notificationService.sendNotification(email, message);
+                    } catch (RuntimeException e) {
+                        System.err.println("Failed to send recall to " + email + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long elapsedMs(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    private static final class Candidate {
+        // Điểm tăng dần, cùng điểm thì id lớn hơn đứng trước (ưu tiên id nhỏ) để kết quả ổn định
+        static final Comparator<Candidate> ORDER = Comparator.<Candidate>comparingDouble(c -> c.score)
+                .thenComparing(c -> c.userId, Comparator.reverseOrder());
+
+        private final long userId;
+        private final String bloodType;
+        private final LocalDate lastDonation;
+        private final double score;
+
+        private Candidate(long userId, String bloodType, LocalDate lastDonation, double score) {
+            this.userId = userId;
+            this.bloodType = bloodType;
+            this.lastDonation = lastDonation;
+            this.score = score;
+        }
+
+        static boolean better(double score, long userId, Candidate worst) {
+            return score > worst.score || (score == worst.score && userId < worst.userId);
+        }
+    }
+}
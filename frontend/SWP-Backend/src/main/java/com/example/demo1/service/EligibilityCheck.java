@@ -0,0 +1,151 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.DonationRegistration;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The values a screening rule can test, by rule code.
+ *
+ * {@link #measure} returns NaN when the rule does not apply (e.g. no tattoo),
+ * and a value below every threshold when a required field is missing.
+ * Yes/no answers measure as 1 or 0.
+ */
+public enum EligibilityCheck {
+    WEIGHT {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return r.getWeight() != null ? r.getWeight() : Double.NEGATIVE_INFINITY;
+        }
+    },
+    HEIGHT {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return r.getHeight() != null ? r.getHeight() : Double.NEGATIVE_INFINITY;
+        }
+    },
+    BMI_MIN {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return bmi(r);
+        }
+    },
+    BMI_MAX {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return bmi(r);
+        }
+    },
+    BLOOD_TYPE {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return r.getBloodType() != null && !r.getBloodType().trim().isEmpty() ? 1 : 0;
+        }
+    },
+    SYSTOLIC_BP {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            // Chỉ kiểm tra huyết áp khi có đủ cả hai chỉ số
+            return r.getSystolicBP() != null && r.getDiastolicBP() != null ? r.getSystolicBP() : Double.NaN;
+        }
+    },
+    DIASTOLIC_BP {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return r.getSystolicBP() != null && r.getDiastolicBP() != null ? r.getDiastolicBP() : Double.NaN;
+        }
+    },
+    HEART_RATE {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return r.getHeartRate() != null ? r.getHeartRate() : Double.NaN;
+        }
+    },
+    TEMPERATURE {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return r.getTemperature() != null ? r.getTemperature() : Double.NaN;
+        }
+    },
+    HEMOGLOBIN {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return r.getHemoglobin() != null ? r.getHemoglobin() : Double.NaN;
+        }
+    },
+    DONATION_INTERVAL {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return daysSince(r.getLastDonationDate(), true, today);
+        }
+    },
+    SURGERY_INTERVAL {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return daysSince(r.getSurgeryDate(), Boolean.TRUE.equals(r.getRecentSurgery()), today);
+        }
+    },
+    TATTOO_INTERVAL {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return daysSince(r.getTattooDate(), Boolean.TRUE.equals(r.getRecentTattoo()), today);
+        }
+    },
+    PIERCING_INTERVAL {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return daysSince(r.getPiercingDate(), Boolean.TRUE.equals(r.getRecentPiercing()), today);
+        }
+    },
+    RECENT_TRAVEL {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return Boolean.TRUE.equals(r.getRecentTravel()) ? 1 : 0;
+        }
+    },
+    PREGNANT {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return Boolean.TRUE.equals(r.getIsPregnant()) ? 1 : 0;
+        }
+    },
+    BREASTFEEDING {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return Boolean.TRUE.equals(r.getIsBreastfeeding()) ? 1 : 0;
+        }
+    },
+    HEALTH_DECLARATION {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return Boolean.TRUE.equals(r.getHealthDeclaration()) ? 1 : 0;
+        }
+    },
+    CONSENT_FORM {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return Boolean.TRUE.equals(r.getConsentForm()) ? 1 : 0;
+        }
+    },
+    DATA_PROCESSING_CONSENT {
+        @Override
+        public double measure(DonationRegistration r, LocalDate today) {
+            return Boolean.TRUE.equals(r.getDataProcessingConsent()) ? 1 : 0;
+        }
+    };
+
+    public abstract double measure(DonationRegistration registration, LocalDate today);
+
+    private static double bmi(DonationRegistration r) {
+        if (r.getWeight() == null || r.getHeight() == null) {
+            return Double.NaN;
+        }
+        double heightInMeters = r.getHeight() / 100.0;
+        return r.getWeight() / (heightInMeters * heightInMeters);
+    }
+
+    private static double daysSince(LocalDate date, boolean applies, LocalDate today) {
+        return applies && date != null ? ChronoUnit.DAYS.between(date, today) : Double.NaN;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.RescreenProgress;
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.enums.RegistrationStatus;
+import com.example.demo1.repo.DonationRegistrationRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Re-checks every open registration against the current eligibility rules.
+ *
+ * Registrations are read in keyset pages by id (with their donor in the same
+ * query), so only one page is in memory at a time. Each page is screened in
+ * parallel and only the rows whose result changed are written back, in one
+ * JDBC batch per page. Like staff intake, a donation recorded later than the
+ * declared one is used instead, on a copy that is never saved. One run at a time, on a background thread; a change
+ * made while a run is in progress is picked up by one follow-up run (see
+ * {@link #requestRun()}).
+ */
+@Component
+public class EligibilityRescreenJob {
+
+    private static final List<RegistrationStatus> OPEN_STATUSES =
+            List.of(RegistrationStatus.PENDING, RegistrationStatus.WAITLISTED);
+
+    // Không ghi đè kết quả của đơn đã được xác nhận/hủy trong lúc chạy
+    private static final String UPDATE_RESULT =
+            "UPDATE donation_registrations SET eligibility_status = ?, eligibility_notes = ? " +
+            "WHERE id = ? AND status IN ('PENDING', 'WAITLISTED')";
+
+    @Autowired
+    private DonationRegistrationRepository registrationRepository;
+
+    @Autowired
+    private DonationEligibilityService eligibilityService;
+
+    @Autowired
+    private DonorEligibilityIndex donorEligibilityIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${eligibility.rescreen.page-size:1000}")
+    private int pageSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Có thay đổi quy tắc trong lúc đang chạy: chạy lại một lần khi lần hiện tại xong
+    private final AtomicBoolean rerunRequested = new AtomicBoolean();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicLong ineligible = new AtomicLong();
+    private volatile long total;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "eligibility-rescreen");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Start a run in the background.
+     * @return false if a run is already in progress
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        // Lần chạy này đọc quy tắc sau mọi yêu cầu trước đó
+        rerunRequested.set(false);
+        processed.set(0);
+        changed.set(0);
+        ineligible.set(0);
+        total = 0;
+        error = null;
+        finishedAt = null;
+        startedAt = LocalDateTime.now();
+        worker.execute(this::run);
+        return true;
+    }
+
+    /**
+     * Re-screen after the rules or terms changed. Starts a run now, or, if one
+     * is in progress (it may already have screened rows with the old rules),
+     * starts another one as soon as it finishes.
+     */
+    public void requestRun() {
+        rerunRequested.set(true);
+        start();
+    }
+
+    public RescreenProgress getProgress() {
+        RescreenProgress progress = new RescreenProgress();
+        progress.setRunning(running.get());
+        progress.setRerunRequested(rerunRequested.get());
+        progress.setStartedAt(startedAt);
+        progress.setFinishedAt(finishedAt);
+        progress.setTotal(total);
+        progress.setProcessed(processed.get());
+        progress.setChanged(changed.get());
+        progress.setIneligible(ineligible.get());
+        progress.setError(error);
+        return progress;
+    }
+
+    private void run() {
+        try {
+            total = registrationRepository.countByStatusIn(OPEN_STATUSES);
+            long afterId = 0;
+            while (true) {
+                List<DonationRegistration> page = registrationRepository.findScreeningPage(OPEN_STATUSES, afterId,
+                        PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+
+                // Ngày hiến đã ghi nhận của cả trang trong một truy vấn, như lúc tiếp nhận
+                Map<Long, LocalDate> recorded = donorEligibilityIndex.recordedDonations(page.stream()
+                        .filter(r -> r.getUser() != null)
+                        .map(r -> r.getUser().getId())
+                        .collect(Collectors.toSet()));
+                List<Object[]> updates = page.parallelStream()
+                        .map(registration -> screen(registration, recorded))
+                        .filter(Objects::nonNull)
+                        .toList();
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE_RESULT, updates);
+                }
+                changed.addAndGet(updates.size());
+                processed.addAndGet(page.size());
+            }
+            System.out.println("Eligibility re-screening done: " + processed.get() + " checked, " + changed.get() + " changed");
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            System.err.println("Eligibility re-screening failed after " + processed.get() + " registrations: " + e.getMessage());
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+        // Yêu cầu đến sau khi running đã về false thì chính người gọi đã bắt đầu lần chạy mới
+        if (rerunRequested.get() && start()) {
+            System.out.println("Eligibility rules changed during the run, re-screening again");
+        }
+    }
+
+    /**
+     * @return the update parameters, or null if the stored result is unchanged
+     */
+    private Object[] screen(DonationRegistration registration, Map<Long, LocalDate> recorded) {
+        if (registration.getUser() == null) {
+            return null;
+        }
+        // Cùng đầu vào với lúc tiếp nhận: ngày hiến đã ghi nhận được ưu tiên, chỉ áp dụng trên bản sao
+        DonationRegistration screened = registration;
+        LocalDate lastDonation = DonorEligibilityIndex.effectiveLastDonation(registration.getLastDonationDate(),
+                recorded.get(registration.getUser().getId()));
+        if (!Objects.equals(lastDonation, registration.getLastDonationDate())) {
+            screened = new DonationRegistration();
+            BeanUtils.copyProperties(registration, screened);
+            screened.setLastDonationDate(lastDonation);
+        }
+        DonationEligibilityService.EligibilityResult result =
+                eligibilityService.checkEligibility(screened, registration.getUser());
+        boolean eligible = result.isEligible();
+        if (!eligible) {
+            ineligible.incrementAndGet();
+        }
+        // Giống lúc đăng ký: ghi chú là cảnh báo nếu đủ điều kiện, là lý do nếu không đủ
+        List<String> notes = eligible ? result.getWarnings() : result.getErrors();
+        String text = notes.isEmpty() ? null : String.join("; ", notes);
+        if (Boolean.valueOf(eligible).equals(registration.getEligibilityStatus())
+                && Objects.equals(text, registration.getEligibilityNotes())) {
+            return null;
+        }
+        return new Object[]{eligible, text, registration.getId()};
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo1.service;
+
+import java.util.regex.Pattern;
+
+/**
+ * Basic addr-spec check (RFC 5321/5322 dot-atom local part and host name)
+ * for addresses that end up in SMTP commands and mail headers. Anything with
+ * CR, LF, spaces, angle brackets or quotes is rejected, so an address can
+ * never inject another command or header.
+ */
+public final class EmailAddresses {
+
+    private static final String ATOM = "[A-Za-z0-9!#$%&'*+/=?^_`{|}~-]+";
+    private static final String LABEL = "[A-Za-z0-9](?:[A-Za-z0-9-]{0,61}[A-Za-z0-9])?";
+    private static final Pattern ADDR_SPEC =
+            Pattern.compile(ATOM + "(?:\\." + ATOM + ")*@" + LABEL + "(?:\\." + LABEL + ")+");
+    private static final int MAX_LENGTH = 254;
+
+    private EmailAddresses() {
+    }
+
+    public static boolean isValid(String address) {
+        if (address == null || address.isEmpty() || address.length() > MAX_LENGTH) {
+            return false;
+        }
+        if (address.indexOf('\r') >= 0 || address.indexOf('\n') >= 0) {
+            return false;
+        }
+        return ADDR_SPEC.matcher(address).matches();
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.BroadcastStatus;
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
+import com.example.demo1.entity.enums.BloodUrgencyLevel;
+import com.example.demo1.entity.enums.Role;
+import com.example.demo1.repo.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fan-out of CRITICAL blood requests to on-duty staff and, when stock cannot
+ * cover the request, to every compatible donor who can donate today.
+ *
+ * The caller only starts a virtual thread and returns. That thread queues the
+ * messages in the notification outbox in batches of
+ * {@code emergency.broadcast.batch-size} (one transaction and one batched
+ * INSERT each), so a broadcast holds at most two pooled connections: the
+ * donor query it streams from and the batch insert. At most
+ * {@code emergency.broadcast.max-concurrency} broadcasts run at once, keeping
+ * those connections well below the pool size; later ones wait for a permit.
+ * Delivery is left to
+ * {@link NotificationDispatcher}; the counters are messages queued, not sent.
+ * A recipient gets at most one message per request, also when the request is
+ * escalated to CRITICAL again later.
+ */
+@Component
+public class EmergencyBroadcaster {
+
+    // Giữ danh sách đã gửi của một yêu cầu trong khoảng thời gian này để chống gửi trùng
+    private static final Duration DEDUP_RETENTION = Duration.ofHours(24);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DonorEligibilityIndex donorEligibilityIndex;
+
+    @Autowired
+    private BloodCompatibilityService compatibilityService;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    private final int batchSize;
+    // Mỗi lần gửi giữ tối đa hai kết nối, giới hạn số lần gửi đồng thời để không cạn pool
+    private final Semaphore permits;
+    private final Map<Long, Broadcast> broadcasts = new ConcurrentHashMap<>();
+
+    public EmergencyBroadcaster(@Value("${emergency.broadcast.batch-size:500}") int batchSize,
+                                @Value("${emergency.broadcast.max-concurrency:3}") int maxConcurrency) {
+        this.batchSize = Math.max(1, batchSize);
+        this.permits = new Semaphore(Math.max(1, maxConcurrency), true);
+    }
+
+    /**
+     * Start the broadcast if the request is CRITICAL and {@code previous} was not.
+     * @param previous urgency before the change, null for a new request
+     * @return false if nothing was started
+     */
+    public boolean onUrgency(BloodRequest request, BloodUrgencyLevel previous) {
+        if (request.getId() == null || request.getUrgencyLevel() != BloodUrgencyLevel.CRITICAL
+                || previous == BloodUrgencyLevel.CRITICAL) {
+            return false;
+        }
+        Broadcast broadcast = broadcasts.compute(request.getId(), (id, existing) ->
+                existing != null ? existing : new Broadcast(id));
+        if (!broadcast.start()) {
+            return false; // đang gửi cho yêu cầu này
+        }
+        // Sao chép các giá trị cần dùng, entity có thể bị sửa tiếp trên luồng của request
+        String bloodType = request.getRecipientBloodType();
+        int amount = request.getRequestedAmount();
+        Thread.ofVirtual().name("emergency-broadcast-" + request.getId())
+                .start(() -> run(broadcast, bloodType, amount));
+        return true;
+    }
+
+    public Optional<BroadcastStatus> getStatus(Long requestId) {
+        Broadcast broadcast = broadcasts.get(requestId);
+        return broadcast != null ? Optional.of(broadcast.status()) : Optional.empty();
+    }
+
+    private void run(Broadcast broadcast, String bloodType, int amount) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            broadcast.finish();
+            return;
+        }
+        try {
+            String staffMessage = "KHẨN CẤP: yêu cầu #" + broadcast.requestId + " cần " + amount
+                    + " đơn vị máu " + bloodType + ". Vui lòng xử lý ngay.";
+            Batch staff = new Batch(broadcast, staffMessage, broadcast.staffQueued);
+            for (Role role : new Role[] {Role.STAFF, Role.ADMIN}) {
+                for (User user : userRepository.findByRole(role)) {
+                    staff.add(user.getEmail());
+                }
+            }
+            staff.flush();
+
+            BloodType type = BloodType.fromLabel(bloodType);
+            if (type != null && isShort(type, amount)) {
+                broadcast.stockShort = true;
+                List<String> donorTypes = compatibilityService.getCompatibleBloodTypes(type.getLabel());
+                String donorMessage = "KHẨN CẤP: bệnh viện đang cần gấp máu " + type.getLabel()
+                        + ". Bạn đã đủ điều kiện hiến máu, mong bạn đến điểm hiến máu gần nhất sớm nhất có thể.";
+                Batch donors = new Batch(broadcast, donorMessage, broadcast.donorsQueued);
+                donorEligibilityIndex.forEachEligibleEmail(LocalDate.now(), donorTypes, donors::add);
+                donors.flush();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Emergency broadcast of request " + broadcast.requestId + " failed: " + e.getMessage());
+        } finally {
+            permits.release();
+            broadcast.finish();
+            System.out.println("Emergency broadcast of request " + broadcast.requestId + " queued: "
+                    + broadcast.staffQueued.get() + " staff, " + broadcast.donorsQueued.get() + " donors, "
+                    + broadcast.failed.get() + " failed");
+        }
+    }
+
+    // Kho (gồm cả nhóm máu tương thích) không đủ cho yêu cầu
+    private boolean isShort(BloodType type, int amount) {
+        int[] quantities = new int[BloodType.COUNT];
+        inventoryLedger.copyAvailable(quantities);
+        long available = 0;
+        for (int quantity : compatibilityService.findAvailableCompatibleBlood(type.getLabel(), quantities).values()) {
+            available += quantity;
+        }
+        return available < amount;
+    }
+
+    private static String key(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Recipients of one message, written to the outbox every {@code batchSize} addresses.
+     */
+    private final class Batch {
+        private final Broadcast broadcast;
+        private final String message;
+        private final AtomicLong counter;
+        private final List<String> emails = new ArrayList<>();
+
+        private Batch(Broadcast broadcast, String message, AtomicLong counter) {
+            this.broadcast = broadcast;
+            this.message = message;
+            this.counter = counter;
+        }
+
+        void add(String email) {
+            if (email == null || email.isBlank()) {
+                return;
+            }
+            if (!broadcast.recipients.add(key(email))) {
+                broadcast.duplicatesSkipped.incrementAndGet();
+                return;
+            }
+            emails.add(email);
+            if (emails.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (emails.isEmpty()) {
+                return;
+            }
+            try {
+                counter.addAndGet(notificationService.sendNotifications(emails, message));
+            } catch (RuntimeException e) {
+                broadcast.failed.addAndGet(emails.size());
+                System.err.println("Failed to queue " + emails.size() + " emergency notifications of request "
+                        + broadcast.requestId + ": " + e.getMessage());
+                // Cho phép gửi lại nếu yêu cầu được nâng lên CRITICAL lần nữa
+                for (String email : emails) {
+                    broadcast.recipients.remove(key(email));
+                }
+            } finally {
+                emails.clear();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 3_600_000)
+    public void evictFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(DEDUP_RETENTION);
+        broadcasts.values().removeIf(b -> !b.running && b.finishedAt != null && b.finishedAt.isBefore(cutoff));
+    }
+
+    private static final class Broadcast {
+        private final Long requestId;
+        private final Set<String> recipients = ConcurrentHashMap.newKeySet();
+        private final AtomicLong staffQueued = new AtomicLong();
+        private final AtomicLong donorsQueued = new AtomicLong();
+        private final AtomicLong duplicatesSkipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile boolean running;
+        private volatile boolean stockShort;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        private Broadcast(Long requestId) {
+            this.requestId = requestId;
+        }
+
+        synchronized boolean start() {
+            if (running) {
+                return false;
+            }
+            running = true;
+            stockShort = false;
+            startedAt = LocalDateTime.now();
+            finishedAt = null;
+            return true;
+        }
+
+        synchronized void finish() {
+            running = false;
+            finishedAt = LocalDateTime.now();
+        }
+
+        BroadcastStatus status() {
+            BroadcastStatus status = new BroadcastStatus();
+            status.setRequestId(requestId);
+            status.setRunning(running);
+            status.setStockShort(stockShort);
+            status.setStaffQueued(staffQueued.get());
+            status.setDonorsQueued(donorsQueued.get());
+            status.setDuplicatesSkipped(duplicatesSkipped.get());
+            status.setFailed(failed.get());
+            status.setStartedAt(startedAt);
+            status.setFinishedAt(finishedAt);
+            return status;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.InventoryEventType;
+
+/**
+ * Receives the stock changes made through {@link InventoryLedger}.
+ * Implementations are called on the committing thread and must be cheap.
+ */
+public interface InventoryChangeListener {
+
+    /**
+     * Stock level of a blood type when the ledger is (re)loaded
+     */
+    default void onLoaded(String bloodType, int level) {
+    }
+
+    /**
+     * A change whose transaction has committed
+     * @param level stock of the blood type after the change
+     */
+    void onCommitted(InventoryEventType type, String bloodType, int delta, int level, User actor);
+}
@@ -0,0 +1,50 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.repo.BloodInventoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * One-time migration that merges duplicate blood_inventory rows (left over from
+ * before the unique constraint on blood_type) into a single row per blood type.
+ * Runs at startup and does nothing once the table is clean.
+ */
+@Component
+public class InventoryConsolidation {
+
+    @Autowired
+    private BloodInventoryRepository bloodInventoryRepository;
+
+    /**
+     * @return number of rows removed
+     */
+    @Transactional
+    public int consolidateDuplicates() {
+        int removed = 0;
+        for (String bloodType : bloodInventoryRepository.findDuplicatedBloodTypes()) {
+            List<BloodInventory> rows = bloodInventoryRepository.findAllByBloodTypeOrderByIdAsc(bloodType);
+
+            // Giữ dòng đầu tiên, cộng dồn số lượng của các dòng còn lại vào đó
+            BloodInventory kept = rows.get(0);
+            int total = 0;
+            for (BloodInventory row : rows) {
+                total += row.getQuantity() != null ? row.getQuantity() : 0;
+                if (kept.getUpdatedBy() == null) {
+                    kept.setUpdatedBy(row.getUpdatedBy());
+                }
+            }
+            kept.setQuantity(total);
+            bloodInventoryRepository.deleteAll(rows.subList(1, rows.size()));
+            bloodInventoryRepository.save(kept);
+            removed += rows.size() - 1;
+        }
+        if (removed > 0) {
+            System.out.println("Merged " + removed + " duplicate blood inventory rows");
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.InventoryAsOf;
+import com.example.demo1.entity.InventorySnapshot;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
+import com.example.demo1.entity.enums.InventoryEventType;
+import com.example.demo1.repo.InventoryEventRepository;
+import com.example.demo1.repo.InventorySnapshotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Append-only log of inventory changes, with periodic snapshots.
+ *
+ * {@link InventoryLedger} appends every change in the same transaction as the
+ * blood_inventory update, so an event exists exactly when its change is
+ * committed. A snapshot stores the level of each blood type up to an event id,
+ * so the level can be rebuilt from the latest snapshot plus the events written
+ * after it. Snapshots read their last event id under a table lock, so no event
+ * with a smaller id can still be uncommitted at that point.
+ */
+@Component
+public class InventoryEventLog {
+
+    private static final String INSERT_EVENT =
+            "insert into inventory_events (blood_type, event_type, delta, quantity_after, occurred_at, actor_id) " +
+            "values (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InventoryEventRepository inventoryEventRepository;
+
+    @Autowired
+    private InventorySnapshotRepository inventorySnapshotRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Insert one event in the caller's transaction; it is rolled back with the change.
+     * @param quantityAfter level of the blood type once the change is applied
+     * @return id of the new event
+     */
+    public long append(InventoryEventType type, String bloodType, int delta, int quantityAfter, User actor) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_EVENT, Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, bloodType);
+            statement.setString(2, type.name());
+            statement.setInt(3, delta);
+            statement.setInt(4, quantityAfter);
+            statement.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            statement.setObject(6, actor != null ? actor.getId() : null, Types.BIGINT);
+            return statement;
+        }, keyHolder);
+        Number key = keyHolder.getKey();
+        return key != null ? key.longValue() : 0;
+    }
+
+    /**
+     * Store the current level of each blood type that changed since its last snapshot.
+     * @return number of snapshots written
+     */
+    @Scheduled(fixedDelayString = "${inventory.snapshot.interval-ms:3600000}",
+            initialDelayString = "${inventory.snapshot.interval-ms:3600000}")
+    public synchronized int takeSnapshots() {
+        Integer written = new TransactionTemplate(transactionManager).execute(status -> {
+            // Khóa chia sẻ cả bảng đến hết giao dịch: id IDENTITY được cấp trước khi commit, nên phải chờ
+            // các giao dịch đang ghi sự kiện commit xong, và chặn sự kiện mới, thì mọi id <= upToId mới là
+            // đã commit. Không có khóa, một sự kiện id nhỏ hơn commit sau snapshot sẽ không bao giờ được tính
+            long upToId = jdbcTemplate.queryForObject(
+                    "select coalesce(max(id), 0) from inventory_events with (tablock, holdlock)", Long.class);
+            // Mọi sự kiện ghi nhận trước thời điểm này đều nằm trong snapshot
+            LocalDateTime cutoff = LocalDateTime.now();
+            int count = 0;
+            for (String bloodType : knownBloodTypes()) {
+                Optional<InventorySnapshot> latest = inventorySnapshotRepository.findTopByBloodTypeOrderByLastEventIdDesc(bloodType);
+                long afterId = latest.map(InventorySnapshot::getLastEventId).orElse(0L);
+                if (inventoryEventRepository.findMaxIdByBloodType(bloodType) <= afterId) {
+                    continue;
+                }
+                int base = latest.map(InventorySnapshot::getQuantity).orElse(0);
+                saveSnapshot(bloodType, base + (int) inventoryEventRepository.sumDelta(bloodType, afterId, upToId), upToId, cutoff);
+                count++;
+            }
+            return count;
+        });
+        return written != null ? written : 0;
+    }
+
+    /**
+     * Stock of each blood type at {@code at}: the latest snapshot taken before
+     * {@code at} plus the events between that snapshot and {@code at}. Snapshots
+     * are at most one interval apart, so the event range read is short whatever
+     * the date. Blood types without a snapshot before {@code at} are reported as unknown.
+     */
+    public InventoryAsOf asOf(LocalDateTime at) {
+        long start = System.nanoTime();
+        InventoryAsOf result = new InventoryAsOf();
+        result.setAt(at);
+
+        Map<String, InventorySnapshot> snapshots = new HashMap<>();
+        for (InventorySnapshot snapshot : inventorySnapshotRepository.findLatestPerBloodTypeAt(at)) {
+            snapshots.put(snapshot.getBloodType(), snapshot);
+        }
+        for (String bloodType : knownBloodTypes()) {
+            InventorySnapshot snapshot = snapshots.get(bloodType);
+            if (snapshot == null) {
+                result.getUnknownBloodTypes().add(bloodType);
+                continue;
+            }
+            long delta = inventoryEventRepository.sumDeltaBetween(bloodType, snapshot.getLastEventId(), snapshot.getTakenAt(), at);
+            result.getQuantities().put(bloodType, snapshot.getQuantity() + (int) delta);
+        }
+        result.setComputeTimeMs((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Level of each blood type rebuilt from the latest snapshot plus the events after it.
+     */
+    public Map<String, Integer> rebuild() {
+        Map<String, Integer> levels = new TreeMap<>();
+        for (String bloodType : knownBloodTypes()) {
+            Optional<InventorySnapshot> latest = inventorySnapshotRepository.findTopByBloodTypeOrderByLastEventIdDesc(bloodType);
+            long afterId = latest.map(InventorySnapshot::getLastEventId).orElse(0L);
+            int base = latest.map(InventorySnapshot::getQuantity).orElse(0);
+            levels.put(bloodType, base + (int) inventoryEventRepository.sumDelta(bloodType, afterId, Long.MAX_VALUE));
+        }
+        return levels;
+    }
+
+    // Lần đầu chạy: ghi mức tồn kho hiện có làm snapshot gốc, các sự kiện sau đó cộng dồn lên.
+    // Chạy trước các tác vụ khởi động khác (vd. loại bỏ túi máu hết hạn) để không bị tính trùng
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void baseline() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            // Khóa các dòng kho đến hết giao dịch: thay đổi đang mở phải commit trước (cùng sự kiện của nó),
+            // thay đổi mới phải chờ, nên mức tồn kho và id sự kiện lớn nhất đọc được khớp nhau
+            Map<String, Integer> current = new LinkedHashMap<>();
+            for (BloodType type : BloodType.values()) {
+                current.put(type.getLabel(), 0); // nhóm máu chưa có trong kho bắt đầu từ 0
+            }
+            jdbcTemplate.query("select blood_type, quantity from blood_inventory with (updlock, holdlock)", rs -> {
+                if (rs.getString(1) != null) {
+                    current.put(rs.getString(1), rs.getInt(2));
+                }
+            });
+            LocalDateTime cutoff = LocalDateTime.now();
+            long upToId = inventoryEventRepository.findMaxId();
+            current.forEach((bloodType, quantity) -> {
+                if (inventorySnapshotRepository.findTopByBloodTypeOrderByLastEventIdDesc(bloodType).isEmpty()
+                        && inventoryEventRepository.findMaxIdByBloodType(bloodType) == 0) {
+                    saveSnapshot(bloodType, quantity, upToId, cutoff);
+                }
+            });
+        });
+    }
+
+    private Set<String> knownBloodTypes() {
+        Set<String> bloodTypes = new TreeSet<>(inventoryEventRepository.findBloodTypes());
+        bloodTypes.addAll(inventorySnapshotRepository.findBloodTypes());
+        return bloodTypes;
+    }
+
+    private void saveSnapshot(String bloodType, int quantity, long lastEventId, LocalDateTime takenAt) {
+        InventorySnapshot snapshot = new InventorySnapshot();
+        snapshot.setBloodType(bloodType);
+        snapshot.setQuantity(quantity);
+        snapshot.setLastEventId(lastEventId);
+        snapshot.setTakenAt(takenAt);
+        inventorySnapshotRepository.save(snapshot);
+    }
+}
@@ -0,0 +1,449 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
+import com.example.demo1.entity.enums.InventoryEventType;
+import com.example.demo1.repo.BloodInventoryRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory ledger of blood stock, one cell per blood type.
+ *
+ * Each cell has its own lock, so confirmations on different blood types never
+ * wait for each other and confirmations on the same type only serialize for the
+ * few nanoseconds needed to check and update the counters. The database row is
+ * then changed with a relative update (quantity = quantity + delta), so two
+ * concurrent writers can no longer overwrite each other's result. Reads are
+ * answered from the cells without touching the database.
+ *
+ * A cell only counts committed stock: credits and manual corrections are added
+ * once their transaction commits, so nobody can debit units that may still be
+ * rolled back. A debit holds its units while its transaction is open, so two
+ * transactions cannot take the same units; the hold is dropped on rollback and
+ * turned into a lower on-hand count on commit. Every change is appended to the
+ * {@link InventoryEventLog} in its own transaction; after a commit every
+ * {@link InventoryChangeListener} (low-stock alerts, forecast, ...) is told
+ * about it.
+ */
+@Component
+public class InventoryLedger {
+
+    @Autowired
+    private BloodInventoryRepository bloodInventoryRepository;
+
+    @Autowired
+    private InventoryConsolidation inventoryConsolidation;
+
+    @Autowired
+    private InventoryWriteBehind inventoryWriteBehind;
+
+    @Autowired
+    private InventoryEventLog inventoryEventLog;
+
+    @Autowired
+    private List<InventoryChangeListener> inventoryChangeListeners;
+
+    private final Map<String, Cell> cells = new ConcurrentHashMap<>();
+
+    // Same cells indexed by BloodType ordinal, for allocation-free reads
+    private final Cell[] typedCells = new Cell[BloodType.COUNT];
+
+    @PostConstruct
+    public void reload() {
+        // Ghi nốt các credit còn trong journal của lần chạy trước
+        inventoryWriteBehind.recover();
+        // Gộp các dòng trùng (dữ liệu cũ) một lần trước khi nạp vào bộ nhớ
+        inventoryConsolidation.consolidateDuplicates();
+
+        Map<String, Cell> loaded = new HashMap<>();
+        for (BloodInventory inventory : bloodInventoryRepository.findAll()) {
+            if (inventory.getBloodType() == null) {
+                continue;
+            }
+            Cell cell = new Cell();
+            cell.onHand = inventory.getQuantity() != null ? inventory.getQuantity() : 0;
+            loaded.put(inventory.getBloodType(), cell);
+        }
+        cells.clear();
+        Arrays.fill(typedCells, null);
+        loaded.forEach((bloodType, cell) -> {
+            cells.put(bloodType, cell);
+            index(bloodType, cell);
+            inventoryChangeListeners.forEach(listener -> listener.onLoaded(bloodType, cell.onHand));
+        });
+    }
+
+    /**
+     * Add units to the stock of a blood type, creating the inventory row if needed.
+     * The units become available when the transaction commits.
+     */
+    @Transactional
+    public void credit(String bloodType, int amount, User actor) {
+        if (amount <= 0) {
+            return;
+        }
+        Cell cell = cells.computeIfAbsent(bloodType, this::newCell);
+        long eventId = appendEvent(InventoryEventType.CREDIT, bloodType, cell, amount, actor);
+        if (inventoryWriteBehind.isEnabled()) {
+            // Ghi journal ngay trước khi commit, DB được cập nhật theo lô; sự kiện đi trước blood_inventory đến lần flush
+            inventoryWriteBehind.credit(bloodType, amount, eventId);
+            onCompletion(() -> committed(InventoryEventType.CREDIT, bloodType, cell, amount, actor), null);
+            return;
+        }
+        persistDelta(bloodType, cell, amount, actor);
+        onCompletion(() -> committed(InventoryEventType.CREDIT, bloodType, cell, amount, actor), null);
+    }
+
+    /**
+     * Remove units from the free stock of a blood type.
+     * @return false if there are not enough unreserved units, nothing is changed in that case
+     */
+    @Transactional
+    public boolean debit(String bloodType, int amount, User actor) {
+        Cell cell = cells.get(bloodType);
+        if (cell == null || amount <= 0) {
+            return false;
+        }
+        synchronized (cell) {
+            if (cell.free() < amount) {
+                return false;
+            }
+            cell.held += amount;
+        }
+        onCompletion(() -> {
+            synchronized (cell) {
+                cell.held -= amount;
+            }
+            committed(InventoryEventType.DEBIT, bloodType, cell, -amount, actor);
+        }, () -> {
+            synchronized (cell) {
+                cell.held -= amount;
+            }
+        });
+        persistDelta(bloodType, cell, -amount, actor);
+        appendEvent(InventoryEventType.DEBIT, bloodType, cell, -amount, actor);
+        return true;
+    }
+
+    /**
+     * Hold units so that they are no longer reported as available.
+     * Reservations only live in memory, the stored quantity does not change.
+     */
+    public boolean reserve(String bloodType, int amount) {
+        Cell cell = cells.get(bloodType);
+        if (cell == null || amount <= 0) {
+            return false;
+        }
+        synchronized (cell) {
+            if (cell.free() < amount) {
+                return false;
+            }
+            cell.reserved += amount;
+            return true;
+        }
+    }
+
+    public void release(String bloodType, int amount) {
+        Cell cell = cells.get(bloodType);
+        if (cell == null || amount <= 0) {
+            return;
+        }
+        synchronized (cell) {
+            cell.reserved = Math.max(0, cell.reserved - amount);
+        }
+    }
+
+    /**
+     * Turn a reservation into a debit.
+     * @return false if the stock shrank below the reserved amount (e.g. expired units),
+     *         nothing is changed in that case
+     */
+    @Transactional
+    public boolean debitReserved(String bloodType, int amount, User actor) {
+        Cell cell = cells.get(bloodType);
+        if (cell == null || amount <= 0) {
+            return false;
+        }
+        synchronized (cell) {
+            if (cell.onHand - cell.held < amount) {
+                return false;
+            }
+            // Phần giữ chỗ chuyển thành phần đang trừ, số khả dụng không đổi
+            cell.reserved = Math.max(0, cell.reserved - amount);
+            cell.held += amount;
+        }
+        onCompletion(() -> {
+            synchronized (cell) {
+                cell.held -= amount;
+            }
+            committed(InventoryEventType.DEBIT, bloodType, cell, -amount, actor);
+        }, () -> {
+            synchronized (cell) {
+                cell.held -= amount;
+                cell.reserved += amount;
+            }
+        });
+        persistDelta(bloodType, cell, -amount, actor);
+        appendEvent(InventoryEventType.DEBIT, bloodType, cell, -amount, actor);
+        return true;
+    }
+
+    /**
+     * Remove units that can no longer be issued (e.g. expired bags), even if
+     * they are reserved. Never goes below zero.
+     * @return the number of units actually removed
+     */
+    @Transactional
+    public int writeOff(String bloodType, int amount, User actor) {
+        Cell cell = cells.get(bloodType);
+        if (cell == null || amount <= 0) {
+            return 0;
+        }
+        int removed;
+        synchronized (cell) {
+            removed = Math.max(0, Math.min(amount, cell.onHand - cell.held));
+            cell.held += removed;
+        }
+        if (removed == 0) {
+            return 0;
+        }
+        onCompletion(() -> {
+            synchronized (cell) {
+                cell.held -= removed;
+            }
+            committed(InventoryEventType.WRITE_OFF, bloodType, cell, -removed, actor);
+        }, () -> {
+            synchronized (cell) {
+                cell.held -= removed;
+            }
+        });
+        persistDelta(bloodType, cell, -removed, actor);
+        appendEvent(InventoryEventType.WRITE_OFF, bloodType, cell, -removed, actor);
+        return removed;
+    }
+
+    /**
+     * Overwrite the stock of a blood type (manual correction by staff/admin).
+     * Stored as the difference to the committed stock, so changes that commit
+     * concurrently are kept instead of being overwritten.
+     */
+    @Transactional
+    public BloodInventory set(BloodInventory inventory, int quantity, User actor) {
+        // Các credit đang chờ phải xuống DB trước khi so sánh với số trong bộ nhớ
+        flushPending();
+        String bloodType = inventory.getBloodType();
+        Cell cell = cells.computeIfAbsent(bloodType, this::newCell);
+        int delta;
+        synchronized (cell) {
+            delta = quantity - cell.onHand;
+        }
+        // Cập nhật tương đối, không ghi đè số tuyệt đối lên dòng DB
+        persistDelta(bloodType, cell, delta, actor);
+        if (delta != 0) {
+            appendEvent(InventoryEventType.ADJUSTMENT, bloodType, cell, delta, actor);
+            onCompletion(() -> committed(InventoryEventType.ADJUSTMENT, bloodType, cell, delta, actor), null);
+        }
+
+        BloodInventory saved = new BloodInventory();
+        bloodInventoryRepository.findByBloodType(bloodType).ifPresent(row -> saved.setId(row.getId()));
+        saved.setBloodType(bloodType);
+        saved.setQuantity(quantity);
+        saved.setUpdatedBy(actor != null ? actor : inventory.getUpdatedBy());
+        return saved;
+    }
+
+    /**
+     * Write credits still held by the write-behind mode to the database.
+     * Must be called before the blood_inventory rows are changed or read directly.
+     */
+    public void flushPending() {
+        if (!inventoryWriteBehind.isEnabled()) {
+            return;
+        }
+        inventoryWriteBehind.flush();
+        if (inventoryWriteBehind.hasUnflushed()) {
+            throw new IllegalStateException("Pending inventory credits could not be written to the database, try again later");
+        }
+    }
+
+    /**
+     * Re-read the stored quantity of one blood type after its rows were changed
+     * outside the ledger (e.g. deleted). Reservations are kept.
+     */
+    public void refresh(String bloodType) {
+        Optional<BloodInventory> row = bloodInventoryRepository.findByBloodType(bloodType);
+        if (row.isEmpty()) {
+            Cell removed = cells.remove(bloodType);
+            index(bloodType, null);
+            if (removed != null && removed.onHand != 0) {
+                inventoryEventLog.append(InventoryEventType.ADJUSTMENT, bloodType, -removed.onHand, 0, null);
+                notifyListeners(InventoryEventType.ADJUSTMENT, bloodType, -removed.onHand, 0, null);
+            }
+            return;
+        }
+        Cell cell = cells.computeIfAbsent(bloodType, this::newCell);
+        int quantity = row.get().getQuantity() != null ? row.get().getQuantity() : 0;
+        int previous;
+        synchronized (cell) {
+            previous = cell.onHand;
+            cell.onHand = quantity;
+        }
+        if (quantity != previous) {
+            inventoryEventLog.append(InventoryEventType.ADJUSTMENT, bloodType, quantity - previous, quantity, null);
+            notifyListeners(InventoryEventType.ADJUSTMENT, bloodType, quantity - previous, quantity, null);
+        }
+    }
+
+    public boolean contains(String bloodType) {
+        return bloodType != null && cells.containsKey(bloodType);
+    }
+
+    public int getOnHand(String bloodType) {
+        Cell cell = bloodType != null ? cells.get(bloodType) : null;
+        if (cell == null) {
+            return 0;
+        }
+        synchronized (cell) {
+            return cell.onHand;
+        }
+    }
+
+    /**
+     * Units that can still be debited or reserved (on hand minus reserved).
+     */
+    public int getAvailable(String bloodType) {
+        Cell cell = bloodType != null ? cells.get(bloodType) : null;
+        if (cell == null) {
+            return 0;
+        }
+        synchronized (cell) {
+            return cell.free();
+        }
+    }
+
+    /**
+     * Copy the available quantity of each blood type into {@code target},
+     * indexed by {@link BloodType#ordinal()}. Unknown types count as 0.
+     */
+    public void copyAvailable(int[] target) {
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            Cell cell = typedCells[i];
+            if (cell == null) {
+                target[i] = 0;
+                continue;
+            }
+            synchronized (cell) {
+                target[i] = cell.free();
+            }
+        }
+    }
+
+    private Cell newCell(String bloodType) {
+        Cell cell = new Cell();
+        index(bloodType, cell);
+        return cell;
+    }
+
+    private void index(String bloodType, Cell cell) {
+        BloodType type = BloodType.fromLabel(bloodType);
+        if (type != null) {
+            typedCells[type.ordinal()] = cell;
+        }
+    }
+
+    private void persistDelta(String bloodType, Cell cell, int delta, User actor) {
+        if (addQuantity(bloodType, delta, actor) > 0) {
+            return;
+        }
+        synchronized (cell) {
+            // Re-check under the cell lock so only one thread inserts the row
+            if (addQuantity(bloodType, delta, actor) > 0) {
+                return;
+            }
+            BloodInventory created = new BloodInventory();
+            created.setBloodType(bloodType);
+            created.setQuantity(delta);
+            created.setUpdatedBy(actor);
+            bloodInventoryRepository.saveAndFlush(created);
+        }
+    }
+
+    private int addQuantity(String bloodType, int delta, User actor) {
+        return actor != null
+                ? bloodInventoryRepository.addQuantity(bloodType, delta, actor)
+                : bloodInventoryRepository.addQuantity(bloodType, delta);
+    }
+
+    // Mức sau thay đổi tính theo tồn kho đã commit, chưa gồm các giao dịch khác đang mở
+    private long appendEvent(InventoryEventType type, String bloodType, Cell cell, int delta, User actor) {
+        int level;
+        synchronized (cell) {
+            level = cell.onHand + delta;
+        }
+        return inventoryEventLog.append(type, bloodType, delta, level, actor);
+    }
+
+    // Áp dụng thay đổi đã commit vào ô rồi báo cho các listener với mức tồn kho mới
+    private void committed(InventoryEventType type, String bloodType, Cell cell, int delta, User actor) {
+        int level;
+        synchronized (cell) {
+            cell.onHand += delta;
+            level = cell.onHand;
+        }
+        notifyListeners(type, bloodType, delta, level, actor);
+    }
+
+    private void notifyListeners(InventoryEventType type, String bloodType, int delta, int level, User actor) {
+        for (InventoryChangeListener listener : inventoryChangeListeners) {
+            listener.onCommitted(type, bloodType, delta, level, actor);
+        }
+    }
+
+    /**
+     * Run {@code onCommit} after the surrounding transaction commits and
+     * {@code onRollback} (may be null) if it rolls back; without a transaction
+     * the change is already durable and {@code onCommit} runs at once.
+     */
+    private void onCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else if (onRollback != null) {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
+    private static final class Cell {
+        // Tồn kho đã commit
+        private int onHand;
+        // Giữ chỗ cho yêu cầu đang mở
+        private int reserved;
+        // Đã trừ trong giao dịch chưa commit
+        private int held;
+
+        private int free() {
+            return Math.max(0, onHand - reserved - held);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Time-limited holds on blood stock for open blood requests.
+ *
+ * A hold reserves units in the {@link InventoryLedger}, so availability answers
+ * already exclude held units without any extra query. Holds expire through a
+ * hashed timer wheel: each tick only looks at one slot, so the cost of expiry
+ * does not grow with the number of live holds and the database is never polled.
+ *
+ * Holds only live in memory. After a restart, open requests simply have no hold
+ * until they are updated; stock itself is not affected.
+ */
+@Component
+public class InventoryReservations {
+
+    private static final int WHEEL_SIZE = 512; // power of two
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Value("${blood.reservation.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${blood.reservation.tick-ms:1000}")
+    private long tickMs;
+
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private final Queue<Hold>[] wheel = new Queue[WHEEL_SIZE];
+
+    // Only written by the scheduler thread
+    private volatile long currentTick;
+
+    public InventoryReservations() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Hold the requested amount for a request.
+     * @return false if there is not enough available stock, nothing is held in that case
+     */
+    public boolean hold(BloodRequest request) {
+        if (request.getId() == null || request.getRequestedAmount() <= 0 || holds.containsKey(request.getId())) {
+            return false;
+        }
+        if (!inventoryLedger.reserve(request.getRecipientBloodType(), request.getRequestedAmount())) {
+            return false;
+        }
+        long ticks = Math.max(1, (ttlMinutes * 60_000 + tickMs - 1) / tickMs);
+        Hold hold = new Hold(request.getId(), request.getRecipientBloodType(), request.getRequestedAmount(), currentTick + ticks);
+        if (holds.putIfAbsent(hold.requestId, hold) != null) {
+            // Another thread placed a hold for the same request first
+            inventoryLedger.release(hold.bloodType, hold.amount);
+            return false;
+        }
+        wheel[(int) (hold.deadlineTick & (WHEEL_SIZE - 1))].add(hold);
+        return true;
+    }
+
+    /**
+     * Drop the hold of a request and give its units back.
+     * @return true if the request had a hold
+     */
+    public boolean cancel(Long requestId) {
+        Hold hold = requestId != null ? holds.remove(requestId) : null;
+        if (hold == null) {
+            return false;
+        }
+        inventoryLedger.release(hold.bloodType, hold.amount);
+        return true;
+    }
+
+    /**
+     * Keep the hold of a saved request consistent with it: closed requests lose
+     * their hold, a changed blood type or amount moves the hold.
+     */
+    public void sync(BloodRequest request) {
+        Hold hold = holds.get(request.getId());
+        if (hold == null) {
+            return;
+        }
+        boolean open = request.getStatus() != null && BloodRequestQueue.OPEN_STATUSES.contains(request.getStatus());
+        if (!open) {
+            cancel(request.getId());
+        } else if (!hold.bloodType.equals(request.getRecipientBloodType()) || hold.amount != request.getRequestedAmount()) {
+            cancel(request.getId());
+            hold(request);
+        }
+    }
+
+    /**
+     * Debit stock for a request, using its hold when there is one.
+     * If the surrounding transaction rolls back, the hold is put back so it can
+     * still expire or be cancelled; otherwise its units would stay reserved.
+     * @return false if there is not enough stock
+     */
+    public boolean debit(Long requestId, String bloodType, int amount, User actor) {
+        Hold hold = requestId != null ? holds.remove(requestId) : null;
+        if (hold == null) {
+            return inventoryLedger.debit(bloodType, amount, actor);
+        }
+        if (hold.bloodType.equals(bloodType) && hold.amount == amount) {
+            // Units were already set aside, only fails if they expired meanwhile
+            if (inventoryLedger.debitReserved(bloodType, amount, actor)) {
+                // Sổ cái tự trả lại phần giữ chỗ khi rollback, chỉ cần gắn lại hold
+                onRollback(() -> restore(hold));
+                return true;
+            }
+            inventoryLedger.release(bloodType, amount);
+            return false;
+        }
+        // Different type or amount: give the held units back and debit normally
+        inventoryLedger.release(hold.bloodType, hold.amount);
+        if (inventoryLedger.debit(bloodType, amount, actor)) {
+            onRollback(() -> {
+                if (inventoryLedger.reserve(hold.bloodType, hold.amount)) {
+                    restore(hold);
+                }
+            });
+            return true;
+        }
+        if (inventoryLedger.reserve(hold.bloodType, hold.amount)) {
+            restore(hold);
+        }
+        return false;
+    }
+
+    /**
+     * Put back a hold whose units are reserved again. If the request got a new
+     * hold in the meantime, the units are released instead.
+     */
+    private void restore(Hold hold) {
+        // Hạn cũ có thể đã qua trong lúc giao dịch chạy, khi đó hết hạn ở tick kế tiếp
+        Hold restored = new Hold(hold.requestId, hold.bloodType, hold.amount, Math.max(hold.deadlineTick, currentTick + 1));
+        if (holds.putIfAbsent(restored.requestId, restored) != null) {
+            inventoryLedger.release(hold.bloodType, hold.amount);
+            return;
+        }
+        wheel[(int) (restored.deadlineTick & (WHEEL_SIZE - 1))].add(restored);
+    }
+
+    private static void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    public boolean isHeld(Long requestId) {
+        return requestId != null && holds.containsKey(requestId);
+    }
+
+    /**
+     * Add the held quantity of each blood type to {@code target},
+     * indexed by {@link BloodType#ordinal()}.
+     */
+    public void addHeld(int[] target) {
+        for (Hold hold : holds.values()) {
+            BloodType type = BloodType.fromLabel(hold.bloodType);
+            if (type != null) {
+                target[type.ordinal()] += hold.amount;
+            }
+        }
+    }
+
+    public int size() {
+        return holds.size();
+    }
+
+    @Scheduled(fixedRateString = "${blood.reservation.tick-ms:1000}")
+    public void tick() {
+        long now = currentTick + 1;
+        Iterator<Hold> slot = wheel[(int) (now & (WHEEL_SIZE - 1))].iterator();
+        int expired = 0;
+        while (slot.hasNext()) {
+            Hold hold = slot.next();
+            if (holds.get(hold.requestId) != hold) {
+                // Already confirmed or cancelled
+                slot.remove();
+            } else if (hold.deadlineTick <= now) {
+                slot.remove();
+                if (holds.remove(hold.requestId, hold)) {
+                    inventoryLedger.release(hold.bloodType, hold.amount);
+                    expired++;
+                }
+            }
+        }
+        currentTick = now;
+        if (expired > 0) {
+            System.out.println("Released " + expired + " expired blood reservation(s)");
+        }
+    }
+
+    private static final class Hold {
+        private final long requestId;
+        private final String bloodType;
+        private final int amount;
+        private final long deadlineTick;
+
+        private Hold(long requestId, String bloodType, int amount, long deadlineTick) {
+            this.requestId = requestId;
+            this.bloodType = bloodType;
+            this.amount = amount;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
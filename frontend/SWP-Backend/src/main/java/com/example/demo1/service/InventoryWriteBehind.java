@@ -0,0 +1,351 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.InventoryWriteBatch;
+import com.example.demo1.repo.InventoryWriteBatchRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind mode for donation credits (inventory.write-behind.enabled=true),
+ * meant for donation drives where staff confirm hundreds of registrations an hour.
+ *
+ * Just before the confirming transaction commits, the credit is appended (and
+ * fsync'ed) to a local journal file together with the id of its CREDIT event;
+ * once it has committed it is added to an in-memory total per blood type.
+ * {@link InventoryLedger} already serves reads from memory. The totals are
+ * written to blood_inventory in one transaction with one batched UPDATE per
+ * flush, on a short interval or once enough credits are pending. Each journal
+ * file is a batch whose id is stored with the flush, so at startup unflushed
+ * journals are applied exactly once before the ledger loads. Only lines whose
+ * CREDIT event exists are replayed, so a credit whose transaction did not commit
+ * is skipped. A batch whose flush fails keeps its file and is retried on the
+ * next flush, under the same id.
+ *
+ * The CREDIT event is written in the confirming transaction, so in this mode
+ * inventory_events is ahead of blood_inventory until the next flush.
+ */
+@Component
+public class InventoryWriteBehind {
+
+    private static final String JOURNAL_PREFIX = "inventory-credits-";
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final String ADD_QUANTITY =
+            "update blood_inventory set quantity = coalesce(quantity, 0) + ? where blood_type = ?";
+    private static final String INSERT_ROW =
+            "insert into blood_inventory (blood_type, quantity) values (?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InventoryWriteBatchRepository inventoryWriteBatchRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.write-behind.max-pending:200}")
+    private int maxPending;
+
+    @Value("${inventory.write-behind.journal-dir:data/journal}")
+    private String journalDir;
+
+    private Map<String, Integer> pending = new HashMap<>();
+    private int pendingCount;
+    private String batchId;
+    private FileChannel journal;
+
+    // Lô đã đóng nhưng chưa ghi được xuống DB, theo thứ tự đóng
+    private final Map<String, Map<String, Integer>> unflushed = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+    // Credit giữ khóa đọc từ lúc ghi journal đến khi giao dịch kết thúc; flush chỉ đóng lô khi không còn credit nào dở dang
+    private final ReadWriteLock sealLock = new ReentrantReadWriteLock();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Apply journals left by a previous run. Called by {@link InventoryLedger} before it loads.
+     */
+    public synchronized void recover() {
+        Path dir = Paths.get(journalDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path file : files) {
+                String id = file.getFileName().toString();
+                id = id.substring(JOURNAL_PREFIX.length(), id.length() - JOURNAL_SUFFIX.length());
+                if ((journal != null && id.equals(batchId)) || unflushed.containsKey(id)) {
+                    continue;
+                }
+                Map<String, Integer> totals = replayTotals(Files.readAllLines(file, StandardCharsets.UTF_8));
+                if (apply(id, totals)) {
+                    System.out.println("Replayed inventory journal " + file.getFileName() + ": " + totals);
+                }
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay inventory journal in " + dir, e);
+        }
+    }
+
+    /**
+     * Journal a credit before its transaction commits and add it to the pending
+     * totals once it has committed. If the journal cannot be written the credit
+     * goes to blood_inventory directly, in the same transaction.
+     * @param eventId id of the CREDIT event written in the same transaction
+     */
+    public void credit(String bloodType, int amount, long eventId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Không có giao dịch: sự kiện đã được ghi xuống DB
+            sealLock.readLock().lock();
+            boolean journaled = journal(bloodType, amount, eventId);
+            committed(bloodType, amount, journaled);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+            private boolean journaled;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                sealLock.readLock().lock();
+                locked = true;
+                journaled = journal(bloodType, amount, eventId);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (!locked) {
+                    return;
+                }
+                if (status == STATUS_COMMITTED) {
+                    committed(bloodType, amount, journaled);
+                } else {
+                    // Dòng journal còn lại bị bỏ qua khi replay vì sự kiện của nó không tồn tại
+                    sealLock.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    // Gọi khi đang giữ khóa đọc
+    private boolean journal(String bloodType, int amount, long eventId) {
+        synchronized (this) {
+            try {
+                if (journal == null) {
+                    openJournal();
+                }
+                journal.write(ByteBuffer.wrap((bloodType + "," + amount + "," + eventId + "\n").getBytes(StandardCharsets.UTF_8)));
+                journal.force(false);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Cannot write inventory journal, writing credit directly: " + e.getMessage());
+            }
+        }
+        // Ghi thẳng trong giao dịch hiện tại (nếu có), rollback cùng với credit
+        addQuantities(Map.of(bloodType, amount));
+        return false;
+    }
+
+    // Gọi khi đang giữ khóa đọc, nhả khóa trước khi flush
+    private void committed(String bloodType, int amount, boolean journaled) {
+        boolean full = false;
+        try {
+            if (journaled) {
+                synchronized (this) {
+                    pending.merge(bloodType, amount, Integer::sum);
+                    full = ++pendingCount >= maxPending;
+                }
+            }
+        } finally {
+            sealLock.readLock().unlock();
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the pending totals, and batches whose earlier flush failed, to
+     * blood_inventory. Each batch is applied in its own transaction.
+     */
+    @Scheduled(fixedDelayString = "${inventory.write-behind.flush-ms:2000}")
+    public void flush() {
+        // Chỉ một lần flush chạy tại một thời điểm; credit mới không phải chờ lần ghi DB
+        synchronized (flushLock) {
+            List<Map.Entry<String, Map<String, Integer>>> batches;
+            // Chờ các credit đã ghi journal nhưng chưa commit xong, để tổng của lô khớp với file của nó
+            sealLock.writeLock().lock();
+            try {
+                synchronized (this) {
+                    if (journal != null) {
+                        // Đóng file journal hiện tại thành một lô
+                        try {
+                            journal.close();
+                        } catch (IOException e) {
+                            System.err.println("Cannot close inventory journal: " + e.getMessage());
+                        }
+                        journal = null;
+                        unflushed.put(batchId, pending);
+                        pending = new HashMap<>();
+                        pendingCount = 0;
+                    }
+                    batches = new ArrayList<>(unflushed.entrySet());
+                }
+            } finally {
+                sealLock.writeLock().unlock();
+            }
+
+            for (Map.Entry<String, Map<String, Integer>> batch : batches) {
+                try {
+                    apply(batch.getKey(), batch.getValue());
+                } catch (RuntimeException e) {
+                    // Giữ lại lô này và các lô sau, thử lại ở lần flush tiếp theo
+                    System.err.println("Failed to flush inventory journal " + batch.getKey() + ", will retry: " + e.getMessage());
+                    return;
+                }
+                synchronized (this) {
+                    unflushed.remove(batch.getKey());
+                }
+                try {
+                    Files.deleteIfExists(journalFile(batch.getKey()));
+                } catch (IOException e) {
+                    // Lô đã được ghi nhận trong inventory_write_batch, khởi động lại sẽ bỏ qua file này
+                    System.err.println("Cannot delete inventory journal " + batch.getKey() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Credits are held that are not yet in blood_inventory.
+     */
+    public synchronized boolean hasUnflushed() {
+        return !unflushed.isEmpty() || !pending.isEmpty();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * @return false if the batch had already been applied
+     */
+    private boolean apply(String id, Map<String, Integer> totals) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return Boolean.TRUE.equals(transaction.execute(status -> {
+            if (inventoryWriteBatchRepository.existsById(id)) {
+                return false;
+            }
+            addQuantities(totals);
+
+            InventoryWriteBatch batch = new InventoryWriteBatch();
+            batch.setBatchId(id);
+            batch.setTotalUnits(totals.values().stream().mapToInt(Integer::intValue).sum());
+            batch.setFlushedAt(LocalDateTime.now());
+            inventoryWriteBatchRepository.save(batch);
+            return true;
+        }));
+    }
+
+    private void addQuantities(Map<String, Integer> totals) {
+        List<String> bloodTypes = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        totals.forEach((bloodType, delta) -> {
+            if (delta != 0) {
+                bloodTypes.add(bloodType);
+                updates.add(new Object[] {delta, bloodType});
+            }
+        });
+        int[] counts = jdbcTemplate.batchUpdate(ADD_QUANTITY, updates);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                jdbcTemplate.update(INSERT_ROW, bloodTypes.get(i), updates.get(i)[0]);
+            }
+        }
+    }
+
+    /**
+     * Totals of a journal file, keeping only credits whose CREDIT event was
+     * committed. Lines without an event id (older journals) are kept.
+     */
+    private Map<String, Integer> replayTotals(List<String> lines) {
+        List<String[]> credits = new ArrayList<>();
+        List<Long> eventIds = new ArrayList<>();
+        for (String line : lines) {
+            String[] parts = line.split(",");
+            if (parts.length == 2 || parts.length == 3) {
+                credits.add(parts);
+                if (parts.length == 3) {
+                    eventIds.add(Long.parseLong(parts[2].trim()));
+                }
+            }
+        }
+        Set<Long> committed = new HashSet<>();
+        for (int from = 0; from < eventIds.size(); from += 1000) {
+            List<Long> chunk = eventIds.subList(from, Math.min(from + 1000, eventIds.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            committed.addAll(jdbcTemplate.queryForList(
+                    "select id from inventory_events where id in (" + placeholders + ")", Long.class, chunk.toArray()));
+        }
+        Map<String, Integer> totals = new HashMap<>();
+        for (String[] parts : credits) {
+            if (parts.length == 3 && !committed.contains(Long.parseLong(parts[2].trim()))) {
+                continue; // giao dịch của credit này không commit
+            }
+            totals.merge(parts[0], Integer.parseInt(parts[1].trim()), Integer::sum);
+        }
+        return totals;
+    }
+
+    private void openJournal() throws IOException {
+        Files.createDirectories(Paths.get(journalDir));
+        batchId = UUID.randomUUID().toString();
+        journal = FileChannel.open(journalFile(batchId),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path journalFile(String id) {
+        return Paths.get(journalDir, JOURNAL_PREFIX + id + JOURNAL_SUFFIX);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.demo1.service;
+
+import com.example.demo1.config.LowStockProperties;
+import com.example.demo1.config.RecallProperties;
+import com.example.demo1.entity.LowStockAlert;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
+import com.example.demo1.entity.enums.InventoryEventType;
+import com.example.demo1.entity.enums.Role;
+import com.example.demo1.repo.LowStockAlertRepository;
+import com.example.demo1.repo.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Low-stock alerts, evaluated on every committed inventory change.
+ *
+ * Changes are reported on many threads in no fixed order, so the decision uses
+ * the ledger's current level (read under this monitor's lock), never the level
+ * passed with a possibly stale notification; the table is never re-read. An
+ * alert is sent only when a type goes from at-or-above its minimum to below it
+ * (one alert per shortage, not per debit), and at most once per
+ * {@code min-interval} per type if the level keeps crossing the line. The
+ * alert state is stored in low_stock_alerts, so a restart does not alert again
+ * for a shortage already reported. Sending and storing happen on a background
+ * thread so the change itself is not slowed down.
+ */
+@Component
+public class LowStockMonitor implements InventoryChangeListener {
+
+    @Autowired
+    private LowStockProperties lowStockProperties;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RecallProperties recallProperties;
+
+    @Autowired
+    private DonorRecallService donorRecallService;
+
+    @Autowired
+    private LowStockAlertRepository lowStockAlertRepository;
+
+    // Lazy: the ledger itself notifies this monitor
+    @Lazy
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    private final int[] minimums = new int[BloodType.COUNT];
+    private final boolean[] low = new boolean[BloodType.COUNT];
+    private final long[] lastAlertAt = new long[BloodType.COUNT];
+    private long minIntervalMs;
+
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "low-stock-alerts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        for (BloodType type : BloodType.values()) {
+            minimums[type.ordinal()] = lowStockProperties.getMinimums()
+                    .getOrDefault(type.getLabel(), lowStockProperties.getDefaultMinimum());
+        }
+        minIntervalMs = lowStockProperties.getMinInterval().toMillis();
+        try {
+            for (LowStockAlert alert : lowStockAlertRepository.findAll()) {
+                BloodType type = BloodType.fromLabel(alert.getBloodType());
+                if (type != null) {
+                    low[type.ordinal()] = alert.isLow();
+                    lastAlertAt[type.ordinal()] = alert.getLastAlertAt() != null
+                            ? alert.getLastAlertAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                            : 0;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Cannot load low stock alert state: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdown();
+    }
+
+    @Override
+    public void onLoaded(String bloodType, int level) {
+        check(bloodType);
+    }
+
+    @Override
+    public void onCommitted(InventoryEventType type, String bloodType, int delta, int level, User actor) {
+        check(bloodType);
+    }
+
+    /**
+     * Check the current stock level of a blood type.
+     */
+    public void check(String bloodType) {
+        BloodType type = BloodType.fromLabel(bloodType);
+        if (type == null) {
+            return;
+        }
+        int i = type.ordinal();
+        int minimum = minimums[i];
+        int level;
+        synchronized (this) {
+            level = inventoryLedger.getOnHand(bloodType);
+            if (level >= minimum) {
+                if (low[i]) {
+                    low[i] = false;
+                    store(bloodType, false, lastAlertAt[i]);
+                }
+                return;
+            }
+            if (low[i]) {
+                return; // đã cảnh báo cho đợt thiếu máu này
+            }
+            low[i] = true;
+            long now = System.currentTimeMillis();
+            if (lastAlertAt[i] != 0 && now - lastAlertAt[i] < minIntervalMs) {
+                store(bloodType, true, lastAlertAt[i]);
+                return;
+            }
+            lastAlertAt[i] = now;
+            store(bloodType, true, now);
+        }
+        String message = "Cảnh báo: nhóm máu " + bloodType + " chỉ còn " + level
+                + " đơn vị trong kho (mức tối thiểu " + minimum + ").";
+        sender.execute(() -> send(message));
+        if (recallProperties.isAutoOnLowStock()) {
+            sender.execute(() -> recall(bloodType));
+        }
+    }
+
+    // Gọi khi đang giữ khóa: hàng đợi một luồng giữ đúng thứ tự các lần ghi
+    private void store(String bloodType, boolean isLow, long alertAt) {
+        sender.execute(() -> {
+            try {
+                LowStockAlert alert = new LowStockAlert();
+                alert.setBloodType(bloodType);
+                alert.setLow(isLow);
+                alert.setLastAlertAt(alertAt != 0
+                        ? LocalDateTime.ofInstant(Instant.ofEpochMilli(alertAt), ZoneId.systemDefault())
+                        : null);
+                lowStockAlertRepository.save(alert);
+            } catch (RuntimeException e) {
+                System.err.println("Cannot store low stock alert state of " + bloodType + ": " + e.getMessage());
+            }
+        });
+    }
+
+    public int getMinimum(String bloodType) {
+        BloodType type = BloodType.fromLabel(bloodType);
+        return type != null ? minimums[type.ordinal()] : 0;
+    }
+
+    private void recall(String bloodType) {
+        try {
+            donorRecallService.recall(bloodType, null, null);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to recall donors for " + bloodType + ": " + e.getMessage());
+        }
+    }
+
+    private void send(String message) {
+        try {
+            List<String> recipients = new ArrayList<>(lowStockProperties.getRecipients());
+            if (recipients.isEmpty()) {
+                for (Role role : new Role[] {Role.STAFF, Role.ADMIN}) {
+                    for (User user : userRepository.findByRole(role)) {
+                        if (user.getEmail() != null) {
+                            recipients.add(user.getEmail());
+                        }
+                    }
+                }
+            }
+            recipients.forEach(email -> notificationService.sendNotification(email, message));
+        } catch (RuntimeException e) {
+            System.err.println("Failed to send low stock alert: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo1.service;
+
+import com.example.demo1.config.NotificationProperties;
+import com.example.demo1.entity.Notification;
+import com.example.demo1.entity.enums.NotificationChannel;
+import com.example.demo1.entity.enums.NotificationStatus;
+import com.example.demo1.repo.NotificationRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the notification outbox in the background.
+ *
+ * Due messages are claimed with one conditional UPDATE (PENDING -> SENDING,
+ * tagged with a claim token), so several instances never send the same row.
+ * Claimed messages are grouped by channel and each group goes to its transport
+ * as one batch. A failed message is retried with exponential backoff and
+ * jitter until {@code notification.max-attempts}, then marked FAILED.
+ *
+ * Delivery runs on its own thread, not on the shared scheduler, so slow SMTP
+ * never delays the other scheduled jobs. A run stops starting messages after
+ * half of {@code notification.stuck-after}, so {@code releaseStale} never
+ * hands a message that is still being sent to another instance. Results are
+ * written per row and only while the row still carries this run's claim token.
+ */
+@Component
+public class NotificationDispatcher {
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationProperties notificationProperties;
+
+    @Autowired
+    private List<NotificationTransport> transportList;
+
+    @Value("${notification.dispatch-interval-ms:1000}")
+    private long intervalMs;
+
+    private final Map<NotificationChannel, NotificationTransport> transports = new EnumMap<>(NotificationChannel.class);
+
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "notification-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        for (NotificationTransport transport : transportList) {
+            transports.put(transport.getChannel(), transport);
+        }
+        worker.scheduleWithFixedDelay(this::dispatch, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    public void dispatch() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Duration stuckAfter = notificationProperties.getStuckAfter();
+            int released = notificationRepository.releaseStale(now.minus(stuckAfter));
+            if (released > 0) {
+                System.err.println("Re-queued " + released + " notifications stuck in SENDING");
+            }
+            // Nửa còn lại của stuckAfter là dư cho tin đang gửi dở và việc ghi kết quả
+            Instant deadline = Instant.now().plus(stuckAfter.dividedBy(2));
+            while (Instant.now().isBefore(deadline)) {
+                if (dispatchBatch(deadline) < notificationProperties.getBatchSize()) {
+                    return; // hết tin đến hạn
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Notification dispatch failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Claim and send one batch of due messages.
+     * @return number of messages that were due
+     */
+    private int dispatchBatch(Instant deadline) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> due = notificationRepository.findDueIds(now, PageRequest.of(0, notificationProperties.getBatchSize()));
+        if (due.isEmpty()) {
+            return 0;
+        }
+        String token = UUID.randomUUID().toString();
+        if (notificationRepository.claim(due, token, now) == 0) {
+            return due.size(); // instance khác đã nhận hết, thử lô tiếp theo
+        }
+        List<Notification> claimed = notificationRepository.findByClaimToken(token);
+
+        Map<NotificationChannel, List<Notification>> byChannel = new EnumMap<>(NotificationChannel.class);
+        for (Notification notification : claimed) {
+            NotificationChannel channel = notification.getChannel() != null ? notification.getChannel() : NotificationChannel.EMAIL;
+            byChannel.computeIfAbsent(channel, c -> new ArrayList<>()).add(notification);
+        }
+        for (Map.Entry<NotificationChannel, List<Notification>> entry : byChannel.entrySet()) {
+            deliver(entry.getKey(), entry.getValue(), token, deadline);
+        }
+        return due.size();
+    }
+
+    private void deliver(NotificationChannel channel, List<Notification> batch, String token, Instant deadline) {
+        NotificationTransport transport = transports.get(channel);
+        List<String> results;
+        if (transport == null) {
+            results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                results.add("No transport for channel " + channel);
+            }
+        } else {
+            try {
+                results = transport.send(batch, deadline);
+            } catch (RuntimeException e) {
+                results = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    results.add(e.getMessage() != null ? e.getMessage() : e.toString());
+                }
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batch.size(); i++) {
+            Notification notification = batch.get(i);
+            int previous = notification.getAttempts() != null ? notification.getAttempts() : 0;
+            int updated;
+            if (i >= results.size()) {
+                // Chưa thử gửi (hết thời gian của lần chạy): trả về hàng đợi, không tính lần thử
+                updated = notificationRepository.complete(notification.getId(), token, NotificationStatus.PENDING,
+                        previous, notification.getNextAttemptAt(), null, notification.getLastError());
+            } else {
+                String error = results.get(i);
+                int attempts = previous + 1;
+                if (error == null) {
+                    updated = notificationRepository.complete(notification.getId(), token, NotificationStatus.SENT,
+                            attempts, notification.getNextAttemptAt(), now, null);
+                } else if (attempts >= notificationProperties.getMaxAttempts()) {
+                    updated = notificationRepository.complete(notification.getId(), token, NotificationStatus.FAILED,
+                            attempts, notification.getNextAttemptAt(), null, truncate(error));
+                    System.err.println("Notification " + notification.getId() + " to " + notification.getRecipient()
+                            + " failed after " + attempts + " attempts: " + error);
+                } else {
+                    updated = notificationRepository.complete(notification.getId(), token, NotificationStatus.PENDING,
+                            attempts, now.plus(backoff(attempts)), null, truncate(error));
+                }
+            }
+            if (updated == 0) {
+                System.err.println("Notification " + notification.getId() + " was re-queued while being sent, keeping the newer state");
+            }
+        }
+    }
+
+    // base * 2^(attempts-1), tối đa maxBackoff, cộng ngẫu nhiên tới 20% để các tin không thử lại cùng lúc
+    Duration backoff(int attempts) {
+        long base = notificationProperties.getBaseBackoff().toMillis();
+        long max = notificationProperties.getMaxBackoff().toMillis();
+        long delay = base << Math.min(attempts - 1, 20);
+        if (delay <= 0 || delay > max) {
+            delay = max;
+        }
+        return Duration.ofMillis(delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1));
+    }
+
+    private static String truncate(String error) {
+        return error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+}
@@ -1,5 +1,41 @@
 package com.example.demo1.service;
 
+import com.example.demo1.entity.Notification;
+import com.example.demo1.entity.enums.NotificationStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 public interface NotificationService {
+    /**
+     * Queue a message in the outbox. Inside a transaction the row is only
+     * committed (and later sent) together with the caller's changes.
+     * A blank or invalid address (see {@link EmailAddresses}) is logged and skipped.
+     */
     void sendNotification(String email, String message);
+
+    /**
+     * Queue the same message for many recipients with one batched INSERT.
+     * Blank and invalid addresses are skipped.
+     * @return number of messages queued
+     */
+    int sendNotifications(List<String> emails, String message);
+
+    /**
+     * Number of outbox messages per delivery status.
+     */
+    Map<NotificationStatus, Long> countByStatus();
+
+    /**
+     * Most recent outbox messages, optionally of one status or recipient.
+     */
+    List<Notification> getRecent(NotificationStatus status, String recipient, int limit);
+
+    /**
+     * Queue a FAILED message again with a fresh attempt count.
+     * @return empty if the message does not exist
+     * @throws IllegalStateException if the message has not failed
+     */
+    Optional<Notification> retry(Long id);
 }
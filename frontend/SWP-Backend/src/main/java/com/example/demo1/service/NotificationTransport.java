@@ -0,0 +1,22 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.Notification;
+import com.example.demo1.entity.enums.NotificationChannel;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Delivers outbox messages of one channel.
+ */
+public interface NotificationTransport {
+    NotificationChannel getChannel();
+
+    /**
+     * Send a batch of messages, ideally over one connection. No new message is
+     * started after {@code deadline}.
+     * @return one entry per attempted message, in order: null if it was sent,
+     *         otherwise the error; messages past the end of the list were not attempted
+     */
+    List<String> send(List<Notification> batch, Instant deadline);
+}
@@ -0,0 +1,190 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.ProhibitedDisease;
+import com.example.demo1.repo.ProhibitedDiseaseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory copy of the prohibited_diseases table.
+ *
+ * Readers get an immutable snapshot (list, lookup by id and an ETag computed
+ * from the content), so form loads and registration screening never query the
+ * database. Changes made through this class replace the snapshot right away;
+ * changes made elsewhere are picked up by the periodic refresh.
+ */
+@Component
+public class ProhibitedDiseaseCatalogue {
+
+    @Autowired
+    private ProhibitedDiseaseRepository diseaseRepository;
+
+    private volatile Snapshot snapshot;
+    private long version;
+
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    public List<ProhibitedDisease> getAll() {
+        return snapshot().getDiseases();
+    }
+
+    /**
+     * Diseases with the given ids, unknown ids are ignored.
+     */
+    public List<ProhibitedDisease> findAllById(Collection<Long> ids) {
+        Map<Long, ProhibitedDisease> byId = snapshot().byId;
+        List<ProhibitedDisease> result = new ArrayList<>();
+        for (Long id : ids) {
+            ProhibitedDisease disease = id != null ? byId.get(id) : null;
+            if (disease != null) {
+                result.add(disease);
+            }
+        }
+        return result;
+    }
+
+    public ProhibitedDisease create(ProhibitedDisease disease) {
+        ProhibitedDisease saved = diseaseRepository.save(disease);
+        reload();
+        return saved;
+    }
+
+    /**
+     * Copy the non-null fields of {@code update} to the disease.
+     * @return empty if the disease does not exist
+     */
+    public Optional<ProhibitedDisease> update(Long id, ProhibitedDisease update) {
+        Optional<ProhibitedDisease> optional = diseaseRepository.findById(id);
+        if (optional.isEmpty()) {
+            return optional;
+        }
+        ProhibitedDisease disease = optional.get();
+        if (update.getName() != null) {
+            disease.setName(update.getName());
+        }
+        if (update.getDescription() != null) {
+            disease.setDescription(update.getDescription());
+        }
+        ProhibitedDisease saved = diseaseRepository.save(disease);
+        reload();
+        return Optional.of(saved);
+    }
+
+    /**
+     * @return false if the disease does not exist
+     */
+    public boolean delete(Long id) {
+        if (!diseaseRepository.existsById(id)) {
+            return false;
+        }
+        diseaseRepository.deleteById(id);
+        reload();
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+        System.out.println("Loaded " + snapshot.getDiseases().size() + " prohibited diseases");
+    }
+
+    // Nhận thay đổi từ instance khác hoặc sửa trực tiếp trong DB
+    @Scheduled(fixedDelayString = "${disease.catalogue.refresh-ms:300000}",
+            initialDelayString = "${disease.catalogue.refresh-ms:300000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to refresh prohibited diseases, keeping the current list: " + e.getMessage());
+        }
+    }
+
+    public synchronized Snapshot reload() {
+        List<ProhibitedDisease> diseases = new ArrayList<>(diseaseRepository.findAll());
+        diseases.sort(Comparator.comparing(ProhibitedDisease::getId));
+        String etag = etagOf(diseases);
+        Snapshot current = snapshot;
+        if (current != null && current.etag.equals(etag)) {
+            return current; // không đổi, giữ nguyên phiên bản
+        }
+        Map<Long, ProhibitedDisease> byId = new HashMap<>();
+        for (ProhibitedDisease disease : diseases) {
+            byId.put(disease.getId(), disease);
+        }
+        Snapshot next = new Snapshot(++version, List.copyOf(diseases), Map.copyOf(byId), etag);
+        snapshot = next;
+        return next;
+    }
+
+    // ETag theo nội dung nên giống nhau trên mọi instance
+    private static String etagOf(List<ProhibitedDisease> diseases) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (ProhibitedDisease disease : diseases) {
+                digest.update((disease.getId() + "\u0000" + disease.getName() + "\u0000" + disease.getDescription() + "\u0001")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 12) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * One immutable version of the catalogue.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final List<ProhibitedDisease> diseases;
+        private final Map<Long, ProhibitedDisease> byId;
+        private final String etag;
+
+        private Snapshot(long version, List<ProhibitedDisease> diseases, Map<Long, ProhibitedDisease> byId, String etag) {
+            this.version = version;
+            this.diseases = diseases;
+            this.byId = byId;
+            this.etag = etag;
+        }
+
+        public long getVersion() { return version; }
+        public List<ProhibitedDisease> getDiseases() { return diseases; }
+        public String getEtag() { return etag; }
+
+        /**
+         * @param ifNoneMatch value of the If-None-Match request header
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
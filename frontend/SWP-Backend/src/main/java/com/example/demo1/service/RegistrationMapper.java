@@ -0,0 +1,156 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.RegistrationRequest;
+import com.example.demo1.entity.DonationLocation;
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.DonationSchedule;
+import com.example.demo1.entity.ProhibitedDisease;
+import com.example.demo1.entity.enums.RegistrationStatus;
+import com.example.demo1.repo.DonationLocationRepository;
+import com.example.demo1.repo.DonationScheduleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a {@link RegistrationRequest} into a new {@link DonationRegistration},
+ * the same way for staff and donor registrations.
+ */
+@Component
+public class RegistrationMapper {
+
+    @Autowired
+    private DonationLocationRepository locationRepository;
+
+    @Autowired
+    private DonationScheduleRepository scheduleRepository;
+
+    @Autowired
+    private ProhibitedDiseaseCatalogue diseaseCatalogue;
+
+    /**
+     * @throws IllegalArgumentException with the message to show when the donor
+     *         declared a prohibited disease or the location/schedule is missing
+     */
+    public DonationRegistration toRegistration(RegistrationRequest request) {
+        checkDiseases(request.getDiseaseIds());
+
+        DonationRegistration reg = new DonationRegistration();
+
+        // Basic information
+        reg.setBloodType(request.getBloodType());
+        reg.setLastDonationDate(request.getLastDonationDate());
+        reg.setWeight(request.getWeight());
+        reg.setHeight(request.getHeight());
+        double heightInMeters = request.getHeight() / 100.0;
+        double bmi = request.getWeight() / (heightInMeters * heightInMeters);
+        reg.setBmi(Math.round(bmi * 10.0) / 10.0); // Round to 1 decimal place
+        reg.setAmount(request.getAmount());
+
+        // Health screening data
+        if (request.getBloodPressure() != null) {
+            reg.setSystolicBP(request.getBloodPressure().getSystolic());
+            reg.setDiastolicBP(request.getBloodPressure().getDiastolic());
+        }
+        reg.setHeartRate(request.getHeartRate());
+        reg.setTemperature(request.getTemperature());
+        reg.setHemoglobin(request.getHemoglobin());
+
+        // Medication and surgery history
+        reg.setCurrentMedications(request.getCurrentMedications());
+        if (request.getRecentSurgery() != null) {
+            reg.setRecentSurgery(request.getRecentSurgery());
+            if (request.getRecentSurgery()) {
+                reg.setSurgeryDetails(request.getSurgeryDetails());
+                reg.setSurgeryDate(request.getSurgeryDate());
+            }
+        }
+
+        // Risk factors: chi tiết chỉ được lưu khi câu trả lời là có
+        if (request.getRecentTravel() != null) {
+            reg.setRecentTravel(request.getRecentTravel());
+            if (request.getRecentTravel()) {
+                reg.setTravelDetails(request.getTravelDetails());
+            }
+        }
+        if (request.getRecentTattoo() != null) {
+            reg.setRecentTattoo(request.getRecentTattoo());
+            if (request.getRecentTattoo()) {
+                reg.setTattooDate(request.getTattooDate());
+            }
+        }
+        if (request.getRecentPiercing() != null) {
+            reg.setRecentPiercing(request.getRecentPiercing());
+            if (request.getRecentPiercing()) {
+                reg.setPiercingDate(request.getPiercingDate());
+            }
+        }
+
+        if (request.getRecentVaccination() != null) {
+            reg.setRecentVaccination(request.getRecentVaccination());
+            if (request.getRecentVaccination()) {
+                reg.setVaccinationDetails(request.getVaccinationDetails());
+            }
+        }
+
+        // Women's health
+        if (request.getIsPregnant() != null) {
+            reg.setIsPregnant(request.getIsPregnant());
+        }
+        if (request.getIsBreastfeeding() != null) {
+            reg.setIsBreastfeeding(request.getIsBreastfeeding());
+        }
+        reg.setMenstrualCycle(request.getMenstrualCycle());
+
+        // Consent forms
+        if (request.getHealthDeclaration() != null) {
+            reg.setHealthDeclaration(request.getHealthDeclaration());
+        }
+        if (request.getConsentForm() != null) {
+            reg.setConsentForm(request.getConsentForm());
+        }
+        if (request.getDataProcessing() != null) {
+            reg.setDataProcessingConsent(request.getDataProcessing());
+        }
+        if (request.getHasProhibitedDiseases() != null) {
+            reg.setHasProhibitedDiseases(request.getHasProhibitedDiseases());
+        }
+
+        // Schedule (địa điểm lấy theo lịch) or location
+        if (request.getScheduleId() != null) {
+            DonationSchedule schedule = scheduleRepository.findById(request.getScheduleId())
+                    .orElseThrow(() -> new IllegalArgumentException("Schedule not found"));
+            reg.setSchedule(schedule);
+            reg.setLocation(schedule.getLocation());
+        } else if (request.getLocationId() != null) {
+            DonationLocation location = locationRepository.findById(request.getLocationId())
+                    .orElseThrow(() -> new IllegalArgumentException("Location not found"));
+            reg.setLocation(location);
+        } else {
+            throw new IllegalArgumentException("Location is required");
+        }
+
+        // Set empty diseases set since validation passed
+        reg.setDiseases(new HashSet<>());
+        reg.setStatus(RegistrationStatus.PENDING);
+        return reg;
+    }
+
+    private void checkDiseases(List<Long> diseaseIds) {
+        if (diseaseIds == null || diseaseIds.isEmpty()) {
+            return;
+        }
+        List<ProhibitedDisease> selectedDiseases = diseaseCatalogue.findAllById(diseaseIds);
+        if (!selectedDiseases.isEmpty()) {
+            String diseaseNames = selectedDiseases.stream()
+                    .map(ProhibitedDisease::getName)
+                    .collect(Collectors.joining(", "));
+            throw new IllegalArgumentException(
+                    "You cannot donate blood if you have the following conditions: " + diseaseNames +
+                    ". Please consult with a healthcare provider.");
+        }
+    }
+}
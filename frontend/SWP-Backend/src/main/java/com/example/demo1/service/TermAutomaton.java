@@ -0,0 +1,285 @@
+package com.example.demo1.service;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton that finds whole-word occurrences of many terms in
+ * one pass over a text.
+ *
+ * Text and terms are folded the same way: lower case, Vietnamese accents
+ * removed ("Sốt rét" and "sot ret" are equal), every run of non letters or
+ * digits becomes one space. An automaton from {@link #compileAccented} keeps
+ * the accents ("dại" then does not match "dài" or "Đại học"). Terms are compiled as " term " and the text is
+ * scanned as " text ", so a match always starts and ends on a word boundary.
+ * The transition table is complete (no failure links at scan time), so a scan
+ * is one table lookup per character and allocates nothing unless a term is found.
+ */
+public final class TermAutomaton {
+
+    // Bảng gấp ký tự cho vùng Latin (gồm cả chữ Việt 1EA0-1EF9); 0 = bỏ qua, ' ' = dấu cách
+    private static final char[] FOLD = buildFoldTable();
+
+    private final int alphabetSize;
+    private final int[] asciiClass;          // lớp của ký tự ASCII, -1 nếu không thuộc từ nào
+    private final Map<Character, Integer> otherClass;
+    private final int[] next;                // next[state * alphabetSize + class]
+    private final int[][] output;            // chỉ số các từ kết thúc tại trạng thái
+    private final int start;                 // trạng thái sau khi đọc dấu cách đầu văn bản
+    private final boolean accents;
+
+    private TermAutomaton(int alphabetSize, int[] asciiClass, Map<Character, Integer> otherClass,
+                          int[] next, int[][] output, boolean accents) {
+        this.accents = accents;
+        this.alphabetSize = alphabetSize;
+        this.asciiClass = asciiClass;
+        this.otherClass = otherClass;
+        this.next = next;
+        this.output = output;
+        this.start = step(0, ' ');
+    }
+
+    /**
+     * Compile the terms; a term that folds to nothing never matches.
+     * Term {@code i} is reported as index {@code i}.
+     */
+    public static TermAutomaton compile(List<String> terms) {
+        return compile(terms, false);
+    }
+
+    /**
+     * Like {@link #compile}, but text and terms keep their Vietnamese accents
+     * (only case and punctuation are folded).
+     */
+    public static TermAutomaton compileAccented(List<String> terms) {
+        return compile(terms, true);
+    }
+
+    private static TermAutomaton compile(List<String> terms, boolean accents) {
+        // 1. Cây tiền tố trên các từ đã chuẩn hóa
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new HashMap<>());
+        ends.add(new ArrayList<>());
+        for (int i = 0; i < terms.size(); i++) {
+            String folded = fold(terms.get(i), accents);
+            if (folded.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (char c : (" " + folded + " ").toCharArray()) {
+                Integer child = trie.get(state).get(c);
+                if (child == null) {
+                    child = trie.size();
+                    trie.get(state).put(c, child);
+                    trie.add(new HashMap<>());
+                    ends.add(new ArrayList<>());
+                }
+                state = child;
+            }
+            ends.get(state).add(i);
+        }
+
+        // 2. Bảng chữ cái: chỉ các ký tự có trong từ, ký tự khác luôn về gốc
+        int[] asciiClass = new int[128];
+        Arrays.fill(asciiClass, -1);
+        Map<Character, Integer> otherClass = new HashMap<>();
+        int alphabetSize = 0;
+        for (Map<Character, Integer> edges : trie) {
+            for (char c : edges.keySet()) {
+                if (c < 128) {
+                    if (asciiClass[c] < 0) {
+                        asciiClass[c] = alphabetSize++;
+                    }
+                } else if (!otherClass.containsKey(c)) {
+                    otherClass.put(c, alphabetSize++);
+                }
+            }
+        }
+        alphabetSize = Math.max(alphabetSize, 1);
+
+        // 3. Duyệt theo chiều rộng: tính liên kết thất bại và điền đủ bảng chuyển
+        int states = trie.size();
+        int[] next = new int[states * alphabetSize];
+        int[] fail = new int[states];
+        int[][] output = new int[states][];
+        output[0] = toArray(ends.get(0));
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (Map.Entry<Character, Integer> edge : trie.get(0).entrySet()) {
+            int cls = classOf(edge.getKey(), asciiClass, otherClass);
+            next[cls] = edge.getValue();
+            fail[edge.getValue()] = 0;
+            queue.add(edge.getValue());
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output[state] = merge(ends.get(state), output[fail[state]]);
+            int base = state * alphabetSize;
+            int failBase = fail[state] * alphabetSize;
+            System.arraycopy(next, failBase, next, base, alphabetSize);
+            for (Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                int cls = classOf(edge.getKey(), asciiClass, otherClass);
+                int child = edge.getValue();
+                fail[child] = next[failBase + cls];
+                next[base + cls] = child;
+                queue.add(child);
+            }
+        }
+        return new TermAutomaton(alphabetSize, asciiClass, Map.copyOf(otherClass), next, output, accents);
+    }
+
+    /**
+     * Scan the text and call {@code sink} once per distinct term found,
+     * in the order the terms end in the text.
+     */
+    public void scan(String text, MatchSink sink) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        if (accents && !Normalizer.isNormalized(text, Normalizer.Form.NFC)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFC); // dấu rời ghép lại thành một ký tự
+        }
+        int state = start;
+        boolean space = true;
+        int[] seen = null;
+        int seenCount = 0;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c;
+            if (i == n) {
+                if (space) {
+                    break;
+                }
+                c = ' '; // dấu cách ảo ở cuối văn bản
+            } else {
+                c = foldChar(text.charAt(i), accents);
+                if (c == 0 || (c == ' ' && space)) {
+                    continue;
+                }
+            }
+            space = c == ' ';
+            state = step(state, c);
+            int[] found = output[state];
+            for (int term : found) {
+                boolean duplicate = false;
+                for (int s = 0; s < seenCount; s++) {
+                    if (seen[s] == term) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                if (duplicate) {
+                    continue;
+                }
+                if (seen == null) {
+                    seen = new int[4];
+                } else if (seenCount == seen.length) {
+                    seen = Arrays.copyOf(seen, seenCount * 2);
+                }
+                seen[seenCount++] = term;
+                sink.match(term);
+            }
+        }
+    }
+
+    private int step(int state, char c) {
+        int cls = classOf(c, asciiClass, otherClass);
+        return cls < 0 ? 0 : next[state * alphabetSize + cls];
+    }
+
+    private static int classOf(char c, int[] asciiClass, Map<Character, Integer> otherClass) {
+        if (c < 128) {
+            return asciiClass[c];
+        }
+        Integer cls = otherClass.isEmpty() ? null : otherClass.get(c);
+        return cls != null ? cls : -1;
+    }
+
+    /**
+     * The folded form used for matching, e.g. "Đắk Lắk!" -> "dak lak".
+     */
+    public static String fold(String text) {
+        return fold(text, false);
+    }
+
+    /**
+     * The form used by {@link #compileAccented}, e.g. "Đắk Lắk!" -> "đắk lắk".
+     */
+    public static String foldAccented(String text) {
+        return fold(text, true);
+    }
+
+    private static String fold(String text, boolean accents) {
+        if (text == null) {
+            return "";
+        }
+        if (accents) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFC);
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = foldChar(text.charAt(i), accents);
+            if (c == 0 || (c == ' ' && space)) {
+                continue;
+            }
+            space = c == ' ';
+            out.append(c);
+        }
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == ' ') {
+            out.setLength(length - 1);
+        }
+        return out.toString();
+    }
+
+    private static char foldChar(char c, boolean accents) {
+        if (c < FOLD.length && (!accents || c < 128)) {
+            return FOLD[c];
+        }
+        if (Character.getType(c) == Character.NON_SPACING_MARK) {
+            return 0;
+        }
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : ' ';
+    }
+
+    private static char[] buildFoldTable() {
+        char[] table = new char[0x1F00];
+        for (int i = 0; i < table.length; i++) {
+            char c = (char) i;
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                table[i] = 0; // dấu rời (văn bản dạng NFD) thì bỏ đi
+            } else if (c == 'đ' || c == 'Đ') {
+                table[i] = 'd';
+            } else if (!Character.isLetterOrDigit(c)) {
+                table[i] = ' ';
+            } else {
+                char base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+                table[i] = Character.toLowerCase(base);
+            }
+        }
+        return table;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] merge(List<Integer> own, int[] inherited) {
+        if (own.isEmpty()) {
+            return inherited;
+        }
+        int[] merged = Arrays.copyOf(toArray(own), own.size() + inherited.length);
+        System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+        return merged;
+    }
+
+    @FunctionalInterface
+    public interface MatchSink {
+        void match(int term);
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.dto.AllocationPlan;
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
+import com.example.demo1.repo.BloodRequestRepository;
+import com.example.demo1.service.BloodAllocationService;
+import com.example.demo1.service.BloodRequestQueue;
+import com.example.demo1.service.BloodRequestService;
+import com.example.demo1.service.BloodUnitService;
+import com.example.demo1.service.InventoryLedger;
+import com.example.demo1.service.InventoryReservations;
+import com.example.demo1.service.NotificationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Greedy global allocation of the inventory to all open blood requests.
+ *
+ * Requests are served in {@link BloodRequestQueue} order (CRITICAL first, then
+ * requests marked PRIORITY, then oldest first), so an early LOW request can no longer
+ * take the last O- units a later CRITICAL request needs. For each request the
+ * compatible donor types are tried from the least to the most versatile one
+ * (e.g. A+ before O+ before O-), keeping universal blood for patients who
+ * cannot use anything else. A request is either fully covered or skipped.
+ *
+ * The queue is already sorted, so the cost is at most 8 steps per open request.
+ *
+ * Commits run one at a time. Each allocated request is confirmed with the same
+ * conditional transition as a single confirm, so a request confirmed elsewhere
+ * meanwhile is reported in {@code skippedRequestIds} and not debited again.
+ */
+@Service
+public class BloodAllocationServiceImpl implements BloodAllocationService {
+
+    // Donor types ordered by how many recipient types they can serve (fewest first)
+    private static final int[] DONOR_ORDER = new int[BloodType.COUNT];
+
+    static {
+        Integer[] order = new Integer[BloodType.COUNT];
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator
+                .comparingInt((Integer i) -> Integer.bitCount(BloodType.byOrdinal(i).getRecipientMask()))
+                .thenComparing(Comparator.reverseOrder()));
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            DONOR_ORDER[i] = order[i];
+        }
+    }
+
+    @Autowired
+    private BloodRequestRepository bloodRequestRepository;
+
+    @Autowired
+    private BloodRequestService bloodRequestService;
+
+    @Autowired
+    private BloodUnitService bloodUnitService;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private InventoryReservations inventoryReservations;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    @Override
+    public AllocationPlan preview() {
+        // Units held for open requests are redistributed by the plan, count them as free
+        int[] stock = new int[BloodType.COUNT];
+        inventoryLedger.copyAvailable(stock);
+        inventoryReservations.addHeld(stock);
+        return compute(bloodRequestService.getOpenRequests(), stock);
+    }
+
+    @Override
+    public AllocationPlan commit(User actor) {
+        // Hai lần commit đồng thời sẽ cùng hủy giữ chỗ và lập kế hoạch từ cùng một ảnh chụp kho
+        commitLock.lock();
+        try {
+            return commitExclusive(actor);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private AllocationPlan commitExclusive(User actor) {
+        // Trả lại phần giữ chỗ của các yêu cầu đang mở, kế hoạch sẽ phân bổ lại toàn bộ
+        List<BloodRequest> openRequests = bloodRequestService.getOpenRequests();
+        openRequests.forEach(request -> inventoryReservations.cancel(request.getId()));
+
+        int[] stock = new int[BloodType.COUNT];
+        inventoryLedger.copyAvailable(stock);
+        AllocationPlan plan = compute(openRequests, stock);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        // Work on fresh copies, the queue's entities are shared with readers
+        Map<Long, BloodRequest> requestsById = new HashMap<>();
+        List<Long> ids = plan.getAllocations().stream().map(AllocationPlan.Allocation::getRequestId).toList();
+        bloodRequestRepository.findAllById(ids).forEach(request -> requestsById.put(request.getId(), request));
+
+        List<AllocationPlan.Allocation> applied = new ArrayList<>();
+        for (AllocationPlan.Allocation allocation : plan.getAllocations()) {
+            BloodRequest request = requestsById.get(allocation.getRequestId());
+            if (request == null || !BloodRequestQueue.OPEN_STATUSES.contains(request.getStatus())) {
+                // Đã bị xóa hoặc đã được xử lý bởi người khác
+                plan.getSkippedRequestIds().add(allocation.getRequestId());
+                continue;
+            }
+            // Giữ chỗ tất cả nhóm máu trước, nếu kho đã thay đổi thì bỏ qua yêu cầu này
+            if (!reserveAll(allocation.getBloodTypes())) {
+                plan.getUnfulfilledRequestIds().add(allocation.getRequestId());
+                continue;
+            }
+            boolean confirmed;
+            try {
+                confirmed = Boolean.TRUE.equals(transaction.execute(status -> {
+                    // Chuyển trạng thái có điều kiện trước khi trừ kho, như khi xác nhận từng yêu cầu
+                    if (!bloodRequestService.markConfirmed(request)) {
+                        return false;
+                    }
+                    allocation.getBloodTypes().forEach((type, amount) -> {
+                        if (!inventoryLedger.debitReserved(type, amount, actor)) {
+                            throw new IllegalStateException("Not enough " + type + " left");
+                        }
+                        bloodUnitService.issue(request.getId(), type, amount);
+                    });
+                    return true;
+                }));
+            } catch (RuntimeException e) {
+                allocation.getBloodTypes().forEach(inventoryLedger::release);
+                System.err.println("Failed to apply allocation for request " + request.getId() + ": " + e.getMessage());
+                plan.getUnfulfilledRequestIds().add(allocation.getRequestId());
+                continue;
+            }
+            if (!confirmed) {
+                // Đã được xác nhận đồng thời ở nơi khác, chưa trừ gì
+                allocation.getBloodTypes().forEach(inventoryLedger::release);
+                plan.getSkippedRequestIds().add(allocation.getRequestId());
+                continue;
+            }
+            applied.add(allocation);
+
+            if (request.getMedicalCenter() != null) {
+                notificationService.sendNotification(request.getMedicalCenter().getEmail(),
+                        "Yêu cầu nhận máu đã được xác nhận với nhóm máu: " + String.join(", ", allocation.getBloodTypes().keySet()));
+            }
+        }
+
+        // Giữ chỗ lại cho các yêu cầu chưa được cấp nếu kho còn đủ
+        Set<Long> unfulfilled = new HashSet<>(plan.getUnfulfilledRequestIds());
+        for (BloodRequest request : openRequests) {
+            if (unfulfilled.contains(request.getId())) {
+                inventoryReservations.hold(request);
+            }
+        }
+
+        plan.setAllocations(applied);
+        plan.setRemainingInventory(currentInventory());
+        plan.setCommitted(true);
+        return plan;
+    }
+
+    /**
+     * @param openRequests open requests, already in handling order
+     * @param stock units that can be allocated, indexed by blood type ordinal (modified)
+     */
+    private AllocationPlan compute(List<BloodRequest> openRequests, int[] stock) {
+        long start = System.nanoTime();
+        AllocationPlan plan = new AllocationPlan();
+
+        int[] take = new int[BloodType.COUNT];
+        for (BloodRequest request : openRequests) {
+            BloodType recipient = BloodType.fromLabel(request.getRecipientBloodType());
+            int needed = request.getRequestedAmount();
+            if (recipient == null || needed <= 0) {
+                plan.getUnfulfilledRequestIds().add(request.getId());
+                continue;
+            }
+
+            Arrays.fill(take, 0);
+            int donorMask = recipient.getDonorMask();
+            for (int i = 0; i < BloodType.COUNT && needed > 0; i++) {
+                int donor = DONOR_ORDER[i];
+                if ((donorMask & (1 << donor)) == 0 || stock[donor] <= 0) {
+                    continue;
+                }
+                int used = Math.min(needed, stock[donor]);
+                take[donor] = used;
+                needed -= used;
+            }
+
+            if (needed > 0) {
+                plan.getUnfulfilledRequestIds().add(request.getId());
+                continue;
+            }
+
+            Map<String, Integer> bloodTypes = new LinkedHashMap<>();
+            for (int i = 0; i < BloodType.COUNT; i++) {
+                int donor = DONOR_ORDER[i];
+                if (take[donor] > 0) {
+                    stock[donor] -= take[donor];
+                    bloodTypes.put(BloodType.byOrdinal(donor).getLabel(), take[donor]);
+                }
+            }
+            plan.getAllocations().add(new AllocationPlan.Allocation(request.getId(), request.getRecipientBloodType(),
+                    request.getUrgencyLevel(), request.getRequestedAmount(), bloodTypes));
+        }
+
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            plan.getRemainingInventory().put(BloodType.byOrdinal(i).getLabel(), stock[i]);
+        }
+        plan.setComputeTimeMs((System.nanoTime() - start) / 1_000_000);
+        return plan;
+    }
+
+    private boolean reserveAll(Map<String, Integer> bloodTypes) {
+        Map<String, Integer> reserved = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> line : bloodTypes.entrySet()) {
+            if (!inventoryLedger.reserve(line.getKey(), line.getValue())) {
+                reserved.forEach(inventoryLedger::release);
+                return false;
+            }
+            reserved.put(line.getKey(), line.getValue());
+        }
+        return true;
+    }
+
+    private Map<String, Integer> currentInventory() {
+        int[] stock = new int[BloodType.COUNT];
+        inventoryLedger.copyAvailable(stock);
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            result.put(BloodType.byOrdinal(i).getLabel(), stock[i]);
+        }
+        return result;
+    }
+}
@@ -1,100 +1,94 @@
 package com.example.demo1.service.impl;
 
 import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.entity.enums.BloodType;
 import com.example.demo1.service.BloodCompatibilityService;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class BloodCompatibilityServiceImpl implements BloodCompatibilityService {
 
-    // Blood type compatibility matrix
-    // Key: Recipient blood type, Value: List of compatible donor blood types
-    private static final Map<String, List<String>> COMPATIBILITY_MATRIX = new HashMap<>();
-    
+    // Compatible donor labels per recipient type, in priority order (O- first)
+    private static final List<List<String>> COMPATIBLE_LABELS = new ArrayList<>();
+
     static {
-        // O- can receive from O- only
-        COMPATIBILITY_MATRIX.put("O-", Arrays.asList("O-"));
-        
-        // O+ can receive from O- and O+
-        COMPATIBILITY_MATRIX.put("O+", Arrays.asList("O-", "O+"));
-        
-        // A- can receive from O- and A-
-        COMPATIBILITY_MATRIX.put("A-", Arrays.asList("O-", "A-"));
-        
-        // A+ can receive from O-, O+, A-, A+
-        COMPATIBILITY_MATRIX.put("A+", Arrays.asList("O-", "O+", "A-", "A+"));
-        
-        // B- can receive from O- and B-
-        COMPATIBILITY_MATRIX.put("B-", Arrays.asList("O-", "B-"));
-        
-        // B+ can receive from O-, O+, B-, B+
-        COMPATIBILITY_MATRIX.put("B+", Arrays.asList("O-", "O+", "B-", "B+"));
-        
-        // AB- can receive from O-, A-, B-, AB-
-        COMPATIBILITY_MATRIX.put("AB-", Arrays.asList("O-", "A-", "B-", "AB-"));
-        
-        // AB+ can receive from all blood types (universal recipient)
-        COMPATIBILITY_MATRIX.put("AB+", Arrays.asList("O-", "O+", "A-", "A+", "B-", "B+", "AB-", "AB+"));
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            int donorMask = BloodType.byOrdinal(i).getDonorMask();
+            List<String> labels = new ArrayList<>();
+            for (int d = 0; d < BloodType.COUNT; d++) {
+                if ((donorMask & (1 << d)) != 0) {
+                    labels.add(BloodType.byOrdinal(d).getLabel());
+                }
+            }
+            COMPATIBLE_LABELS.add(Collections.unmodifiableList(labels));
+        }
     }
 
     @Override
     public List<String> getCompatibleBloodTypes(String bloodType) {
-        return COMPATIBILITY_MATRIX.getOrDefault(bloodType, new ArrayList<>());
+        BloodType type = BloodType.fromLabel(bloodType);
+        return type != null ? COMPATIBLE_LABELS.get(type.ordinal()) : Collections.emptyList();
     }
 
     @Override
     public Map<String, Integer> findAvailableCompatibleBlood(String requestedBloodType, List<BloodInventory> inventory) {
-        List<String> compatibleTypes = getCompatibleBloodTypes(requestedBloodType);
-        Map<String, Integer> availableCompatible = new HashMap<>();
-        
-        // Filter inventory for compatible blood types with available quantity
+        int[] quantities = new int[BloodType.COUNT];
         for (BloodInventory item : inventory) {
-            if (compatibleTypes.contains(item.getBloodType()) && 
-                item.getQuantity() != null && 
-                item.getQuantity() > 0) {
-                availableCompatible.put(item.getBloodType(), item.getQuantity());
+            BloodType type = BloodType.fromLabel(item.getBloodType());
+            if (type != null && item.getQuantity() != null) {
+                quantities[type.ordinal()] += item.getQuantity();
             }
         }
-        
-        // Sort by priority (O- first, then O+, then others)
-        return availableCompatible.entrySet().stream()
-                .sorted((e1, e2) -> {
-                    int priority1 = getBloodTypePriority(e1.getKey());
-                    int priority2 = getBloodTypePriority(e2.getKey());
-                    return Integer.compare(priority1, priority2);
-                })
-                .collect(Collectors.toMap(
-                    Map.Entry::getKey,
-                    Map.Entry::getValue,
-                    (e1, e2) -> e1,
-                    LinkedHashMap::new
-                ));
+        return toLabelMap(requestedBloodType, quantities);
+    }
+
+    @Override
+    public Map<String, Integer> findAvailableCompatibleBlood(String requestedBloodType, int[] quantities) {
+        return toLabelMap(requestedBloodType, quantities);
     }
 
     @Override
     public boolean isCompatible(String recipientBloodType, String donorBloodType) {
-        List<String> compatibleTypes = getCompatibleBloodTypes(recipientBloodType);
-        return compatibleTypes.contains(donorBloodType);
+        BloodType recipient = BloodType.fromLabel(recipientBloodType);
+        BloodType donor = BloodType.fromLabel(donorBloodType);
+        return recipient != null && donor != null && recipient.canReceiveFrom(donor);
+    }
+
+    @Override
+    public boolean isCompatible(BloodType recipient, BloodType donor) {
+        return recipient.canReceiveFrom(donor);
     }
-    
+
+    @Override
+    public int findAvailableCompatibleMask(BloodType recipient, int[] quantities) {
+        int donorMask = recipient.getDonorMask();
+        int available = 0;
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            if (quantities[i] > 0) {
+                available |= 1 << i;
+            }
+        }
+        return available & donorMask;
+    }
+
     /**
-     * Get priority for blood type (lower number = higher priority)
-     * Priority order: O- (1), O+ (2), A- (3), B- (4), A+ (5), B+ (6), AB- (7), AB+ (8)
+     * Adapter from the bitmask result to the label map used by the REST API.
+     * The vector is indexed by priority, so the map comes out already sorted.
      */
-    private int getBloodTypePriority(String bloodType) {
-        switch (bloodType) {
-            case "O-": return 1;
-            case "O+": return 2;
-            case "A-": return 3;
-            case "B-": return 4;
-            case "A+": return 5;
-            case "B+": return 6;
-            case "AB-": return 7;
-            case "AB+": return 8;
-            default: return 9;
+    private Map<String, Integer> toLabelMap(String requestedBloodType, int[] quantities) {
+        Map<String, Integer> availableCompatible = new LinkedHashMap<>();
+        BloodType recipient = BloodType.fromLabel(requestedBloodType);
+        if (recipient == null) {
+            return availableCompatible;
+        }
+        int mask = findAvailableCompatibleMask(recipient, quantities);
+        for (int i = 0; i < BloodType.COUNT; i++) {
+            if ((mask & (1 << i)) != 0) {
+                availableCompatible.put(BloodType.byOrdinal(i).getLabel(), quantities[i]);
+            }
         }
+        return availableCompatible;
     }
-} 
\ No newline at end of file
+}
@@ -1,14 +1,21 @@
 package com.example.demo1.service.impl;
 
 import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodType;
 import com.example.demo1.repo.BloodInventoryRepository;
 import com.example.demo1.service.BloodInventoryService;
 import com.example.demo1.service.BloodCompatibilityService;
+import com.example.demo1.service.BloodUnitService;
+import com.example.demo1.service.InventoryLedger;
+import com.example.demo1.service.InventoryReservations;
 import com.example.demo1.dto.BloodCompatibilityResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -20,6 +27,15 @@ public class BloodInventoryServiceImpl implements BloodInventoryService {
     @Autowired
     private BloodCompatibilityService bloodCompatibilityService;
 
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private InventoryReservations inventoryReservations;
+
+    @Autowired
+    private BloodUnitService bloodUnitService;
+
     @Override
     public List<BloodInventory> getAll() {
         return bloodInventoryRepository.findAll();
@@ -27,77 +43,85 @@ public class BloodInventoryServiceImpl implements BloodInventoryService {
 
     @Override
     public Optional<BloodInventory> findByBloodType(String bloodType) {
-        List<BloodInventory> inventories = bloodInventoryRepository.findAllByBloodType(bloodType);
-        
-        if (inventories.isEmpty()) {
-            return Optional.empty();
-        }
-        
-        if (inventories.size() == 1) {
-            return Optional.of(inventories.get(0));
-        }
-        
-        // If there are multiple records, merge them into one
-        BloodInventory mergedInventory = new BloodInventory();
-        mergedInventory.setBloodType(bloodType);
-        mergedInventory.setQuantity(0);
-        
-        for (BloodInventory inventory : inventories) {
-            mergedInventory.setQuantity(mergedInventory.getQuantity() + (inventory.getQuantity() != null ? inventory.getQuantity() : 0));
-            // Keep the updatedBy from the first record
-            if (mergedInventory.getUpdatedBy() == null) {
-                mergedInventory.setUpdatedBy(inventory.getUpdatedBy());
+        // blood_type là unique nên đây chỉ là một lần tra cứu theo index
+        return bloodInventoryRepository.findByBloodType(bloodType);
+    }
+
+    @Override
+    public BloodInventory save(BloodInventory inventory) {
+        // Đi qua ledger để bộ đếm trong bộ nhớ luôn khớp với DB
+        int quantity = inventory.getQuantity() != null ? inventory.getQuantity() : 0;
+        if (inventory.getId() == null) {
+            // Mỗi nhóm máu chỉ có một dòng: nếu đã tồn tại thì cập nhật dòng đó
+            Optional<BloodInventory> existing = bloodInventoryRepository.findByBloodType(inventory.getBloodType());
+            if (existing.isPresent()) {
+                return inventoryLedger.set(existing.get(), quantity, inventory.getUpdatedBy());
             }
         }
-        
-        // Delete all duplicate records
-        for (BloodInventory inventory : inventories) {
-            bloodInventoryRepository.delete(inventory);
+        return inventoryLedger.set(inventory, quantity, inventory.getUpdatedBy());
+    }
+
+    @Override
+    public void credit(String bloodType, int amount, User actor) {
+        inventoryLedger.credit(bloodType, amount, actor);
+    }
+
+    @Override
+    public boolean debit(String bloodType, int amount, User actor) {
+        return inventoryLedger.debit(bloodType, amount, actor);
+    }
+
+    @Override
+    @Transactional
+    public boolean debitForRequest(Long requestId, String bloodType, int amount, User actor) {
+        if (!inventoryReservations.debit(requestId, bloodType, amount, actor)) {
+            return false;
         }
-        
-        // Save the merged record
-        BloodInventory savedInventory = bloodInventoryRepository.save(mergedInventory);
-        return Optional.of(savedInventory);
+        // Xuất các túi máu sắp hết hạn trước
+        bloodUnitService.issue(requestId, bloodType, amount);
+        return true;
     }
 
     @Override
-    public BloodInventory save(BloodInventory inventory) {
-        return bloodInventoryRepository.save(inventory);
+    public boolean hasBloodType(String bloodType) {
+        return inventoryLedger.contains(bloodType);
     }
 
     @Override
-    public BloodCompatibilityResponse checkBloodAvailabilityWithCompatibility(String bloodType, int requestedAmount) {
-        // Check if the requested blood type is available
-        Optional<BloodInventory> inventoryOpt = findByBloodType(bloodType);
-        boolean isAvailable = false;
-        Integer availableQuantity = 0;
-        
-        if (inventoryOpt.isPresent()) {
-            BloodInventory inventory = inventoryOpt.get();
-            availableQuantity = inventory.getQuantity() != null ? inventory.getQuantity() : 0;
-            isAvailable = availableQuantity >= requestedAmount;
+    public int getAvailableQuantity(String bloodType) {
+        return inventoryLedger.getAvailable(bloodType);
+    }
+
+    @Override
+    public Optional<BloodInventory> updateQuantity(Long id, int quantity, User actor) {
+        return bloodInventoryRepository.findById(id)
+                .map(inventory -> inventoryLedger.set(inventory, quantity, actor));
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        inventoryLedger.flushPending();
+        Optional<BloodInventory> inventory = bloodInventoryRepository.findById(id);
+        if (inventory.isEmpty()) {
+            return false;
         }
-        
+        bloodInventoryRepository.deleteById(id);
+        inventoryLedger.refresh(inventory.get().getBloodType());
+        return true;
+    }
+
+    @Override
+    public BloodCompatibilityResponse checkBloodAvailabilityWithCompatibility(String bloodType, int requestedAmount) {
+        // Answered entirely from the in-memory ledger, no database query
+        Integer availableQuantity = inventoryLedger.getAvailable(bloodType);
+        boolean isAvailable = inventoryLedger.contains(bloodType) && availableQuantity >= requestedAmount;
+
         // Get all compatible blood types
         List<String> allCompatibleTypes = bloodCompatibilityService.getCompatibleBloodTypes(bloodType);
-        
-        // Get all inventory to check for compatible blood types
-        List<BloodInventory> allInventory = getAll();
-        var availableCompatibleTypes = bloodCompatibilityService.findAvailableCompatibleBlood(bloodType, allInventory);
-        
-        // Create response message
-        String message;
-        if (isAvailable) {
-            message = "Nhóm máu " + bloodType + " có sẵn trong kho với số lượng: " + availableQuantity;
-        } else {
-            if (availableCompatibleTypes.isEmpty()) {
-                message = "Nhóm máu " + bloodType + " không có sẵn và không có nhóm máu tương thích nào trong kho";
-            } else {
-                message = "Nhóm máu " + bloodType + " không đủ trong kho. Các nhóm máu tương thích có sẵn: " + 
-                         String.join(", ", availableCompatibleTypes.keySet());
-            }
-        }
-        
+        int[] quantities = new int[BloodType.COUNT];
+        inventoryLedger.copyAvailable(quantities);
+        Map<String, Integer> availableCompatibleTypes = bloodCompatibilityService.findAvailableCompatibleBlood(bloodType, quantities);
+
         return new BloodCompatibilityResponse(
             bloodType, 
             isAvailable, 
@@ -106,5 +130,5 @@ public class BloodInventoryServiceImpl implements BloodInventoryService {
             availableCompatibleTypes
         );
     }
-}
 
+}
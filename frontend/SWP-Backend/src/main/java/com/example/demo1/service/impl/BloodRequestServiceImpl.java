@@ -0,0 +1,126 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodRequestStatus;
+import com.example.demo1.repo.BloodRequestRepository;
+import com.example.demo1.service.BloodInventoryService;
+import com.example.demo1.service.BloodRequestQueue;
+import com.example.demo1.service.BloodRequestService;
+import com.example.demo1.service.InventoryReservations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class BloodRequestServiceImpl implements BloodRequestService {
+
+    @Autowired
+    private BloodRequestRepository bloodRequestRepository;
+
+    @Autowired
+    private BloodRequestQueue bloodRequestQueue;
+
+    @Autowired
+    private InventoryReservations inventoryReservations;
+
+    @Autowired
+    private BloodInventoryService bloodInventoryService;
+
+    @Override
+    public BloodRequest save(BloodRequest request) {
+        boolean created = request.getId() == null;
+        BloodRequest saved = bloodRequestRepository.save(request);
+        afterCommit(() -> {
+            bloodRequestQueue.sync(saved);
+            // Giữ chỗ máu cho yêu cầu mới, các lần lưu sau chỉ cập nhật phần giữ chỗ
+            if (created) {
+                inventoryReservations.hold(saved);
+            } else {
+                inventoryReservations.sync(saved);
+            }
+        });
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public Optional<BloodRequest> confirm(Long id, String bloodType, User actor) {
+        Optional<BloodRequest> opt = bloodRequestRepository.findById(id);
+        if (opt.isEmpty()) {
+            return Optional.empty();
+        }
+        BloodRequest request = opt.get();
+        if (!BloodRequestQueue.OPEN_STATUSES.contains(request.getStatus())) {
+            throw new IllegalStateException("Only open requests can be confirmed, this one is " + request.getStatus());
+        }
+        String typeToUse = bloodType != null ? bloodType : request.getRecipientBloodType();
+        if (!bloodInventoryService.hasBloodType(typeToUse)) {
+            throw new IllegalStateException("Không tìm thấy kho máu phù hợp");
+        }
+        // Chuyển trạng thái trước khi trừ kho: hai lần xác nhận đồng thời chỉ một lần trừ kho
+        if (!markConfirmed(request)) {
+            throw new IllegalStateException("Request was changed by someone else, please reload");
+        }
+        // Trừ kho (dùng phần máu đã giữ chỗ nếu có); thiếu máu thì rollback cả việc chuyển trạng thái
+        if (!bloodInventoryService.debitForRequest(request.getId(), typeToUse, request.getRequestedAmount(), actor)) {
+            throw new IllegalStateException("Không đủ lượng máu trong kho");
+        }
+        return Optional.of(request);
+    }
+
+    @Override
+    public boolean markConfirmed(BloodRequest request) {
+        if (bloodRequestRepository.transition(request.getId(), BloodRequestQueue.OPEN_STATUSES, BloodRequestStatus.CONFIRM) == 0) {
+            return false;
+        }
+        request.setStatus(BloodRequestStatus.CONFIRM);
+        afterCommit(() -> {
+            bloodRequestQueue.sync(request);
+            inventoryReservations.sync(request);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        if (!bloodRequestRepository.existsById(id)) {
+            return false;
+        }
+        bloodRequestRepository.deleteById(id);
+        afterCommit(() -> {
+            bloodRequestQueue.remove(id);
+            inventoryReservations.cancel(id);
+        });
+        return true;
+    }
+
+    @Override
+    public List<BloodRequest> next(int limit) {
+        return bloodRequestQueue.next(limit);
+    }
+
+    @Override
+    public List<BloodRequest> getOpenRequests() {
+        return bloodRequestQueue.snapshot();
+    }
+
+    // Chỉ cập nhật hàng đợi khi dữ liệu đã thực sự được ghi xuống DB
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
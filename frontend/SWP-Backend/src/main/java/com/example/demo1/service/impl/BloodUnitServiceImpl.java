@@ -0,0 +1,210 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.entity.BloodUnit;
+import com.example.demo1.entity.BloodUnitIssue;
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodUnitStatus;
+import com.example.demo1.repo.BloodRequestRepository;
+import com.example.demo1.repo.BloodUnitIssueRepository;
+import com.example.demo1.repo.BloodUnitRepository;
+import com.example.demo1.service.BloodUnitIndex;
+import com.example.demo1.service.BloodUnitService;
+import com.example.demo1.service.InventoryLedger;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Unit-level stock on top of the aggregate {@link InventoryLedger}.
+ *
+ * The ledger stays the source of truth for quantities (all existing inventory
+ * endpoints keep working); this service tracks which bags make up that quantity
+ * and issues them first-expired-first-out. Stock recorded before bags were
+ * tracked has no bag and is issued after all tracked bags of its type.
+ */
+@Service
+public class BloodUnitServiceImpl implements BloodUnitService {
+
+    private static final DateTimeFormatter BAG_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Autowired
+    private BloodUnitRepository bloodUnitRepository;
+
+    @Autowired
+    private BloodRequestRepository bloodRequestRepository;
+
+    @Autowired
+    private BloodUnitIssueRepository bloodUnitIssueRepository;
+
+    @Autowired
+    private BloodUnitIndex bloodUnitIndex;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    // Whole blood: 35 days
+    @Value("${blood.unit.shelf-life-days:35}")
+    private int shelfLifeDays;
+
+    @PostConstruct
+    public void reload() {
+        bloodUnitIndex.clear();
+        bloodUnitRepository.findByStatus(BloodUnitStatus.AVAILABLE).forEach(bloodUnitIndex::add);
+    }
+
+    @Override
+    @Transactional
+    public BloodUnit receive(DonationRegistration registration, User actor) {
+        int amount = registration.getAmount() != null ? registration.getAmount() : 0;
+        inventoryLedger.credit(registration.getBloodType(), amount, actor);
+        if (amount <= 0) {
+            return null;
+        }
+
+        // Ngày lấy máu: theo lịch hiến máu nếu có, nếu không thì là hôm nay
+        LocalDate collected = registration.getSchedule() != null && registration.getSchedule().getDate() != null
+                ? registration.getSchedule().getDate()
+                : LocalDate.now();
+
+        BloodUnit unit = new BloodUnit();
+        unit.setBloodType(registration.getBloodType());
+        unit.setAmount(amount);
+        unit.setRemaining(amount);
+        unit.setCollectedDate(collected);
+        unit.setExpiryDate(collected.plusDays(shelfLifeDays));
+        unit.setRegistration(registration);
+        unit.setLocation(registration.getLocation());
+        unit.setBagCode("BU-" + collected.format(BAG_DATE) + "-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        BloodUnit saved = bloodUnitRepository.save(unit);
+
+        afterCommit(() -> bloodUnitIndex.add(saved));
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public void issue(Long requestId, String bloodType, int amount) {
+        List<BloodUnitIndex.Take> taken = bloodUnitIndex.take(bloodType, amount, LocalDate.now());
+        if (taken.isEmpty()) {
+            return;
+        }
+        onRollback(() -> bloodUnitIndex.restore(taken));
+
+        Map<Long, BloodUnit> units = new HashMap<>();
+        bloodUnitRepository.findAllById(taken.stream().map(BloodUnitIndex.Take::unitId).toList())
+                .forEach(unit -> units.put(unit.getId(), unit));
+        LocalDateTime now = LocalDateTime.now();
+        List<BloodUnitIssue> issues = new ArrayList<>();
+        int issued = 0;
+        for (BloodUnitIndex.Take take : taken) {
+            BloodUnit unit = units.get(take.unitId());
+            if (unit == null) {
+                continue;
+            }
+            unit.setRemaining(take.remainingAfter());
+            if (take.remainingAfter() == 0) {
+                unit.setStatus(BloodUnitStatus.ISSUED);
+                unit.setIssuedAt(now);
+            }
+            // Mỗi lần xuất một dòng, túi chia cho nhiều yêu cầu vẫn truy được từng phần
+            BloodUnitIssue issue = new BloodUnitIssue();
+            issue.setUnit(unit);
+            issue.setBloodRequest(requestId != null ? bloodRequestRepository.getReferenceById(requestId) : null);
+            issue.setAmount(take.amount());
+            issue.setIssuedAt(now);
+            issues.add(issue);
+            issued += take.amount();
+        }
+        bloodUnitRepository.saveAll(units.values());
+        bloodUnitIssueRepository.saveAll(issues);
+
+        if (issued < amount) {
+            System.out.println("Issued " + (amount - issued) + " units of " + bloodType + " from untracked stock");
+        }
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(cron = "${blood.unit.expiry-sweep-cron:0 5 0 * * *}")
+    public int sweepExpired() {
+        List<BloodUnitIndex.Take> expired = bloodUnitIndex.pollExpired(LocalDate.now());
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        onRollback(() -> bloodUnitIndex.restore(expired));
+
+        Map<String, Integer> writeOffs = new HashMap<>();
+        List<BloodUnit> units = bloodUnitRepository.findAllById(expired.stream().map(BloodUnitIndex.Take::unitId).toList());
+        for (BloodUnit unit : units) {
+            unit.setStatus(BloodUnitStatus.EXPIRED);
+            writeOffs.merge(unit.getBloodType(), unit.getRemaining() != null ? unit.getRemaining() : 0, Integer::sum);
+        }
+        bloodUnitRepository.saveAll(units);
+        writeOffs.forEach((bloodType, amount) -> inventoryLedger.writeOff(bloodType, amount, null));
+
+        System.out.println("Expired " + units.size() + " blood unit(s): " + writeOffs);
+        return units.size();
+    }
+
+    // Bỏ các túi máu đã hết hạn trong lúc ứng dụng tắt
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void sweepOnStartup() {
+        sweepExpired();
+    }
+
+    @Override
+    public List<BloodUnit> getAvailableUnits(String bloodType) {
+        return bloodUnitRepository.findByBloodTypeAndStatusOrderByExpiryDateAscIdAsc(bloodType, BloodUnitStatus.AVAILABLE);
+    }
+
+    @Override
+    public List<BloodUnitIssue> getIssues(Long requestId) {
+        return bloodUnitIssueRepository.findByBloodRequestIdOrderByIdAsc(requestId);
+    }
+
+    @Override
+    public Map<String, Integer> getExpiring(int days) {
+        return bloodUnitIndex.expiringBy(LocalDate.now().plusDays(days));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void onRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    undo.run();
+                }
+            }
+        });
+    }
+}
@@ -1,26 +1,84 @@
-// === Service Impl: DonationRegistrationServiceImpl.java ===
 package com.example.demo1.service.impl;
 
+import com.example.demo1.dto.RegistrationFilter;
+import com.example.demo1.dto.RegistrationPage;
 import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.DonationSchedule;
 import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.RegistrationStatus;
 import com.example.demo1.repo.DonationRegistrationRepository;
+import com.example.demo1.repo.DonationScheduleRepository;
+import com.example.demo1.service.BloodUnitService;
 import com.example.demo1.service.DonationRegistrationService;
+import com.example.demo1.service.DonorEligibilityIndex;
+import com.example.demo1.service.NotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
+/**
+ * Registrations with schedule slots.
+ *
+ * A schedule's booked count is only changed by conditional UPDATEs
+ * ({@link DonationScheduleRepository#tryBook}), so there is no count-then-insert
+ * race between concurrent donors. Status changes that free or take a slot go
+ * through {@link DonationRegistrationRepository#transition}, so a registration
+ * can only release (or take) its slot once. Notifications are written to the
+ * outbox in the same transaction, so a donor is only told about changes that
+ * were committed.
+ */
 @Service
 public class DonationRegistrationServiceImpl implements DonationRegistrationService {
 
+    private static final int PROMOTE_BATCH = 5;
+
     @Autowired
     private DonationRegistrationRepository registrationRepository;
 
+    @Autowired
+    private DonationScheduleRepository scheduleRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private DonorEligibilityIndex donorEligibilityIndex;
+
+    @Autowired
+    private BloodUnitService bloodUnitService;
+
+    @Value("${registration.page.max-size:200}")
+    private int maxPageSize;
+
     @Override
+    @Transactional
     public DonationRegistration register(DonationRegistration registration, User user) {
         registration.setUser(user);
         registration.setRegisteredAt(LocalDateTime.now());
+        if (registration.getSchedule() != null) {
+            Long scheduleId = registration.getSchedule().getId();
+            DonationSchedule schedule = (scheduleId != null ? scheduleRepository.findById(scheduleId) : Optional.<DonationSchedule>empty())
+                    .orElseThrow(() -> new IllegalArgumentException("Schedule not found"));
+            registration.setSchedule(schedule);
+            registration.setLocation(schedule.getLocation());
+            // Lịch đã đủ chỗ thì vào danh sách chờ
+            registration.setStatus(scheduleRepository.tryBook(scheduleId) == 1
+                    ? RegistrationStatus.PENDING
+                    : RegistrationStatus.WAITLISTED);
+        }
         return registrationRepository.save(registration);
     }
 
@@ -28,4 +86,189 @@ public class DonationRegistrationServiceImpl implements DonationRegistrationServ
     public List<DonationRegistration> getRegistrationsByUser(User user) {
         return registrationRepository.findByUser(user);
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional
+    public Optional<DonationRegistration> confirm(Long id, User actor) {
+        Optional<DonationRegistration> opt = registrationRepository.findById(id);
+        if (opt.isEmpty()) {
+            return opt;
+        }
+        DonationRegistration reg = opt.get();
+        if (reg.getStatus() == RegistrationStatus.WAITLISTED) {
+            throw new IllegalStateException("Registration is on the waitlist, the schedule has no free slot");
+        }
+        if (reg.getStatus() != RegistrationStatus.PENDING) {
+            throw new IllegalStateException("Only pending registrations can be confirmed, this one is " + reg.getStatus());
+        }
+        // Chỉ một trong hai thao tác xác nhận/hủy đồng thời thành công, chỗ của lịch không bị tính hai lần
+        if (registrationRepository.transition(id, RegistrationStatus.PENDING, RegistrationStatus.CONFIRMED) == 0) {
+            throw new IllegalStateException("Registration was changed by someone else, please reload");
+        }
+        reg.setStatus(RegistrationStatus.CONFIRMED);
+
+        // Tạo túi máu mới và cộng vào kho
+        bloodUnitService.receive(reg, actor);
+
+        if (reg.getUser() != null) {
+            // Cập nhật ngày hiến gần nhất và ngày được hiến tiếp theo
+            donorEligibilityIndex.refresh(reg.getUser().getId());
+            notificationService.sendNotification(reg.getUser().getEmail(), "Đơn đăng ký hiến máu đã được xác nhận.");
+        }
+        return Optional.of(reg);
+    }
+
+    @Override
+    @Transactional
+    public Optional<DonationRegistration> cancel(Long id) {
+        Optional<DonationRegistration> opt = registrationRepository.findById(id);
+        if (opt.isEmpty() || opt.get().getStatus() == RegistrationStatus.CANCELLED) {
+            return opt;
+        }
+        DonationRegistration reg = opt.get();
+        RegistrationStatus previous = reg.getStatus();
+        if (registrationRepository.transition(id, previous, RegistrationStatus.CANCELLED) == 0) {
+            throw new IllegalStateException("Registration was changed by someone else, please reload");
+        }
+        reg.setStatus(RegistrationStatus.CANCELLED);
+        if (reg.getUser() != null) {
+            // Hủy đơn đã xác nhận làm thay đổi ngày hiến gần nhất, và luôn tăng số lần hủy
+            donorEligibilityIndex.refresh(reg.getUser().getId());
+            notificationService.sendNotification(reg.getUser().getEmail(), "Đơn đăng ký hiến máu đã bị hủy.");
+        }
+
+        boolean heldSlot = previous == RegistrationStatus.PENDING || previous == RegistrationStatus.CONFIRMED;
+        if (reg.getSchedule() != null && heldSlot) {
+            scheduleRepository.release(reg.getSchedule().getId());
+            promoteWaitlist(reg.getSchedule().getId());
+        }
+        return Optional.of(reg);
+    }
+
+    @Override
+    @Transactional
+    public int promoteWaitlist(Long scheduleId) {
+        int promoted = 0;
+        while (true) {
+            List<DonationRegistration> waiting = registrationRepository.findByScheduleIdAndStatus(
+                    scheduleId, RegistrationStatus.WAITLISTED, PageRequest.of(0, PROMOTE_BATCH));
+            if (waiting.isEmpty()) {
+                return promoted;
+            }
+            boolean progressed = false;
+            for (DonationRegistration reg : waiting) {
+                if (scheduleRepository.tryBook(scheduleId) == 0) {
+                    return promoted; // hết chỗ
+                }
+                if (registrationRepository.transition(reg.getId(), RegistrationStatus.WAITLISTED, RegistrationStatus.PENDING) == 0) {
+                    // Người này vừa bị hủy hoặc được chuyển bởi giao dịch khác
+                    scheduleRepository.release(scheduleId);
+                    continue;
+                }
+                reg.setStatus(RegistrationStatus.PENDING);
+                promoted++;
+                progressed = true;
+                String email = reg.getUser() != null ? reg.getUser().getEmail() : null;
+                if (email != null) {
+                    notificationService.sendNotification(email,
+                            "Đã có chỗ trống, đơn đăng ký hiến máu của bạn đã được chuyển từ danh sách chờ sang chờ xác nhận.");
+                }
+            }
+            if (!progressed) {
+                return promoted;
+            }
+        }
+    }
+
+    @Override
+    public List<DonationRegistration> getRegistrationsBySchedule(Long scheduleId) {
+        return registrationRepository.findByScheduleIdWithUser(scheduleId);
+    }
+
+    @Override
+    public RegistrationPage search(RegistrationFilter filter, String after, int limit) {
+        if (limit <= 0 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        LocalDateTime fromAt = filter.getFrom() != null ? filter.getFrom().atStartOfDay() : null;
+        LocalDateTime toAt = filter.getTo() != null ? filter.getTo().plusDays(1).atStartOfDay() : null;
+        if (fromAt != null && toAt != null && !toAt.isAfter(fromAt)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+
+        // Con trỏ dạng "<registeredAt>:<id>" của đơn cuối cùng ở trang trước
+        LocalDateTime afterAt = null;
+        long afterId = 0;
+        if (after != null && !after.isBlank()) {
+            int sep = after.lastIndexOf(':');
+            try {
+                afterAt = LocalDateTime.parse(after.substring(0, Math.max(sep, 0)));
+                afterId = Long.parseLong(after.substring(sep + 1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+        }
+
+        // Lấy thêm một dòng để biết còn trang sau hay không
+        Sort.Direction direction = filter.isAscending() ? Sort.Direction.ASC : Sort.Direction.DESC;
+        List<DonationRegistration> rows = registrationRepository.findBy(
+                pageSpec(filter, fromAt, toAt, afterAt, afterId),
+                query -> query.sortBy(Sort.by(direction, "registeredAt", "id")).limit(limit + 1).all());
+
+        RegistrationPage result = new RegistrationPage();
+        boolean hasMore = rows.size() > limit;
+        result.setRegistrations(hasMore ? rows.subList(0, limit) : rows);
+        if (hasMore) {
+            DonationRegistration last = rows.get(limit - 1);
+            result.setNextCursor(last.getRegisteredAt() + ":" + last.getId());
+        }
+        return result;
+    }
+
+    /**
+     * Only the filters that are set become predicates, so each filter shape gets
+     * its own plan that can seek the matching composite index, instead of one
+     * catch-all plan with "(:x is null or ...)" for every filter.
+     */
+    static Specification<DonationRegistration> pageSpec(RegistrationFilter filter, LocalDateTime fromAt, LocalDateTime toAt,
+                                                        LocalDateTime afterAt, long afterId) {
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("user", JoinType.LEFT);
+                root.fetch("location", JoinType.LEFT);
+            }
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getStatus() != null) {
+                predicates.add(cb.equal(root.get("status"), filter.getStatus()));
+            }
+            if (filter.getLocationId() != null) {
+                predicates.add(cb.equal(root.get("location").get("id"), filter.getLocationId()));
+            }
+            if (filter.getScheduleId() != null) {
+                predicates.add(cb.equal(root.get("schedule").get("id"), filter.getScheduleId()));
+            }
+            if (filter.getUserId() != null) {
+                predicates.add(cb.equal(root.get("user").get("id"), filter.getUserId()));
+            }
+            if (filter.getBloodType() != null) {
+                predicates.add(cb.equal(root.get("bloodType"), filter.getBloodType()));
+            }
+            Path<LocalDateTime> registeredAt = root.get("registeredAt");
+            if (fromAt != null) {
+                predicates.add(cb.greaterThanOrEqualTo(registeredAt, fromAt));
+            }
+            if (toAt != null) {
+                predicates.add(cb.lessThan(registeredAt, toAt));
+            }
+            if (afterAt != null) {
+                Path<Long> id = root.get("id");
+                predicates.add(filter.isAscending()
+                        ? cb.or(cb.greaterThan(registeredAt, afterAt),
+                                cb.and(cb.equal(registeredAt, afterAt), cb.greaterThan(id, afterId)))
+                        : cb.or(cb.lessThan(registeredAt, afterAt),
+                                cb.and(cb.equal(registeredAt, afterAt), cb.lessThan(id, afterId))));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
@@ -1,12 +1,25 @@
 package com.example.demo1.service.impl;
 
+import com.example.demo1.dto.ScheduleCalendarPage;
+import com.example.demo1.dto.ScheduleDaySummary;
+import com.example.demo1.dto.ScheduleSummary;
 import com.example.demo1.entity.DonationSchedule;
+import com.example.demo1.repo.DonationRegistrationRepository;
 import com.example.demo1.repo.DonationScheduleRepository;
 import com.example.demo1.service.DonationScheduleService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class DonationScheduleServiceImpl implements DonationScheduleService {
@@ -14,6 +27,16 @@ public class DonationScheduleServiceImpl implements DonationScheduleService {
     @Autowired
     private DonationScheduleRepository scheduleRepository;
 
+    @Autowired
+    private DonationRegistrationRepository registrationRepository;
+
+    // Giới hạn cửa sổ lịch và kích thước trang để truy vấn không phụ thuộc vào số năm dữ liệu
+    @Value("${schedule.calendar.max-days:92}")
+    private int maxDays;
+
+    @Value("${schedule.calendar.max-page-size:200}")
+    private int maxPageSize;
+
     @Override
     public DonationSchedule saveOrUpdate(DonationSchedule schedule) {
         return scheduleRepository.save(schedule);
@@ -23,4 +46,123 @@ public class DonationScheduleServiceImpl implements DonationScheduleService {
         return scheduleRepository.findAll();
     }
 
+    @Override
+    public List<ScheduleSummary> findAllWithRegistrationCounts() {
+        Map<Long, Long> countsBySchedule = new HashMap<>();
+        for (Object[] row : registrationRepository.countBySchedule()) {
+            countsBySchedule.put((Long) row[0], (Long) row[1]);
+        }
+        // Đơn cũ chưa gắn với lịch cụ thể không thuộc riêng lịch nào: báo riêng theo địa điểm,
+        // không cộng vào số đơn của mọi lịch tại địa điểm đó
+        Map<Long, Long> unscheduledByLocation = new HashMap<>();
+        for (Object[] row : registrationRepository.countUnscheduledByLocation()) {
+            unscheduledByLocation.put((Long) row[0], (Long) row[1]);
+        }
+        List<ScheduleSummary> result = new ArrayList<>();
+        for (DonationSchedule schedule : scheduleRepository.findAllWithLocation()) {
+            long count = countsBySchedule.getOrDefault(schedule.getId(), 0L);
+            long unscheduled = schedule.getLocation() != null
+                    ? unscheduledByLocation.getOrDefault(schedule.getLocation().getId(), 0L) : 0L;
+            int booked = schedule.getBookedCount() != null ? schedule.getBookedCount() : 0;
+            result.add(new ScheduleSummary(schedule.getId(), schedule.getDate(), schedule.getTime(),
+                    schedule.getLocation(), count, unscheduled, schedule.getCapacity(), booked));
+        }
+        return result;
+    }
+
+    @Override
+    public ScheduleCalendarPage findCalendar(LocalDate from, LocalDate to, Long locationId, String after, int limit) {
+        checkWindow(from, to);
+        if (limit <= 0 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+
+        // Con trỏ dạng "yyyy-MM-dd:id" của lịch cuối cùng ở trang trước
+        LocalDate afterDate = from;
+        long afterId = 0;
+        if (after != null && !after.isBlank()) {
+            int sep = after.indexOf(':');
+            try {
+                afterDate = LocalDate.parse(after.substring(0, Math.max(sep, 0)));
+                afterId = Long.parseLong(after.substring(sep + 1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+        }
+
+        // Lấy thêm một dòng để biết còn trang sau hay không
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<DonationSchedule> rows = locationId != null
+                ? scheduleRepository.findCalendarPageAtLocation(from, to, locationId, afterDate, afterId, pageRequest)
+                : scheduleRepository.findCalendarPage(from, to, afterDate, afterId, pageRequest);
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+
+        // Chỉ đếm đơn đăng ký của các lịch trong trang này
+        Map<Long, Long> counts = new HashMap<>();
+        if (!rows.isEmpty()) {
+            List<Long> ids = rows.stream().map(DonationSchedule::getId).toList();
+            for (Object[] row : registrationRepository.countByScheduleIds(ids)) {
+                counts.put((Long) row[0], (Long) row[1]);
+            }
+        }
+
+        ScheduleCalendarPage page = new ScheduleCalendarPage();
+        page.setFrom(from);
+        page.setTo(to);
+        for (DonationSchedule schedule : rows) {
+            int booked = schedule.getBookedCount() != null ? schedule.getBookedCount() : 0;
+            page.getSchedules().add(new ScheduleSummary(schedule.getId(), schedule.getDate(), schedule.getTime(),
+                    schedule.getLocation(), counts.getOrDefault(schedule.getId(), 0L), 0L, schedule.getCapacity(), booked));
+        }
+        if (hasMore) {
+            DonationSchedule last = rows.get(rows.size() - 1);
+            page.setNextCursor(last.getDate() + ":" + last.getId());
+        }
+        return page;
+    }
+
+    @Override
+    public List<ScheduleDaySummary> getOccupancy(LocalDate from, LocalDate to, Long locationId) {
+        checkWindow(from, to);
+        List<ScheduleDaySummary> result = new ArrayList<>();
+        List<Object[]> days = locationId != null
+                ? scheduleRepository.summarizeByDayAtLocation(from, to, locationId)
+                : scheduleRepository.summarizeByDay(from, to);
+        for (Object[] row : days) {
+            long scheduleCount = ((Number) row[1]).longValue();
+            long capacity = row[2] != null ? ((Number) row[2]).longValue() : 0;
+            long unlimited = row[3] != null ? ((Number) row[3]).longValue() : 0;
+            long booked = row[4] != null ? ((Number) row[4]).longValue() : 0;
+            // Có lịch không giới hạn thì không tính được tổng số chỗ
+            Long slots = unlimited > 0 ? null : capacity;
+            Long free = slots != null ? Math.max(0, slots - booked) : null;
+            result.add(new ScheduleDaySummary((LocalDate) row[0], scheduleCount, slots, booked, free));
+        }
+        return result;
+    }
+
+    private void checkWindow(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new IllegalArgumentException("Date range must not exceed " + maxDays + " days");
+        }
+    }
+
+    @Override
+    @Transactional
+    public boolean deleteById(Long id) {
+        if (!scheduleRepository.existsById(id)) {
+            return false;
+        }
+        registrationRepository.cancelWaitlisted(id);
+        registrationRepository.detachSchedule(id);
+        scheduleRepository.deleteById(id);
+        return true;
+    }
+
 }
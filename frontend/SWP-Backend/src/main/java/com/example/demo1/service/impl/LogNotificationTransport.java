@@ -0,0 +1,32 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.entity.Notification;
+import com.example.demo1.entity.enums.NotificationChannel;
+import com.example.demo1.service.NotificationTransport;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "notification.transport", havingValue = "log", matchIfMissing = true)
+public class LogNotificationTransport implements NotificationTransport {
+
+    @Override
+    public NotificationChannel getChannel() {
+        return NotificationChannel.EMAIL;
+    }
+
+    @Override
+    public List<String> send(List<Notification> batch, Instant deadline) {
+        List<String> results = new ArrayList<>(batch.size());
+        for (Notification notification : batch) {
+            // Giả lập gửi email/thông báo
+            System.out.println("Sending notification to " + notification.getRecipient() + ": " + notification.getMessage());
+            results.add(null);
+        }
+        return results;
+    }
+}
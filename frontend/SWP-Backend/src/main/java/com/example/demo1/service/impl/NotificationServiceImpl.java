@@ -1,13 +1,124 @@
 package com.example.demo1.service.impl;
 
+import com.example.demo1.entity.Notification;
+import com.example.demo1.entity.enums.NotificationChannel;
+import com.example.demo1.entity.enums.NotificationStatus;
+import com.example.demo1.repo.NotificationRepository;
+import com.example.demo1.service.EmailAddresses;
 import com.example.demo1.service.NotificationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 public class NotificationServiceImpl implements NotificationService {
+
+    // Ghi hàng loạt bằng JDBC: khóa IDENTITY khiến Hibernate không gộp được các lệnh INSERT
+    private static final String INSERT_PENDING =
+            "INSERT INTO notification (recipient, body, channel, status, attempts, next_attempt_at, created_at) " +
+            "VALUES (?, ?, 'EMAIL', 'PENDING', 0, ?, ?)";
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Override
+    @Transactional
     public void sendNotification(String email, String message) {
-        // Giả lập gửi email/thông báo
-        System.out.println("Sending notification to " + email + ": " + message);
+        if (email == null || email.isBlank()) {
+            System.err.println("Skipping notification without recipient: " + message);
+            return;
+        }
+        // Địa chỉ đi thẳng vào lệnh RCPT TO và header To, không nhận CR/LF hay ký tự lạ
+        String recipient = email.trim();
+        if (!EmailAddresses.isValid(recipient)) {
+            System.err.println("Skipping notification to invalid address: " + recipient.replaceAll("[\\r\\n]", " "));
+            return;
+        }
+        // Chỉ ghi vào outbox, NotificationDispatcher gửi ở luồng nền
+        Notification notification = new Notification();
+        notification.setRecipient(recipient);
+        notification.setMessage(message);
+        notification.setChannel(NotificationChannel.EMAIL);
+        notification.setStatus(NotificationStatus.PENDING);
+        notification.setNextAttemptAt(LocalDateTime.now());
+        notificationRepository.save(notification);
+    }
+
+    @Override
+    @Transactional
+    public int sendNotifications(List<String> emails, String message) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(emails.size());
+        for (String email : emails) {
+            if (email == null || email.isBlank()) {
+                continue;
+            }
+            String recipient = email.trim();
+            if (!EmailAddresses.isValid(recipient)) {
+                System.err.println("Skipping notification to invalid address: " + recipient.replaceAll("[\\r\\n]", " "));
+                continue;
+            }
+            rows.add(new Object[]{recipient, message, now, now});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_PENDING, rows);
+        }
+        return rows.size();
+    }
+
+    @Override
+    public Map<NotificationStatus, Long> countByStatus() {
+        Map<NotificationStatus, Long> counts = new EnumMap<>(NotificationStatus.class);
+        for (NotificationStatus status : NotificationStatus.values()) {
+            counts.put(status, 0L);
+        }
+        for (Object[] row : notificationRepository.countByStatus()) {
+            if (row[0] != null) {
+                counts.put((NotificationStatus) row[0], ((Number) row[1]).longValue());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public List<Notification> getRecent(NotificationStatus status, String recipient, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        if (recipient != null && !recipient.isBlank()) {
+            return notificationRepository.findByRecipientOrderByIdDesc(recipient.trim(), page);
+        }
+        return status != null
+                ? notificationRepository.findByStatusOrderByIdDesc(status, page)
+                : notificationRepository.findAllByOrderByIdDesc(page);
+    }
+
+    @Override
+    @Transactional
+    public Optional<Notification> retry(Long id) {
+        Optional<Notification> opt = notificationRepository.findById(id);
+        if (opt.isEmpty()) {
+            return opt;
+        }
+        Notification notification = opt.get();
+        if (notification.getStatus() != NotificationStatus.FAILED) {
+            throw new IllegalStateException("Only failed notifications can be retried");
+        }
+        notification.setStatus(NotificationStatus.PENDING);
+        notification.setAttempts(0);
+        notification.setNextAttemptAt(LocalDateTime.now());
+        notification.setLastError(null);
+        return Optional.of(notificationRepository.save(notification));
     }
 }
@@ -0,0 +1,176 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.config.NotificationProperties;
+import com.example.demo1.entity.Notification;
+import com.example.demo1.entity.enums.NotificationChannel;
+import com.example.demo1.service.EmailAddresses;
+import com.example.demo1.service.NotificationTransport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Minimal SMTP client (plain text, no TLS or AUTH) for a local relay or a
+ * test server such as MailHog. One connection per batch; a rejected recipient
+ * only fails its own message. Every read waits at most
+ * {@code notification.smtp.timeout}, and no message is started after the
+ * dispatcher's deadline.
+ */
+@Service
+@ConditionalOnProperty(name = "notification.transport", havingValue = "smtp")
+public class SmtpNotificationTransport implements NotificationTransport {
+
+    private static final String DEFAULT_SUBJECT = "Thông báo hiến máu";
+
+    @Autowired
+    private NotificationProperties notificationProperties;
+
+    @Override
+    public NotificationChannel getChannel() {
+        return NotificationChannel.EMAIL;
+    }
+
+    @Override
+    public List<String> send(List<Notification> batch, Instant deadline) {
+        NotificationProperties.Smtp smtp = notificationProperties.getSmtp();
+        List<String> results = new ArrayList<>(batch.size());
+        if (!EmailAddresses.isValid(smtp.getFrom())) {
+            for (int i = 0; i < batch.size(); i++) {
+                results.add("Invalid sender address in notification.smtp.from");
+            }
+            return results;
+        }
+        int timeout = (int) smtp.getTimeout().toMillis();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(smtp.getHost(), smtp.getPort()), timeout);
+            socket.setSoTimeout(timeout);
+            Session session = new Session(socket);
+            session.expect(220);
+            session.command("EHLO " + smtp.getHeloName(), 250);
+            for (Notification notification : batch) {
+                if (Instant.now().isAfter(deadline)) {
+                    break; // các tin còn lại chưa gửi, dispatcher trả chúng về hàng đợi
+                }
+                // Kiểm tra lại ngay trước khi ghi vào lệnh SMTP: dòng có thể được ghi vào outbox bằng đường khác
+                if (!EmailAddresses.isValid(notification.getRecipient())) {
+                    results.add("Invalid recipient address");
+                    continue;
+                }
+                try {
+                    session.command("MAIL FROM:<" + smtp.getFrom() + ">", 250);
+                    session.command("RCPT TO:<" + notification.getRecipient() + ">", 250, 251);
+                    session.command("DATA", 354);
+                    session.write(buildMessage(smtp.getFrom(), notification));
+                    session.command(".", 250);
+                    results.add(null);
+                } catch (SmtpReply e) {
+                    // Máy chủ từ chối tin này, đặt lại phiên rồi gửi tin tiếp theo
+                    results.add(e.getMessage());
+                    session.command("RSET", 250);
+                }
+            }
+            session.command("QUIT", 221);
+        } catch (IOException | SmtpReply e) {
+            // Mất kết nối: các tin chưa gửi trong lô đều thất bại
+            String error = "SMTP " + smtp.getHost() + ":" + smtp.getPort() + ": " + e.getMessage();
+            while (results.size() < batch.size()) {
+                results.add(error);
+            }
+        }
+        return results;
+    }
+
+    private static String buildMessage(String from, Notification notification) {
+        String text = notification.getMessage() != null ? notification.getMessage() : "";
+        // Tin dạng "tiêu đề\n\nnội dung" (DonationNotificationService) dùng dòng đầu làm tiêu đề
+        String subject = DEFAULT_SUBJECT;
+        int split = text.indexOf("\n\n");
+        if (split > 0 && split <= 200) {
+            subject = text.substring(0, split);
+            text = text.substring(split + 2);
+        }
+        StringBuilder message = new StringBuilder();
+        message.append("From: ").append(from).append("\r\n");
+        message.append("To: ").append(notification.getRecipient()).append("\r\n");
+        message.append("Subject: =?UTF-8?B?")
+                .append(Base64.getEncoder().encodeToString(subject.getBytes(StandardCharsets.UTF_8))).append("?=\r\n");
+        message.append("Date: ").append(DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now())).append("\r\n");
+        message.append("Message-ID: <notification-").append(notification.getId()).append("@").append(from.substring(from.indexOf('@') + 1)).append(">\r\n");
+        message.append("MIME-Version: 1.0\r\n");
+        message.append("Content-Type: text/plain; charset=UTF-8\r\n");
+        message.append("Content-Transfer-Encoding: 8bit\r\n\r\n");
+        for (String line : text.replace("\r\n", "\n").split("\n", -1)) {
+            if (line.startsWith(".")) {
+                message.append('.'); // dot-stuffing (RFC 5321 4.5.2)
+            }
+            message.append(line).append("\r\n");
+        }
+        return message.toString();
+    }
+
+    /**
+     * Reply code the server should not have sent.
+     */
+    private static final class SmtpReply extends Exception {
+        private SmtpReply(String reply) {
+            super(reply);
+        }
+    }
+
+    private static final class Session {
+        private final BufferedReader in;
+        private final OutputStream out;
+
+        private Session(Socket socket) throws IOException {
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = socket.getOutputStream();
+        }
+
+        void write(String data) throws IOException {
+            out.write(data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void command(String line, int... accepted) throws IOException, SmtpReply {
+            write(line + "\r\n");
+            out.flush();
+            expect(accepted);
+        }
+
+        // Đọc hết phản hồi nhiều dòng ("250-...", "250 ...") và kiểm tra mã
+        void expect(int... accepted) throws IOException, SmtpReply {
+            String line;
+            do {
+                line = in.readLine();
+                if (line == null) {
+                    throw new IOException("Connection closed by server");
+                }
+            } while (line.length() > 3 && line.charAt(3) == '-');
+            int code;
+            try {
+                code = Integer.parseInt(line.substring(0, 3));
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                throw new SmtpReply("Invalid reply: " + line);
+            }
+            for (int ok : accepted) {
+                if (code == ok) {
+                    return;
+                }
+            }
+            throw new SmtpReply(line);
+        }
+    }
+}
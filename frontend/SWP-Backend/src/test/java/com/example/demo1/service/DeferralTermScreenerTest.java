@@ -0,0 +1,102 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.Gender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The default terms, screened through {@link DonationEligibilityService} as
+ * at registration.
+ */
+class DeferralTermScreenerTest {
+
+    private DonationEligibilityService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DonationEligibilityService();
+        ReflectionTestUtils.setField(service, "deferralTermScreener", new DeferralTermScreener());
+    }
+
+    @Test
+    void rabiesVaccinationDefers() {
+        DonationRegistration registration = valid();
+        registration.setVaccinationDetails("Tiêm phòng dại sau khi bị chó cắn");
+
+        DonationEligibilityService.EligibilityResult result = screen(registration);
+
+        assertFalse(result.isEligible());
+        assertEquals(List.of("VACCINE"), result.getErrorCodes());
+        assertEquals(List.of("Must wait 12 months after rabies vaccination following an animal bite"), result.getErrors());
+    }
+
+    @Test
+    void shortAccentedTermsDoNotMatchLookalikeWords() {
+        for (String text : List.of("Tiêm cúm ở Đại học Y", "Vắc xin cúm, tác dụng dài", "tiêm ở dải phân cách",
+                "Nội soi dạ dày, tiêm viêm gan B", "DAI HOC Y")) {
+            DonationRegistration registration = valid();
+            registration.setVaccinationDetails(text);
+
+            assertTrue(screen(registration).isEligible(), text);
+        }
+    }
+
+    @Test
+    void multiWordTermsStillMatchWithoutAccents() {
+        DonationRegistration registration = valid();
+        registration.setTravelDetails("di cong tac Dak Lak 2 tuan");
+        registration.setVaccinationDetails("vac xin thuy dau");
+
+        DonationEligibilityService.EligibilityResult result = screen(registration);
+
+        assertEquals(List.of("TRAVEL_REGION"), result.getWarningCodes());
+        assertEquals(List.of("Travel to đắk lắk (malaria risk area) requires additional screening"), result.getWarnings());
+        assertEquals(List.of("VACCINE"), result.getErrorCodes());
+    }
+
+    @Test
+    void measlesVaccineDefersButEndoscopyDoesNot() {
+        DonationRegistration measles = valid();
+        measles.setVaccinationDetails("Tiêm sởi tháng trước");
+        DonationRegistration endoscopy = valid();
+        endoscopy.setSurgeryDetails("nội soi");
+        endoscopy.setVaccinationDetails("nội soi");
+
+        assertEquals(List.of("VACCINE"), screen(measles).getErrorCodes());
+        assertTrue(screen(endoscopy).isEligible());
+    }
+
+    @Test
+    void accentsRuleOnlyAppliesToSingleAccentedWords() {
+        assertTrue(DeferralTermScreener.keepsAccents("dại"));
+        assertTrue(DeferralTermScreener.keepsAccents("Sởi"));
+        assertFalse(DeferralTermScreener.keepsAccents("sốt rét"));
+        assertFalse(DeferralTermScreener.keepsAccents("rabies"));
+    }
+
+    private DonationEligibilityService.EligibilityResult screen(DonationRegistration registration) {
+        User user = new User();
+        user.setGender(Gender.MALE);
+        return service.checkEligibility(registration, user);
+    }
+
+    private static DonationRegistration valid() {
+        DonationRegistration r = new DonationRegistration();
+        r.setWeight(60.0);
+        r.setHeight(170.0);
+        r.setBloodType("O+");
+        r.setHealthDeclaration(true);
+        r.setConsentForm(true);
+        r.setDataProcessingConsent(true);
+        return r;
+    }
+}
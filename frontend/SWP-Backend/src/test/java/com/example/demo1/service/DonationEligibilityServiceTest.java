@@ -0,0 +1,257 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.Gender;
+import com.example.demo1.repo.EligibilityRuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The rule engine seeded with the default rules must give the same verdicts
+ * and messages as the hard-coded checks it replaced ({@link Baseline}).
+ */
+class DonationEligibilityServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private DonationEligibilityService service;
+
+    @BeforeEach
+    void setUp() {
+        EligibilityRuleRepository ruleRepository = mock(EligibilityRuleRepository.class);
+        when(ruleRepository.findAll()).thenReturn(DonationEligibilityService.defaultRules());
+        service = new DonationEligibilityService();
+        ReflectionTestUtils.setField(service, "ruleRepository", ruleRepository);
+        // Không có từ khóa nào, chỉ so sánh phần quy tắc
+        ReflectionTestUtils.setField(service, "deferralTermScreener", mock(DeferralTermScreener.class));
+        service.reload();
+    }
+
+    @ParameterizedTest(name = "{0} ({1})")
+    @MethodSource("cases")
+    void matchesBaseline(String name, Gender gender, Consumer<DonationRegistration> change) {
+        DonationRegistration registration = valid();
+        change.accept(registration);
+        User user = new User();
+        user.setGender(gender);
+
+        Baseline.Result expected = Baseline.check(registration, gender, TODAY);
+        DonationEligibilityService.EligibilityResult actual = service.checkEligibility(registration, user);
+
+        assertEquals(expected.errors.isEmpty(), actual.isEligible());
+        assertEquals(expected.errors, actual.getErrors());
+        assertEquals(expected.warnings, actual.getWarnings());
+    }
+
+    static Stream<Arguments> cases() {
+        List<Arguments> rows = new ArrayList<>();
+        for (Gender gender : new Gender[] {Gender.MALE, Gender.FEMALE, Gender.OTHER, null}) {
+            add(rows, gender, "valid", r -> { });
+            add(rows, gender, "weight 45", r -> r.setWeight(45.0));
+            add(rows, gender, "weight 44.9", r -> r.setWeight(44.9));
+            add(rows, gender, "no weight", r -> r.setWeight(null));
+            add(rows, gender, "height 140", r -> r.setHeight(140.0));
+            add(rows, gender, "height 139.9", r -> r.setHeight(139.9));
+            add(rows, gender, "no height", r -> r.setHeight(null));
+            add(rows, gender, "bmi 16.5", r -> { r.setWeight(45.0); r.setHeight(165.0); });
+            add(rows, gender, "bmi exactly 10", r -> { r.setWeight(40.0); r.setHeight(200.0); });
+            add(rows, gender, "bmi 40.0", r -> { r.setWeight(144.4); r.setHeight(190.0); });
+            add(rows, gender, "bmi 45.0", r -> { r.setWeight(130.0); r.setHeight(170.0); });
+            add(rows, gender, "no blood type", r -> r.setBloodType(null));
+            add(rows, gender, "blank blood type", r -> r.setBloodType("  "));
+            add(rows, gender, "bp 90/50", r -> { r.setSystolicBP(90); r.setDiastolicBP(50); });
+            add(rows, gender, "bp 180/100", r -> { r.setSystolicBP(180); r.setDiastolicBP(100); });
+            add(rows, gender, "bp 89/49", r -> { r.setSystolicBP(89); r.setDiastolicBP(49); });
+            add(rows, gender, "bp 181/101", r -> { r.setSystolicBP(181); r.setDiastolicBP(101); });
+            add(rows, gender, "systolic only", r -> r.setSystolicBP(200));
+            add(rows, gender, "heart rate 50", r -> r.setHeartRate(50));
+            add(rows, gender, "heart rate 100", r -> r.setHeartRate(100));
+            add(rows, gender, "heart rate 49", r -> r.setHeartRate(49));
+            add(rows, gender, "heart rate 101", r -> r.setHeartRate(101));
+            add(rows, gender, "temperature 36.0", r -> r.setTemperature(36.0));
+            add(rows, gender, "temperature 37.5", r -> r.setTemperature(37.5));
+            add(rows, gender, "temperature 35.9", r -> r.setTemperature(35.9));
+            add(rows, gender, "temperature 37.6", r -> r.setTemperature(37.6));
+            add(rows, gender, "hemoglobin 13.5", r -> r.setHemoglobin(13.5));
+            add(rows, gender, "hemoglobin 13.4", r -> r.setHemoglobin(13.4));
+            add(rows, gender, "hemoglobin 12.5", r -> r.setHemoglobin(12.5));
+            add(rows, gender, "hemoglobin 12.4", r -> r.setHemoglobin(12.4));
+            add(rows, gender, "donated 89 days ago", r -> r.setLastDonationDate(TODAY.minusDays(89)));
+            add(rows, gender, "donated 90 days ago", r -> r.setLastDonationDate(TODAY.minusDays(90)));
+            add(rows, gender, "donated 119 days ago", r -> r.setLastDonationDate(TODAY.minusDays(119)));
+            add(rows, gender, "donated 120 days ago", r -> r.setLastDonationDate(TODAY.minusDays(120)));
+            add(rows, gender, "donation date in the future", r -> r.setLastDonationDate(TODAY.plusDays(3)));
+            add(rows, gender, "surgery 179 days ago", r -> { r.setRecentSurgery(true); r.setSurgeryDate(TODAY.minusDays(179)); });
+            add(rows, gender, "surgery 180 days ago", r -> { r.setRecentSurgery(true); r.setSurgeryDate(TODAY.minusDays(180)); });
+            add(rows, gender, "surgery without date", r -> r.setRecentSurgery(true));
+            add(rows, gender, "surgery date but not recent", r -> { r.setRecentSurgery(false); r.setSurgeryDate(TODAY); });
+            add(rows, gender, "tattoo 179 days ago", r -> { r.setRecentTattoo(true); r.setTattooDate(TODAY.minusDays(179)); });
+            add(rows, gender, "piercing 179 days ago", r -> { r.setRecentPiercing(true); r.setPiercingDate(TODAY.minusDays(179)); });
+            add(rows, gender, "recent travel", r -> r.setRecentTravel(true));
+            add(rows, gender, "pregnant", r -> r.setIsPregnant(true));
+            add(rows, gender, "breastfeeding", r -> r.setIsBreastfeeding(true));
+            add(rows, gender, "no health declaration", r -> r.setHealthDeclaration(false));
+            add(rows, gender, "no consent form", r -> r.setConsentForm(null));
+            add(rows, gender, "no data processing consent", r -> r.setDataProcessingConsent(false));
+            add(rows, gender, "everything wrong", r -> {
+                r.setWeight(40.0);
+                r.setHeight(139.0);
+                r.setBloodType(null);
+                r.setSystolicBP(200);
+                r.setDiastolicBP(40);
+                r.setHeartRate(120);
+                r.setTemperature(38.2);
+                r.setHemoglobin(11.0);
+                r.setLastDonationDate(TODAY.minusDays(30));
+                r.setRecentSurgery(true);
+                r.setSurgeryDate(TODAY.minusDays(10));
+                r.setRecentTattoo(true);
+                r.setTattooDate(TODAY.minusDays(10));
+                r.setRecentPiercing(true);
+                r.setPiercingDate(TODAY.minusDays(10));
+                r.setRecentTravel(true);
+                r.setIsPregnant(true);
+                r.setIsBreastfeeding(true);
+                r.setHealthDeclaration(false);
+                r.setConsentForm(false);
+                r.setDataProcessingConsent(false);
+            });
+        }
+        return rows.stream();
+    }
+
+    private static void add(List<Arguments> rows, Gender gender, String name, Consumer<DonationRegistration> change) {
+        rows.add(Arguments.of(name, gender, change));
+    }
+
+    private static DonationRegistration valid() {
+        DonationRegistration r = new DonationRegistration();
+        r.setWeight(60.0);
+        r.setHeight(170.0);
+        r.setBloodType("O+");
+        r.setHealthDeclaration(true);
+        r.setConsentForm(true);
+        r.setDataProcessingConsent(true);
+        return r;
+    }
+
+    /**
+     * The if-chain used before the rules were stored in the database, kept
+     * verbatim apart from taking the date and gender as parameters.
+     */
+    private static final class Baseline {
+
+        static final class Result {
+            final List<String> errors = new ArrayList<>();
+            final List<String> warnings = new ArrayList<>();
+        }
+
+        static Result check(DonationRegistration registration, Gender gender, LocalDate today) {
+            Result result = new Result();
+            List<String> errors = result.errors;
+
+            if (registration.getWeight() == null || registration.getWeight() < 45) {
+                errors.add("Weight must be at least 45kg");
+            }
+            if (registration.getHeight() == null || registration.getHeight() < 140) {
+                errors.add("Height must be at least 140cm");
+            }
+            if (registration.getWeight() != null && registration.getHeight() != null) {
+                double heightInMeters = registration.getHeight() / 100.0;
+                double bmi = registration.getWeight() / (heightInMeters * heightInMeters);
+                if (bmi < 17.0) {
+                    errors.add("BMI too low (" + String.format("%.1f", bmi) + ") - may increase risk of adverse reactions. Please consult with a healthcare provider.");
+                } else if (bmi > 40.0) {
+                    errors.add("BMI too high (" + String.format("%.1f", bmi) + ") - may increase procedural risks. Special medical evaluation required.");
+                }
+            }
+            if (registration.getBloodType() == null || registration.getBloodType().trim().isEmpty()) {
+                errors.add("Blood type is required");
+            }
+
+            if (registration.getSystolicBP() != null && registration.getDiastolicBP() != null) {
+                if (registration.getSystolicBP() < 90 || registration.getSystolicBP() > 180) {
+                    errors.add("Systolic blood pressure must be between 90-180 mmHg");
+                }
+                if (registration.getDiastolicBP() < 50 || registration.getDiastolicBP() > 100) {
+                    errors.add("Diastolic blood pressure must be between 50-100 mmHg");
+                }
+            }
+            if (registration.getHeartRate() != null) {
+                if (registration.getHeartRate() < 50 || registration.getHeartRate() > 100) {
+                    errors.add("Heart rate must be between 50-100 bpm");
+                }
+            }
+            if (registration.getTemperature() != null) {
+                if (registration.getTemperature() < 36.0 || registration.getTemperature() > 37.5) {
+                    errors.add("Body temperature must be between 36-37.5°C");
+                }
+            }
+            if (registration.getHemoglobin() != null) {
+                double minHemoglobin = (gender == Gender.FEMALE) ? 12.5 : 13.5;
+                if (registration.getHemoglobin() < minHemoglobin) {
+                    errors.add(String.format("Hemoglobin must be at least %.1f g/dL", minHemoglobin));
+                }
+            }
+
+            if (registration.getLastDonationDate() != null) {
+                long daysSinceLastDonation = ChronoUnit.DAYS.between(registration.getLastDonationDate(), today);
+                long minInterval = (gender == Gender.FEMALE) ? 120 : 90;
+                if (daysSinceLastDonation < minInterval) {
+                    errors.add(String.format("Must wait %d more days since last donation", minInterval - daysSinceLastDonation));
+                }
+            }
+
+            if (Boolean.TRUE.equals(registration.getRecentSurgery()) && registration.getSurgeryDate() != null
+                    && ChronoUnit.DAYS.between(registration.getSurgeryDate(), today) < 180) {
+                errors.add("Must wait 6 months after major surgery");
+            }
+            if (Boolean.TRUE.equals(registration.getRecentTattoo()) && registration.getTattooDate() != null
+                    && ChronoUnit.DAYS.between(registration.getTattooDate(), today) < 180) {
+                errors.add("Must wait 6 months after getting a tattoo");
+            }
+            if (Boolean.TRUE.equals(registration.getRecentPiercing()) && registration.getPiercingDate() != null
+                    && ChronoUnit.DAYS.between(registration.getPiercingDate(), today) < 180) {
+                errors.add("Must wait 6 months after getting a piercing");
+            }
+            if (Boolean.TRUE.equals(registration.getRecentTravel())) {
+                result.warnings.add("Recent travel to endemic areas requires additional screening");
+            }
+
+            if (gender == Gender.FEMALE) {
+                if (Boolean.TRUE.equals(registration.getIsPregnant())) {
+                    errors.add("Pregnant women cannot donate blood");
+                }
+                if (Boolean.TRUE.equals(registration.getIsBreastfeeding())) {
+                    errors.add("Breastfeeding mothers must wait 6 months after delivery");
+                }
+            }
+
+            if (!Boolean.TRUE.equals(registration.getHealthDeclaration())) {
+                errors.add("Health declaration consent is required");
+            }
+            if (!Boolean.TRUE.equals(registration.getConsentForm())) {
+                errors.add("Blood donation consent is required");
+            }
+            if (!Boolean.TRUE.equals(registration.getDataProcessingConsent())) {
+                errors.add("Data processing consent is required");
+            }
+            return result;
+        }
+    }
+}
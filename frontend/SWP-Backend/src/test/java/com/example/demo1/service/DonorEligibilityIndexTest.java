@@ -0,0 +1,122 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.Role;
+import com.example.demo1.repo.DonationRegistrationRepository;
+import com.example.demo1.repo.DonorEligibilityRepository;
+import com.example.demo1.repo.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DonorEligibilityIndexTest {
+
+    private static final long DONOR_ID = 42L;
+
+    private DonorEligibilityIndex index;
+    private DonorEligibilityRepository eligibilityRepository;
+
+    @BeforeEach
+    void setUp() {
+        eligibilityRepository = mock(DonorEligibilityRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        User donor = new User();
+        donor.setId(DONOR_ID);
+        donor.setRole(Role.DONOR);
+        when(userRepository.findById(DONOR_ID)).thenReturn(Optional.of(donor));
+        when(eligibilityRepository.findById(DONOR_ID)).thenReturn(Optional.empty());
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        index = new DonorEligibilityIndex();
+        ReflectionTestUtils.setField(index, "eligibilityRepository", eligibilityRepository);
+        ReflectionTestUtils.setField(index, "registrationRepository", mock(DonationRegistrationRepository.class));
+        ReflectionTestUtils.setField(index, "userRepository", userRepository);
+        ReflectionTestUtils.setField(index, "eligibilityService", mock(DonationEligibilityService.class));
+        ReflectionTestUtils.setField(index, "jdbcTemplate", mock(JdbcTemplate.class));
+        ReflectionTestUtils.setField(index, "transactionManager", transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void refreshInsideTransactionWaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        index.refresh(DONOR_ID);
+        verify(eligibilityRepository, never()).save(any());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        verify(eligibilityRepository).save(any());
+    }
+
+    @Test
+    void refreshIsSkippedWhenTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        index.refresh(DONOR_ID);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(eligibilityRepository, never()).save(any());
+    }
+
+    @Test
+    void failedRefreshDoesNotReachTheCaller() {
+        when(eligibilityRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertDoesNotThrow(() -> index.refresh(DONOR_ID));
+    }
+
+    @Test
+    void rebuildDuringBackfillRunsAfterIt() throws InterruptedException {
+        CountDownLatch backfillStarted = new CountDownLatch(1);
+        CountDownLatch releaseBackfill = new CountDownLatch(1);
+        when(eligibilityRepository.findDonorsWithoutEntry(anyLong(), any())).thenAnswer(call -> {
+            backfillStarted.countDown();
+            releaseBackfill.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        index.backfill();
+        assertTrue(backfillStarted.await(5, TimeUnit.SECONDS));
+        index.rebuild();
+        verify(eligibilityRepository, never()).findDonorsAfter(anyLong(), any());
+        releaseBackfill.countDown();
+
+        verify(eligibilityRepository, timeout(2000)).findDonorsAfter(anyLong(), any());
+        verify(eligibilityRepository, after(300).times(1)).findDonorsAfter(anyLong(), any());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.User;
+import com.example.demo1.repo.DonationRegistrationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EligibilityRescreenJobTest {
+
+    private EligibilityRescreenJob job;
+    private DonationRegistrationRepository registrationRepository;
+    private DonationEligibilityService eligibilityService;
+    private DonorEligibilityIndex donorEligibilityIndex;
+    private JdbcTemplate jdbcTemplate;
+    private final CountDownLatch firstRunStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstRun = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        registrationRepository = mock(DonationRegistrationRepository.class);
+        // Lần chạy đầu dừng ở trang đầu tiên cho tới khi test cho phép
+        when(registrationRepository.findScreeningPage(any(), anyLong(), any())).thenAnswer(call -> {
+            if (firstRunStarted.getCount() > 0) {
+                firstRunStarted.countDown();
+                releaseFirstRun.await(5, TimeUnit.SECONDS);
+            }
+            return List.of();
+        });
+
+        eligibilityService = mock(DonationEligibilityService.class);
+        donorEligibilityIndex = mock(DonorEligibilityIndex.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+
+        job = new EligibilityRescreenJob();
+        ReflectionTestUtils.setField(job, "registrationRepository", registrationRepository);
+        ReflectionTestUtils.setField(job, "eligibilityService", eligibilityService);
+        ReflectionTestUtils.setField(job, "donorEligibilityIndex", donorEligibilityIndex);
+        ReflectionTestUtils.setField(job, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(job, "pageSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.shutdown();
+    }
+
+    @Test
+    void changeDuringRunTriggersOneFollowUpRun() throws InterruptedException {
+        assertTrue(job.start());
+        assertTrue(firstRunStarted.await(5, TimeUnit.SECONDS));
+
+        // Hai lần sửa quy tắc trong khi đang chạy
+        job.requestRun();
+        job.requestRun();
+        assertTrue(job.getProgress().isRerunRequested());
+        releaseFirstRun.countDown();
+
+        verify(registrationRepository, timeout(2000).times(2)).countByStatusIn(any());
+        verify(registrationRepository, after(300).times(2)).countByStatusIn(any());
+        assertFalse(job.getProgress().isRerunRequested());
+    }
+
+    @Test
+    void manualStartIsRejectedWhileRunning() throws InterruptedException {
+        assertTrue(job.start());
+        assertTrue(firstRunStarted.await(5, TimeUnit.SECONDS));
+
+        assertFalse(job.start());
+        releaseFirstRun.countDown();
+
+        verify(registrationRepository, after(300).times(1)).countByStatusIn(any());
+    }
+
+    @Test
+    void recordedDonationIsScreenedLikeIntakeWithoutChangingTheRegistration() {
+        LocalDate declared = LocalDate.now().minusYears(1);
+        LocalDate recorded = LocalDate.now().minusWeeks(2);
+        User donor = new User();
+        donor.setId(3L);
+        DonationRegistration registration = new DonationRegistration();
+        registration.setId(10L);
+        registration.setUser(donor);
+        registration.setLastDonationDate(declared);
+        registration.setEligibilityStatus(true);
+
+        releaseFirstRun.countDown();
+        when(registrationRepository.findScreeningPage(any(), anyLong(), any())).thenReturn(List.of(registration), List.of());
+        when(donorEligibilityIndex.recordedDonations(any())).thenReturn(Map.of(3L, recorded));
+        when(eligibilityService.checkEligibility(any(), eq(donor)))
+                .thenReturn(mock(DonationEligibilityService.EligibilityResult.class));
+
+        assertTrue(job.start());
+
+        verify(jdbcTemplate, timeout(2000)).batchUpdate(anyString(), anyList());
+        ArgumentCaptor<DonationRegistration> screened = ArgumentCaptor.forClass(DonationRegistration.class);
+        verify(eligibilityService).checkEligibility(screened.capture(), eq(donor));
+        assertEquals(recorded, screened.getValue().getLastDonationDate());
+        assertEquals(10L, screened.getValue().getId());
+        // Bản ghi đăng ký giữ nguyên ngày khai báo
+        assertEquals(declared, registration.getLastDonationDate());
+    }
+}
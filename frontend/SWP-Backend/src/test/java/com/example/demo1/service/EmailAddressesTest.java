@@ -0,0 +1,36 @@
+package com.example.demo1.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailAddressesTest {
+
+    @Test
+    void acceptsPlainAddresses() {
+        assertTrue(EmailAddresses.isValid("donor@example.com"));
+        assertTrue(EmailAddresses.isValid("nguyen.van-a+hien.mau@benhvien.com.vn"));
+    }
+
+    @Test
+    void rejectsCommandAndHeaderInjection() {
+        assertFalse(EmailAddresses.isValid("a@example.com>\r\nRCPT TO:<victim@example.com"));
+        assertFalse(EmailAddresses.isValid("a@example.com\r\nBcc: victim@example.com"));
+        assertFalse(EmailAddresses.isValid("a@example.com\n"));
+        assertFalse(EmailAddresses.isValid("a@example.com\r"));
+    }
+
+    @Test
+    void rejectsMalformedAddresses() {
+        assertFalse(EmailAddresses.isValid(null));
+        assertFalse(EmailAddresses.isValid(""));
+        assertFalse(EmailAddresses.isValid("no-at-sign"));
+        assertFalse(EmailAddresses.isValid("a@localhost"));
+        assertFalse(EmailAddresses.isValid("a b@example.com"));
+        assertFalse(EmailAddresses.isValid("<a@example.com>"));
+        assertFalse(EmailAddresses.isValid("a..b@example.com"));
+        assertFalse(EmailAddresses.isValid("a@-example.com"));
+        assertFalse(EmailAddresses.isValid("a".repeat(250) + "@example.com"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.BroadcastStatus;
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.BloodUrgencyLevel;
+import com.example.demo1.entity.enums.Role;
+import com.example.demo1.repo.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmergencyBroadcasterTest {
+
+    private EmergencyBroadcaster broadcaster;
+    private UserRepository userRepository;
+    private NotificationService notificationService;
+    private BloodCompatibilityService compatibilityService;
+    private DonorEligibilityIndex donorEligibilityIndex;
+    // Kích thước từng lô được ghi vào outbox
+    private final List<Integer> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        notificationService = mock(NotificationService.class);
+        compatibilityService = mock(BloodCompatibilityService.class);
+        donorEligibilityIndex = mock(DonorEligibilityIndex.class);
+        when(notificationService.sendNotifications(anyList(), anyString())).thenAnswer(call -> {
+            int size = call.<List<String>>getArgument(0).size();
+            batches.add(size);
+            return size;
+        });
+        when(userRepository.findByRole(Role.ADMIN)).thenReturn(List.of());
+        when(compatibilityService.getCompatibleBloodTypes("O+")).thenReturn(List.of("O+", "O-"));
+
+        broadcaster = new EmergencyBroadcaster(2, 3);
+        ReflectionTestUtils.setField(broadcaster, "userRepository", userRepository);
+        ReflectionTestUtils.setField(broadcaster, "donorEligibilityIndex", donorEligibilityIndex);
+        ReflectionTestUtils.setField(broadcaster, "compatibilityService", compatibilityService);
+        ReflectionTestUtils.setField(broadcaster, "inventoryLedger", mock(InventoryLedger.class));
+        ReflectionTestUtils.setField(broadcaster, "notificationService", notificationService);
+    }
+
+    @Test
+    void queuesStaffInBatchesAndSkipsDuplicates() throws InterruptedException {
+        when(userRepository.findByRole(Role.STAFF)).thenReturn(List.of(
+                user("a@bv.vn"), user("b@bv.vn"), user("A@BV.VN"), user("c@bv.vn"), user(null)));
+        when(compatibilityService.findAvailableCompatibleBlood(anyString(), any(int[].class))).thenReturn(Map.of("O+", 10));
+
+        BroadcastStatus status = broadcast(1L);
+
+        assertEquals(List.of(2, 1), batches);
+        assertEquals(3, status.getStaffQueued());
+        assertEquals(1, status.getDuplicatesSkipped());
+        assertEquals(0, status.getDonorsQueued());
+    }
+
+    @Test
+    void queuesDonorsWhenStockIsShort() throws InterruptedException {
+        when(userRepository.findByRole(Role.STAFF)).thenReturn(List.of(user("a@bv.vn")));
+        when(compatibilityService.findAvailableCompatibleBlood(anyString(), any(int[].class))).thenReturn(Map.of("O+", 1));
+        when(donorEligibilityIndex.forEachEligibleEmail(any(), any(), any())).thenAnswer(call -> {
+            Consumer<String> action = call.getArgument(2);
+            for (String email : List.of("d1@mail.vn", "d2@mail.vn", "d3@mail.vn", "a@bv.vn")) {
+                action.accept(email);
+            }
+            return 4L;
+        });
+
+        BroadcastStatus status = broadcast(2L);
+
+        assertTrue(status.isStockShort());
+        assertEquals(1, status.getStaffQueued());
+        assertEquals(3, status.getDonorsQueued());
+        assertEquals(1, status.getDuplicatesSkipped());
+        assertEquals(List.of(1, 2, 1), batches);
+    }
+
+    @Test
+    void failedBatchIsCountedAndCanBeRetriedOnNextEscalation() throws InterruptedException {
+        when(userRepository.findByRole(Role.STAFF)).thenReturn(List.of(user("a@bv.vn"), user("b@bv.vn")));
+        when(compatibilityService.findAvailableCompatibleBlood(anyString(), any(int[].class))).thenReturn(Map.of("O+", 10));
+        when(notificationService.sendNotifications(anyList(), anyString()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(2);
+
+        BroadcastStatus first = broadcast(3L);
+        assertEquals(2, first.getFailed());
+        assertEquals(0, first.getStaffQueued());
+
+        BroadcastStatus second = broadcast(3L);
+        assertEquals(2, second.getStaffQueued());
+        assertEquals(0, second.getDuplicatesSkipped());
+    }
+
+    @Test
+    void broadcastsBeyondTheLimitWaitForAPermit() throws InterruptedException {
+        broadcaster = new EmergencyBroadcaster(2, 1);
+        ReflectionTestUtils.setField(broadcaster, "userRepository", userRepository);
+        ReflectionTestUtils.setField(broadcaster, "donorEligibilityIndex", donorEligibilityIndex);
+        ReflectionTestUtils.setField(broadcaster, "compatibilityService", compatibilityService);
+        ReflectionTestUtils.setField(broadcaster, "inventoryLedger", mock(InventoryLedger.class));
+        ReflectionTestUtils.setField(broadcaster, "notificationService", notificationService);
+        when(compatibilityService.findAvailableCompatibleBlood(anyString(), any(int[].class))).thenReturn(Map.of("O+", 10));
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(userRepository.findByRole(Role.STAFF)).thenAnswer(call -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            release.await(5, TimeUnit.SECONDS);
+            running.decrementAndGet();
+            return List.of(user("a@bv.vn"));
+        });
+
+        assertTrue(broadcaster.onUrgency(request(4L), null));
+        assertTrue(broadcaster.onUrgency(request(5L), null));
+        Thread.sleep(200);
+        assertEquals(1, running.get());
+
+        release.countDown();
+        BroadcastStatus first = await(4L);
+        BroadcastStatus second = await(5L);
+        assertEquals(1, maxRunning.get());
+        assertEquals(1, first.getStaffQueued());
+        assertEquals(1, second.getStaffQueued());
+    }
+
+    private BroadcastStatus broadcast(Long requestId) throws InterruptedException {
+        assertTrue(broadcaster.onUrgency(request(requestId), null));
+        return await(requestId);
+    }
+
+    private BroadcastStatus await(Long requestId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        BroadcastStatus status = broadcaster.getStatus(requestId).orElseThrow();
+        while (status.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = broadcaster.getStatus(requestId).orElseThrow();
+        }
+        return status;
+    }
+
+    private static BloodRequest request(Long requestId) {
+        BloodRequest request = new BloodRequest();
+        request.setId(requestId);
+        request.setUrgencyLevel(BloodUrgencyLevel.CRITICAL);
+        request.setRecipientBloodType("O+");
+        request.setRequestedAmount(5);
+        return request;
+    }
+
+    private static User user(String email) {
+        User user = new User();
+        user.setEmail(email);
+        return user;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.entity.enums.InventoryEventType;
+import com.example.demo1.repo.BloodInventoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InventoryLedgerTest {
+
+    private InventoryLedger ledger;
+    private final List<String> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        BloodInventoryRepository repository = mock(BloodInventoryRepository.class);
+        BloodInventory row = new BloodInventory();
+        row.setBloodType("O+");
+        row.setQuantity(10);
+        when(repository.findAll()).thenReturn(List.of(row));
+        when(repository.addQuantity(anyString(), anyInt())).thenReturn(1);
+
+        ledger = new InventoryLedger();
+        ReflectionTestUtils.setField(ledger, "bloodInventoryRepository", repository);
+        ReflectionTestUtils.setField(ledger, "inventoryConsolidation", mock(InventoryConsolidation.class));
+        ReflectionTestUtils.setField(ledger, "inventoryWriteBehind", mock(InventoryWriteBehind.class));
+        ReflectionTestUtils.setField(ledger, "inventoryEventLog", mock(InventoryEventLog.class));
+        InventoryChangeListener listener = (type, bloodType, delta, level, actor) ->
+                events.add(type + " " + bloodType + " " + delta + " -> " + level);
+        ReflectionTestUtils.setField(ledger, "inventoryChangeListeners", List.of(listener));
+        ledger.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void creditIsOnlyAvailableAfterCommit() {
+        begin();
+        ledger.credit("O+", 5, null);
+        assertEquals(10, ledger.getAvailable("O+"));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(15, ledger.getAvailable("O+"));
+        assertEquals(List.of("CREDIT O+ 5 -> 15"), events);
+    }
+
+    @Test
+    void rolledBackCreditCannotBeDebited() {
+        begin();
+        ledger.credit("O+", 5, null);
+        List<TransactionSynchronization> creditTx = suspend();
+
+        // Giao dịch khác không thấy 5 đơn vị chưa commit
+        begin();
+        assertFalse(ledger.debit("O+", 12, null));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        resume(creditTx);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(10, ledger.getOnHand("O+"));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void openDebitHoldsItsUnits() {
+        begin();
+        assertTrue(ledger.debit("O+", 8, null));
+        List<TransactionSynchronization> first = suspend();
+
+        begin();
+        assertFalse(ledger.debit("O+", 3, null));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        resume(first);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(10, ledger.getOnHand("O+"));
+        assertEquals(10, ledger.getAvailable("O+"));
+    }
+
+    @Test
+    void debitReservedRestoresReservationOnRollback() {
+        assertTrue(ledger.reserve("O+", 4));
+        begin();
+        assertTrue(ledger.debitReserved("O+", 4, null));
+        assertEquals(6, ledger.getAvailable("O+"));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(6, ledger.getAvailable("O+"));
+        assertEquals(10, ledger.getOnHand("O+"));
+        ledger.release("O+", 4);
+        assertEquals(10, ledger.getAvailable("O+"));
+    }
+
+    @Test
+    void setKeepsChangesCommittedMeanwhile() {
+        BloodInventory row = new BloodInventory();
+        row.setBloodType("O+");
+
+        begin();
+        ledger.set(row, 7, null);
+        List<TransactionSynchronization> correction = suspend();
+
+        begin();
+        ledger.credit("O+", 5, null);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        resume(correction);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        // 10 + 5 - 3: the correction is applied as a delta, the credit is not lost
+        assertEquals(12, ledger.getOnHand("O+"));
+        assertEquals(InventoryEventType.ADJUSTMENT + " O+ -3 -> 12", events.get(1));
+    }
+
+    @Test
+    void rolledBackSetLeavesConcurrentChanges() {
+        BloodInventory row = new BloodInventory();
+        row.setBloodType("O+");
+
+        begin();
+        ledger.set(row, 0, null);
+        List<TransactionSynchronization> correction = suspend();
+
+        begin();
+        ledger.credit("O+", 5, null);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        resume(correction);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(15, ledger.getOnHand("O+"));
+    }
+
+    private static void begin() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private static List<TransactionSynchronization> suspend() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        return synchronizations;
+    }
+
+    private static void resume(List<TransactionSynchronization> synchronizations) {
+        TransactionSynchronizationManager.initSynchronization();
+        synchronizations.forEach(TransactionSynchronizationManager::registerSynchronization);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = suspend();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.enums.BloodRequestStatus;
+import com.example.demo1.repo.BloodInventoryRepository;
+import com.example.demo1.service.impl.BloodInventoryServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InventoryReservationsTest {
+
+    private static final long REQUEST_ID = 7L;
+
+    private InventoryLedger ledger;
+    private InventoryReservations reservations;
+    private BloodUnitService bloodUnitService;
+    private BloodInventoryServiceImpl inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        BloodInventoryRepository repository = mock(BloodInventoryRepository.class);
+        BloodInventory row = new BloodInventory();
+        row.setBloodType("O+");
+        row.setQuantity(10);
+        when(repository.findAll()).thenReturn(List.of(row));
+        when(repository.addQuantity(anyString(), anyInt())).thenReturn(1);
+
+        ledger = new InventoryLedger();
+        ReflectionTestUtils.setField(ledger, "bloodInventoryRepository", repository);
+        ReflectionTestUtils.setField(ledger, "inventoryConsolidation", mock(InventoryConsolidation.class));
+        ReflectionTestUtils.setField(ledger, "inventoryWriteBehind", mock(InventoryWriteBehind.class));
+        ReflectionTestUtils.setField(ledger, "inventoryEventLog", mock(InventoryEventLog.class));
+        ReflectionTestUtils.setField(ledger, "inventoryChangeListeners", List.of());
+        ledger.reload();
+
+        reservations = new InventoryReservations();
+        ReflectionTestUtils.setField(reservations, "inventoryLedger", ledger);
+        ReflectionTestUtils.setField(reservations, "ttlMinutes", 1L);
+        ReflectionTestUtils.setField(reservations, "tickMs", 1000L);
+
+        bloodUnitService = mock(BloodUnitService.class);
+        inventoryService = new BloodInventoryServiceImpl();
+        ReflectionTestUtils.setField(inventoryService, "inventoryLedger", ledger);
+        ReflectionTestUtils.setField(inventoryService, "inventoryReservations", reservations);
+        ReflectionTestUtils.setField(inventoryService, "bloodUnitService", bloodUnitService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void committedDebitConsumesTheHold() {
+        assertTrue(reservations.hold(request(4)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertTrue(inventoryService.debitForRequest(REQUEST_ID, "O+", 4, null));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertFalse(reservations.isHeld(REQUEST_ID));
+        assertEquals(6, ledger.getOnHand("O+"));
+        assertEquals(6, ledger.getAvailable("O+"));
+    }
+
+    @Test
+    void failedIssueRestoresTheHold() {
+        assertTrue(reservations.hold(request(4)));
+        doThrow(new IllegalStateException("no units")).when(bloodUnitService).issue(anyLong(), anyString(), anyInt());
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThrows(IllegalStateException.class, () -> inventoryService.debitForRequest(REQUEST_ID, "O+", 4, null));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue(reservations.isHeld(REQUEST_ID));
+        assertEquals(10, ledger.getOnHand("O+"));
+        assertEquals(6, ledger.getAvailable("O+"));
+
+        // Hold đặt lại vẫn hủy được
+        assertTrue(reservations.cancel(REQUEST_ID));
+        assertEquals(10, ledger.getAvailable("O+"));
+    }
+
+    @Test
+    void restoredHoldStillExpires() {
+        assertTrue(reservations.hold(request(4)));
+        doThrow(new IllegalStateException("no units")).when(bloodUnitService).issue(anyLong(), anyString(), anyInt());
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThrows(IllegalStateException.class, () -> inventoryService.debitForRequest(REQUEST_ID, "O+", 4, null));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        for (int i = 0; i < 60; i++) {
+            reservations.tick();
+        }
+        assertFalse(reservations.isHeld(REQUEST_ID));
+        assertEquals(10, ledger.getAvailable("O+"));
+    }
+
+    @Test
+    void rolledBackDebitWithChangedAmountHoldsTheOldAmountAgain() {
+        assertTrue(reservations.hold(request(4)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertTrue(reservations.debit(REQUEST_ID, "O+", 3, null));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue(reservations.isHeld(REQUEST_ID));
+        assertEquals(6, ledger.getAvailable("O+"));
+    }
+
+    private static BloodRequest request(int amount) {
+        BloodRequest request = new BloodRequest();
+        request.setId(REQUEST_ID);
+        request.setRecipientBloodType("O+");
+        request.setRequestedAmount(amount);
+        request.setStatus(BloodRequestStatus.PENDING);
+        return request;
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.demo1.service;
+
+import com.example.demo1.entity.InventoryWriteBatch;
+import com.example.demo1.repo.InventoryWriteBatchRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InventoryWriteBehindTest {
+
+    @TempDir
+    Path journalDir;
+
+    private InventoryWriteBehind writeBehind;
+    private JdbcTemplate jdbcTemplate;
+    private final List<String> flushedBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        InventoryWriteBatchRepository batchRepository = mock(InventoryWriteBatchRepository.class);
+        when(batchRepository.existsById(anyString())).thenAnswer(call -> flushedBatches.contains(call.<String>getArgument(0)));
+        when(batchRepository.save(any())).thenAnswer(call -> {
+            flushedBatches.add(call.<InventoryWriteBatch>getArgument(0).getBatchId());
+            return call.getArgument(0);
+        });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        writeBehind = new InventoryWriteBehind();
+        ReflectionTestUtils.setField(writeBehind, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(writeBehind, "inventoryWriteBatchRepository", batchRepository);
+        ReflectionTestUtils.setField(writeBehind, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(writeBehind, "enabled", true);
+        ReflectionTestUtils.setField(writeBehind, "maxPending", 1000);
+        ReflectionTestUtils.setField(writeBehind, "journalDir", journalDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void failedFlushKeepsBatchAndRetriesItUnderTheSameId() throws IOException {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(new int[] {1})
+                .thenReturn(new int[] {1});
+
+        writeBehind.credit("A+", 3, 1L);
+        writeBehind.flush();
+        assertTrue(writeBehind.hasUnflushed());
+        assertEquals(1, journals().size());
+
+        writeBehind.credit("A+", 2, 2L);
+        writeBehind.flush();
+        assertFalse(writeBehind.hasUnflushed());
+        assertEquals(2, flushedBatches.size());
+        assertTrue(journals().isEmpty());
+    }
+
+    @Test
+    void recoverSkipsBatchesAlreadyFlushed() throws IOException {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {1});
+        writeBehind.credit("B-", 4, 3L);
+        String batchId = (String) ReflectionTestUtils.getField(writeBehind, "batchId");
+        Path journal = journals().get(0);
+        Path copy = Files.copy(journal, journalDir.resolve("backup"));
+        writeBehind.flush();
+
+        // Như thể process dừng sau khi ghi DB nhưng trước khi xóa file
+        Files.move(copy, journal);
+        writeBehind.recover();
+        assertEquals(List.of(batchId), flushedBatches);
+        assertTrue(journals().isEmpty());
+    }
+
+    @Test
+    void creditIsJournaledBeforeCommitAndPendingAfterIt() throws IOException {
+        TransactionSynchronizationManager.initSynchronization();
+        writeBehind.credit("O+", 2, 10L);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        synchronizations.forEach(s -> s.beforeCommit(false));
+        assertEquals(List.of("O+,2,10"), Files.readAllLines(journals().get(0)));
+        assertFalse(writeBehind.hasUnflushed());
+
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertTrue(writeBehind.hasUnflushed());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replayAppliesOnlyCreditsWhoseTransactionCommitted() {
+        // Như thể process dừng sau khi commit nhưng trước khi flush: sự kiện 20 đã commit, 21 thì không
+        commitCredit("O+", 2, 20L, TransactionSynchronization.STATUS_COMMITTED);
+        commitCredit("O+", 5, 21L, TransactionSynchronization.STATUS_ROLLED_BACK);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class))).thenReturn(List.of(20L));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {1});
+
+        InventoryWriteBehind restarted = new InventoryWriteBehind();
+        ReflectionTestUtils.setField(restarted, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(restarted, "inventoryWriteBatchRepository", ReflectionTestUtils.getField(writeBehind, "inventoryWriteBatchRepository"));
+        ReflectionTestUtils.setField(restarted, "transactionManager", ReflectionTestUtils.getField(writeBehind, "transactionManager"));
+        ReflectionTestUtils.setField(restarted, "journalDir", journalDir.toString());
+        restarted.recover();
+
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), updates.capture());
+        assertEquals(1, updates.getValue().size());
+        assertArrayEquals(new Object[] {2, "O+"}, updates.getValue().get(0));
+    }
+
+    @Test
+    void flushWaitsForCreditsBetweenJournalAndCommit() throws Exception {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {1});
+        TransactionSynchronizationManager.initSynchronization();
+        writeBehind.credit("O+", 2, 30L);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.beforeCommit(false));
+
+        Thread flusher = new Thread(writeBehind::flush);
+        flusher.start();
+        flusher.join(200);
+        assertTrue(flusher.isAlive());
+
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        flusher.join(5000);
+        assertFalse(flusher.isAlive());
+        // Credit nằm trong đúng lô chứa dòng journal của nó
+        assertEquals(1, flushedBatches.size());
+        assertFalse(writeBehind.hasUnflushed());
+        assertTrue(journals().isEmpty());
+    }
+
+    private void commitCredit(String bloodType, int amount, long eventId, int status) {
+        TransactionSynchronizationManager.initSynchronization();
+        writeBehind.credit(bloodType, amount, eventId);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.beforeCommit(false));
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+
+    private List<Path> journals() throws IOException {
+        try (var files = Files.list(journalDir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".journal")).toList();
+        }
+    }
+}
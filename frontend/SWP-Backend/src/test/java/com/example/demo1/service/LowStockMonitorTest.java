@@ -0,0 +1,94 @@
+package com.example.demo1.service;
+
+import com.example.demo1.config.LowStockProperties;
+import com.example.demo1.config.RecallProperties;
+import com.example.demo1.entity.LowStockAlert;
+import com.example.demo1.entity.enums.InventoryEventType;
+import com.example.demo1.repo.LowStockAlertRepository;
+import com.example.demo1.repo.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LowStockMonitorTest {
+
+    private LowStockMonitor monitor;
+    private InventoryLedger ledger;
+    private LowStockAlertRepository alertRepository;
+    private NotificationService notificationService;
+
+    @BeforeEach
+    void setUp() {
+        LowStockProperties properties = new LowStockProperties();
+        properties.setDefaultMinimum(5);
+        properties.setRecipients(List.of("kho@benhvien.vn"));
+        ledger = mock(InventoryLedger.class);
+        alertRepository = mock(LowStockAlertRepository.class);
+        notificationService = mock(NotificationService.class);
+
+        monitor = new LowStockMonitor();
+        ReflectionTestUtils.setField(monitor, "lowStockProperties", properties);
+        ReflectionTestUtils.setField(monitor, "recallProperties", new RecallProperties());
+        ReflectionTestUtils.setField(monitor, "notificationService", notificationService);
+        ReflectionTestUtils.setField(monitor, "userRepository", mock(UserRepository.class));
+        ReflectionTestUtils.setField(monitor, "donorRecallService", mock(DonorRecallService.class));
+        ReflectionTestUtils.setField(monitor, "lowStockAlertRepository", alertRepository);
+        ReflectionTestUtils.setField(monitor, "inventoryLedger", ledger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.shutdown();
+    }
+
+    @Test
+    void staleLowLevelDoesNotAlertWhenStockIsBackUp() {
+        monitor.init();
+        when(ledger.getOnHand("A+")).thenReturn(8);
+        // Thông báo cũ (mức 3) đến sau thông báo mới (mức 8)
+        monitor.onCommitted(InventoryEventType.CREDIT, "A+", 5, 8, null);
+        monitor.onCommitted(InventoryEventType.DEBIT, "A+", -2, 3, null);
+
+        verify(notificationService, after(300).never()).sendNotification(anyString(), anyString());
+    }
+
+    @Test
+    void alertsOncePerShortage() {
+        monitor.init();
+        when(ledger.getOnHand("A+")).thenReturn(3);
+        monitor.onCommitted(InventoryEventType.DEBIT, "A+", -2, 3, null);
+        monitor.onCommitted(InventoryEventType.DEBIT, "A+", -1, 2, null);
+
+        verify(notificationService, timeout(1000).times(1)).sendNotification(eq("kho@benhvien.vn"), anyString());
+        verify(alertRepository, timeout(1000)).save(any());
+    }
+
+    @Test
+    void reloadDoesNotRepeatStoredAlert() {
+        LowStockAlert stored = new LowStockAlert();
+        stored.setBloodType("A+");
+        stored.setLow(true);
+        stored.setLastAlertAt(LocalDateTime.now().minusHours(5));
+        when(alertRepository.findAll()).thenReturn(List.of(stored));
+        monitor.init();
+
+        when(ledger.getOnHand("A+")).thenReturn(2);
+        monitor.onLoaded("A+", 2);
+
+        verify(notificationService, after(300).never()).sendNotification(anyString(), anyString());
+    }
+}
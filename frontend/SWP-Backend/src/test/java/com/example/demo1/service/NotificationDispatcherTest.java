@@ -0,0 +1,204 @@
+package com.example.demo1.service;
+
+import com.example.demo1.config.NotificationProperties;
+import com.example.demo1.entity.Notification;
+import com.example.demo1.entity.enums.NotificationChannel;
+import com.example.demo1.entity.enums.NotificationStatus;
+import com.example.demo1.repo.NotificationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationDispatcherTest {
+
+    private static final String ERROR = "550 mailbox unavailable";
+
+    private NotificationDispatcher dispatcher;
+    private NotificationRepository repository;
+    private NotificationProperties properties;
+    private FakeTransport transport;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(NotificationRepository.class);
+        properties = new NotificationProperties();
+        transport = new FakeTransport();
+        when(repository.complete(any(), anyString(), any(), anyInt(), any(), any(), any())).thenReturn(1);
+
+        dispatcher = new NotificationDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "notificationRepository", repository);
+        ReflectionTestUtils.setField(dispatcher, "notificationProperties", properties);
+        ReflectionTestUtils.setField(dispatcher, "transportList", List.of(transport));
+        // Lịch chạy nền không kịp chạy trong test; test gọi dispatch() trực tiếp
+        ReflectionTestUtils.setField(dispatcher, "intervalMs", 3_600_000L);
+        dispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void releasesStaleClaimsOlderThanStuckAfter() {
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.dispatch();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).releaseStale(cutoff.capture());
+        assertFalse(cutoff.getValue().isBefore(before.minus(properties.getStuckAfter())));
+        assertTrue(cutoff.getValue().isBefore(before.minusMinutes(4)));
+    }
+
+    @Test
+    void nothingIsSentWhenAnotherInstanceClaimedTheBatch() {
+        when(repository.findDueIds(any(), any())).thenReturn(List.of(1L, 2L));
+        when(repository.claim(anyList(), anyString(), any())).thenReturn(0);
+
+        dispatcher.dispatch();
+
+        verify(repository, never()).findByClaimToken(anyString());
+        assertTrue(transport.sent.isEmpty());
+    }
+
+    @Test
+    void sentMessageIsCompletedWithItsClaimToken() {
+        ArgumentCaptor<String> token = claim(notification(1L, 0));
+        transport.results = Arrays.asList((String) null);
+
+        dispatcher.dispatch();
+
+        assertEquals(List.of(1L), transport.sent);
+        verify(repository).complete(eq(1L), eq(token.getValue()), eq(NotificationStatus.SENT), eq(1), any(), any(LocalDateTime.class), isNull());
+    }
+
+    @Test
+    void failedMessageIsRetriedWithBackoff() {
+        ArgumentCaptor<String> token = claim(notification(1L, 1));
+        transport.results = List.of(ERROR);
+        LocalDateTime before = LocalDateTime.now();
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<LocalDateTime> next = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).complete(eq(1L), eq(token.getValue()), eq(NotificationStatus.PENDING), eq(2), next.capture(), isNull(), eq(ERROR));
+        // Lần thử thứ 2: 2 * baseBackoff, cộng tối đa 20%
+        Duration delay = properties.getBaseBackoff().multipliedBy(2);
+        assertFalse(next.getValue().isBefore(before.plus(delay)));
+        assertTrue(next.getValue().isBefore(LocalDateTime.now().plus(delay.multipliedBy(6).dividedBy(5)).plusSeconds(1)));
+    }
+
+    @Test
+    void backoffIsCappedAtMaxBackoff() {
+        Duration max = properties.getMaxBackoff();
+        for (int attempts = 1; attempts <= 40; attempts++) {
+            Duration delay = dispatcher.backoff(attempts);
+            assertFalse(delay.isNegative());
+            assertTrue(delay.compareTo(max.multipliedBy(6).dividedBy(5)) <= 0);
+        }
+        assertTrue(dispatcher.backoff(40).compareTo(max) >= 0);
+    }
+
+    @Test
+    void messageFailsAfterMaxAttempts() {
+        ArgumentCaptor<String> token = claim(notification(1L, properties.getMaxAttempts() - 1));
+        transport.results = List.of(ERROR);
+
+        dispatcher.dispatch();
+
+        verify(repository).complete(eq(1L), eq(token.getValue()), eq(NotificationStatus.FAILED),
+                eq(properties.getMaxAttempts()), any(), isNull(), eq(ERROR));
+    }
+
+    @Test
+    void messagesNotAttemptedBeforeDeadlineGoBackWithoutCountingAnAttempt() {
+        Notification notSent = notification(2L, 3);
+        notSent.setLastError(ERROR);
+        ArgumentCaptor<String> token = claim(notification(1L, 0), notSent);
+        transport.results = Arrays.asList((String) null);
+
+        dispatcher.dispatch();
+
+        verify(repository).complete(eq(2L), eq(token.getValue()), eq(NotificationStatus.PENDING), eq(3),
+                eq(notSent.getNextAttemptAt()), isNull(), eq(ERROR));
+    }
+
+    @Test
+    void runStopsWellBeforeClaimsCanBeReleased() {
+        claim(notification(1L, 0));
+        transport.results = Arrays.asList((String) null);
+
+        Instant before = Instant.now();
+        dispatcher.dispatch();
+
+        Instant limit = before.plus(properties.getStuckAfter().dividedBy(2));
+        assertFalse(transport.deadline.isAfter(limit.plusSeconds(1)));
+        assertTrue(transport.deadline.isBefore(before.plus(properties.getStuckAfter())));
+    }
+
+    // Một lô đến hạn, sau đó hết tin; token chỉ có sau khi dispatch chạy
+    private ArgumentCaptor<String> claim(Notification... batch) {
+        List<Long> ids = Arrays.stream(batch).map(Notification::getId).toList();
+        when(repository.findDueIds(any(), any())).thenReturn(ids, List.of());
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        when(repository.claim(anyList(), token.capture(), any())).thenReturn(batch.length);
+        when(repository.findByClaimToken(anyString())).thenAnswer(call -> {
+            assertEquals(token.getValue(), call.getArgument(0));
+            return List.of(batch);
+        });
+        return token;
+    }
+
+    private static Notification notification(Long id, int attempts) {
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setRecipient("donor" + id + "@example.com");
+        notification.setMessage("Xin chào");
+        notification.setAttempts(attempts);
+        notification.setNextAttemptAt(LocalDateTime.now().minusMinutes(1));
+        return notification;
+    }
+
+    private static class FakeTransport implements NotificationTransport {
+        final List<Long> sent = new ArrayList<>();
+        List<String> results = List.of();
+        Instant deadline;
+
+        @Override
+        public NotificationChannel getChannel() {
+            return NotificationChannel.EMAIL;
+        }
+
+        @Override
+        public List<String> send(List<Notification> batch, Instant deadline) {
+            this.deadline = deadline;
+            for (int i = 0; i < results.size(); i++) {
+                sent.add(batch.get(i).getId());
+            }
+            return results;
+        }
+    }
+}
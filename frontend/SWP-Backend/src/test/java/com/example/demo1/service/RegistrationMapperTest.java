@@ -0,0 +1,69 @@
+package com.example.demo1.service;
+
+import com.example.demo1.dto.RegistrationRequest;
+import com.example.demo1.entity.DonationLocation;
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.repo.DonationLocationRepository;
+import com.example.demo1.repo.DonationScheduleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RegistrationMapperTest {
+
+    private RegistrationMapper mapper;
+
+    @BeforeEach
+    void setUp() {
+        DonationLocationRepository locationRepository = mock(DonationLocationRepository.class);
+        when(locationRepository.findById(1L)).thenReturn(Optional.of(new DonationLocation()));
+        mapper = new RegistrationMapper();
+        ReflectionTestUtils.setField(mapper, "locationRepository", locationRepository);
+        ReflectionTestUtils.setField(mapper, "scheduleRepository", mock(DonationScheduleRepository.class));
+        ReflectionTestUtils.setField(mapper, "diseaseCatalogue", mock(ProhibitedDiseaseCatalogue.class));
+    }
+
+    @Test
+    void mapsVaccinationAndMenstrualCycle() {
+        RegistrationRequest request = request();
+        request.setRecentVaccination(true);
+        request.setVaccinationDetails("Tiêm phòng dại tuần trước");
+        request.setMenstrualCycle("Đều, 28 ngày");
+
+        DonationRegistration reg = mapper.toRegistration(request);
+
+        assertTrue(reg.getRecentVaccination());
+        assertEquals("Tiêm phòng dại tuần trước", reg.getVaccinationDetails());
+        assertEquals("Đều, 28 ngày", reg.getMenstrualCycle());
+    }
+
+    @Test
+    void vaccinationDetailsOnlyKeptWhenAnsweredYes() {
+        RegistrationRequest request = request();
+        request.setRecentVaccination(false);
+        request.setVaccinationDetails("Tiêm phòng dại tuần trước");
+
+        DonationRegistration reg = mapper.toRegistration(request);
+
+        assertFalse(reg.getRecentVaccination());
+        assertNull(reg.getVaccinationDetails());
+    }
+
+    private static RegistrationRequest request() {
+        RegistrationRequest request = new RegistrationRequest();
+        request.setLocationId(1L);
+        request.setWeight(60.0);
+        request.setHeight(170.0);
+        request.setAmount(350);
+        return request;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo1.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TermAutomatonTest {
+
+    @Test
+    void foldsCaseAccentsAndPunctuation() {
+        assertEquals("dak lak", TermAutomaton.fold("  Đắk-Lắk!! "));
+        assertEquals("đắk lắk", TermAutomaton.foldAccented("  Đắk-Lắk!! "));
+        assertEquals("", TermAutomaton.fold("?!"));
+    }
+
+    @Test
+    void findsWholeWordsWithoutAccents() {
+        TermAutomaton automaton = TermAutomaton.compile(List.of("sốt rét", "gia lai", "insulin"));
+
+        assertEquals(List.of(0), matches(automaton, "Từng bị SOT RET năm 2020"));
+        assertEquals(List.of(1, 0), matches(automaton, "đi Gia Lai, bị sốt-rét"));
+        assertEquals(List.of(), matches(automaton, "insulinoma"));
+        assertEquals(List.of(), matches(automaton, "gia lain"));
+    }
+
+    @Test
+    void reportsEachTermOnce() {
+        TermAutomaton automaton = TermAutomaton.compile(List.of("aspirin"));
+
+        assertEquals(List.of(0), matches(automaton, "aspirin sáng, aspirin tối"));
+    }
+
+    @Test
+    void accentedAutomatonDoesNotMatchOtherWordsWithTheSameLetters() {
+        TermAutomaton automaton = TermAutomaton.compileAccented(List.of("dại", "sởi"));
+
+        assertEquals(List.of(), matches(automaton, "Đại học Y"));
+        assertEquals(List.of(), matches(automaton, "tóc dài, dải băng"));
+        assertEquals(List.of(), matches(automaton, "nội soi dạ dày"));
+        assertEquals(List.of(0), matches(automaton, "Tiêm phòng DẠI sau khi bị chó cắn"));
+        assertEquals(List.of(1), matches(automaton, "vắc xin sởi"));
+    }
+
+    @Test
+    void accentedAutomatonAcceptsDecomposedText() {
+        TermAutomaton automaton = TermAutomaton.compileAccented(List.of("dại"));
+
+        assertEquals(List.of(0), matches(automaton, Normalizer.normalize("tiêm phòng dại", Normalizer.Form.NFD)));
+    }
+
+    @Test
+    void emptyTermNeverMatches() {
+        TermAutomaton automaton = TermAutomaton.compile(List.of("", "mmr"));
+
+        assertEquals(List.of(1), matches(automaton, "tiêm MMR"));
+    }
+
+    private static List<Integer> matches(TermAutomaton automaton, String text) {
+        List<Integer> found = new ArrayList<>();
+        automaton.scan(text, found::add);
+        return found;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.dto.AllocationPlan;
+import com.example.demo1.entity.BloodInventory;
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.enums.BloodRequestStatus;
+import com.example.demo1.entity.enums.BloodUrgencyLevel;
+import com.example.demo1.repo.BloodInventoryRepository;
+import com.example.demo1.repo.BloodRequestRepository;
+import com.example.demo1.service.BloodRequestQueue;
+import com.example.demo1.service.BloodUnitService;
+import com.example.demo1.service.InventoryConsolidation;
+import com.example.demo1.service.InventoryEventLog;
+import com.example.demo1.service.InventoryLedger;
+import com.example.demo1.service.InventoryReservations;
+import com.example.demo1.service.InventoryWriteBehind;
+import com.example.demo1.service.NotificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BloodAllocationServiceImplTest {
+
+    private BloodAllocationServiceImpl allocationService;
+    private InventoryLedger ledger;
+    private InventoryReservations reservations;
+    private BloodRequestRepository requestRepository;
+    private BloodRequestQueue queue;
+    private BloodUnitService bloodUnitService;
+    private final List<BloodRequest> openRequests = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        BloodInventoryRepository inventoryRepository = mock(BloodInventoryRepository.class);
+        when(inventoryRepository.findAll()).thenReturn(List.of(row("A+", 2), row("O+", 1), row("O-", 5), row("B+", 3)));
+        when(inventoryRepository.addQuantity(anyString(), anyInt())).thenReturn(1);
+
+        ledger = new InventoryLedger();
+        ReflectionTestUtils.setField(ledger, "bloodInventoryRepository", inventoryRepository);
+        ReflectionTestUtils.setField(ledger, "inventoryConsolidation", mock(InventoryConsolidation.class));
+        ReflectionTestUtils.setField(ledger, "inventoryWriteBehind", mock(InventoryWriteBehind.class));
+        ReflectionTestUtils.setField(ledger, "inventoryEventLog", mock(InventoryEventLog.class));
+        ReflectionTestUtils.setField(ledger, "inventoryChangeListeners", List.of());
+        ledger.reload();
+
+        reservations = new InventoryReservations();
+        ReflectionTestUtils.setField(reservations, "inventoryLedger", ledger);
+        ReflectionTestUtils.setField(reservations, "ttlMinutes", 30L);
+        ReflectionTestUtils.setField(reservations, "tickMs", 1000L);
+
+        requestRepository = mock(BloodRequestRepository.class);
+        // Bản sao mới như khi đọc lại từ DB
+        when(requestRepository.findAllById(any())).thenAnswer(call -> {
+            List<BloodRequest> copies = new ArrayList<>();
+            for (Long id : call.<Iterable<Long>>getArgument(0)) {
+                openRequests.stream().filter(r -> r.getId().equals(id)).findFirst().ifPresent(r -> copies.add(copy(r)));
+            }
+            return copies;
+        });
+        when(requestRepository.transition(anyLong(), anyCollection(), eq(BloodRequestStatus.CONFIRM))).thenReturn(1);
+        queue = mock(BloodRequestQueue.class);
+        when(queue.snapshot()).thenAnswer(call -> List.copyOf(openRequests));
+
+        BloodRequestServiceImpl requestService = new BloodRequestServiceImpl();
+        ReflectionTestUtils.setField(requestService, "bloodRequestRepository", requestRepository);
+        ReflectionTestUtils.setField(requestService, "bloodRequestQueue", queue);
+        ReflectionTestUtils.setField(requestService, "inventoryReservations", reservations);
+
+        bloodUnitService = mock(BloodUnitService.class);
+        allocationService = new BloodAllocationServiceImpl();
+        ReflectionTestUtils.setField(allocationService, "bloodRequestRepository", requestRepository);
+        ReflectionTestUtils.setField(allocationService, "bloodRequestService", requestService);
+        ReflectionTestUtils.setField(allocationService, "bloodUnitService", bloodUnitService);
+        ReflectionTestUtils.setField(allocationService, "inventoryLedger", ledger);
+        ReflectionTestUtils.setField(allocationService, "inventoryReservations", reservations);
+        ReflectionTestUtils.setField(allocationService, "notificationService", mock(NotificationService.class));
+        ReflectionTestUtils.setField(allocationService, "transactionManager", new FakeTransactionManager());
+    }
+
+    @Test
+    void leastVersatileDonorTypesAreUsedFirst() {
+        // A+ cần 4: A+ (2) rồi O+ (1) rồi O- (1), còn đủ O- cho người nhận O-
+        openRequests.add(request(1L, "A+", 4));
+        openRequests.add(request(2L, "O-", 4));
+
+        AllocationPlan plan = allocationService.commit(null);
+
+        assertEquals(Map.of("A+", 2, "O+", 1, "O-", 1), allocation(plan, 1L).getBloodTypes());
+        assertEquals(Map.of("O-", 4), allocation(plan, 2L).getBloodTypes());
+        assertTrue(plan.getUnfulfilledRequestIds().isEmpty());
+        assertEquals(0, ledger.getOnHand("O-"));
+        assertEquals(0, ledger.getOnHand("A+"));
+        assertEquals(3, ledger.getOnHand("B+"));
+    }
+
+    @Test
+    void requestThatCannotBeFullyCoveredIsLeftUntouched() {
+        openRequests.add(request(1L, "O-", 6));
+
+        AllocationPlan plan = allocationService.commit(null);
+
+        assertTrue(plan.getAllocations().isEmpty());
+        assertEquals(List.of(1L), plan.getUnfulfilledRequestIds());
+        assertEquals(5, ledger.getOnHand("O-"));
+    }
+
+    @Test
+    void failedRequestIsRolledBackWhileOthersAreApplied() {
+        openRequests.add(request(1L, "B+", 2));
+        openRequests.add(request(2L, "A+", 2));
+        openRequests.add(request(3L, "O-", 3));
+        doThrow(new IllegalStateException("no units")).when(bloodUnitService).issue(eq(2L), anyString(), anyInt());
+
+        AllocationPlan plan = allocationService.commit(null);
+
+        assertEquals(List.of(1L, 3L), plan.getAllocations().stream().map(AllocationPlan.Allocation::getRequestId).toList());
+        assertEquals(List.of(2L), plan.getUnfulfilledRequestIds());
+        assertEquals(1, ledger.getOnHand("B+"));
+        assertEquals(2, ledger.getOnHand("O-"));
+        // Phần A+ của yêu cầu lỗi không bị trừ và được giữ chỗ lại cho yêu cầu đó
+        assertEquals(2, ledger.getOnHand("A+"));
+        assertTrue(reservations.isHeld(2L));
+        assertEquals(0, ledger.getAvailable("A+"));
+    }
+
+    @Test
+    void requestConfirmedElsewhereIsReportedAsSkipped() {
+        openRequests.add(request(1L, "B+", 2));
+        openRequests.add(request(2L, "O-", 2));
+        when(requestRepository.transition(eq(1L), anyCollection(), eq(BloodRequestStatus.CONFIRM))).thenReturn(0);
+
+        AllocationPlan plan = allocationService.commit(null);
+
+        assertEquals(List.of(1L), plan.getSkippedRequestIds());
+        assertEquals(List.of(2L), plan.getAllocations().stream().map(AllocationPlan.Allocation::getRequestId).toList());
+        verify(bloodUnitService, never()).issue(eq(1L), anyString(), anyInt());
+        assertEquals(3, ledger.getOnHand("B+"));
+        assertEquals(3, ledger.getAvailable("B+"));
+    }
+
+    @Test
+    void concurrentCommitsRunOneAfterTheOther() throws Exception {
+        openRequests.add(request(1L, "B+", 2));
+        CountDownLatch issuing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(call -> {
+            issuing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(bloodUnitService).issue(eq(1L), anyString(), anyInt());
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<AllocationPlan> first = threads.submit(() -> allocationService.commit(null));
+            assertTrue(issuing.await(5, TimeUnit.SECONDS));
+            Future<AllocationPlan> second = threads.submit(() -> allocationService.commit(null));
+            Thread.sleep(200);
+            assertFalse(second.isDone());
+            // Lần commit thứ hai chưa đọc danh sách yêu cầu mở
+            verify(queue, times(1)).snapshot();
+
+            openRequests.clear();
+            release.countDown();
+            assertEquals(1, first.get(5, TimeUnit.SECONDS).getAllocations().size());
+            assertTrue(second.get(5, TimeUnit.SECONDS).getAllocations().isEmpty());
+            assertEquals(1, ledger.getOnHand("B+"));
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static AllocationPlan.Allocation allocation(AllocationPlan plan, Long requestId) {
+        return plan.getAllocations().stream().filter(a -> a.getRequestId().equals(requestId)).findFirst().orElseThrow();
+    }
+
+    private static BloodRequest request(Long id, String bloodType, int amount) {
+        BloodRequest request = new BloodRequest();
+        request.setId(id);
+        request.setRecipientBloodType(bloodType);
+        request.setRequestedAmount(amount);
+        request.setUrgencyLevel(BloodUrgencyLevel.CRITICAL);
+        request.setStatus(BloodRequestStatus.PENDING);
+        return request;
+    }
+
+    private static BloodRequest copy(BloodRequest source) {
+        BloodRequest copy = request(source.getId(), source.getRecipientBloodType(), source.getRequestedAmount());
+        copy.setStatus(source.getStatus());
+        return copy;
+    }
+
+    private static BloodInventory row(String bloodType, int quantity) {
+        BloodInventory row = new BloodInventory();
+        row.setBloodType(bloodType);
+        row.setQuantity(quantity);
+        return row;
+    }
+
+    // Giao dịch giả: chỉ chạy các callback đồng bộ hóa khi commit/rollback
+    private static class FakeTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
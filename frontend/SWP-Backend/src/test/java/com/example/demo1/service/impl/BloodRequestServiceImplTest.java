@@ -0,0 +1,102 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.entity.BloodRequest;
+import com.example.demo1.entity.enums.BloodRequestStatus;
+import com.example.demo1.repo.BloodRequestRepository;
+import com.example.demo1.service.BloodInventoryService;
+import com.example.demo1.service.BloodRequestQueue;
+import com.example.demo1.service.InventoryReservations;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BloodRequestServiceImplTest {
+
+    private static final long REQUEST_ID = 5L;
+
+    private BloodRequestServiceImpl service;
+    private BloodRequestRepository repository;
+    private BloodInventoryService inventoryService;
+    private BloodRequest request;
+
+    @BeforeEach
+    void setUp() {
+        request = new BloodRequest();
+        request.setId(REQUEST_ID);
+        request.setRecipientBloodType("O+");
+        request.setRequestedAmount(3);
+        request.setStatus(BloodRequestStatus.PENDING);
+
+        repository = mock(BloodRequestRepository.class);
+        when(repository.findById(REQUEST_ID)).thenReturn(Optional.of(request));
+        when(repository.transition(eq(REQUEST_ID), anyCollection(), eq(BloodRequestStatus.CONFIRM))).thenReturn(1);
+        inventoryService = mock(BloodInventoryService.class);
+        when(inventoryService.hasBloodType(anyString())).thenReturn(true);
+        when(inventoryService.debitForRequest(anyLong(), anyString(), anyInt(), any())).thenReturn(true);
+
+        service = new BloodRequestServiceImpl();
+        ReflectionTestUtils.setField(service, "bloodRequestRepository", repository);
+        ReflectionTestUtils.setField(service, "bloodRequestQueue", mock(BloodRequestQueue.class));
+        ReflectionTestUtils.setField(service, "inventoryReservations", mock(InventoryReservations.class));
+        ReflectionTestUtils.setField(service, "bloodInventoryService", inventoryService);
+    }
+
+    @Test
+    void confirmMovesOpenRequestAndDebitsOnce() {
+        request.setStatus(BloodRequestStatus.WAITING);
+
+        assertTrue(service.confirm(REQUEST_ID, "O-", null).isPresent());
+
+        assertEquals(BloodRequestStatus.CONFIRM, request.getStatus());
+        verify(repository).transition(REQUEST_ID, BloodRequestQueue.OPEN_STATUSES, BloodRequestStatus.CONFIRM);
+        verify(inventoryService).debitForRequest(REQUEST_ID, "O-", 3, null);
+    }
+
+    @Test
+    void confirmedRequestIsRejectedWithoutDebit() {
+        request.setStatus(BloodRequestStatus.CONFIRM);
+
+        assertThrows(IllegalStateException.class, () -> service.confirm(REQUEST_ID, null, null));
+
+        verify(repository, never()).transition(anyLong(), anyCollection(), any());
+        verify(inventoryService, never()).debitForRequest(anyLong(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void confirmLosingTheTransitionDoesNotDebit() {
+        when(repository.transition(eq(REQUEST_ID), anyCollection(), eq(BloodRequestStatus.CONFIRM))).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> service.confirm(REQUEST_ID, null, null));
+
+        verify(inventoryService, never()).debitForRequest(anyLong(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void confirmFailsWhenStockIsShort() {
+        when(inventoryService.debitForRequest(anyLong(), anyString(), anyInt(), any())).thenReturn(false);
+
+        // Ngoại lệ làm rollback cả việc chuyển trạng thái
+        assertThrows(IllegalStateException.class, () -> service.confirm(REQUEST_ID, null, null));
+    }
+
+    @Test
+    void confirmOfUnknownRequestIsEmpty() {
+        assertTrue(service.confirm(99L, null, null).isEmpty());
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.dto.RegistrationFilter;
+import com.example.demo1.entity.DonationRegistration;
+import com.example.demo1.entity.DonationSchedule;
+import com.example.demo1.entity.User;
+import com.example.demo1.entity.enums.RegistrationStatus;
+import com.example.demo1.repo.DonationRegistrationRepository;
+import com.example.demo1.repo.DonationScheduleRepository;
+import com.example.demo1.service.BloodUnitService;
+import com.example.demo1.service.DonorEligibilityIndex;
+import com.example.demo1.service.NotificationService;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DonationRegistrationServiceImplTest {
+
+    private static final long REG_ID = 1L;
+    private static final long SCHEDULE_ID = 7L;
+
+    private DonationRegistrationServiceImpl service;
+    private DonationRegistrationRepository registrationRepository;
+    private BloodUnitService bloodUnitService;
+
+    // Trạng thái "trong DB" của đơn và số chỗ đã đặt của lịch
+    private final AtomicReference<RegistrationStatus> stored = new AtomicReference<>();
+    private final AtomicInteger booked = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        registrationRepository = mock(DonationRegistrationRepository.class);
+        DonationScheduleRepository scheduleRepository = mock(DonationScheduleRepository.class);
+        bloodUnitService = mock(BloodUnitService.class);
+
+        when(registrationRepository.findById(REG_ID)).thenAnswer(call -> Optional.of(registration(stored.get())));
+        when(registrationRepository.transition(eq(REG_ID), any(), any())).thenAnswer(call ->
+                stored.compareAndSet(call.getArgument(1), call.getArgument(2)) ? 1 : 0);
+        when(registrationRepository.findByScheduleIdAndStatus(anyLong(), any(), any())).thenReturn(List.of());
+        when(scheduleRepository.release(SCHEDULE_ID)).thenAnswer(call -> {
+            int before = booked.getAndUpdate(n -> n > 0 ? n - 1 : n);
+            return before > 0 ? 1 : 0;
+        });
+
+        service = new DonationRegistrationServiceImpl();
+        ReflectionTestUtils.setField(service, "registrationRepository", registrationRepository);
+        ReflectionTestUtils.setField(service, "scheduleRepository", scheduleRepository);
+        ReflectionTestUtils.setField(service, "bloodUnitService", bloodUnitService);
+        ReflectionTestUtils.setField(service, "donorEligibilityIndex", mock(DonorEligibilityIndex.class));
+        ReflectionTestUtils.setField(service, "notificationService", mock(NotificationService.class));
+    }
+
+    @Test
+    void confirmPendingCreditsOnce() {
+        stored.set(RegistrationStatus.PENDING);
+        booked.set(1);
+
+        assertTrue(service.confirm(REG_ID, new User()).isPresent());
+        assertEquals(RegistrationStatus.CONFIRMED, stored.get());
+        assertEquals(1, booked.get());
+        verify(bloodUnitService).receive(any(), any());
+    }
+
+    @Test
+    void cancelledRegistrationCannotBeConfirmed() {
+        stored.set(RegistrationStatus.CANCELLED);
+
+        assertThrows(IllegalStateException.class, () -> service.confirm(REG_ID, new User()));
+        verify(bloodUnitService, never()).receive(any(), any());
+    }
+
+    @Test
+    void waitlistedRegistrationCannotBeConfirmed() {
+        stored.set(RegistrationStatus.WAITLISTED);
+
+        assertThrows(IllegalStateException.class, () -> service.confirm(REG_ID, new User()));
+        verify(bloodUnitService, never()).receive(any(), any());
+    }
+
+    @Test
+    void confirmLosingToConcurrentCancelDoesNotCredit() {
+        stored.set(RegistrationStatus.PENDING);
+        // Đơn được đọc là PENDING nhưng đã bị hủy trước khi cập nhật có điều kiện chạy
+        when(registrationRepository.findById(REG_ID)).thenAnswer(call -> {
+            DonationRegistration reg = registration(RegistrationStatus.PENDING);
+            stored.set(RegistrationStatus.CANCELLED);
+            return Optional.of(reg);
+        });
+
+        assertThrows(IllegalStateException.class, () -> service.confirm(REG_ID, new User()));
+        verify(bloodUnitService, never()).receive(any(), any());
+    }
+
+    @Test
+    void cancelReleasesTheSlotOnce() {
+        stored.set(RegistrationStatus.PENDING);
+        booked.set(1);
+
+        service.cancel(REG_ID);
+        service.cancel(REG_ID);
+
+        assertEquals(RegistrationStatus.CANCELLED, stored.get());
+        assertEquals(0, booked.get());
+    }
+
+    @RepeatedTest(20)
+    void concurrentCancelAndConfirmOnlyOneWins() throws InterruptedException {
+        stored.set(RegistrationStatus.PENDING);
+        booked.set(1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+
+        Thread confirm = new Thread(() -> run(start, failures, () -> service.confirm(REG_ID, new User())));
+        Thread cancel = new Thread(() -> run(start, failures, () -> service.cancel(REG_ID)));
+        confirm.start();
+        cancel.start();
+        start.countDown();
+        confirm.join();
+        cancel.join();
+
+        // Hủy luôn được phép (kể cả đơn đã xác nhận); xác nhận chỉ thành công khi đơn còn PENDING
+        if (stored.get() == RegistrationStatus.CANCELLED) {
+            assertEquals(0, booked.get());
+        } else {
+            assertEquals(RegistrationStatus.CONFIRMED, stored.get());
+            assertEquals(1, booked.get());
+        }
+        verify(bloodUnitService, atMost(1)).receive(any(), any());
+        assertTrue(failures.get() <= 1);
+    }
+
+    @Test
+    void searchSpecOnlyContainsTheFiltersThatAreSet() {
+        RegistrationFilter empty = new RegistrationFilter();
+        assertEquals(0, predicates(DonationRegistrationServiceImpl.pageSpec(empty, null, null, null, 0)));
+
+        RegistrationFilter pending = new RegistrationFilter();
+        pending.setStatus(RegistrationStatus.PENDING);
+        assertEquals(1, predicates(DonationRegistrationServiceImpl.pageSpec(pending, null, null, null, 0)));
+
+        RegistrationFilter byUser = new RegistrationFilter();
+        byUser.setUserId(42L);
+        LocalDateTime cursor = LocalDateTime.of(2026, 1, 1, 8, 0);
+        assertEquals(3, predicates(DonationRegistrationServiceImpl.pageSpec(byUser, cursor.minusDays(30), null, cursor, 9)));
+    }
+
+    // Số điều kiện được ghép vào mệnh đề WHERE của Specification
+    @SuppressWarnings("unchecked")
+    private static int predicates(Specification<DonationRegistration> spec) {
+        Root<DonationRegistration> root = mock(Root.class, RETURNS_DEEP_STUBS);
+        CriteriaQuery<Object> query = mock(CriteriaQuery.class);
+        when(query.getResultType()).thenReturn(Object.class);
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+        AtomicInteger count = new AtomicInteger(-1);
+        when(cb.and(any(Predicate[].class))).thenAnswer(call -> {
+            count.set(call.getArguments().length);
+            return mock(Predicate.class);
+        });
+        spec.toPredicate(root, query, cb);
+        return count.get();
+    }
+
+    private static void run(CountDownLatch start, AtomicInteger failures, Runnable action) {
+        try {
+            start.await();
+            action.run();
+        } catch (IllegalStateException e) {
+            failures.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DonationRegistration registration(RegistrationStatus status) {
+        DonationSchedule schedule = new DonationSchedule();
+        schedule.setId(SCHEDULE_ID);
+        User donor = new User();
+        donor.setId(42L);
+        donor.setEmail("donor@example.com");
+        DonationRegistration reg = new DonationRegistration();
+        reg.setId(REG_ID);
+        reg.setStatus(status);
+        reg.setSchedule(schedule);
+        reg.setUser(donor);
+        return reg;
+    }
+}
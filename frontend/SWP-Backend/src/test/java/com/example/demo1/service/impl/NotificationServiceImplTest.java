@@ -0,0 +1,63 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.entity.Notification;
+import com.example.demo1.repo.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class NotificationServiceImplTest {
+
+    private NotificationServiceImpl service;
+    private NotificationRepository notificationRepository;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = new NotificationServiceImpl();
+        ReflectionTestUtils.setField(service, "notificationRepository", notificationRepository);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    void addressWithLineBreakIsNotQueued() {
+        service.sendNotification("a@example.com\r\nBcc: victim@example.com", "Xin chào");
+
+        verify(notificationRepository, never()).save(any());
+    }
+
+    @Test
+    void validAddressIsQueuedTrimmed() {
+        service.sendNotification("  donor@example.com ", "Xin chào");
+
+        ArgumentCaptor<Notification> saved = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationRepository).save(saved.capture());
+        assertEquals("donor@example.com", saved.getValue().getRecipient());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchSkipsInvalidAddresses() {
+        int queued = service.sendNotifications(
+                Arrays.asList("a@example.com", null, "b@example.com>\r\nRCPT TO:<c@example.com>", "d@example.com"), "Khẩn cấp");
+
+        assertEquals(2, queued);
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(List.of("a@example.com", "d@example.com"), rows.getValue().stream().map(row -> row[0]).toList());
+    }
+}
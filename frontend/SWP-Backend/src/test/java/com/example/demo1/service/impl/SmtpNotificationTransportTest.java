@@ -0,0 +1,109 @@
+package com.example.demo1.service.impl;
+
+import com.example.demo1.config.NotificationProperties;
+import com.example.demo1.entity.Notification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmtpNotificationTransportTest {
+
+    private ServerSocket server;
+    private Thread serverThread;
+    // Các dòng máy chủ giả nhận được
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private SmtpNotificationTransport transport;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new ServerSocket(0);
+        serverThread = new Thread(this::serve);
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        NotificationProperties properties = new NotificationProperties();
+        properties.getSmtp().setHost("127.0.0.1");
+        properties.getSmtp().setPort(server.getLocalPort());
+        transport = new SmtpNotificationTransport();
+        ReflectionTestUtils.setField(transport, "notificationProperties", properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void injectedRecipientNeverReachesTheServer() throws InterruptedException {
+        List<String> results = transport.send(List.of(
+                notification(1L, "a@example.com>\r\nRCPT TO:<victim@example.com"),
+                notification(2L, "donor@example.com")), Instant.now().plusSeconds(60));
+        serverThread.join(5000);
+
+        assertEquals("Invalid recipient address", results.get(0));
+        assertNull(results.get(1));
+        assertTrue(received.contains("RCPT TO:<donor@example.com>"));
+        assertTrue(received.contains("To: donor@example.com"));
+        assertFalse(received.stream().anyMatch(line -> line.contains("victim")));
+    }
+
+    private static Notification notification(Long id, String recipient) {
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setRecipient(recipient);
+        notification.setMessage("Lịch hiến máu\n\nXin chào");
+        return notification;
+    }
+
+    // Máy chủ SMTP tối giản: chấp nhận mọi lệnh, phục vụ một kết nối
+    private void serve() {
+        try (Socket socket = server.accept()) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+            reply(out, "220 ready");
+            boolean data = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                received.add(line);
+                if (data) {
+                    if (line.equals(".")) {
+                        data = false;
+                        reply(out, "250 queued");
+                    }
+                } else if (line.equals("DATA")) {
+                    data = true;
+                    reply(out, "354 go ahead");
+                } else if (line.equals("QUIT")) {
+                    reply(out, "221 bye");
+                    return;
+                } else {
+                    reply(out, "250 ok");
+                }
+            }
+        } catch (IOException e) {
+            // kết nối đóng khi test kết thúc
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}